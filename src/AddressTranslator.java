@@ -1,4 +1,5 @@
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -22,31 +23,127 @@ import java.util.Random;
  *
  * @author Guy K. Kloss
  */
-public class AddressTranslator {
+public class AddressTranslator implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private List<PageTableEntry> pageTable;;
     private boolean[] memoryFrames;
     private Simulation mySimulation;
     private PageReplacement myPageReplacement;
-    private Random randomiser = new Random();
+    private Random randomiser;
+    private int[] unusedFrames;
+    private int[] unusedPosition;
+    private int unusedCount;
+    private int residentLimit;
+    private boolean accessTracking;
+    private FramePool myFramePool;
+    private int core = 0;
+    private long clock = 0;
+    private int pageFaults = 0;
+    private int tlbLookups = 0;
+    private int tlbMisses = 0;
+    private Prefetcher myPrefetcher = null;
+    private int[] prefetchPages;
+    private int freePagesReturned = 0;
+    private int cleanPagesReturned = 0;
+    private int dirtyPagesReturned = 0;
+    private int pid;
+    private HeatProfiler myProfiler;
+    private TraceWriter myTrace;
+    private PageHeatMap heatMap = null;
+    private ShadowTable shadows = null;
+    private int evictions = 0;
+    private int refaults = 0;
+    private long[] refaultDistances = new long[LocalityProfile.BUCKETS];
+    private CompressedPool compressedPool = null;
+    private int poolFrames = 0;
+    private SharedMemory mySharedMemory;
+    private long[] sharedKeys = null;
+    private int minorFaults = 0;
+    private int cowFaults = 0;
+    private int cowCopies = 0;
+    private NumaMemory myNumaMemory;
+    private int numaPolicy;
+    private int homeNode = -1;
+    private int nextInterleaveNode = 0;
+    private int[] frameNodes = null;
+    private int[] remoteAccessCounts = null;
+    private int localAccesses = 0;
+    private int remoteAccesses = 0;
+    private int migrations = 0;
+    private VictimIndex victims = null;
     
     /**
      * Constructor.
      * 
      * @param aSimulation Reference to simulation.
+     * @param pid Process ID.
      * @param pagesMemoryToStart How many pages are needed to start this process.
+     * @param randomiser Random number generator of the process.
      */
-    public AddressTranslator(Simulation aSimulation, int pagesMemoryToStart) {
+    public AddressTranslator(Simulation aSimulation, int pid, int pagesMemoryToStart,
+                             Random randomiser) {
         this.mySimulation = aSimulation;
-        this.pageTable = new ArrayList<PageTableEntry>();
+        this.pid = pid;
+        this.randomiser = randomiser;
+        this.pageTable = this.mySimulation.getPageTableImpl();
         // To start, we need to get our memory footprint into memory, so we're
         // grabbing that amount. For this simulation, we're keeping it at that
-        // as well, so a static array.
-        this.memoryFrames = new boolean[pagesMemoryToStart];
+        // as well, so a static array. Unless the resident set is sized
+        // dynamically, then there has to be room to grow into.
+        int frames = pagesMemoryToStart;
+        if (this.mySimulation.getMemoryManagement() != MemoryManager.FIXED) {
+            frames = Math.max(frames, this.mySimulation.getNumberPages());
+        }
+        this.memoryFrames = new boolean[frames];
+        this.unusedFrames = new int[frames];
+        this.unusedPosition = new int[frames];
+        this.unusedCount = frames;
+        for (int i = 0; i < frames; i++) {
+            // Stacked so frames are handed out in ascending order.
+            this.unusedFrames[i] = frames - 1 - i;
+            this.unusedPosition[frames - 1 - i] = i;
+        }
+        this.residentLimit = pagesMemoryToStart;
+        this.myFramePool = this.mySimulation.getFramePool();
         for (int i = 0; i < pagesMemoryToStart; i++) {
             this.pageTable.add(new PageTableEntry(i));
         }
         this.myPageReplacement = this.mySimulation.getPageReplacementImpl(this.pageTable,
                                                                           this.memoryFrames);
+        this._attachVictimIndex();
+        this.accessTracking = this.myPageReplacement.tracksAccesses();
+        if (this.mySimulation.isPrefetchEnabled()) {
+            this.myPrefetcher = new Prefetcher(this.mySimulation.getPrefetchMinWindow(),
+                                               this.mySimulation.getPrefetchMaxWindow());
+            this.prefetchPages = new int[this.myPrefetcher.getMaxWindow()];
+        }
+        this.myProfiler = this.mySimulation.getHeatProfiler();
+        this.myTrace = this.mySimulation.getTraceWriter();
+        if (this.myProfiler != null) {
+            this.heatMap = new PageHeatMap(this.mySimulation.getHeatMapBuckets());
+        }
+        if (this.mySimulation.isRefaultTracking()) {
+            this.shadows = new ShadowTable(this.mySimulation.getShadowEntries());
+        }
+        this.mySharedMemory = this.mySimulation.getSharedMemory();
+        this.myNumaMemory = this.mySimulation.getNumaMemory();
+        if (this.myNumaMemory != null) {
+            this.numaPolicy = this.mySimulation.getNumaPolicy();
+            this.frameNodes = new int[frames];
+            this.remoteAccessCounts = new int[frames];
+        }
+        if (this.mySimulation.isCompressedPool()) {
+            long capacity = (long)(this.mySimulation.getCompressedPoolPercent() / 100
+                                   * pagesMemoryToStart * this.mySimulation.getPageSize());
+            this.compressedPool = new CompressedPool(capacity, this.mySimulation.getPageSize(),
+                                                     this.mySimulation.getCompressionRatio(),
+                                                     this.mySimulation.getCompressionRatioSpread(),
+                                                     pid);
+            // The pool is memory too, taken from the frames of the process.
+            int pageSize = this.mySimulation.getPageSize();
+            this.poolFrames = (int)((capacity + pageSize - 1) / pageSize);
+        }
     }
     
     /**
@@ -57,56 +154,207 @@ public class AddressTranslator {
      */
     public int accessPage(int pageNumber) {
         int waitCycles = 0;
+        boolean written = false;
+        this._profile(pageNumber, HeatProfiler.ACCESS);
+        if (this.myTrace != null) {
+            this.myTrace.record(this.core, this.clock, this.pid, pageNumber);
+        }
         
         if (this.pageTable.size() <= pageNumber) {
+            // Pages skipped over exist, but haven't been touched yet.
+            this._extendPageTable(pageNumber);
             // Make a new page in virtual memory.
-            if (this.memoryFrames.length < pageNumber) {
+            this.pageFaults++;
+            this._profile(pageNumber, HeatProfiler.FAULT);
+            this.myPageReplacement.pageFaulted(pageNumber);
+            waitCycles += this.myFramePool.acquire(this.core, this.clock);
+            int frameNumber = this._takeUnusedFrame();
+            if (frameNumber >= 0) {
                 // Still filling up our pre-reserved memory.
-                // So page number == frame number.
-                PageTableEntry newPTE = new PageTableEntry(pageNumber);
+                PageTableEntry newPTE = new PageTableEntry(frameNumber);
                 newPTE.setValid(true);
                 newPTE.setReferenced(true);
                 newPTE.setModified(false);
-                this.memoryFrames[pageNumber] = true;
+                this.memoryFrames[frameNumber] = true;
                 this.pageTable.add(newPTE);
-                waitCycles = this.mySimulation.getPageFromDiskCycles();
+                waitCycles += this._loadCycles(pageNumber);
+                this._pageMapped(pageNumber);
             } else {
                 // Ask the page replacement algorithm which page to use.
                 int pageNumberToReplace = this.myPageReplacement.getTargetPage();
-                int frameNumber = this.pageTable.get(pageNumberToReplace).getPageFrameNumber();
+                frameNumber = this._claimFrame(pageNumberToReplace);
                 PageTableEntry newPTE = new PageTableEntry(frameNumber);
                 this.pageTable.add(newPTE);
-                waitCycles = this._swapForNew(pageNumberToReplace, pageNumber);
+                waitCycles += this._swapForNew(pageNumberToReplace, pageNumber);
                 this.memoryFrames[frameNumber] = true;
+                this._pageMapped(pageNumber);
             }
+            waitCycles += this._readAhead(pageNumber, true);
         } else {
             // Access existing page.
             PageTableEntry currentPTE = this.pageTable.get(pageNumber);
             
             if (!currentPTE.isValid()) {
                 // Bummer, load page from disk into frame and update page table.
-                int pageToReplace = this.myPageReplacement.getTargetPage();
-                waitCycles += this._swapForExisting(pageToReplace,
-                                                    currentPTE.getPageFrameNumber());
+                this.pageFaults++;
+                this._profile(pageNumber, HeatProfiler.FAULT);
+                int refaultDistance = this._refaultDistance(pageNumber);
+                this.myPageReplacement.pageFaulted(pageNumber);
+                waitCycles += this.myFramePool.acquire(this.core, this.clock);
+                int frameNumber = this._takeUnusedFrame();
+                if (frameNumber >= 0) {
+                    waitCycles += this._swapIn(pageNumber, frameNumber);
+                } else {
+                    int pageToReplace = this.myPageReplacement.getTargetPage();
+                    waitCycles += this._swapForExisting(pageToReplace, pageNumber);
+                }
+                if (refaultDistance >= 0) {
+                    this.myPageReplacement.pageRefaulted(pageNumber, refaultDistance);
+                }
+                waitCycles += this._readAhead(pageNumber, true);
             } else {
+                if (currentPTE.isPrefetched()) {
+                    // Read ahead in time, keep the stream going.
+                    currentPTE.setPrefetched(false);
+                    waitCycles += this._readAhead(pageNumber, false);
+                }
                 // Let's roll the dice to see whether we've had a TLB miss or hit.
-                if (this.mySimulation.isTlbHit()) {
+                this.tlbLookups++;
+                if (this.mySimulation.isTlbHit(this.randomiser)) {
                     // One cycle for TLB resolution.
                     waitCycles += 1;
                 } else {
-                    waitCycles += this.mySimulation.getPageTableCycles();
+                    this.tlbMisses++;
+                    waitCycles += this.mySimulation.getPageTableCycles(this.randomiser);
                 }
             }
             
             // Let's "access" it.
-            currentPTE.access();
+            written = currentPTE.access(this.randomiser);
+            if (written) {
+                if (this.victims != null) {
+                    this.victims.pageWritten(currentPTE.getPageFrameNumber());
+                }
+                if (this._sharedKey(pageNumber) != 0) {
+                    waitCycles += this._copyOnWrite(pageNumber);
+                }
+            }
         }
         
+        if (this.accessTracking) {
+            this.myPageReplacement.pageAccessed(pageNumber, written);
+        }
+        if (this.myNumaMemory != null) {
+            waitCycles += this._nodeAccess(pageNumber);
+        }
         return waitCycles;
     }
 
 
 
+    /**
+     * Shares the first pages of the address space with all processes running
+     * the same code.
+     * 
+     * @param image Code image (process class) number.
+     * @param pages Number of pages of code.
+     */
+    public void shareCode(int image, int pages) {
+        for (int page = pages - 1; page >= 0; page--) {
+            this._setSharedKey(page, SharedMemory.codeKey(image, page));
+        }
+    }
+
+    /**
+     * Starts off as a fork of another address space: the pages resident
+     * there (as many as there are frames here) are shared copy-on-write.
+     * Only to be called between windows, as it touches both address spaces.
+     * 
+     * @param parent Address space forked.
+     */
+    public void forkFrom(AddressTranslator parent) {
+        // Starts off where the parent lives.
+        this.homeNode = parent.homeNode;
+        this._extendPageTable(parent.pageTable.size());
+        for (int page = 0; page < parent.pageTable.size(); page++) {
+            PageTableEntry parentPTE = parent.pageTable.get(page);
+            if (!parentPTE.isValid()) {
+                continue;
+            }
+            int frameNumber = this._takeUnusedFrame();
+            if (frameNumber < 0) {
+                break;
+            }
+            long key = parent._sharedKey(page);
+            if (key == 0) {
+                key = SharedMemory.anonymousKey(parent.pid, page);
+                parent._setSharedKey(page, key);
+                this.mySharedMemory.map(-1, key);
+            }
+            this._setSharedKey(page, key);
+            PageTableEntry childPTE = this.pageTable.get(page);
+            childPTE.setValid(true);
+            childPTE.setModified(parentPTE.isModified());
+            childPTE.setReferenced(false);
+            childPTE.setPageFrameNumber(frameNumber);
+            this.memoryFrames[frameNumber] = true;
+            this.myPageReplacement.pageMapped(page);
+            if (this.victims != null) {
+                this.victims.pageMapped(frameNumber, page, childPTE.isModified());
+            }
+            this.mySharedMemory.map(-1, key);
+            if (this.myNumaMemory != null) {
+                this._placePage(page, -1);
+            }
+        }
+    }
+
+    /**
+     * Lets go of the shared pages still resident, and of the frames on the
+     * NUMA nodes, when the process is done. Only to be called between
+     * windows.
+     */
+    public void releaseMemory() {
+        for (int page = 0; page < this.pageTable.size(); page++) {
+            PageTableEntry entry = this.pageTable.get(page);
+            if (!entry.isValid()) {
+                continue;
+            }
+            long key = this._sharedKey(page);
+            if (key != 0) {
+                this.mySharedMemory.unmap(-1, key);
+            }
+            if (this.myNumaMemory != null) {
+                this.myNumaMemory.free(-1, this.frameNodes[entry.getPageFrameNumber()]);
+            }
+        }
+    }
+
+    /**
+     * Lets go of a page table kept outside the heap when the process is
+     * done. The page table is empty afterwards.
+     */
+    public void releasePageTable() {
+        if (this.pageTable instanceof OffHeapPageTable) {
+            ((OffHeapPageTable)this.pageTable).release();
+        }
+    }
+
+    /**
+     * Tells the translator where and when the next accesses happen.
+     * 
+     * @param core Number of the core the process runs on.
+     * @param clock Clock of that core.
+     */
+    public void setClock(int core, long clock) {
+        this.core = core;
+        this.clock = clock;
+        if ((this.myNumaMemory != null) && (this.homeNode < 0)) {
+            // At home on the node it's first run on.
+            this.homeNode = this.myNumaMemory.getNode(core);
+        }
+    }
+
     /**
      * Returns the current size of the virtual address space in this page table.
      * 
@@ -116,6 +364,13 @@ public class AddressTranslator {
         return this.mySimulation.getPageSize() * this.pageTable.size();
     }
 
+    /**
+     * @return Current size of the virtual address space in pages.
+     */
+    public int getPageCount() {
+        return this.pageTable.size();
+    }
+
     /**
      * Returns the used page size for memory management.
      * 
@@ -131,6 +386,12 @@ public class AddressTranslator {
      * @param pageNumber Virtual page number.
      */
     public void freePage(int pageNumber) {
+        if ((pageNumber >= this.pageTable.size())
+                || !this.pageTable.get(pageNumber).isValid()) {
+            // Nothing in memory, so nothing to free (the frame may well be
+            // in use by another page by now).
+            return;
+        }
         // Resolve PTE for page number and get referenced memory frame.
         PageTableEntry thePage = this.pageTable.get(pageNumber);
         int frameNumber = thePage.getPageFrameNumber();
@@ -138,7 +399,17 @@ public class AddressTranslator {
         thePage.setValid(false);
         thePage.setReferenced(false);
         thePage.setModified(false);
+        thePage.setPrefetched(false);
         this.memoryFrames[frameNumber] = false;
+        this._pageUnmapped(pageNumber, true);
+        if (this._sharedKey(pageNumber) > 0) {
+            // Anonymous memory freed, not shared with anyone any more.
+            this._setSharedKey(pageNumber, 0);
+        }
+        if (this.shadows != null) {
+            // Freed, not evicted: faulting it back in is no refault.
+            this.shadows.remove(pageNumber);
+        }
     }
 
     /**
@@ -150,25 +421,453 @@ public class AddressTranslator {
      * @return Number of clock cycles for the operation.
      */
     private int _swapForExisting(int outPageNumber, int inPageNumber) {
-        PageTableEntry inPTE = this.pageTable.get(inPageNumber);
+        int frameNumber = this._claimFrame(outPageNumber);
+        int waitCycles = this._swapOut(outPageNumber);
+        waitCycles += this._swapIn(inPageNumber, frameNumber);
+        return waitCycles;
+    }
+
+    /**
+     * Swaps out the memory frame of a PTE to disk (if it is dirty), and marks
+     * the frame as unused.
+     * 
+     * @param outPageNumber Page frame number in virtual memory to swap out.
+     * @return Number of clock cycles for the operation.
+     */
+    private int _swapOut(int outPageNumber) {
         PageTableEntry outPTE = this.pageTable.get(outPageNumber);
-        int frameNumber = outPTE.getPageFrameNumber();
+        boolean wasValid = outPTE.isValid();
         int waitCycles = 0;
         
-        // Swap out frame from source PTE.
-        if (outPTE.isModified()) {
-            waitCycles = this.mySimulation.getPageFromDiskCycles();
+        int compressCycles = -1;
+        if (wasValid && (this._sharedKey(outPageNumber) != 0)
+                && (this.mySharedMemory.getCount(this.core, this._sharedKey(outPageNumber)) > 1)) {
+            // Still resident for others, so there is nothing to write.
+            compressCycles = 0;
+        } else if ((this.compressedPool != null) && wasValid) {
+            compressCycles = this._compressOut(outPageNumber, outPTE.isModified());
+        }
+        if (compressCycles >= 0) {
+            waitCycles = compressCycles;
+        } else if (outPTE.isModified()) {
+            waitCycles = this.mySimulation.getPageFromDiskCycles(this.randomiser);
+            this._profile(outPageNumber, HeatProfiler.WRITEBACK);
+        }
+        if (outPTE.isPrefetched()) {
+            // Read ahead for nothing.
+            outPTE.setPrefetched(false);
+            this.myPrefetcher.prefetchWasted();
+        }
+        if (!wasValid) {
+            this.freePagesReturned++;
+        } else if (outPTE.isModified()) {
+            this.dirtyPagesReturned++;
+        } else {
+            this.cleanPagesReturned++;
         }
         outPTE.setValid(false);
-        
-        // Swap into target PTE.
-        waitCycles += this.mySimulation.getPageFromDiskCycles();
+        this.memoryFrames[outPTE.getPageFrameNumber()] = false;
+        if (!wasValid) {
+            // A page freed earlier, returned for its frame.
+            return waitCycles;
+        }
+        this._pageUnmapped(outPageNumber, false);
+        if (this.shadows != null) {
+            this.evictions++;
+            this.shadows.put(outPageNumber, this.evictions);
+        }
+        return waitCycles;
+    }
+
+    /**
+     * Compresses an evicted page into the compressed pool, if it takes it.
+     * 
+     * @param outPageNumber Page number in virtual memory to swap out.
+     * @param modified True if the page is dirty.
+     * @return Number of clock cycles for compressing, and for writing back
+     *      the pages it made room by, or -1 if it has to go to disk.
+     */
+    private int _compressOut(int outPageNumber, boolean modified) {
+        int diskWrites = this.compressedPool.store(outPageNumber, modified);
+        if (diskWrites < 0) {
+            return -1;
+        }
+        int waitCycles = this.mySimulation.getCompressCycles();
+        for (int i = 0; i < diskWrites; i++) {
+            waitCycles += this.mySimulation.getPageFromDiskCycles(this.randomiser);
+        }
+        return waitCycles;
+    }
+
+    /**
+     * Swaps a PTE from disk (or the compressed pool) into a memory frame.
+     * 
+     * @param inPageNumber Page frame number in virtual memory to swap in.
+     * @param frameNumber Memory frame to use.
+     * @return Number of clock cycles for the operation.
+     */
+    private int _swapIn(int inPageNumber, int frameNumber) {
+        int pooled = -1;
+        if (this.compressedPool != null) {
+            pooled = this.compressedPool.load(inPageNumber);
+        }
+        PageTableEntry inPTE = this.pageTable.get(inPageNumber);
         inPTE.setValid(true);
-        inPTE.setModified(false);
+        // Dirty in the pool means not on disk yet.
+        inPTE.setModified(pooled == 1);
         inPTE.setReferenced(true);
         inPTE.setPageFrameNumber(frameNumber);
         this.memoryFrames[frameNumber] = true;
+        int waitCycles;
+        if (pooled >= 0) {
+            waitCycles = this.mySimulation.getDecompressCycles();
+        } else {
+            waitCycles = this._loadCycles(inPageNumber);
+        }
+        this._pageMapped(inPageNumber);
+        return waitCycles;
+    }
+
+    /**
+     * @param pageNumber Virtual page number coming into memory.
+     * @return Number of clock cycles to load the page: just mapping it if
+     *      it's shared and resident elsewhere, reading it from disk if not.
+     */
+    private int _loadCycles(int pageNumber) {
+        long key = this._sharedKey(pageNumber);
+        if ((key != 0) && (this.mySharedMemory.getCount(this.core, key) > 0)) {
+            this.minorFaults++;
+            return this.mySimulation.getPageTableCycles(this.randomiser);
+        }
+        return this.mySimulation.getPageFromDiskCycles(this.randomiser);
+    }
+
+    /**
+     * Gives a shared page written to a copy of its own (unless no one else
+     * has it mapped any more, then it just becomes private).
+     * 
+     * @param pageNumber Virtual page number written.
+     * @return Number of clock cycles for the fault.
+     */
+    private int _copyOnWrite(int pageNumber) {
+        long key = this._sharedKey(pageNumber);
+        int count = this.mySharedMemory.getCount(this.core, key);
+        this.mySharedMemory.unmap(this.core, key);
+        this._setSharedKey(pageNumber, 0);
+        this.cowFaults++;
+        int waitCycles = this.mySimulation.getPageTableCycles(this.randomiser);
+        if (count > 1) {
+            this.cowCopies++;
+            waitCycles += this.mySimulation.getCowCopyCycles();
+        }
+        return waitCycles;
+    }
+
+    /**
+     * Tells the page replacement algorithm (and its victim index), and the
+     * shared memory if shared, that a page has come into memory, and places
+     * it on a NUMA node.
+     * 
+     * @param pageNumber Virtual page number.
+     */
+    private void _pageMapped(int pageNumber) {
+        this.myPageReplacement.pageMapped(pageNumber);
+        if (this.victims != null) {
+            PageTableEntry entry = this.pageTable.get(pageNumber);
+            this.victims.pageMapped(entry.getPageFrameNumber(), pageNumber, entry.isModified());
+        }
+        long key = this._sharedKey(pageNumber);
+        if (key != 0) {
+            this.mySharedMemory.map(this.core, key);
+        }
+        if (this.myNumaMemory != null) {
+            this._placePage(pageNumber, this.core);
+        }
+    }
+
+    /**
+     * Tells the page replacement algorithm (and its victim index), and the
+     * shared memory if shared, that a page has left memory, and hands its
+     * frame back to its node.
+     * 
+     * @param pageNumber Virtual page number.
+     * @param freed True if freed, false if evicted.
+     */
+    private void _pageUnmapped(int pageNumber, boolean freed) {
+        this.myPageReplacement.pageUnmapped(pageNumber, freed);
+        if (this.victims != null) {
+            int frameNumber = this.pageTable.get(pageNumber).getPageFrameNumber();
+            this.victims.pageUnmapped(frameNumber, pageNumber, freed);
+        }
+        long key = this._sharedKey(pageNumber);
+        if (key != 0) {
+            this.mySharedMemory.unmap(this.core, key);
+        }
+        if (this.myNumaMemory != null) {
+            int frameNumber = this.pageTable.get(pageNumber).getPageFrameNumber();
+            this.myNumaMemory.free(this.core, this.frameNodes[frameNumber]);
+        }
+    }
+
+    /**
+     * Places a page come into memory on a NUMA node, by the allocation
+     * policy: the node of the core running the process, the home node of
+     * the process, or the next node in turn.
+     * 
+     * @param pageNumber Virtual page number.
+     * @param core Core running the process, or -1 if not within a window
+     *      (then local is the home node).
+     */
+    private void _placePage(int pageNumber, int core) {
+        int node;
+        if (this.numaPolicy == NumaMemory.INTERLEAVE) {
+            node = this.nextInterleaveNode;
+            this.nextInterleaveNode = (node + 1) % this.myNumaMemory.getNodes();
+        } else if ((this.numaPolicy == NumaMemory.LOCAL) && (core >= 0)) {
+            node = this.myNumaMemory.getNode(core);
+        } else {
+            node = Math.max(0, this.homeNode);
+        }
+        int frameNumber = this.pageTable.get(pageNumber).getPageFrameNumber();
+        this.frameNodes[frameNumber] = this.myNumaMemory.place(core, node);
+        this.remoteAccessCounts[frameNumber] = 0;
+    }
+
+    /**
+     * Counts an access as local or remote to the node of the core running
+     * the process. Remote accesses cost extra, and with migration on, a page
+     * accessed remotely often enough in a row moves to the node accessing
+     * it, if that has room.
+     * 
+     * @param pageNumber Virtual page number accessed.
+     * @return Number of clock cycles for remote access and migrating.
+     */
+    private int _nodeAccess(int pageNumber) {
+        PageTableEntry entry = this.pageTable.get(pageNumber);
+        if (!entry.isValid()) {
+            return 0;
+        }
+        int frameNumber = entry.getPageFrameNumber();
+        int node = this.myNumaMemory.getNode(this.core);
+        if (this.frameNodes[frameNumber] == node) {
+            this.localAccesses++;
+            this.remoteAccessCounts[frameNumber] = 0;
+            return 0;
+        }
+        this.remoteAccesses++;
+        int waitCycles = this.mySimulation.getNumaRemoteCycles();
+        int threshold = this.mySimulation.getNumaMigrationThreshold();
+        if ((threshold > 0) && (++this.remoteAccessCounts[frameNumber] >= threshold)
+                && this.myNumaMemory.hasRoom(this.core, node)) {
+            this.myNumaMemory.free(this.core, this.frameNodes[frameNumber]);
+            this.frameNodes[frameNumber] = this.myNumaMemory.place(this.core, node);
+            this.remoteAccessCounts[frameNumber] = 0;
+            this.migrations++;
+            waitCycles += this.mySimulation.getNumaMigrationCycles();
+        }
+        return waitCycles;
+    }
+
+    /**
+     * Adds entries of pages not touched yet to the page table, up to a size.
+     * 
+     * @param size Number of pages in the page table.
+     */
+    private void _extendPageTable(int size) {
+        if (this.pageTable instanceof OffHeapPageTable) {
+            ((OffHeapPageTable)this.pageTable).extend(size);
+            return;
+        }
+        while (this.pageTable.size() < size) {
+            this.pageTable.add(new PageTableEntry(0));
+        }
+    }
+
+    /**
+     * @param pageNumber Virtual page number.
+     * @return Key of the page in the shared memory, or 0 if it's private.
+     */
+    private long _sharedKey(int pageNumber) {
+        if ((this.sharedKeys == null) || (pageNumber >= this.sharedKeys.length)) {
+            return 0;
+        }
+        return this.sharedKeys[pageNumber];
+    }
+
+    /**
+     * @param pageNumber Virtual page number.
+     * @param key Key of the page in the shared memory, or 0 if private.
+     */
+    private void _setSharedKey(int pageNumber, long key) {
+        if (this.sharedKeys == null) {
+            this.sharedKeys = new long[Math.max(16, pageNumber + 1)];
+        } else if (pageNumber >= this.sharedKeys.length) {
+            this.sharedKeys = Arrays.copyOf(this.sharedKeys,
+                                            Math.max(pageNumber + 1, 2 * this.sharedKeys.length));
+        }
+        this.sharedKeys[pageNumber] = key;
+    }
+
+    /**
+     * Looks up (and forgets) when a faulting page was evicted, if tracking
+     * refaults. The refault distance is the number of evictions since: had
+     * the process held that many more frames, the page would still be in
+     * memory.
+     * 
+     * @param pageNumber Virtual page number faulting.
+     * @return Refault distance, or -1 if the page isn't remembered as
+     *      evicted.
+     */
+    private int _refaultDistance(int pageNumber) {
+        if (this.shadows == null) {
+            return -1;
+        }
+        int stamp = this.shadows.remove(pageNumber);
+        if (stamp < 0) {
+            return -1;
+        }
+        int distance = this.evictions - stamp;
+        this.refaults++;
+        this.refaultDistances[LocalityProfile.bucket(distance)]++;
+        return distance;
+    }
+
+    /**
+     * Counts an event on a page, if profiling.
+     * 
+     * @param pageNumber Virtual page number.
+     * @param event Kind of event (see {@link HeatProfiler}).
+     */
+    private void _profile(int pageNumber, int event) {
+        if (this.myProfiler != null) {
+            this.myProfiler.record(this.core, this.pid, pageNumber, event);
+            this.heatMap.record(pageNumber, event);
+        }
+    }
+
+    /**
+     * @return Number of frames pages may take: the resident limit less the
+     *      frames of the compressed pool, but at least one.
+     */
+    private int _pageFrameLimit() {
+        return Math.max(1, this.residentLimit - this.poolFrames);
+    }
+
+    /**
+     * Takes a frame not held yet, if the resident limit allows.
+     * 
+     * @return Frame number, or -1 if none is to be had.
+     */
+    private int _takeUnusedFrame() {
+        if ((this.unusedCount == 0)
+                || (this.getResidentFrames() >= this._pageFrameLimit())) {
+            return -1;
+        }
+        this.unusedCount--;
+        int frameNumber = this.unusedFrames[this.unusedCount];
+        this.unusedPosition[frameNumber] = -1;
+        return frameNumber;
+    }
+
+    /**
+     * Resolves the frame of a page the page replacement algorithm returned,
+     * making sure the frame is held (a page freed earlier may point to a
+     * frame that has been handed back since).
+     * 
+     * @param pageNumber Page number returned for replacement.
+     * @return Frame number.
+     */
+    private int _claimFrame(int pageNumber) {
+        int frameNumber = this.pageTable.get(pageNumber).getPageFrameNumber();
+        int position = this.unusedPosition[frameNumber];
+        if (position >= 0) {
+            // Remove from the unused frames, moving the top one into its place.
+            this.unusedCount--;
+            int topFrame = this.unusedFrames[this.unusedCount];
+            this.unusedFrames[position] = topFrame;
+            this.unusedPosition[topFrame] = position;
+            this.unusedPosition[frameNumber] = -1;
+        }
+        return frameNumber;
+    }
+
+    /**
+     * Hands back a held frame that is no longer used.
+     * 
+     * @param frameNumber Frame number.
+     */
+    private void _releaseFrame(int frameNumber) {
+        this.unusedFrames[this.unusedCount] = frameNumber;
+        this.unusedPosition[frameNumber] = this.unusedCount;
+        this.unusedCount++;
+    }
+
+    /**
+     * Reads pages ahead of a fault stream (or of a hit on a page read ahead
+     * earlier). The reads themselves are asynchronous, so they don't add to
+     * the wait, but writing back dirty pages evicted for them does.
+     * 
+     * @param pageNumber Page number faulted or hit.
+     * @param demandFault True if the page has just faulted.
+     * @return Number of clock cycles for the operation.
+     */
+    private int _readAhead(int pageNumber, boolean demandFault) {
+        if (this.myPrefetcher == null) {
+            return 0;
+        }
+        int count;
+        if (demandFault) {
+            count = this.myPrefetcher.pageFaulted(pageNumber, this.prefetchPages);
+        } else {
+            count = this.myPrefetcher.prefetchHit(pageNumber, this.prefetchPages);
+        }
         
+        int waitCycles = 0;
+        for (int i = 0; i < count; i++) {
+            int prefetchPage = this.prefetchPages[i];
+            if (prefetchPage > this.pageTable.size()) {
+                // Can't leave holes in the virtual address space.
+                break;
+            }
+            if ((prefetchPage < this.pageTable.size())
+                    && this.pageTable.get(prefetchPage).isValid()) {
+                continue;
+            }
+            
+            int frameNumber = this._takeUnusedFrame();
+            if (frameNumber < 0) {
+                int pageToReplace = this.myPageReplacement.getTargetPage();
+                if (pageToReplace == pageNumber) {
+                    // Don't throw out what we've just come for.
+                    break;
+                }
+                frameNumber = this._claimFrame(pageToReplace);
+                waitCycles += this._swapOut(pageToReplace);
+                this.myPrefetcher.prefetchEvicted();
+            }
+            if (prefetchPage == this.pageTable.size()) {
+                // Code following on in the address space.
+                this.pageTable.add(new PageTableEntry(frameNumber));
+            }
+            waitCycles += this.myFramePool.acquire(this.core, this.clock);
+            if (this.shadows != null) {
+                // Read ahead before it was missed.
+                this.shadows.remove(prefetchPage);
+            }
+            int pooled = -1;
+            if (this.compressedPool != null) {
+                pooled = this.compressedPool.load(prefetchPage);
+            }
+            PageTableEntry prefetchPTE = this.pageTable.get(prefetchPage);
+            prefetchPTE.setValid(true);
+            prefetchPTE.setModified(pooled == 1);
+            prefetchPTE.setReferenced(false);
+            prefetchPTE.setPrefetched(true);
+            prefetchPTE.setPageFrameNumber(frameNumber);
+            this.memoryFrames[frameNumber] = true;
+            this._pageMapped(prefetchPage);
+            this.myPrefetcher.prefetchIssued();
+        }
         return waitCycles;
     }
 
@@ -181,23 +880,20 @@ public class AddressTranslator {
      * @return Number of clock cycles for the operation.
      */
     private int _swapForNew(int outPageNumber, int newPageNumber) {
-        PageTableEntry outPTE = this.pageTable.get(outPageNumber);
         PageTableEntry newPTE = this.pageTable.get(newPageNumber);
-        int frameNumber = outPTE.getPageFrameNumber();
-        int waitCycles = 0;
         
         // Swap out frame from source PTE.
-        if (outPTE.isModified()) {
-            waitCycles = this.mySimulation.getPageFromDiskCycles();
-        }
-        outPTE.setValid(false);
-        this.memoryFrames[frameNumber] = false;
+        int waitCycles = this._swapOut(outPageNumber);
         
         // We might have some load time in case of code to load.
-        if (this.randomiser.nextFloat() < 0.5) {
+        if (this._sharedKey(newPageNumber) != 0) {
+            // Shared code, unless resident elsewhere it needs to be loaded.
+            newPTE.setModified(false);
+            waitCycles += this._loadCycles(newPageNumber);
+        } else if (this.randomiser.nextFloat() < 0.5) {
             // Code needs to be loaded.
             newPTE.setModified(false);
-            waitCycles += this.mySimulation.getPageFromDiskCycles();
+            waitCycles += this.mySimulation.getPageFromDiskCycles(this.randomiser);
         } else {
             // Memory allocated, but therefore modified.
             newPTE.setModified(true);
@@ -208,23 +904,274 @@ public class AddressTranslator {
     }
 
     /**
+     * @return Returns the maximum number of frames to be resident, those
+     *      taken by the compressed pool included.
+     */
+    public int getResidentLimit() {
+        return this.residentLimit;
+    }
+
+    /**
+     * @return Returns the number of frames currently held.
+     */
+    public int getResidentFrames() {
+        return this.memoryFrames.length - this.unusedCount;
+    }
+
+    /**
+     * Changes the number of frames this address space may hold. Shrinking
+     * hands back unused frames first, and evicts pages for the rest.
+     * 
+     * @param limit New maximum number of resident frames.
+     * @return Number of clock cycles for writing back evicted pages.
+     */
+    public int setResidentLimit(int limit) {
+        this.residentLimit = Math.min(limit, this.memoryFrames.length);
+        int waitCycles = 0;
+        
+        // Frames held, but not used by any page.
+        for (int i = 0; (i < this.memoryFrames.length)
+                && (this.getResidentFrames() > this._pageFrameLimit()); i++) {
+            if ((this.unusedPosition[i] < 0) && !this.memoryFrames[i]) {
+                this._releaseFrame(i);
+            }
+        }
+        
+        // Evict for the rest.
+        int scan = 0;
+        while (this.getResidentFrames() > this._pageFrameLimit()) {
+            int pageToReplace = this.myPageReplacement.getTargetPage();
+            if ((pageToReplace < 0) || (pageToReplace >= this.pageTable.size())
+                    || !this.pageTable.get(pageToReplace).isValid()) {
+                // Nothing to evict offered, so take the next page in memory.
+                while ((scan < this.pageTable.size()) && !this.pageTable.get(scan).isValid()) {
+                    scan++;
+                }
+                if (scan == this.pageTable.size()) {
+                    // Nothing left in memory, only frames held unused.
+                    break;
+                }
+                pageToReplace = scan;
+            }
+            int frameNumber = this.pageTable.get(pageToReplace).getPageFrameNumber();
+            waitCycles += this._swapOut(pageToReplace);
+            this._releaseFrame(frameNumber);
+        }
+        return waitCycles;
+    }
+
+    /**
+     * Counts the pages referenced since the last call, and clears their
+     * referenced bits. This is the working set over the sampling interval.
+     * 
+     * @return Number of resident pages referenced.
+     */
+    public int sampleWorkingSet() {
+        int workingSet = 0;
+        for (PageTableEntry entry : this.pageTable) {
+            if (entry.isValid() && entry.isReferenced()) {
+                workingSet++;
+                entry.setReferenced(false);
+            }
+        }
+        return workingSet;
+    }
+
+    /**
+     * @return Returns the number of page faults.
+     */
+    public int getPageFaults() {
+        return this.pageFaults;
+    }
+
+    /**
+     * @return Returns the number of faults on pages remembered as evicted.
+     */
+    public int getRefaults() {
+        return this.refaults;
+    }
+
+    /**
+     * @return Returns the refault distances, as a histogram over powers of 2
+     *      (see {@link LocalityProfile}).
+     */
+    public long[] getRefaultDistances() {
+        return this.refaultDistances;
+    }
+
+    /**
+     * @return Returns the number of faults on shared pages resident
+     *      elsewhere, served without going to disk.
+     */
+    public int getMinorFaults() {
+        return this.minorFaults;
+    }
+
+    /**
+     * @return Returns the number of writes to shared pages.
+     */
+    public int getCowFaults() {
+        return this.cowFaults;
+    }
+
+    /**
+     * @return Returns the number of writes to shared pages that copied them.
+     */
+    public int getCowCopies() {
+        return this.cowCopies;
+    }
+
+    /**
+     * @return Returns the number of accesses to pages on the node of the
+     *      core running the process.
+     */
+    public int getLocalAccesses() {
+        return localAccesses;
+    }
+
+    /**
+     * @return Returns the number of accesses to pages on other nodes.
+     */
+    public int getRemoteAccesses() {
+        return remoteAccesses;
+    }
+
+    /**
+     * @return Returns the number of pages migrated between nodes.
+     */
+    public int getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * @return Returns the compressed pool, or null if there is none.
+     */
+    public CompressedPool getCompressedPool() {
+        return this.compressedPool;
+    }
+
+    /**
+     * @return Returns the page replacement algorithm in use.
+     */
+    public PageReplacement getPageReplacement() {
+        return this.myPageReplacement;
+    }
+
+    /**
+     * @return Returns the heat map of the pages, or null if not profiling.
+     */
+    public PageHeatMap getHeatMap() {
+        return this.heatMap;
+    }
+
+    /**
+     * @return Returns the number of TLB lookups (accesses to valid pages).
+     */
+    public int getTlbLookups() {
+        return this.tlbLookups;
+    }
+
+    /**
+     * @return Returns the number of TLB lookups that missed.
+     */
+    public int getTlbMisses() {
+        return this.tlbMisses;
+    }
+
+    /**
+     * @return Returns the number of pages read ahead.
+     */
+    public int getPrefetchesIssued() {
+        if (this.myPrefetcher == null) {
+            return 0;
+        }
+        return this.myPrefetcher.getPrefetchesIssued();
+    }
+
+    /**
+     * @return Returns the number of pages read ahead and used.
+     */
+    public int getPrefetchHits() {
+        if (this.myPrefetcher == null) {
+            return 0;
+        }
+        return this.myPrefetcher.getPrefetchHits();
+    }
+
+    /**
+     * @return Returns the number of pages read ahead and evicted unused.
+     */
+    public int getPrefetchesWasted() {
+        if (this.myPrefetcher == null) {
+            return 0;
+        }
+        return this.myPrefetcher.getPrefetchesWasted();
+    }
+
+    /**
+     * @return Returns the number of evictions caused by reading ahead.
+     */
+    public int getPrefetchEvictions() {
+        if (this.myPrefetcher == null) {
+            return 0;
+        }
+        return this.myPrefetcher.getPrefetchEvictions();
+    }
+
+    /**
+     * Switches to a fresh instance of the page replacement algorithm
+     * configured.
+     */
+    public void resetPageReplacement() {
+        this.myPageReplacement = this.mySimulation.getPageReplacementImpl(this.pageTable,
+                                                                          this.memoryFrames);
+        this._attachVictimIndex();
+        this.accessTracking = this.myPageReplacement.tracksAccesses();
+    }
+
+    /**
+     * Hands the page replacement algorithm the index of victims, if it asks
+     * for one, made from the page table if there is none yet.
+     */
+    private void _attachVictimIndex() {
+        if (!this.myPageReplacement.usesVictimIndex()) {
+            return;
+        }
+        if (this.victims == null) {
+            this.victims = new VictimIndex(this.memoryFrames.length);
+            for (int page = 0; page < this.pageTable.size(); page++) {
+                PageTableEntry entry = this.pageTable.get(page);
+                if (entry.isValid()) {
+                    this.victims.pageMapped(entry.getPageFrameNumber(), page, entry.isModified());
+                }
+            }
+        }
+        this.myPageReplacement.setVictimIndex(this.victims);
+    }
+
+    /**
+     * Pages returned are counted as they are swapped out, on faults, for
+     * reading ahead or for shrinking alike. A page the algorithm offers but
+     * that isn't taken (reading ahead backs off from the page it has just
+     * come for) doesn't count.
+     * 
      * @return Returns the number of free pages returned.
      */
     public int getFreePagesReturned() {
-        return this.myPageReplacement.getFreePagesReturned();
+        return this.freePagesReturned;
     }
     
     /**
      * @return Returns the number of clean pages returned.
      */
     public int getCleanPagesReturned() {
-        return this.myPageReplacement.getCleanPagesReturned();
+        return this.cleanPagesReturned;
     }
     
     /**
      * @return Returns the number of dirty pages returned.
      */
     public int getDirtyPagesReturned() {
-        return this.myPageReplacement.getDirtyPagesReturned();
+        return this.dirtyPagesReturned;
     }
 }
@@ -0,0 +1,257 @@
+/*
+ * Checkpointer.java
+ *
+ * Writes checkpoints of a running simulation in the background.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Writes checkpoints (snapshot images, see {@link Snapshot}) of a running
+ * simulation in the background, so the simulation doesn't wait for the disk.
+ *
+ * Checkpoints go to two files ("NAME.0" and "NAME.1") in turn, so there is
+ * always a complete one, even if the simulation dies while writing the other.
+ * Each file is only updated where the new image differs from the one written
+ * to it last, in blocks of 1 KiB. All images are captured with the same
+ * layout (see {@link #getLayout()}), so page tables, frames and other large
+ * parts that haven't changed are found in the same blocks as before, and
+ * aren't written again. The rest of the objects are written again every
+ * time. The header (sequence number, length and CRC of the image) is written
+ * after the image, and made to disk last, so a half written checkpoint
+ * doesn't pass for a valid one. If the previous checkpoint is still being
+ * written when the next one is due, the next one is skipped.
+ */
+public class Checkpointer {
+    private static final int MAGIC = 0x4f535043;
+    private static final int HEADER = 24;
+    private static final int BLOCK = SnapshotLayout.SLOT;
+    private static Logger logger = Logger.getLogger("simulation");
+
+    private String fileName;
+    private SnapshotLayout layout = new SnapshotLayout();
+    private ExecutorService writer;
+    private Future<Object> pending = null;
+    private byte[][] slotImages = new byte[2][];
+    private int checkpointsWritten = 0;
+    private int checkpointsSkipped = 0;
+    private long bytesWritten = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param fileName Base name of the checkpoint files.
+     */
+    public Checkpointer(String fileName) {
+        this.fileName = fileName;
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Hands a checkpoint to the background writer, unless it is still busy
+     * with the last one.
+     *
+     * @param image Snapshot image, not to be changed any more.
+     * @param sequence Number of the checkpoint, counting up.
+     * @return True if the checkpoint is going to be written.
+     */
+    public boolean offer(final byte[] image, final long sequence) {
+        if ((this.pending != null) && !this.pending.isDone()) {
+            this.checkpointsSkipped++;
+            return false;
+        }
+        this._finishPending();
+        this.pending = this.writer.submit(new Callable<Object>() {
+            public Object call() throws IOException {
+                _write((int)(sequence % 2), image, sequence);
+                return null;
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Waits for the last checkpoint to be written, and stops the writer.
+     */
+    public void close() {
+        this._finishPending();
+        this.writer.shutdown();
+    }
+
+    /**
+     * Reads the latest complete checkpoint.
+     *
+     * @param fileName Base name of the checkpoint files.
+     * @return Snapshot image, or null if there is no complete checkpoint.
+     */
+    public static byte[] latest(String fileName) {
+        byte[] latestImage = null;
+        long latestSequence = -1;
+        for (int slot = 0; slot < 2; slot++) {
+            File slotFile = new File(fileName + "." + slot);
+            if (!slotFile.exists()) {
+                continue;
+            }
+            try {
+                RandomAccessFile file = new RandomAccessFile(slotFile, "r");
+                try {
+                    if (file.readInt() != MAGIC) {
+                        continue;
+                    }
+                    long sequence = file.readLong();
+                    int length = file.readInt();
+                    long crc = file.readLong();
+                    if ((sequence <= latestSequence) || (length < 0)
+                            || (length > file.length() - HEADER)) {
+                        continue;
+                    }
+                    byte[] image = new byte[length];
+                    file.readFully(image);
+                    CRC32 check = new CRC32();
+                    check.update(image);
+                    if (check.getValue() == crc) {
+                        latestImage = image;
+                        latestSequence = sequence;
+                    }
+                } finally {
+                    file.close();
+                }
+            } catch (IOException e) {
+                logger.warning("Could not read checkpoint " + slotFile + ": " + e.getMessage());
+            }
+        }
+        return latestImage;
+    }
+
+    /**
+     * @return Returns the layout to capture the checkpoints with, so their
+     *      large parts stay in place from one to the next.
+     */
+    public SnapshotLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return Returns the number of checkpoints written.
+     */
+    public int getCheckpointsWritten() {
+        return checkpointsWritten;
+    }
+
+    /**
+     * @return Returns the number of checkpoints skipped, because the writer
+     *      was still busy.
+     */
+    public int getCheckpointsSkipped() {
+        return checkpointsSkipped;
+    }
+
+    /**
+     * @return Returns the number of image bytes written (changed blocks only).
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Waits for the checkpoint being written, and accounts for it.
+     */
+    private void _finishPending() {
+        if (this.pending == null) {
+            return;
+        }
+        try {
+            this.pending.get();
+            this.checkpointsWritten++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.severe("Could not write checkpoint: " + e.getCause());
+        }
+        this.pending = null;
+    }
+
+    /**
+     * Writes a checkpoint into a slot file. Runs on the writer thread.
+     *
+     * @param slot Slot number (0 or 1).
+     * @param image Snapshot image.
+     * @param sequence Number of the checkpoint.
+     * @throws IOException If the file can't be written.
+     */
+    private void _write(int slot, byte[] image, long sequence) throws IOException {
+        byte[] previous = this.slotImages[slot];
+        this.slotImages[slot] = null;
+        RandomAccessFile file = new RandomAccessFile(this.fileName + "." + slot, "rw");
+        try {
+            // Broken until done.
+            file.writeInt(0);
+            for (int offset = 0; offset < image.length; offset += BLOCK) {
+                int length = Math.min(BLOCK, image.length - offset);
+                if (!_sameBlock(previous, image, offset, length)) {
+                    file.seek(HEADER + offset);
+                    file.write(image, offset, length);
+                    this.bytesWritten += length;
+                }
+            }
+            file.setLength(HEADER + image.length);
+            file.getFD().sync();
+
+            CRC32 crc = new CRC32();
+            crc.update(image);
+            file.seek(0);
+            file.writeInt(MAGIC);
+            file.writeLong(sequence);
+            file.writeInt(image.length);
+            file.writeLong(crc.getValue());
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        this.slotImages[slot] = image;
+    }
+
+    /**
+     * @param previous Image written before, or null.
+     * @param image New image.
+     * @param offset Start of the block.
+     * @param length Length of the block.
+     * @return True if the block is the same in both images.
+     */
+    private static boolean _sameBlock(byte[] previous, byte[] image, int offset, int length) {
+        if ((previous == null) || (previous.length < offset + length)) {
+            return false;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            if (previous[i] != image[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * CleanFirstReplacement.java
+ *
+ * Evicts clean pages before dirty ones, oldest first, in constant time.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.List;
+
+/**
+ * Returns the cheapest page there is, in constant time off the
+ * {@link VictimIndex}: a page freed with its frame unused, else the clean
+ * page resident the longest (nothing to write back), else the page dirty
+ * the longest. Referenced bits aren't looked at, so it's FIFO within clean
+ * and dirty pages, and trades faults for write backs.
+ */
+public class CleanFirstReplacement extends PageReplacement {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     *
+     * @param pageTable Page table used for address translation.
+     * @param memoryFrames Usage status of "physical" memory frames
+     *      (true = used, false = free).
+     */
+    public CleanFirstReplacement(List<PageTableEntry> pageTable,
+                                 boolean[] memoryFrames) {
+        super(pageTable, memoryFrames);
+    }
+
+    /**
+     * @return True, the victims come from the index.
+     */
+    public boolean usesVictimIndex() {
+        return true;
+    }
+
+    /**
+     * Returns a page freed with its frame unused, or else the page to evict.
+     *
+     * @return Page number, or -1 if there is nothing in memory.
+     */
+    public int getTargetPage() {
+        int page = this.takeFreedPage();
+        if (page >= 0) {
+            return page;
+        }
+        page = this.victims.getCleanPage();
+        if (page >= 0) {
+            return page;
+        }
+        return this.victims.getDirtyPage();
+    }
+}
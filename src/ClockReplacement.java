@@ -0,0 +1,70 @@
+/*
+ * ClockReplacement.java
+ *
+ * The clock (second chance) algorithm.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.List;
+
+/**
+ * The clock (second chance) algorithm. A hand goes round the pages in
+ * memory, clearing the referenced bits of the pages it passes, until it
+ * finds a page not referenced since the last time round: that page is
+ * evicted.
+ */
+public class ClockReplacement extends PageReplacement {
+    private static final long serialVersionUID = 1L;
+
+    private int hand = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param pageTable Page table used for address translation.
+     * @param memoryFrames Usage status of "physical" memory frames
+     *      (true = used, false = free).
+     */
+    public ClockReplacement(List<PageTableEntry> pageTable,
+                            boolean[] memoryFrames) {
+        super(pageTable, memoryFrames);
+    }
+
+    /**
+     * Returns a page freed with its frame unused, or else the page to evict.
+     *
+     * @return Page number, or -1 if there is nothing in memory.
+     */
+    public int getTargetPage() {
+        int freedPage = this.takeFreedPage();
+        if (freedPage >= 0) {
+            return freedPage;
+        }
+        // Twice round clears all referenced bits on the way.
+        int steps = 2 * this.pageTable.size() + 1;
+        while (steps-- > 0) {
+            if (this.hand >= this.pageTable.size()) {
+                this.hand = 0;
+            }
+            int page = this.hand++;
+            PageTableEntry entry = this.pageTable.get(page);
+            if (!entry.isValid()) {
+                continue;
+            }
+            if (entry.isReferenced()) {
+                entry.setReferenced(false);
+                continue;
+            }
+            return page;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * CompressedPool.java
+ *
+ * Compressed pages kept in memory between the frames and the swap disk.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Compressed pages kept in memory between the frames and the swap disk, as
+ * zswap does. Evicted pages are compressed into the pool rather than going
+ * to disk, and faulting them back in only takes decompressing them. A full
+ * pool writes its oldest pages back to disk (only the dirty ones cost a
+ * write, the others are on disk already), and pages compressing to no less
+ * than a page are not taken at all.
+ *
+ * How well a page compresses is a property of the page: its compression
+ * ratio is log-normally distributed around the mean ratio configured, drawn
+ * from a hash of the process and page number, so it takes nothing from the
+ * random number generators.
+ */
+public class CompressedPool implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long capacity;
+    private int pageSize;
+    private double meanFraction;
+    private double spread;
+    private long salt;
+    private long usedBytes = 0;
+    private int[] sizes = new int[64];
+    private boolean[] dirty = new boolean[64];
+    private int[] next = new int[64];
+    private int[] previous = new int[64];
+    private int head = -1;
+    private int tail = -1;
+    private int stores = 0;
+    private int rejections = 0;
+    private int loads = 0;
+    private int writebacks = 0;
+    private long storedBytes = 0;
+    private long compressedBytes = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Size of the pool in bytes.
+     * @param pageSize Size of a page in bytes.
+     * @param ratio Mean compression ratio.
+     * @param spread Standard deviation of the logarithm of the ratio.
+     * @param pid Process ID, to tell the pages of processes apart.
+     */
+    public CompressedPool(long capacity, int pageSize, double ratio, double spread, int pid) {
+        this.capacity = capacity;
+        this.pageSize = pageSize;
+        this.meanFraction = 1.0 / ratio;
+        this.spread = spread;
+        this.salt = (long)pid << 32;
+    }
+
+    /**
+     * Compresses an evicted page into the pool, writing back the oldest
+     * pages until it fits.
+     *
+     * @param pageNumber Virtual page number.
+     * @param modified True if the page differs from its copy on disk.
+     * @return Number of dirty pages written back to disk to make room, or -1
+     *      if the page was not taken.
+     */
+    public int store(int pageNumber, boolean modified) {
+        int size = this.compressedSize(pageNumber);
+        if ((size >= this.pageSize) || (size > this.capacity)) {
+            this.rejections++;
+            return -1;
+        }
+        if (pageNumber >= this.sizes.length) {
+            int length = Math.max(pageNumber + 1, 2 * this.sizes.length);
+            this.sizes = Arrays.copyOf(this.sizes, length);
+            this.dirty = Arrays.copyOf(this.dirty, length);
+            this.next = Arrays.copyOf(this.next, length);
+            this.previous = Arrays.copyOf(this.previous, length);
+        }
+        if (this.sizes[pageNumber] > 0) {
+            this._remove(pageNumber);
+        }
+        int diskWrites = 0;
+        while (this.usedBytes + size > this.capacity) {
+            int oldest = this.tail;
+            if (this.dirty[oldest]) {
+                diskWrites++;
+            }
+            this._remove(oldest);
+            this.writebacks++;
+        }
+        this.sizes[pageNumber] = size;
+        this.dirty[pageNumber] = modified;
+        this.usedBytes += size;
+        this.previous[pageNumber] = -1;
+        this.next[pageNumber] = this.head;
+        if (this.head >= 0) {
+            this.previous[this.head] = pageNumber;
+        } else {
+            this.tail = pageNumber;
+        }
+        this.head = pageNumber;
+        this.stores++;
+        this.storedBytes += this.pageSize;
+        this.compressedBytes += size;
+        return diskWrites;
+    }
+
+    /**
+     * Takes a page out of the pool, if it's there.
+     *
+     * @param pageNumber Virtual page number.
+     * @return 1 if the page was in the pool and dirty, 0 if it was in the
+     *      pool and clean, -1 if it wasn't in the pool.
+     */
+    public int load(int pageNumber) {
+        if ((pageNumber >= this.sizes.length) || (this.sizes[pageNumber] == 0)) {
+            return -1;
+        }
+        boolean wasDirty = this.dirty[pageNumber];
+        this._remove(pageNumber);
+        this.loads++;
+        return wasDirty ? 1 : 0;
+    }
+
+    /**
+     * @param pageNumber Virtual page number.
+     * @return Size of the page compressed, in bytes.
+     */
+    public int compressedSize(int pageNumber) {
+        long hash = Hashing.mix(this.salt | (pageNumber & 0xffffffffL));
+        // Two uniforms from the hash, to a normal by Box-Muller.
+        double u1 = ((hash >>> 40) + 1) / (double)(1L << 24);
+        double u2 = ((hash >>> 16) & 0xffffff) / (double)(1L << 24);
+        double normal = Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+        double fraction = this.meanFraction * Math.exp(this.spread * normal);
+        return Math.max(1, (int)Math.ceil(fraction * this.pageSize));
+    }
+
+    /**
+     * @return Returns the number of pages compressed into the pool.
+     */
+    public int getStores() {
+        return stores;
+    }
+
+    /**
+     * @return Returns the number of pages not taken, compressing too badly.
+     */
+    public int getRejections() {
+        return rejections;
+    }
+
+    /**
+     * @return Returns the number of pages faulted in from the pool.
+     */
+    public int getLoads() {
+        return loads;
+    }
+
+    /**
+     * @return Returns the number of pages written back to make room.
+     */
+    public int getWritebacks() {
+        return writebacks;
+    }
+
+    /**
+     * @return Returns the number of bytes compressed into the pool.
+     */
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * @return Returns the number of bytes they took compressed.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @param pageNumber Page in the pool.
+     */
+    private void _remove(int pageNumber) {
+        if (this.previous[pageNumber] >= 0) {
+            this.next[this.previous[pageNumber]] = this.next[pageNumber];
+        } else {
+            this.head = this.next[pageNumber];
+        }
+        if (this.next[pageNumber] >= 0) {
+            this.previous[this.next[pageNumber]] = this.previous[pageNumber];
+        } else {
+            this.tail = this.previous[pageNumber];
+        }
+        this.usedBytes -= this.sizes[pageNumber];
+        this.sizes[pageNumber] = 0;
+    }
+}
@@ -13,30 +13,105 @@
  * http://www.aut.ac.nz/
  */
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
 /**
  * The virtual computer for the purpose of the simulation.
  *
+ * The cores are stepped one dispatch at a time, always the one furthest
+ * behind. Without an "engineLookahead", everything shared between cores (new
+ * processes arriving, the memory manager, work stealing, contention on the
+ * frame pool) is dealt with at every dispatch, so the cores see each other
+ * right away.
+ *
+ * With a lookahead, time is cut into windows of that many cycles, and the
+ * cores only see each other at window boundaries: arrivals are placed, the
+ * memory manager sizes the resident sets, idle cores steal and frame pool
+ * contention is settled between windows, in a fixed order, and take effect
+ * in the next one. Within a window every core only runs its own processes,
+ * which only touch their own address space, so it doesn't matter in which
+ * order the cores get there. Stepped one dispatch at a time ("engine" is
+ * "stepped") or run through whole windows, on parallel host threads
+ * ("windowed"), the cores come to exactly the same results. The lookahead
+ * is part of the model: the longer it is, the later the cores learn about
+ * each other, and the results differ from those without one.
+ *
  * @author Guy K. Kloss
  */
-public class Computer {
-    private List<Process> currentProcesses;
+public class Computer implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Set<Process> currentProcesses;
     private int cyclesTillNextProcess;
-    private int currentCycle = 0;
+    private long currentCycle = 0;
     private int processesCreated = 0;
     private int processesDone = 0;
-    private int totalWaits = 0;
+    private long totalWaits = 0;
     private int totalInstructions = 0;
     private Simulation mySimulation;
+    private MemoryManager myMemoryManager;
+    private Core[] cores;
+    private FramePool myFramePool;
+    private HeatProfiler myHeatProfiler = null;
+    private LocalityReport myLocalityReport = null;
+    private DuelingReport myDuelingReport = null;
+    private SharedMemory mySharedMemory = null;
+    private NumaMemory myNumaMemory = null;
+    private int forks = 0;
+    private int minorFaults = 0;
+    private int cowFaults = 0;
+    private int cowCopies = 0;
+    private long localAccesses = 0;
+    private long remoteAccesses = 0;
+    private int migrations = 0;
+    private long nextFrameSampleCycle = 0;
+    private int frameSamples = 0;
+    private long[] residentFramesSum = new long[2];
+    private long[] peakResidentFrames = new long[2];
+    private int workSteals = 0;
     private int nextPid = 0;
-    private int lastCycleCount = 0;
+    private long lastCycleCount = 0;
+    private int lookahead;
+    private boolean windowed;
+    private long windowEnd = 0;
+    private long nextArrivalCycle = 0;
+    private List<List<Process>> finishedProcesses = new ArrayList<List<Process>>();
+    private transient ExecutorService engine = null;
     private int freePagesReturned = 0;
     private int cleanPagesReturned = 0;
     private int dirtyPagesReturned = 0;
-    private Logger logger = Logger.getLogger("simulation");;
+    private int pageFaults = 0;
+    private long tlbLookups = 0;
+    private long tlbMisses = 0;
+    private int refaults = 0;
+    private long[] refaultDistances = new long[LocalityProfile.BUCKETS];
+    private int poolStores = 0;
+    private int poolRejections = 0;
+    private int poolLoads = 0;
+    private int poolWritebacks = 0;
+    private long poolStoredBytes = 0;
+    private long poolCompressedBytes = 0;
+    private int prefetchesIssued = 0;
+    private int prefetchHits = 0;
+    private int prefetchesWasted = 0;
+    private int prefetchEvictions = 0;
+    private static final int FRAME_SAMPLE_CYCLES = 10000;
+    private static Logger logger = Logger.getLogger("simulation");
     
     /**
      * Constructor.
@@ -45,41 +120,154 @@ public class Computer {
      */
     public Computer(Simulation aSimulation) {
         this.mySimulation = aSimulation;
-        this.currentProcesses = new ArrayList<Process>();
+        // Insertion ordered, so oldest first, with constant time removal.
+        this.currentProcesses = new LinkedHashSet<Process>();
+        this.myMemoryManager = new MemoryManager(aSimulation, this);
+        this.myFramePool = new FramePool(aSimulation.getFramePoolLockCycles());
+        this.cores = new Core[aSimulation.getCpuCores()];
+        for (int i = 0; i < this.cores.length; i++) {
+            this.cores[i] = new Core(i, aSimulation.getSchedulerImpl());
+        }
+        if (aSimulation.isHeatProfile()) {
+            this.myHeatProfiler = new HeatProfiler(this.cores.length, aSimulation.getHeatTopK(),
+                                                   aSimulation.getHeatSketchWidth(),
+                                                   aSimulation.getHeatSketchDepth());
+        }
+        if (aSimulation.isLocalityProfile()) {
+            this.myLocalityReport = new LocalityReport();
+        }
+        if ((aSimulation.getSharedCodePages() > 0) || (aSimulation.getForkProbability() > 0)) {
+            this.mySharedMemory = new SharedMemory();
+        }
+        if (aSimulation.getNumaNodes() > 1) {
+            this.myNumaMemory = new NumaMemory(aSimulation.getNumaNodes(), this.cores.length,
+                                               aSimulation.getNumaNodeFrames());
+        }
+        this.lookahead = aSimulation.getEngineLookahead();
+        this.windowed = aSimulation.isEngineWindowed();
+        if (this.lookahead > 0) {
+            this.myFramePool.deferAcquisitions(this.cores.length);
+            if (this.mySharedMemory != null) {
+                this.mySharedMemory.deferChanges(this.cores.length);
+            }
+            if (this.myNumaMemory != null) {
+                this.myNumaMemory.deferChanges();
+            }
+            for (int i = 0; i < this.cores.length; i++) {
+                this.finishedProcesses.add(new ArrayList<Process>());
+            }
+        }
+        this._startEngine();
     }
     
     
     /**
-     * Advance simulation by one step.
+     * Advance simulation by one step: the core furthest behind in time runs
+     * its next process, or with a lookahead, the next window begins once
+     * all cores are through the last (or, windowed, all cores run through
+     * the next window).
      */
     public void step() {
+        if (this.lookahead > 0) {
+            if (this.windowed) {
+                this._stepWindow();
+                return;
+            }
+            Core core = this._earliestCore();
+            if (core.getClock() >= this.windowEnd) {
+                this._beginWindow();
+            } else {
+                this._stepCore(core, this.windowEnd);
+            }
+            return;
+        }
+        Core core = this._earliestCore();
+        this.currentCycle = core.getClock();
+        this.myFramePool.releaseBefore(this.currentCycle);
+        
         // In the beginning, make our first process.
-        if (this.currentCycle == 0) {
-            this.currentProcesses.add(_makeNewProcess());
+        if (this.processesCreated == 0) {
+            this._launchProcess(this.currentCycle);
         }
         
-        int cyclesElapsed = this.currentCycle - this.lastCycleCount;
+        long cyclesElapsed = this.currentCycle - this.lastCycleCount;
         this.lastCycleCount = this.currentCycle;
         
         // Do the timing for launching new processes.
         if (this.mySimulation.getProcessesToDo() > this.nextPid) {
             if (cyclesElapsed > this.cyclesTillNextProcess) {
                 this.cyclesTillNextProcess = this.mySimulation.getCyclesTillNextProcess();
-                this.currentProcesses.add(_makeNewProcess());
+                this._launchProcess(this.currentCycle);
             } else {
                 this.cyclesTillNextProcess -= cyclesElapsed;
             }
         }
         
-        // Advance each process.
+        // Size the resident sets.
+        this.myMemoryManager.step(this.currentProcesses, this.currentCycle);
+        this._sampleFrames();
+        
+        // Run the next process that is ready.
+        Scheduler scheduler = core.getScheduler();
+        scheduler.wakeUp(core.getClock());
+        Process aProcess = scheduler.nextReady();
+        if (aProcess == null) {
+            aProcess = this._stealProcess(core);
+        }
+        if (aProcess == null) {
+            this._idle(core);
+            return;
+        }
+        if (this._dispatch(core, aProcess)) {
+            this._retireProcess(aProcess);
+        }
+    }
+
+    /**
+     * Stops the threads simulating the cores.
+     */
+    public void shutdown() {
+        if (this.engine != null) {
+            this.engine.shutdown();
+        }
+    }
+
+    /**
+     * Gives every process a fresh instance of the page replacement algorithm
+     * configured.
+     */
+    public void resetPageReplacement() {
         for (Process aProcess : this.currentProcesses) {
-            this.currentCycle += aProcess.step(this.currentCycle);
+            aProcess.resetPageReplacement();
         }
-        // Get rid of the ones done.
-        this._purgeDoneProcesses();
-        
-        // The OS is working a bit as well..
-        this.currentCycle += 50;
+    }
+
+    /**
+     * Takes a process swapped out by the memory manager off the CPU.
+     * 
+     * @param aProcess Suspended process.
+     */
+    public void processSuspended(Process aProcess) {
+        this.cores[aProcess.getCore()].getScheduler().remove(aProcess);
+    }
+
+    /**
+     * Moves a blocked process to its place in the blocked queue again after
+     * the memory manager has changed its wait.
+     * 
+     * @param aProcess Process whose wait has changed.
+     */
+    public void processWaitChanged(Process aProcess) {
+        this.cores[aProcess.getCore()].getScheduler().wakeCycleChanged(aProcess);
+    }
+
+    /**
+     * Lets a process swapped in by the memory manager onto the CPU again.
+     * 
+     * @param aProcess Resumed process.
+     */
+    public void processResumed(Process aProcess) {
+        this._queueProcess(this.cores[aProcess.getCore()], aProcess);
     }
     
     /**
@@ -99,15 +287,155 @@ public class Computer {
     /**
      * @return Returns the total waits.
      */
-    public int getTotalWaits() {
+    public long getTotalWaits() {
         return totalWaits;
     }
 
     /**
-     * @return Returns the current cycle clock.
+     * @return Returns the current cycle clock (of the core furthest ahead).
+     */
+    public long getCurrentCycle() {
+        long latest = this.currentCycle;
+        for (Core core : this.cores) {
+            latest = Math.max(latest, core.getClock());
+        }
+        return latest;
+    }
+
+    /**
+     * @return Returns the processes started and not done yet, oldest first.
+     */
+    public Collection<Process> getCurrentProcesses() {
+        return Collections.unmodifiableCollection(this.currentProcesses);
+    }
+
+    /**
+     * @return Returns the CPU cores.
+     */
+    public Core[] getCores() {
+        return cores;
+    }
+
+    /**
+     * @return Returns the lock on the frame allocator shared by all cores.
+     */
+    public FramePool getFramePool() {
+        return myFramePool;
+    }
+
+    /**
+     * @return Returns the page heat profiler, or null if not profiling.
+     */
+    public HeatProfiler getHeatProfiler() {
+        return myHeatProfiler;
+    }
+
+    /**
+     * @return Returns the locality histograms of the processes done, or null
+     *      if not profiling.
+     */
+    public LocalityReport getLocalityReport() {
+        return myLocalityReport;
+    }
+
+    /**
+     * @return Returns the reference counts of shared pages, or null if
+     *      nothing is shared.
+     */
+    public SharedMemory getSharedMemory() {
+        return mySharedMemory;
+    }
+
+    /**
+     * @return Returns the NUMA nodes of physical memory, or null if memory
+     *      is uniform.
+     */
+    public NumaMemory getNumaMemory() {
+        return myNumaMemory;
+    }
+
+    /**
+     * @return Returns the number of accesses to pages on the node of the
+     *      core accessing them.
+     */
+    public long getLocalAccesses() {
+        return localAccesses;
+    }
+
+    /**
+     * @return Returns the number of accesses to pages on other nodes.
+     */
+    public long getRemoteAccesses() {
+        return remoteAccesses;
+    }
+
+    /**
+     * @return Returns the number of pages migrated between nodes.
+     */
+    public int getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * @return Returns the number of processes forked.
+     */
+    public int getForks() {
+        return forks;
+    }
+
+    /**
+     * @return Returns the number of faults on shared pages resident
+     *      elsewhere.
+     */
+    public int getMinorFaults() {
+        return minorFaults;
+    }
+
+    /**
+     * @return Returns the number of writes to shared pages.
+     */
+    public int getCowFaults() {
+        return cowFaults;
+    }
+
+    /**
+     * @return Returns the number of writes to shared pages that copied them.
+     */
+    public int getCowCopies() {
+        return cowCopies;
+    }
+
+    /**
+     * @param shared True to count shared pages once, false to count them in
+     *      every address space.
+     * @return Mean number of frames resident, sampled every 10000 cycles.
+     */
+    public double getMeanResidentFrames(boolean shared) {
+        return (double)this.residentFramesSum[shared ? 1 : 0] / Math.max(1, this.frameSamples);
+    }
+
+    /**
+     * @param shared True to count shared pages once, false to count them in
+     *      every address space.
+     * @return Most frames resident at a sample.
+     */
+    public long getPeakResidentFrames(boolean shared) {
+        return this.peakResidentFrames[shared ? 1 : 0];
+    }
+
+    /**
+     * @return Returns the set dueling phases of the processes done, or null
+     *      if no process done used set dueling.
      */
-    public int getCurrentCycle() {
-        return this.currentCycle;
+    public DuelingReport getDuelingReport() {
+        return myDuelingReport;
+    }
+
+    /**
+     * @return Returns the number of processes taken over from another core.
+     */
+    public int getWorkSteals() {
+        return workSteals;
     }
 
     /**
@@ -138,6 +466,162 @@ public class Computer {
         return dirtyPagesReturned;
     }
 
+    /**
+     * @return Returns the number of page faults.
+     */
+    public int getPageFaults() {
+        return pageFaults;
+    }
+
+    /**
+     * @return Returns the number of TLB lookups.
+     */
+    public long getTlbLookups() {
+        return tlbLookups;
+    }
+
+    /**
+     * @return Returns the number of TLB lookups that missed.
+     */
+    public long getTlbMisses() {
+        return tlbMisses;
+    }
+
+    /**
+     * @return Returns the number of faults on pages remembered as evicted.
+     */
+    public int getRefaults() {
+        return refaults;
+    }
+
+    /**
+     * @return Returns the histogram of the refault distances (see
+     *      {@link LocalityProfile}).
+     */
+    public long[] getRefaultDistances() {
+        return refaultDistances;
+    }
+
+    /**
+     * @return Returns the number of pages compressed into the pool.
+     */
+    public int getPoolStores() {
+        return poolStores;
+    }
+
+    /**
+     * @return Returns the number of pages the pool didn't take.
+     */
+    public int getPoolRejections() {
+        return poolRejections;
+    }
+
+    /**
+     * @return Returns the number of faults served from the pool.
+     */
+    public int getPoolLoads() {
+        return poolLoads;
+    }
+
+    /**
+     * @return Returns the number of pages written back from the pool.
+     */
+    public int getPoolWritebacks() {
+        return poolWritebacks;
+    }
+
+    /**
+     * @return Returns the number of bytes compressed into the pool.
+     */
+    public long getPoolStoredBytes() {
+        return poolStoredBytes;
+    }
+
+    /**
+     * @return Returns the number of bytes they took compressed.
+     */
+    public long getPoolCompressedBytes() {
+        return poolCompressedBytes;
+    }
+
+    /**
+     * @return Returns the number of pages read ahead.
+     */
+    public int getPrefetchesIssued() {
+        return prefetchesIssued;
+    }
+
+    /**
+     * @return Returns the number of pages read ahead and used.
+     */
+    public int getPrefetchHits() {
+        return prefetchHits;
+    }
+
+    /**
+     * @return Returns the number of pages read ahead and evicted unused.
+     */
+    public int getPrefetchesWasted() {
+        return prefetchesWasted;
+    }
+
+    /**
+     * @return Returns the number of evictions caused by reading ahead.
+     */
+    public int getPrefetchEvictions() {
+        return prefetchEvictions;
+    }
+
+    /**
+     * Changes the number of physical frames the resident sets are managed
+     * in (see {@link MemoryManager#setTotalFrames(int)}).
+     *
+     * @param frames New number of frames.
+     */
+    public void setTotalFrames(int frames) {
+        this.myMemoryManager.setTotalFrames(frames);
+    }
+
+    /**
+     * @return Returns the number of processes suspended for lack of memory.
+     */
+    public int getProcessSuspensions() {
+        return this.myMemoryManager.getSuspensions();
+    }
+
+    /**
+     * Starts the threads simulating the cores in parallel windows, if asked
+     * for.
+     */
+    private void _startEngine() {
+        int threads = Math.min(this.mySimulation.getEngineThreads(), this.cores.length);
+        if (this.windowed && (threads > 1)) {
+            this.engine = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "simulation-core");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else if (threads > 1) {
+            logger.warning("Cores can only be simulated in parallel windowed,"
+                           + " using one thread.");
+        }
+    }
+
+    /**
+     * Restores a computer from a snapshot, with threads of its own.
+     * 
+     * @param in Stream to read from.
+     * @throws IOException If reading fails.
+     * @throws ClassNotFoundException If a class of the snapshot is missing.
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this._startEngine();
+    }
+
     /**
      * Create new process.
      * 
@@ -146,35 +630,443 @@ public class Computer {
     private Process _makeNewProcess() {
         this.nextPid++;
         int cyclesToGo= this.mySimulation.getProcessCyclesToGo();
-        Process newProcess =  new Process(this.mySimulation,
-                                          this.nextPid,
-                                          cyclesToGo,
-                                          this.mySimulation.getPagesMemoryToStart(),
-                                          this.mySimulation.getQuantum());
+        Process newProcess = this.mySimulation.getProcessImpl(this.nextPid,
+                                                              cyclesToGo,
+                                                              this.mySimulation.getPagesMemoryToStart());
         this.processesCreated++;
         logger.info("Process with PID " + this.nextPid + " created for "
                     + cyclesToGo + " cycles.");
+        if (this.mySimulation.nextIsFork()) {
+            Process parent = this._forkParent(newProcess.getProcessClass());
+            if (parent != null) {
+                newProcess.forkFrom(parent);
+                this.forks++;
+                logger.info("Process with PID " + this.nextPid + " forked from PID "
+                            + parent.getPid() + ".");
+            }
+        }
+        this.myMemoryManager.admit(newProcess);
         return newProcess;
     }
+
+    /**
+     * @param processClass Class of the process to be forked, or null.
+     * @return Oldest process of the class in memory (the master of a pool of
+     *      workers), or null if there is none.
+     */
+    private Process _forkParent(String processClass) {
+        for (Process aProcess : this.currentProcesses) {
+            String parentClass = aProcess.getProcessClass();
+            if (!aProcess.isSuspended()
+                    && ((processClass == null) ? (parentClass == null) : processClass.equals(parentClass))) {
+                return aProcess;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Samples the number of frames resident in all address spaces, with and
+     * without counting shared pages once, if anything is shared.
+     */
+    private void _sampleFrames() {
+        if ((this.mySharedMemory == null) || (this.currentCycle < this.nextFrameSampleCycle)) {
+            return;
+        }
+        this.nextFrameSampleCycle = this.currentCycle + FRAME_SAMPLE_CYCLES;
+        long frames = 0;
+        for (Process aProcess : this.currentProcesses) {
+            frames += aProcess.getResidentFrames();
+        }
+        long[] sample = {frames, frames - this.mySharedMemory.getFramesSaved()};
+        for (int i = 0; i < sample.length; i++) {
+            this.residentFramesSum[i] += sample[i];
+            this.peakResidentFrames[i] = Math.max(this.peakResidentFrames[i], sample[i]);
+        }
+        this.frameSamples++;
+    }
     
     /**
-     * Purge finished processes from the process list and do some accounting
+     * Creates a new process, and queues it unless the memory manager has no
+     * room for it.
+     * 
+     * @param arrivalCycle Global cycle count the process arrives at.
+     */
+    private void _launchProcess(long arrivalCycle) {
+        // Onto the core with the least to do.
+        Core core = this.cores[0];
+        for (Core aCore : this.cores) {
+            if (aCore.getLoad() < core.getLoad()) {
+                core = aCore;
+            }
+        }
+        Process newProcess = this._makeNewProcess();
+        newProcess.setCore(core.getId());
+        newProcess.setStartCycle(arrivalCycle);
+        this.currentProcesses.add(newProcess);
+        if (!newProcess.isSuspended()) {
+            this._queueProcess(core, newProcess);
+        }
+    }
+
+    /**
+     * Runs a process on a core for a quantum, or until it has to wait.
+     * 
+     * @param core Core to run on.
+     * @param aProcess Process to run.
+     * @return True if the process is done.
+     */
+    private boolean _dispatch(Core core, Process aProcess) {
+        Scheduler scheduler = core.getScheduler();
+        aProcess.setCore(core.getId());
+        aProcess.setQuantum(scheduler.getQuantum(aProcess));
+        int cyclesUsed = aProcess.step(core.getClock());
+        core.run(cyclesUsed);
+        
+        boolean done = aProcess.isDone();
+        if (!done) {
+            scheduler.processRan(aProcess, cyclesUsed, core.getClock());
+            this._queueProcess(core, aProcess);
+        }
+        
+        // The OS is working a bit as well (context switch)..
+        core.setClock(core.getClock() + 50);
+        return done;
+    }
+
+    /**
+     * Advances the simulation by one window: settles what the cores did to
+     * each other in the last one, then lets them all run up to its end.
+     */
+    private void _stepWindow() {
+        if (!this._beginWindow()) {
+            return;
+        }
+        if (this.engine == null) {
+            for (Core core : this.cores) {
+                this._runWindow(core, this.windowEnd);
+            }
+            return;
+        }
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (Core core : this.cores) {
+            tasks.add(new CoreWindow(core, this.windowEnd));
+        }
+        try {
+            for (Future<Object> result : this.engine.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while simulating the cores.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulating a core failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Settles what the cores did to each other in the last window, and
+     * begins the next one: new processes arrive, the memory manager sizes
+     * the resident sets and idle cores steal.
+     * 
+     * @return False if all processes are done.
+     */
+    private boolean _beginWindow() {
+        long[] stalls = this.myFramePool.resolveDeferred();
+        if (this.mySharedMemory != null) {
+            this.mySharedMemory.resolveDeferred();
+        }
+        if (this.myNumaMemory != null) {
+            this.myNumaMemory.resolveDeferred();
+        }
+        for (int i = 0; i < this.cores.length; i++) {
+            this.cores[i].setClock(this.cores[i].getClock() + stalls[i]);
+            for (Process aProcess : this.finishedProcesses.get(i)) {
+                this._retireProcess(aProcess);
+            }
+            this.finishedProcesses.get(i).clear();
+        }
+        if (this.processesDone == this.mySimulation.getProcessesToDo()) {
+            return false;
+        }
+        
+        this.currentCycle = this._earliestCore().getClock();
+        this.windowEnd = this.currentCycle + this.lookahead;
+        this.myFramePool.releaseBefore(this.currentCycle);
+        
+        // Processes arriving within the window wait on their core till then.
+        while ((this.mySimulation.getProcessesToDo() > this.nextPid)
+                && (this.nextArrivalCycle < this.windowEnd)) {
+            this._launchProcess(this.nextArrivalCycle);
+            this.nextArrivalCycle += 1 + this.mySimulation.getCyclesTillNextProcess();
+        }
+        
+        // Size the resident sets.
+        this.myMemoryManager.step(this.currentProcesses, this.currentCycle);
+        this._sampleFrames();
+        
+        this._balanceCores();
+        return true;
+    }
+
+    /**
+     * Runs the processes of a core up to the end of a window. Touches nothing
+     * shared with other cores.
+     * 
+     * @param core Core to run.
+     * @param windowEnd Global cycle count the window ends at.
+     */
+    private void _runWindow(Core core, long windowEnd) {
+        while (core.getClock() < windowEnd) {
+            this._stepCore(core, windowEnd);
+        }
+    }
+
+    /**
+     * Runs the next process of a core within a window, or skips the core
+     * ahead to the next process waking up if none is ready. Touches nothing
+     * shared with other cores.
+     * 
+     * @param core Core to run.
+     * @param windowEnd Global cycle count the window ends at.
+     */
+    private void _stepCore(Core core, long windowEnd) {
+        Scheduler scheduler = core.getScheduler();
+        scheduler.wakeUp(core.getClock());
+        Process aProcess = scheduler.nextReady();
+        if (aProcess == null) {
+            // Nothing else can turn up here before the window is over.
+            core.setClock(Math.max(core.getClock() + 1,
+                                   Math.min(windowEnd, scheduler.getNextWakeCycle())));
+        } else if (this._dispatch(core, aProcess)) {
+            this.finishedProcesses.get(core.getId()).add(aProcess);
+        }
+    }
+
+    /**
+     * Hands a ready process from the core with the most ready to every core
+     * without any, or else the blocked process waking up first anywhere, if
+     * its wait is over by the thief's clock.
+     */
+    private void _balanceCores() {
+        for (Core core : this.cores) {
+            core.getScheduler().wakeUp(core.getClock());
+        }
+        for (Core thief : this.cores) {
+            if (thief.getScheduler().getReadyCount() > 0) {
+                continue;
+            }
+            Core victim = null;
+            Core sleeper = null;
+            for (Core core : this.cores) {
+                // One ready process the core would run right away itself.
+                if ((core.getScheduler().getReadyCount() > 1)
+                        && ((victim == null)
+                            || (core.getScheduler().getReadyCount()
+                                > victim.getScheduler().getReadyCount()))) {
+                    victim = core;
+                }
+                if ((core != thief)
+                        && ((sleeper == null)
+                            || (core.getScheduler().getNextWakeCycle()
+                                < sleeper.getScheduler().getNextWakeCycle()))) {
+                    sleeper = core;
+                }
+            }
+            Process aProcess = null;
+            if (victim != null) {
+                aProcess = victim.getScheduler().stealReady();
+            } else if (sleeper != null) {
+                aProcess = sleeper.getScheduler().stealWoken(thief.getClock());
+            }
+            if (aProcess == null) {
+                continue;
+            }
+            aProcess.setCore(thief.getId());
+            thief.setClock(Math.max(thief.getClock(), aProcess.getReadyCycle()));
+            thief.getScheduler().addReady(aProcess);
+            this.workSteals++;
+        }
+    }
+
+    /**
+     * @return The core with the earliest clock.
+     */
+    private Core _earliestCore() {
+        Core earliest = this.cores[0];
+        for (Core core : this.cores) {
+            if (core.getClock() < earliest.getClock()) {
+                earliest = core;
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * Takes a ready process off the core with the most processes ready. If
+     * there is none, takes the blocked process waking up first anywhere,
+     * provided its wait is over by the thief's clock. Other cores' blocked
+     * processes are only woken by their own clocks: waking them by the
+     * thief's would let them jump their own core's ready queue.
+     * 
+     * @param thief Core without a process ready to run.
+     * @return Process stolen, or null if none is ready anywhere.
+     */
+    private Process _stealProcess(Core thief) {
+        Core victim = null;
+        Core sleeper = null;
+        for (Core core : this.cores) {
+            if (core != thief) {
+                core.getScheduler().wakeUp(core.getClock());
+                if ((core.getScheduler().getReadyCount() > 0)
+                        && ((victim == null)
+                            || (core.getScheduler().getReadyCount()
+                                > victim.getScheduler().getReadyCount()))) {
+                    victim = core;
+                }
+                if ((sleeper == null)
+                        || (core.getScheduler().getNextWakeCycle()
+                            < sleeper.getScheduler().getNextWakeCycle())) {
+                    sleeper = core;
+                }
+            }
+        }
+        Process aProcess;
+        if (victim != null) {
+            aProcess = victim.getScheduler().stealReady();
+        } else if (sleeper != null) {
+            aProcess = sleeper.getScheduler().stealWoken(thief.getClock());
+        } else {
+            aProcess = null;
+        }
+        if (aProcess == null) {
+            return null;
+        }
+        // Can't run it before it's done on the other core.
+        thief.setClock(Math.max(thief.getClock(), aProcess.getReadyCycle()));
+        this.workSteals++;
+        return aProcess;
+    }
+
+    /**
+     * Queues a process that has run (or has been resumed), as ready or as
+     * blocked if it is waiting.
+     * 
+     * @param core Core to queue the process on.
+     * @param aProcess Process to queue.
+     */
+    private void _queueProcess(Core core, Process aProcess) {
+        if (aProcess.getWakeCycle() > core.getClock()) {
+            core.getScheduler().block(aProcess);
+        } else {
+            core.getScheduler().addReady(aProcess);
+        }
+    }
+
+    /**
+     * Nothing is ready to run anywhere, so skip the core ahead to the next
+     * thing happening: a process waking up (on any core, to be stolen) or a
+     * new one arriving.
+     * 
+     * @param core Idle core.
+     */
+    private void _idle(Core core) {
+        long nextEvent = Long.MAX_VALUE;
+        for (Core aCore : this.cores) {
+            nextEvent = Math.min(nextEvent, aCore.getScheduler().getNextWakeCycle());
+        }
+        if (this.mySimulation.getProcessesToDo() > this.nextPid) {
+            nextEvent = Math.min(nextEvent, this.currentCycle + this.cyclesTillNextProcess + 1);
+        }
+        if (nextEvent == Long.MAX_VALUE) {
+            // All swapped out, the memory manager will take care of it.
+            nextEvent = core.getClock() + 50;
+        }
+        core.setClock(Math.max(core.getClock() + 1, nextEvent));
+    }
+
+    /**
+     * Remove a finished process from the process list and do some accounting
      * for the simulation.
+     * 
+     * @param aProcess Finished process.
      */
-    private void _purgeDoneProcesses() {
-        for (int i = this.currentProcesses.size() - 1; i >= 0; i--) {
-            Process aProcess = this.currentProcesses.get(i);
-            if (aProcess.isDone()) {
-                this.logger.info("Process with PID " + aProcess.getPid() + " is done.");
-                this.processesDone++;
-                this.totalWaits += aProcess.getTotalWaits();
-                this.totalInstructions += aProcess.getTotalInstructions();
-                this.freePagesReturned += aProcess.getFreePagesReturned();
-                this.cleanPagesReturned += aProcess.getCleanPagesReturned();
-                this.dirtyPagesReturned += aProcess.getDirtyPagesReturned();
-                this.currentProcesses.remove(i);
+    private void _retireProcess(Process aProcess) {
+        logger.info("Process with PID " + aProcess.getPid() + " is done.");
+        this.processesDone++;
+        this.totalWaits += aProcess.getTotalWaits();
+        this.totalInstructions += aProcess.getTotalInstructions();
+        this.freePagesReturned += aProcess.getFreePagesReturned();
+        this.cleanPagesReturned += aProcess.getCleanPagesReturned();
+        this.dirtyPagesReturned += aProcess.getDirtyPagesReturned();
+        this.pageFaults += aProcess.getPageFaults();
+        this.tlbLookups += aProcess.getTlbLookups();
+        this.tlbMisses += aProcess.getTlbMisses();
+        this.refaults += aProcess.getRefaults();
+        long[] distances = aProcess.getRefaultDistances();
+        for (int bucket = 0; bucket < distances.length; bucket++) {
+            this.refaultDistances[bucket] += distances[bucket];
+        }
+        this.minorFaults += aProcess.getMinorFaults();
+        this.cowFaults += aProcess.getCowFaults();
+        this.cowCopies += aProcess.getCowCopies();
+        this.localAccesses += aProcess.getLocalAccesses();
+        this.remoteAccesses += aProcess.getRemoteAccesses();
+        this.migrations += aProcess.getMigrations();
+        if ((this.mySharedMemory != null) || (this.myNumaMemory != null)) {
+            aProcess.releaseMemory();
+        }
+        CompressedPool pool = aProcess.getCompressedPool();
+        if (pool != null) {
+            this.poolStores += pool.getStores();
+            this.poolRejections += pool.getRejections();
+            this.poolLoads += pool.getLoads();
+            this.poolWritebacks += pool.getWritebacks();
+            this.poolStoredBytes += pool.getStoredBytes();
+            this.poolCompressedBytes += pool.getCompressedBytes();
+        }
+        this.prefetchesIssued += aProcess.getPrefetchesIssued();
+        this.prefetchHits += aProcess.getPrefetchHits();
+        this.prefetchesWasted += aProcess.getPrefetchesWasted();
+        this.prefetchEvictions += aProcess.getPrefetchEvictions();
+        if (this.myHeatProfiler != null) {
+            this.myHeatProfiler.addHeatMap(aProcess.getPid(), aProcess.getHeatMap());
+        }
+        if (this.myLocalityReport != null) {
+            this.myLocalityReport.add(aProcess);
+        }
+        if (aProcess.getPageReplacement() instanceof SetDuelingReplacement) {
+            if (this.myDuelingReport == null) {
+                this.myDuelingReport = new DuelingReport();
             }
+            this.myDuelingReport.add((SetDuelingReplacement)aProcess.getPageReplacement());
         }
+        this.myMemoryManager.release(aProcess);
+        this.currentProcesses.remove(aProcess);
+        aProcess.releasePageTable();
     }
 
+    /**
+     * Runs a core through a window on a thread of its own.
+     */
+    private class CoreWindow implements Callable<Object> {
+        private Core core;
+        private long windowEnd;
+
+        /**
+         * Constructor.
+         * 
+         * @param core Core to run.
+         * @param windowEnd Global cycle count the window ends at.
+         */
+        public CoreWindow(Core core, long windowEnd) {
+            this.core = core;
+            this.windowEnd = windowEnd;
+        }
+
+        public Object call() {
+            _runWindow(this.core, this.windowEnd);
+            return null;
+        }
+    }
 }
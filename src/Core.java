@@ -0,0 +1,92 @@
+/*
+ * Core.java
+ *
+ * A CPU core of the virtual computer.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+
+/**
+ * A CPU core of the virtual computer, with its own run queue(s) and its own
+ * cycle clock.
+ */
+public class Core implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int id;
+    private Scheduler myScheduler;
+    private long clock = 0;
+    private long busyCycles = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param id Core number.
+     * @param aScheduler Scheduler keeping the run queue(s) of this core.
+     */
+    public Core(int id, Scheduler aScheduler) {
+        this.id = id;
+        this.myScheduler = aScheduler;
+    }
+
+    /**
+     * Advances the clock of this core by cycles spent running processes.
+     *
+     * @param cycles Number of cycles.
+     */
+    public void run(int cycles) {
+        this.clock += cycles;
+        this.busyCycles += cycles;
+    }
+
+    /**
+     * @return Returns the core number.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return Returns the scheduler of this core.
+     */
+    public Scheduler getScheduler() {
+        return myScheduler;
+    }
+
+    /**
+     * @return Returns the cycle clock of this core.
+     */
+    public long getClock() {
+        return clock;
+    }
+
+    /**
+     * @param clock The cycle clock of this core to set.
+     */
+    public void setClock(long clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return Returns the number of cycles spent running processes.
+     */
+    public long getBusyCycles() {
+        return busyCycles;
+    }
+
+    /**
+     * @return Number of processes ready or blocked on this core.
+     */
+    public int getLoad() {
+        return this.myScheduler.getReadyCount() + this.myScheduler.getBlockedCount();
+    }
+}
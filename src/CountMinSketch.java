@@ -0,0 +1,102 @@
+/*
+ * CountMinSketch.java
+ *
+ * Counts of any number of keys in a fixed amount of memory.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+
+/**
+ * Counts of any number of keys in a fixed amount of memory (G. Cormode and
+ * S. Muthukrishnan, "An improved data stream summary: the count-min sketch
+ * and its applications", 2005). Every key is counted in one counter per row,
+ * picked by a hash of its own per row. Keys sharing counters make the
+ * estimate too high, never too low; the smallest of the counters of a key is
+ * its estimate.
+ *
+ * Sketches of the same size can be merged by adding them up.
+ */
+public class CountMinSketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int depth;
+    private int mask;
+    private long[] counts;
+    private long[] seeds;
+
+    /**
+     * Constructor.
+     *
+     * @param width Number of counters per row (rounded up to a power of 2).
+     * @param depth Number of rows.
+     */
+    public CountMinSketch(int width, int depth) {
+        int size = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counts = new long[depth * size];
+        this.seeds = new long[depth];
+        // Fixed, so the same keys always share counters.
+        long seed = 0x5deece66dL;
+        for (int row = 0; row < depth; row++) {
+            seed += 0x9e3779b97f4a7c15L;
+            this.seeds[row] = Hashing.mix(seed);
+        }
+    }
+
+    /**
+     * Counts a key.
+     *
+     * @param key Key.
+     * @param count Amount to count.
+     */
+    public void add(long key, long count) {
+        for (int row = 0; row < this.depth; row++) {
+            this.counts[this._index(row, key)] += count;
+        }
+    }
+
+    /**
+     * @param key Key.
+     * @return Estimated count of the key (at least the true count).
+     */
+    public long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) {
+            estimate = Math.min(estimate, this.counts[this._index(row, key)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds the counts of another sketch of the same size.
+     *
+     * @param other Other sketch.
+     */
+    public void merge(CountMinSketch other) {
+        if ((other.depth != this.depth) || (other.mask != this.mask)) {
+            throw new IllegalArgumentException("Sketches of different sizes.");
+        }
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] += other.counts[i];
+        }
+    }
+
+    /**
+     * @param row Row.
+     * @param key Key.
+     * @return Index of the counter of the key in the row.
+     */
+    private int _index(int row, long key) {
+        return row * (this.mask + 1) + (int)(Hashing.mix(key ^ this.seeds[row]) & this.mask);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * DuelingReport.java
+ *
+ * Collects the phases of the set dueling of the processes done.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the phases of the set dueling (see {@link SetDuelingReplacement})
+ * of the processes done, added up by phase: the n-th phase of every process
+ * goes into the n-th phase here.
+ *
+ * The faults of the shadows are on a sample of the pages with a share of the
+ * frames. Scaled up by the sampling, the difference between the shadow of
+ * another candidate and that of the candidate serving most faults is an
+ * estimate of the faults saved in the phase by not using the other one. It
+ * is only an estimate: the pages sampled needn't fault like the rest.
+ */
+public class DuelingReport implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String[] candidates = null;
+    private List<long[]> phases = new ArrayList<long[]>();
+
+    /**
+     * Adds the phases of the page replacement of a process that's done.
+     *
+     * @param policy Set dueling page replacement of the process.
+     */
+    public void add(SetDuelingReplacement policy) {
+        if (this.candidates == null) {
+            this.candidates = policy.getCandidateNames();
+        }
+        List<long[]> phases = policy.getPhases();
+        for (int i = 0; i < phases.size(); i++) {
+            if (i == this.phases.size()) {
+                this.phases.add(new long[2 * this.candidates.length]);
+            }
+            long[] total = this.phases.get(i);
+            long[] phase = phases.get(i);
+            for (int j = 0; j < total.length; j++) {
+                total[j] += phase[j];
+            }
+        }
+    }
+
+    /**
+     * @return Section of the results file with the candidate serving most
+     *      faults per phase, the faults of the shadows, and the estimated
+     *      faults saved against each other candidate.
+     */
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        out.append("[SetDueling]\n");
+        if (this.candidates == null) {
+            return out.toString();
+        }
+        int count = this.candidates.length;
+        out.append("Candidates:");
+        for (String candidate : this.candidates) {
+            out.append(" " + candidate);
+        }
+        out.append("\n");
+        out.append("Phase length: " + SetDuelingReplacement.PHASE_FAULTS + " faults per process\n");
+        out.append("Shadows: 1 in " + DuelingShadow.SAMPLING + " pages\n");
+        for (int i = 0; i < this.phases.size(); i++) {
+            long[] phase = this.phases.get(i);
+            int active = 0;
+            long faults = 0;
+            for (int c = 0; c < count; c++) {
+                faults += phase[c];
+                if (phase[c] > phase[active]) {
+                    active = c;
+                }
+            }
+            out.append("Phase " + i + ": " + this.candidates[active]);
+            out.append(String.format(" (%.1f%%)", 100.0 * phase[active] / Math.max(1, faults)));
+            out.append(", faults " + faults + ", shadow faults");
+            for (int c = 0; c < count; c++) {
+                out.append(" " + phase[count + c]);
+            }
+            out.append(", estimated savings");
+            for (int c = 0; c < count; c++) {
+                if (c != active) {
+                    long saving = (phase[count + c] - phase[count + active]) * DuelingShadow.SAMPLING;
+                    out.append(" " + this.candidates[c] + " " + saving);
+                }
+            }
+            out.append("\n");
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * DuelingShadow.java
+ *
+ * A page replacement algorithm run on a sample of the pages, on the side.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A page replacement algorithm run on a sample of the pages of an address
+ * space, on the side (an "auxiliary tag directory", after M. Qureshi et al.):
+ * the references to the pages sampled go to a page table of its own, with a
+ * share of the frames as large as the sample's share of the pages. Nothing
+ * here touches the real memory, so the faults counted are the algorithm's
+ * own, whatever serves the real faults.
+ *
+ * Only demand paging is simulated: no read ahead, and no refault hints.
+ * Pages get shadow page numbers in the order they are first referenced.
+ */
+public class DuelingShadow implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** One in this many pages is sampled. */
+    public static final int SAMPLING = 8;
+
+    private PageReplacement policy;
+    private List<PageTableEntry> pageTable;
+    private boolean[] memoryFrames;
+    private VictimIndex victims = null;
+    private int[] shadowPages = new int[64];
+    private int[] unusedFrames;
+    private int unusedCount;
+    private int resident = 0;
+    private long faults = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param policy Page replacement algorithm, on the page table and frames
+     *      given.
+     * @param pageTable Page table of its own, empty.
+     * @param memoryFrames Frames of its own (see {@link #frames(int)}).
+     */
+    public DuelingShadow(PageReplacement policy,
+                         List<PageTableEntry> pageTable,
+                         boolean[] memoryFrames) {
+        this.policy = policy;
+        this.pageTable = pageTable;
+        this.memoryFrames = memoryFrames;
+        Arrays.fill(this.shadowPages, -1);
+        this.unusedFrames = new int[memoryFrames.length];
+        this.unusedCount = memoryFrames.length;
+        for (int i = 0; i < memoryFrames.length; i++) {
+            this.unusedFrames[i] = memoryFrames.length - 1 - i;
+        }
+        if (policy.usesVictimIndex()) {
+            this.victims = new VictimIndex(memoryFrames.length);
+            policy.setVictimIndex(this.victims);
+        }
+    }
+
+    /**
+     * @param frames Number of frames of the address space.
+     * @return Number of frames a shadow needs.
+     */
+    public static int frames(int frames) {
+        return frames / SAMPLING + 1;
+    }
+
+    /**
+     * @param pageNumber Virtual page number.
+     * @return True if the page is in the sample.
+     */
+    public static boolean isSampled(int pageNumber) {
+        return (Hashing.mix(pageNumber) & (SAMPLING - 1)) == 0;
+    }
+
+    /**
+     * References a page of the sample, faulting it in if it isn't resident
+     * in the shadow.
+     *
+     * @param pageNumber Virtual page number.
+     * @param written True if the page is written to.
+     * @param residentFrames Number of frames the address space holds, of
+     *      which the shadow gets its share.
+     * @return True if it's a fault.
+     */
+    public boolean reference(int pageNumber, boolean written, int residentFrames) {
+        int page = this._shadowPage(pageNumber);
+        PageTableEntry entry = this.pageTable.get(page);
+        if (entry.isValid()) {
+            entry.setReferenced(true);
+            if (written) {
+                entry.setModified(true);
+                if (this.victims != null) {
+                    this.victims.pageWritten(entry.getPageFrameNumber());
+                }
+            }
+            return false;
+        }
+
+        this.faults++;
+        this.policy.pageFaulted(page);
+        int capacity = Math.min(this.memoryFrames.length,
+                                Math.max(1, (residentFrames + SAMPLING / 2) / SAMPLING));
+        while ((this.resident >= capacity) && this._evict()) {
+            // Shrunk with the address space.
+        }
+        if (this.unusedCount == 0) {
+            return true;
+        }
+        int frameNumber = this.unusedFrames[--this.unusedCount];
+        entry.setPageFrameNumber(frameNumber);
+        entry.setValid(true);
+        entry.setReferenced(true);
+        entry.setModified(written);
+        this.memoryFrames[frameNumber] = true;
+        this.resident++;
+        this.policy.pageMapped(page);
+        if (this.victims != null) {
+            this.victims.pageMapped(frameNumber, page, written);
+        }
+        return true;
+    }
+
+    /**
+     * Drops a page of the sample the process has freed.
+     *
+     * @param pageNumber Virtual page number.
+     */
+    public void free(int pageNumber) {
+        if ((pageNumber < this.shadowPages.length) && (this.shadowPages[pageNumber] >= 0)
+                && this.pageTable.get(this.shadowPages[pageNumber]).isValid()) {
+            this._unmap(this.shadowPages[pageNumber]);
+        }
+    }
+
+    /**
+     * @return Returns the number of faults of the algorithm on the sample.
+     */
+    public long getFaults() {
+        return faults;
+    }
+
+    /**
+     * Evicts the page the algorithm picks.
+     *
+     * @return False if it picked none.
+     */
+    private boolean _evict() {
+        int victim = this.policy.getTargetPage();
+        if ((victim < 0) || !this.pageTable.get(victim).isValid()) {
+            return false;
+        }
+        this._unmap(victim);
+        return true;
+    }
+
+    /**
+     * @param page Shadow page number of a resident page to take out.
+     */
+    private void _unmap(int page) {
+        PageTableEntry entry = this.pageTable.get(page);
+        int frameNumber = entry.getPageFrameNumber();
+        entry.setValid(false);
+        entry.setReferenced(false);
+        entry.setModified(false);
+        this.memoryFrames[frameNumber] = false;
+        this.unusedFrames[this.unusedCount++] = frameNumber;
+        this.resident--;
+        this.policy.pageUnmapped(page, false);
+        if (this.victims != null) {
+            this.victims.pageUnmapped(frameNumber, page, false);
+        }
+    }
+
+    /**
+     * @param pageNumber Virtual page number.
+     * @return Shadow page number, a new one on the first reference.
+     */
+    private int _shadowPage(int pageNumber) {
+        if (pageNumber >= this.shadowPages.length) {
+            int oldLength = this.shadowPages.length;
+            this.shadowPages = Arrays.copyOf(this.shadowPages,
+                                             Math.max(pageNumber + 1, 2 * oldLength));
+            Arrays.fill(this.shadowPages, oldLength, this.shadowPages.length, -1);
+        }
+        if (this.shadowPages[pageNumber] < 0) {
+            this.shadowPages[pageNumber] = this.pageTable.size();
+            this.pageTable.add(new PageTableEntry(0));
+        }
+        return this.shadowPages[pageNumber];
+    }
+}
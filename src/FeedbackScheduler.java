@@ -0,0 +1,123 @@
+/*
+ * FeedbackScheduler.java
+ *
+ * Multi-level feedback queue CPU scheduler.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multi-level feedback queue CPU scheduler.
+ *
+ * New processes start on the highest priority level (0). A process using up
+ * its whole quantum drops a level, where the quantum doubles; a process that
+ * has to wait (e. g. on a page fault) before that keeps its level. So fault
+ * heavy processes stay on top, and CPU bound ones sink. Every
+ * "mlfqBoostInterval" cycles all processes are lifted back to the top level,
+ * so none starves.
+ */
+public class FeedbackScheduler extends Scheduler {
+    private static final long serialVersionUID = 1L;
+
+    private List<ArrayDeque<Process>> readyProcesses;
+    private int readyCount = 0;
+    private long boostInterval;
+    private long lastBoostCycle = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param aSimulation A simulation object containing the parameters.
+     */
+    public FeedbackScheduler(Simulation aSimulation) {
+        super(aSimulation);
+        this.readyProcesses = new ArrayList<ArrayDeque<Process>>();
+        for (int i = 0; i < aSimulation.getMlfqLevels(); i++) {
+            this.readyProcesses.add(new ArrayDeque<Process>());
+        }
+        this.boostInterval = aSimulation.getMlfqBoostInterval();
+    }
+
+    public void addReady(Process aProcess) {
+        this.readyProcesses.get(aProcess.getSchedulingLevel()).addLast(aProcess);
+        this.readyCount++;
+    }
+
+    public Process nextReady() {
+        // Levels are few, so this is constant time.
+        for (ArrayDeque<Process> queue : this.readyProcesses) {
+            if (!queue.isEmpty()) {
+                this.readyCount--;
+                return queue.pollFirst();
+            }
+        }
+        return null;
+    }
+
+    public Process stealReady() {
+        // The one least likely to run here soon.
+        for (int i = this.readyProcesses.size() - 1; i >= 0; i--) {
+            if (!this.readyProcesses.get(i).isEmpty()) {
+                this.readyCount--;
+                return this.readyProcesses.get(i).pollLast();
+            }
+        }
+        return null;
+    }
+
+    public int getReadyCount() {
+        return this.readyCount;
+    }
+
+    protected boolean removeReady(Process aProcess) {
+        if (this.readyProcesses.get(aProcess.getSchedulingLevel()).remove(aProcess)) {
+            this.readyCount--;
+            return true;
+        }
+        return false;
+    }
+
+    public int getQuantum(Process aProcess) {
+        return this.mySimulation.getQuantum() << aProcess.getSchedulingLevel();
+    }
+
+    public void processRan(Process aProcess, int cyclesUsed, long currentCycle) {
+        int level = aProcess.getSchedulingLevel();
+        if ((cyclesUsed >= this.getQuantum(aProcess))
+                && (level < this.readyProcesses.size() - 1)) {
+            aProcess.setSchedulingLevel(level + 1);
+        }
+        if (currentCycle - this.lastBoostCycle >= this.boostInterval) {
+            this.lastBoostCycle = currentCycle;
+            this._boost();
+            aProcess.setSchedulingLevel(0);
+        }
+    }
+
+    /**
+     * Lifts all processes to the top level.
+     */
+    private void _boost() {
+        for (int i = 1; i < this.readyProcesses.size(); i++) {
+            while (!this.readyProcesses.get(i).isEmpty()) {
+                Process aProcess = this.readyProcesses.get(i).pollFirst();
+                aProcess.setSchedulingLevel(0);
+                this.readyProcesses.get(0).addLast(aProcess);
+            }
+        }
+        for (Process aProcess : this.getBlockedProcesses()) {
+            aProcess.setSchedulingLevel(0);
+        }
+    }
+}
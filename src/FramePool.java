@@ -0,0 +1,189 @@
+/*
+ * FramePool.java
+ *
+ * Lock on the physical frame allocator shared by all cores.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lock on the physical frame allocator shared by all cores. Every page fault
+ * takes it for "framePoolLockCycles" cycles to get a frame. A core finding it
+ * held by another core at that time has to wait until it is free, which is
+ * accounted as contention.
+ *
+ * Cores run ahead of each other in simulated time, so the lock is kept as a
+ * timeline of reservations rather than a single "locked until". Reservations
+ * that end before the slowest core's clock can't conflict any more, and are
+ * dropped.
+ *
+ * When the cores are simulated in parallel windows, taking the lock would
+ * make them depend on each other's progress. Instead, every core just notes
+ * down its allocations during the window, and pays for the lock alone. At the
+ * end of the window the notes of all cores are replayed against the timeline
+ * in cycle order, and each core is stalled for the contention it ran into.
+ */
+public class FramePool implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int lockCycles;
+    private TreeMap<Long, long[]> reservations = new TreeMap<Long, long[]>();
+    private long acquisitions = 0;
+    private long contentions = 0;
+    private long contentionCycles = 0;
+    private long[][] deferredCycles = null;
+    private int[] deferredCounts;
+
+    /**
+     * Constructor.
+     *
+     * @param lockCycles Number of cycles the lock is held per allocation.
+     */
+    public FramePool(int lockCycles) {
+        this.lockCycles = lockCycles;
+    }
+
+    /**
+     * Takes the allocator lock to get a frame, at the first time from the
+     * given cycle on that it is free.
+     *
+     * @param core Number of the core allocating.
+     * @param cycle Clock of that core at the time.
+     * @return Number of cycles spent waiting for and holding the lock.
+     */
+    public int acquire(int core, long cycle) {
+        if (this.deferredCycles != null) {
+            // Only this core's thread touches its notes within a window.
+            long[] cycles = this.deferredCycles[core];
+            if (this.deferredCounts[core] == cycles.length) {
+                cycles = Arrays.copyOf(cycles, 2 * cycles.length);
+                this.deferredCycles[core] = cycles;
+            }
+            cycles[this.deferredCounts[core]++] = cycle;
+            return this.lockCycles;
+        }
+        this.acquisitions++;
+        if (this.lockCycles == 0) {
+            return 0;
+        }
+        
+        long start = cycle;
+        boolean contended = false;
+        Map.Entry<Long, long[]> reservation = this.reservations.floorEntry(start);
+        if (reservation == null) {
+            reservation = this.reservations.higherEntry(start);
+        }
+        while ((reservation != null)
+                && (reservation.getKey() < start + this.lockCycles)) {
+            long[] holder = reservation.getValue();
+            if (holder[0] > start) {
+                // Held at the time, wait for it.
+                contended |= (holder[1] != core);
+                start = holder[0];
+            }
+            reservation = this.reservations.higherEntry(reservation.getKey());
+        }
+        this.reservations.put(start, new long[] {start + this.lockCycles, core});
+        
+        int waitCycles = (int)(start - cycle);
+        if (contended) {
+            this.contentions++;
+            this.contentionCycles += waitCycles;
+        }
+        return waitCycles + this.lockCycles;
+    }
+
+    /**
+     * Switches to noting down allocations per core, to be resolved by
+     * {@link #resolveDeferred()}.
+     *
+     * @param cores Number of cores.
+     */
+    public void deferAcquisitions(int cores) {
+        this.deferredCycles = new long[cores][16];
+        this.deferredCounts = new int[cores];
+    }
+
+    /**
+     * Replays the allocations noted down since the last call against the
+     * lock's timeline, in cycle order (ties by core number). A core stalled
+     * on the lock makes its later allocations that much later, too.
+     *
+     * @return Number of cycles each core has lost waiting on the lock on top
+     *      of holding it.
+     */
+    public long[] resolveDeferred() {
+        int cores = this.deferredCounts.length;
+        long[] stalls = new long[cores];
+        int[] next = new int[cores];
+        long[][] deferred = this.deferredCycles;
+        this.deferredCycles = null;
+        while (true) {
+            int core = -1;
+            long cycle = Long.MAX_VALUE;
+            for (int i = 0; i < cores; i++) {
+                if ((next[i] < this.deferredCounts[i])
+                        && (deferred[i][next[i]] + stalls[i] < cycle)) {
+                    core = i;
+                    cycle = deferred[i][next[i]] + stalls[i];
+                }
+            }
+            if (core < 0) {
+                break;
+            }
+            next[core]++;
+            stalls[core] += this.acquire(core, cycle) - this.lockCycles;
+        }
+        this.deferredCycles = deferred;
+        for (int i = 0; i < cores; i++) {
+            this.deferredCounts[i] = 0;
+        }
+        return stalls;
+    }
+
+    /**
+     * Forgets reservations no core can run into any more.
+     *
+     * @param cycle Clock of the slowest core.
+     */
+    public void releaseBefore(long cycle) {
+        while (!this.reservations.isEmpty()
+                && (this.reservations.firstEntry().getValue()[0] <= cycle)) {
+            this.reservations.pollFirstEntry();
+        }
+    }
+
+    /**
+     * @return Returns the number of frame allocations.
+     */
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * @return Returns the number of frame allocations that had to wait for
+     *      another core.
+     */
+    public long getContentions() {
+        return contentions;
+    }
+
+    /**
+     * @return Returns the number of cycles spent waiting for another core.
+     */
+    public long getContentionCycles() {
+        return contentionCycles;
+    }
+}
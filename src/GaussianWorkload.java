@@ -0,0 +1,55 @@
+/*
+ * GaussianWorkload.java
+ *
+ * Random walk through the address space, with occasional jumps.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.Random;
+
+/**
+ * Random walk through the address space, with occasional jumps. This is the
+ * pattern processes have always followed: the process counter walks forward
+ * in the lower three quarters of the address space, the memory pointer back
+ * and forth in the upper quarter (see {@link Simulation#newPClocation} and
+ * {@link Simulation#newMPlocation}).
+ */
+public class GaussianWorkload extends WorkloadGenerator {
+    private static final long serialVersionUID = 1L;
+
+    private Simulation mySimulation;
+    private boolean processCounter;
+    private double location = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param aSimulation A simulation object containing the parameters.
+     * @param processCounter True to walk like the process counter, false to
+     *      walk like the memory pointer.
+     */
+    public GaussianWorkload(Simulation aSimulation, boolean processCounter) {
+        this.mySimulation = aSimulation;
+        this.processCounter = processCounter;
+    }
+
+    public int nextPage(Random randomiser, int pages) {
+        if (this.processCounter) {
+            this.location = this.mySimulation.newPClocation(this.location, randomiser);
+        } else {
+            this.location = this.mySimulation.newMPlocation(this.location, randomiser);
+        }
+        if (this.location < 1.0) {
+            return (int)(pages * this.location);
+        }
+        return pages;
+    }
+}
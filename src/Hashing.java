@@ -0,0 +1,32 @@
+/*
+ * Hashing.java
+ *
+ * Bit mixing for hashing and sampling keys.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+/**
+ * Bit mixing for hashing and sampling keys such as page numbers, which are
+ * far from random themselves: runs of neighbouring pages would otherwise land
+ * in neighbouring buckets, or all be sampled or not.
+ */
+public class Hashing {
+    /**
+     * @param x Value.
+     * @return Value with its bits mixed (the finaliser of SplitMix64), every
+     *      bit of it depending on every bit of the value.
+     */
+    public static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
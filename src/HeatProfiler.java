@@ -0,0 +1,175 @@
+/*
+ * HeatProfiler.java
+ *
+ * Finds the pages driving the faults.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds the pages driving the faults: counts accesses, faults and write-backs
+ * per page of every process, in a fixed amount of memory however large the
+ * address spaces get. For every kind of event, a {@link SpaceSaving} summary
+ * keeps the pages counted most, and a {@link CountMinSketch} estimates the
+ * counts of all pages. Both count too high, so the lower of the two ranks the
+ * pages, and the sketches tell the other kinds of events of the pages on top.
+ *
+ * Cores simulated in parallel count into summaries of their own, merged in
+ * the order of the cores for the report, so the report is the same whatever
+ * the number of threads. Every process keeps a {@link PageHeatMap}, handed
+ * over here when it's done.
+ */
+public class HeatProfiler implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Page accessed. */
+    public static final int ACCESS = 0;
+    /** Page faulted. */
+    public static final int FAULT = 1;
+    /** Dirty page written back to disk. */
+    public static final int WRITEBACK = 2;
+    /** Number of kinds of events. */
+    public static final int EVENTS = 3;
+    private static final String[] EVENT_NAMES = {"accessed", "faulted", "written back"};
+
+    private int topK;
+    private int sketchWidth;
+    private int sketchDepth;
+    private CountMinSketch[][] sketches;
+    private SpaceSaving[][] summaries;
+    private Map<Integer, PageHeatMap> heatMaps = new TreeMap<Integer, PageHeatMap>();
+
+    /**
+     * Constructor.
+     *
+     * @param cores Number of CPU cores.
+     * @param topK Number of pages reported per kind of event.
+     * @param sketchWidth Number of counters per row of the sketches.
+     * @param sketchDepth Number of rows of the sketches.
+     */
+    public HeatProfiler(int cores, int topK, int sketchWidth, int sketchDepth) {
+        this.topK = topK;
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+        this.sketches = new CountMinSketch[cores][EVENTS];
+        this.summaries = new SpaceSaving[cores][EVENTS];
+        for (int core = 0; core < cores; core++) {
+            for (int event = 0; event < EVENTS; event++) {
+                this.sketches[core][event] = new CountMinSketch(sketchWidth, sketchDepth);
+                // More counted than reported, for better counts of those reported.
+                this.summaries[core][event] = new SpaceSaving(4 * topK);
+            }
+        }
+    }
+
+    /**
+     * Counts an event on a page.
+     *
+     * @param core Core the process runs on.
+     * @param pid Process ID.
+     * @param pageNumber Virtual page number.
+     * @param event Kind of event.
+     */
+    public void record(int core, int pid, int pageNumber, int event) {
+        long key = ((long)pid << 32) | (pageNumber & 0xffffffffL);
+        this.sketches[core][event].add(key, 1);
+        this.summaries[core][event].add(key, 1);
+    }
+
+    /**
+     * Keeps the heat map of a process that's done.
+     *
+     * @param pid Process ID.
+     * @param heatMap Heat map of the process.
+     */
+    public void addHeatMap(int pid, PageHeatMap heatMap) {
+        this.heatMaps.put(pid, heatMap);
+    }
+
+    /**
+     * @return Section of the results file with the pages counted most.
+     */
+    public String report() {
+        CountMinSketch[] sketches = new CountMinSketch[EVENTS];
+        SpaceSaving[] summaries = new SpaceSaving[EVENTS];
+        for (int event = 0; event < EVENTS; event++) {
+            sketches[event] = new CountMinSketch(this.sketchWidth, this.sketchDepth);
+            summaries[event] = new SpaceSaving(4 * this.topK);
+            for (int core = 0; core < this.sketches.length; core++) {
+                sketches[event].merge(this.sketches[core][event]);
+                summaries[event].merge(this.summaries[core][event]);
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        out.append("[HotPages]\n");
+        for (int event = 0; event < EVENTS; event++) {
+            // Both over-count, so the lower of the two is the better count.
+            List<SpaceSaving.Entry> ranking = new ArrayList<SpaceSaving.Entry>();
+            for (SpaceSaving.Entry entry : summaries[event].top()) {
+                long count = Math.min(entry.getCount(), sketches[event].estimate(entry.getKey()));
+                long lowest = Math.max(0, entry.getCount() - entry.getError());
+                ranking.add(new SpaceSaving.Entry(entry.getKey(), count, count - lowest));
+            }
+            Collections.sort(ranking, SpaceSaving.DESCENDING);
+            out.append("Most " + EVENT_NAMES[event]
+                       + " (pid page accesses faults write-backs, +error of the ranking count):\n");
+            for (SpaceSaving.Entry entry : ranking.subList(0, Math.min(this.topK, ranking.size()))) {
+                long key = entry.getKey();
+                out.append((key >>> 32) + " " + (int)key);
+                for (int other = 0; other < EVENTS; other++) {
+                    long count = (other == event) ? entry.getCount() : sketches[other].estimate(key);
+                    out.append(" " + count);
+                }
+                out.append(" +" + entry.getError() + "\n");
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the heat maps of all processes done to a CSV file, a line per
+     * bucket of pages with anything counted.
+     *
+     * @param fileName Name of the file.
+     * @throws IOException If the file can't be written.
+     */
+    public void writeHeatMaps(String fileName) throws IOException {
+        BufferedWriter out = new BufferedWriter(new FileWriter(fileName));
+        try {
+            out.write("pid,first_page,last_page,accesses,faults,writebacks\n");
+            for (Map.Entry<Integer, PageHeatMap> entry : this.heatMaps.entrySet()) {
+                PageHeatMap heatMap = entry.getValue();
+                int width = heatMap.getBucketPages();
+                for (int bucket = 0; bucket < heatMap.getBuckets(); bucket++) {
+                    long accesses = heatMap.getCount(ACCESS, bucket);
+                    long faults = heatMap.getCount(FAULT, bucket);
+                    long writebacks = heatMap.getCount(WRITEBACK, bucket);
+                    if (accesses + faults + writebacks > 0) {
+                        out.write(entry.getKey() + "," + (bucket * width) + ","
+                                  + ((bucket + 1) * width - 1) + "," + accesses + ","
+                                  + faults + "," + writebacks + "\n");
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * LocalityProfile.java
+ *
+ * Reuse distances and inter-reference gaps of a stream of page references.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Reuse distances and inter-reference gaps of a stream of page references,
+ * as histograms over powers of 2 (bucket 0 for 0, bucket b for 2^(b-1) up to
+ * 2^b - 1).
+ *
+ * The inter-reference gap of a reference is the number of references since
+ * the last one to the same page, taken in constant time. The reuse distance
+ * is the number of different pages referenced in between, the stack distance
+ * of LRU: a page is a hit in an LRU memory of more frames than that. It's
+ * found by marking the latest reference to every page in a Fenwick tree over
+ * the references, and counting the marks since the last reference to the
+ * page, in O(log pages). The tree is compacted to the marks set now and then,
+ * so it stays about the size of the pages referenced.
+ *
+ * With a sampling rate below 1, reuse distances are only taken for the pages
+ * whose hash falls under the rate, and scaled up (C. Waldspurger et al.,
+ * "Efficient MRC construction with SHARDS", 2015): much less work, for a
+ * good estimate of all but the shortest distances.
+ */
+public class LocalityProfile implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Number of buckets of the histograms. */
+    public static final int BUCKETS = 33;
+
+    private double samplingRate;
+    private long samplingThreshold;
+    private int references = 0;
+    private int[] lastReference = new int[16];
+    private long[] gapCounts = new long[BUCKETS];
+    private long coldGaps = 0;
+    private int[] lastMark = new int[16];
+    private int[] tree = new int[1025];
+    private int lastPosition = 0;
+    private int marks = 0;
+    private long[] reuseCounts = new long[BUCKETS];
+    private long coldReuses = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param samplingRate Share of the pages reuse distances are taken for
+     *      (above 0, up to 1).
+     */
+    public LocalityProfile(double samplingRate) {
+        this.samplingRate = samplingRate;
+        this.samplingThreshold = (long)(samplingRate * (1L << 24));
+    }
+
+    /**
+     * Counts a reference to a page.
+     *
+     * @param pageNumber Virtual page number.
+     */
+    public void reference(int pageNumber) {
+        if (pageNumber >= this.lastReference.length) {
+            int length = Math.max(pageNumber + 1, 2 * this.lastReference.length);
+            this.lastReference = Arrays.copyOf(this.lastReference, length);
+            this.lastMark = Arrays.copyOf(this.lastMark, length);
+        }
+        this.references++;
+        int last = this.lastReference[pageNumber];
+        if (last == 0) {
+            this.coldGaps++;
+        } else {
+            this.gapCounts[bucket(this.references - last - 1)]++;
+        }
+        this.lastReference[pageNumber] = this.references;
+
+        if ((Hashing.mix(pageNumber) & 0xffffff) >= this.samplingThreshold) {
+            return;
+        }
+        int mark = this.lastMark[pageNumber];
+        if (mark == 0) {
+            this.coldReuses++;
+            this.marks++;
+        } else {
+            long distance = this._prefix(this.lastPosition) - this._prefix(mark);
+            this.reuseCounts[bucket((long)(distance / this.samplingRate))]++;
+            this._add(mark, -1);
+            this.lastMark[pageNumber] = 0;
+        }
+        if (this.lastPosition == this.tree.length - 1) {
+            this._compact();
+        }
+        this.lastPosition++;
+        this._add(this.lastPosition, 1);
+        this.lastMark[pageNumber] = this.lastPosition;
+    }
+
+    /**
+     * @return Returns the number of references.
+     */
+    public int getReferences() {
+        return references;
+    }
+
+    /**
+     * @param bucket Bucket.
+     * @return Number of references with a reuse distance in the bucket
+     *      (scaled up by the sampling rate).
+     */
+    public long getReuseCount(int bucket) {
+        return Math.round(this.reuseCounts[bucket] / this.samplingRate);
+    }
+
+    /**
+     * @return Number of first references to a page, without a reuse
+     *      distance (scaled up by the sampling rate).
+     */
+    public long getColdReuses() {
+        return Math.round(this.coldReuses / this.samplingRate);
+    }
+
+    /**
+     * @param bucket Bucket.
+     * @return Number of references with an inter-reference gap in the bucket.
+     */
+    public long getGapCount(int bucket) {
+        return this.gapCounts[bucket];
+    }
+
+    /**
+     * @return Number of first references to a page, without a gap.
+     */
+    public long getColdGaps() {
+        return coldGaps;
+    }
+
+    /**
+     * @param value Value, at least 0.
+     * @return Bucket of the value in the histograms.
+     */
+    public static int bucket(long value) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * @param position Position in the tree.
+     * @return Number of marks up to the position.
+     */
+    private int _prefix(int position) {
+        int sum = 0;
+        for (int i = position; i > 0; i -= i & -i) {
+            sum += this.tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @param position Position in the tree.
+     * @param delta Change of the mark at the position.
+     */
+    private void _add(int position, int delta) {
+        for (int i = position; i < this.tree.length; i += i & -i) {
+            this.tree[i] += delta;
+        }
+    }
+
+    /**
+     * Moves the marks to the start of the tree, in order, and makes the tree
+     * twice the number of marks, so there is room for as many references
+     * again.
+     */
+    private void _compact() {
+        long[] order = new long[this.marks];
+        int count = 0;
+        for (int page = 0; page < this.lastMark.length; page++) {
+            if (this.lastMark[page] > 0) {
+                order[count++] = ((long)this.lastMark[page] << 32) | page;
+            }
+        }
+        Arrays.sort(order, 0, count);
+        this.tree = new int[Math.max(1024, 2 * count) + 1];
+        for (int i = 0; i < count; i++) {
+            this.lastMark[(int)order[i]] = i + 1;
+            this.tree[i + 1] = 1;
+        }
+        // Fenwick tree of all ones, built in linear time.
+        for (int i = 1; i < this.tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < this.tree.length) {
+                this.tree[parent] += this.tree[i];
+            }
+        }
+        this.lastPosition = count;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * LocalityReport.java
+ *
+ * Collects the locality histograms of the processes done.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the locality histograms (see {@link LocalityProfile}) of the
+ * processes done: added up per process class and stream for the results
+ * file, and line by line per process for a CSV file.
+ */
+public class LocalityReport implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final String[] HISTOGRAMS = {"reuse distance", "inter-reference gap"};
+
+    private Map<String, long[][]> totals = new TreeMap<String, long[][]>();
+    private List<String> processLines = new ArrayList<String>();
+
+    /**
+     * Adds the histograms of a process that's done.
+     *
+     * @param aProcess Process.
+     */
+    public void add(Process aProcess) {
+        String processClass = aProcess.getProcessClass();
+        if (processClass == null) {
+            processClass = "all";
+        }
+        this._add(aProcess.getPid(), processClass, "pc", aProcess.getPcLocality());
+        this._add(aProcess.getPid(), processClass, "mp", aProcess.getMpLocality());
+    }
+
+    /**
+     * @return Section of the results file with the histograms per process
+     *      class and stream.
+     */
+    public String report() {
+        int buckets = 1;
+        for (long[][] histograms : this.totals.values()) {
+            for (long[] histogram : histograms) {
+                for (int bucket = 0; bucket < LocalityProfile.BUCKETS; bucket++) {
+                    if (histogram[bucket] > 0) {
+                        buckets = Math.max(buckets, bucket + 1);
+                    }
+                }
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        out.append("[Locality]\n");
+        out.append("Buckets:");
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            long low = (bucket == 0) ? 0 : (1L << (bucket - 1));
+            long high = (bucket == 0) ? 0 : ((1L << bucket) - 1);
+            out.append((low == high) ? (" " + low) : (" " + low + "-" + high));
+        }
+        out.append(" cold\n");
+        for (Map.Entry<String, long[][]> entry : this.totals.entrySet()) {
+            for (int kind = 0; kind < HISTOGRAMS.length; kind++) {
+                long[] histogram = entry.getValue()[kind];
+                out.append(entry.getKey() + " " + HISTOGRAMS[kind] + ":");
+                for (int bucket = 0; bucket < buckets; bucket++) {
+                    out.append(" " + histogram[bucket]);
+                }
+                out.append(" " + histogram[LocalityProfile.BUCKETS] + "\n");
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the histograms of every process to a CSV file.
+     *
+     * @param fileName Name of the file.
+     * @throws IOException If the file can't be written.
+     */
+    public void writeProcesses(String fileName) throws IOException {
+        BufferedWriter out = new BufferedWriter(new FileWriter(fileName));
+        try {
+            out.write("pid,class,stream,histogram,cold");
+            for (int bucket = 0; bucket < LocalityProfile.BUCKETS; bucket++) {
+                out.write(",b" + bucket);
+            }
+            out.write("\n");
+            for (String line : this.processLines) {
+                out.write(line);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param pid Process ID.
+     * @param processClass Name of the process class.
+     * @param stream "pc" or "mp".
+     * @param profile Histograms of the stream.
+     */
+    private void _add(int pid, String processClass, String stream, LocalityProfile profile) {
+        String key = processClass + " " + stream;
+        long[][] histograms = this.totals.get(key);
+        if (histograms == null) {
+            histograms = new long[HISTOGRAMS.length][LocalityProfile.BUCKETS + 1];
+            this.totals.put(key, histograms);
+        }
+        for (int kind = 0; kind < HISTOGRAMS.length; kind++) {
+            StringBuilder line = new StringBuilder();
+            long cold = (kind == 0) ? profile.getColdReuses() : profile.getColdGaps();
+            line.append(pid + "," + processClass + "," + stream + ","
+                        + ((kind == 0) ? "reuse" : "gap") + "," + cold);
+            histograms[kind][LocalityProfile.BUCKETS] += cold;
+            for (int bucket = 0; bucket < LocalityProfile.BUCKETS; bucket++) {
+                long count = (kind == 0) ? profile.getReuseCount(bucket) : profile.getGapCount(bucket);
+                histograms[kind][bucket] += count;
+                line.append("," + count);
+            }
+            this.processLines.add(line.append("\n").toString());
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * MemoryManager.java
+ *
+ * Sizes the resident sets of processes dynamically.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Sizes the resident sets of processes dynamically out of a pool of
+ * physical frames ("numberPages" of them).
+ *
+ * In working set mode, every process gets as many frames as pages it has used
+ * over the last window (tau). In page fault frequency mode, processes faulting
+ * more often than the upper threshold get more frames, and those below the
+ * lower threshold give some back. If the demand can't be met, the system is
+ * thrashing and the youngest process gets suspended (swapped out completely)
+ * until there is room again, or until it has been suspended for
+ * "maxSuspendCycles", then it takes the place of the youngest active process
+ * (so no process starves under sustained pressure). In fixed mode, processes
+ * keep the frames they started with, as they always did.
+ */
+public class MemoryManager implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Processes keep the frames they started with. */
+    public static final int FIXED = 0;
+    /** Resident sets follow the working sets. */
+    public static final int WORKING_SET = 1;
+    /** Resident sets follow the page fault frequency. */
+    public static final int PAGE_FAULT_FREQUENCY = 2;
+
+    private Computer myComputer;
+    private int mode;
+    private int totalFrames;
+    private int interval;
+    private double upperFaultRate;
+    private double lowerFaultRate;
+    private int frameStep;
+    private long maxSuspendCycles;
+    private int allocatedFrames = 0;
+    private long lastRebalanceCycle = 0;
+    private List<Process> suspendedProcesses = new LinkedList<Process>();
+    private List<Long> suspendedCycles = new LinkedList<Long>();
+    private int suspensions = 0;
+    private int resumes = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param aSimulation A simulation object containing the parameters.
+     * @param aComputer The computer to notify of suspended and resumed
+     *      processes.
+     */
+    public MemoryManager(Simulation aSimulation, Computer aComputer) {
+        this.myComputer = aComputer;
+        this.mode = aSimulation.getMemoryManagement();
+        this.totalFrames = aSimulation.getNumberPages();
+        this.interval = aSimulation.getMemoryManagementInterval();
+        this.upperFaultRate = aSimulation.getPffUpperFaultRate();
+        this.lowerFaultRate = aSimulation.getPffLowerFaultRate();
+        this.frameStep = aSimulation.getPffFrameStep();
+        this.maxSuspendCycles = aSimulation.getMaxSuspendCycles();
+    }
+
+    /**
+     * Resolves the name of a memory management mode.
+     *
+     * @param name One of "fixed", "workingset" or "pff".
+     * @return Mode constant.
+     */
+    public static int parseMode(String name) {
+        if (name.equals("fixed")) {
+            return FIXED;
+        } else if (name.equals("workingset")) {
+            return WORKING_SET;
+        } else if (name.equals("pff")) {
+            return PAGE_FAULT_FREQUENCY;
+        }
+        throw new IllegalArgumentException("Unknown memory management mode '"
+                                           + name + "'.");
+    }
+
+    /**
+     * @param mode Mode constant.
+     * @return Name of the memory management mode.
+     */
+    public static String getModeName(int mode) {
+        switch (mode) {
+            case WORKING_SET:
+                return "workingset";
+            case PAGE_FAULT_FREQUENCY:
+                return "pff";
+            default:
+                return "fixed";
+        }
+    }
+
+    /**
+     * Hands frames to a newly created process. If there are none left, the
+     * process starts out suspended.
+     *
+     * @param aProcess The new process.
+     */
+    public void admit(Process aProcess) {
+        if (this.mode == FIXED) {
+            return;
+        }
+        int freeFrames = this.totalFrames - this.allocatedFrames;
+        if (freeFrames <= 0) {
+            this._suspend(aProcess);
+        } else {
+            int limit = Math.min(aProcess.getResidentLimit(), freeFrames);
+            this._setResidentLimit(aProcess, limit);
+            this.allocatedFrames += limit;
+        }
+    }
+
+    /**
+     * Takes back the frames of a finished process.
+     *
+     * @param aProcess The finished process.
+     */
+    public void release(Process aProcess) {
+        if (this.mode == FIXED) {
+            return;
+        }
+        if (aProcess.isSuspended()) {
+            int i = this.suspendedProcesses.indexOf(aProcess);
+            this.suspendedProcesses.remove(i);
+            this.suspendedCycles.remove(i);
+        } else {
+            this.allocatedFrames -= aProcess.getResidentLimit();
+        }
+    }
+
+    /**
+     * Rebalances the resident sets once per interval.
+     *
+     * @param processes Current processes, oldest first.
+     * @param currentCycle Current global cycle count.
+     */
+    public void step(Iterable<Process> processes, long currentCycle) {
+        if ((this.mode == FIXED)
+                || (currentCycle - this.lastRebalanceCycle < this.interval)) {
+            return;
+        }
+        this.lastRebalanceCycle = currentCycle;
+        List<Process> active;
+        if (this.mode == WORKING_SET) {
+            active = this._rebalanceWorkingSet(processes);
+        } else {
+            active = this._rebalancePageFaultFrequency(processes);
+        }
+        this._swapStarved(active);
+    }
+
+    /**
+     * Changes the number of frames in the pool. The resident sets are fit
+     * into it at the next rebalance.
+     *
+     * @param totalFrames New number of frames.
+     */
+    public void setTotalFrames(int totalFrames) {
+        this.totalFrames = totalFrames;
+    }
+
+    /**
+     * @return Returns the memory management mode.
+     */
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * @return Returns the number of process suspensions.
+     */
+    public int getSuspensions() {
+        return suspensions;
+    }
+
+    /**
+     * @return Returns the number of process resumptions.
+     */
+    public int getResumes() {
+        return resumes;
+    }
+
+    /**
+     * Sizes every process to its working set, and suspends the youngest ones
+     * while the working sets don't fit into memory.
+     *
+     * @param processes Current processes, oldest first.
+     * @return Processes active, oldest first.
+     */
+    private List<Process> _rebalanceWorkingSet(Iterable<Process> processes) {
+        List<Process> active = new ArrayList<Process>();
+        List<Integer> workingSets = new ArrayList<Integer>();
+        int demand = 0;
+        for (Process aProcess : processes) {
+            if (!aProcess.isSuspended()) {
+                int workingSet = Math.max(1, aProcess.sampleWorkingSet());
+                active.add(aProcess);
+                workingSets.add(workingSet);
+                demand += workingSet;
+            }
+        }
+
+        // Thrashing, make room.
+        while ((demand > this.totalFrames) && (active.size() > 1)) {
+            int youngest = active.size() - 1;
+            demand -= workingSets.remove(youngest);
+            this._suspend(active.remove(youngest));
+        }
+
+        for (int i = 0; i < active.size(); i++) {
+            this._setResidentLimit(active.get(i), workingSets.get(i));
+        }
+        this.allocatedFrames = demand;
+        this._resumeWhatFits(active, active.isEmpty());
+        return active;
+    }
+
+    /**
+     * Takes frames from processes faulting rarely, gives frames to processes
+     * faulting often, and suspends the youngest process if the latter can't
+     * be satisfied. Suspended processes are resumed whenever there are
+     * frames to spare, however often the others fault, before any process
+     * grows.
+     *
+     * @param processes Current processes, oldest first.
+     * @return Processes active, oldest first.
+     */
+    private List<Process> _rebalancePageFaultFrequency(Iterable<Process> processes) {
+        List<Process> active = new ArrayList<Process>();
+        List<Double> faultRates = new ArrayList<Double>();
+        this.allocatedFrames = 0;
+        for (Process aProcess : processes) {
+            if (!aProcess.isSuspended()) {
+                active.add(aProcess);
+                faultRates.add(aProcess.sampleFaultRate());
+                this.allocatedFrames += aProcess.getResidentLimit();
+            }
+        }
+
+        // Take from the quiet ones first.
+        for (int i = 0; i < active.size(); i++) {
+            Process aProcess = active.get(i);
+            int limit = aProcess.getResidentLimit();
+            if ((faultRates.get(i) < this.lowerFaultRate) && (limit > 1)) {
+                int newLimit = Math.max(1, limit - this.frameStep);
+                this._setResidentLimit(aProcess, newLimit);
+                this.allocatedFrames -= limit - newLimit;
+            }
+        }
+
+        // Suspended processes come first for the frames to spare.
+        this._resumeWhatFits(active, active.isEmpty());
+
+        // Give to the busy ones. Only a process short of its fair share
+        // counts as starving: one holding more and still faulting just
+        // doesn't get more, rather than pushing others out.
+        int fairShare = this.totalFrames / Math.max(1, active.size() + this.suspendedProcesses.size());
+        boolean starving = false;
+        for (int i = 0; i < active.size(); i++) {
+            if ((i < faultRates.size()) && (faultRates.get(i) > this.upperFaultRate)) {
+                Process aProcess = active.get(i);
+                int grant = Math.min(this.frameStep,
+                                     this.totalFrames - this.allocatedFrames);
+                if (grant > 0) {
+                    this._setResidentLimit(aProcess, aProcess.getResidentLimit() + grant);
+                    this.allocatedFrames += grant;
+                }
+                if ((grant < this.frameStep) && (aProcess.getResidentLimit() < fairShare)) {
+                    starving = true;
+                }
+            }
+        }
+
+        if (starving && (active.size() > 1)) {
+            // Thrashing, make room.
+            Process youngest = active.remove(active.size() - 1);
+            this.allocatedFrames -= youngest.getResidentLimit();
+            this._suspend(youngest);
+        }
+        return active;
+    }
+
+    /**
+     * Resumes suspended processes, oldest first, as long as their frames fit.
+     *
+     * @param active Processes active, oldest first, to add the resumed ones
+     *      to.
+     * @param force Resume the oldest process even if it doesn't fit (because
+     *      nothing else is running).
+     */
+    private void _resumeWhatFits(List<Process> active, boolean force) {
+        while (!this.suspendedProcesses.isEmpty()) {
+            Process aProcess = this.suspendedProcesses.get(0);
+            int freeFrames = this.totalFrames - this.allocatedFrames;
+            int limit = aProcess.getSuspendedLimit();
+            if (limit > freeFrames) {
+                if (!force) {
+                    return;
+                }
+                limit = Math.max(1, freeFrames);
+            }
+            force = false;
+            this._resume(limit);
+            active.add(aProcess);
+        }
+    }
+
+    /**
+     * Swaps the process suspended the longest for the youngest active one,
+     * once it has been suspended for "maxSuspendCycles", however short of
+     * frames memory is.
+     *
+     * @param active Processes active, oldest first.
+     */
+    private void _swapStarved(List<Process> active) {
+        if (this.suspendedProcesses.isEmpty()
+                || (this.lastRebalanceCycle - this.suspendedCycles.get(0) < this.maxSuspendCycles)) {
+            return;
+        }
+        if (!active.isEmpty()) {
+            Process youngest = active.remove(active.size() - 1);
+            this.allocatedFrames -= youngest.getResidentLimit();
+            this._suspend(youngest);
+        }
+        int limit = Math.max(1, Math.min(this.suspendedProcesses.get(0).getSuspendedLimit(),
+                                         this.totalFrames - this.allocatedFrames));
+        this._resume(limit);
+    }
+
+    /**
+     * Resumes the process suspended the longest.
+     *
+     * @param limit Number of frames to give it.
+     */
+    private void _resume(int limit) {
+        Process aProcess = this.suspendedProcesses.remove(0);
+        this.suspendedCycles.remove(0);
+        aProcess.resume(limit);
+        this.myComputer.processResumed(aProcess);
+        this.allocatedFrames += limit;
+        this.resumes++;
+    }
+
+    /**
+     * Changes the number of frames a process may hold, and lets its
+     * scheduler know the process may wait longer for the pages written back.
+     *
+     * @param aProcess The process.
+     * @param limit New maximum number of resident frames.
+     */
+    private void _setResidentLimit(Process aProcess, int limit) {
+        aProcess.setResidentLimit(limit);
+        this.myComputer.processWaitChanged(aProcess);
+    }
+
+    /**
+     * Suspends a process and queues it for resumption.
+     *
+     * @param aProcess The process.
+     */
+    private void _suspend(Process aProcess) {
+        // Out of the scheduler first, suspending changes its wake-up cycle.
+        this.myComputer.processSuspended(aProcess);
+        aProcess.suspend();
+        this.suspendedProcesses.add(aProcess);
+        this.suspendedCycles.add(this.lastRebalanceCycle);
+        this.suspensions++;
+    }
+}
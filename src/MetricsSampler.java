@@ -0,0 +1,432 @@
+/*
+ * MetricsSampler.java
+ *
+ * Streams measurements taken while the simulation runs to a file.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Takes measurements every so many cycles while the simulation runs, and
+ * streams them to a file, so warm-up, phase changes and the onset of
+ * thrashing can be seen. Every sample has the cycle it was taken at, and for
+ * the time since the last sample the instructions, page faults (and faults
+ * per 1000 instructions), clean and dirty evictions, TLB lookups (and the
+ * share of misses), as well as the number of processes ready to run and the
+ * resident set of every process.
+ *
+ * The file is written by a thread of its own. Samples are handed over through
+ * a bounded queue; if the writer falls that far behind, samples are dropped
+ * rather than holding up the simulation.
+ *
+ * As CSV, every sample is a line, the resident sets being "PID:FRAMES" pairs
+ * separated by spaces in the last column. The binary format starts with the
+ * int 0x4f53504d and a format version (1), followed by a record per sample:
+ * the longs cycle, instructions, page faults, clean evictions, dirty
+ * evictions, TLB lookups and TLB misses, the ints run queue length and
+ * number of processes, and two ints (PID and frames) per process. All big
+ * endian (as by {@link DataOutputStream}).
+ */
+public class MetricsSampler implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int MAGIC = 0x4f53504d;
+    private static final int VERSION = 1;
+    private static final String HEADER = "cycle,instructions,page_faults,fault_rate,"
+            + "clean_evictions,dirty_evictions,tlb_lookups,tlb_miss_rate,run_queue,resident_sets";
+    private static final Sample END = new Sample();
+    private static Logger logger = Logger.getLogger("simulation");
+
+    private long interval;
+    private boolean binary;
+    private int queueSize;
+    private long nextSampleCycle;
+    private long[] lastTotals = new long[Sample.TOTALS];
+    private transient BlockingQueue<Sample> queue = null;
+    private transient Thread writer;
+    private transient int samplesDropped;
+
+    /**
+     * Constructor.
+     *
+     * @param interval Number of cycles between samples.
+     * @param binary True for the binary format, false for CSV.
+     * @param queueSize Number of samples waiting to be written at most.
+     */
+    public MetricsSampler(long interval, boolean binary, int queueSize) {
+        this.interval = interval;
+        this.binary = binary;
+        this.queueSize = queueSize;
+        this.nextSampleCycle = interval;
+    }
+
+    /**
+     * Starts writing samples to a file.
+     *
+     * @param fileName Name of the file.
+     * @param aComputer Computer to sample.
+     * @param resume True to carry on with the file of a run resumed from a
+     *      checkpoint: samples after the checkpoint are dropped from it.
+     * @throws IOException If the file can't be opened.
+     */
+    public void open(String fileName, Computer aComputer, boolean resume) throws IOException {
+        File file = new File(fileName);
+        boolean append = false;
+        if (resume && file.exists()) {
+            append = this._truncateAfter(file, aComputer.getCurrentCycle());
+        } else {
+            // Start counting from here.
+            this.lastTotals = _totals(aComputer);
+            this.nextSampleCycle = aComputer.getCurrentCycle() + this.interval;
+        }
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(file, append));
+        if (!append) {
+            if (this.binary) {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+            } else {
+                out.write((HEADER + "\n").getBytes("US-ASCII"));
+            }
+        }
+        this.queue = new ArrayBlockingQueue<Sample>(this.queueSize);
+        this.samplesDropped = 0;
+        this.writer = new Thread(new Runnable() {
+            public void run() {
+                _writeAll(out);
+            }
+        }, "metrics-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @param cycle Current global cycle count.
+     * @return True if a sample is to be taken.
+     */
+    public boolean isDue(long cycle) {
+        return (this.queue != null) && (cycle >= this.nextSampleCycle);
+    }
+
+    /**
+     * Takes a sample and hands it to the writer, or drops it if the writer
+     * is too far behind.
+     *
+     * @param aComputer Computer to sample.
+     */
+    public void sample(Computer aComputer) {
+        long cycle = aComputer.getCurrentCycle();
+        while (this.nextSampleCycle <= cycle) {
+            this.nextSampleCycle += this.interval;
+        }
+        Sample aSample = new Sample();
+        aSample.cycle = cycle;
+        long[] totals = _totals(aComputer);
+        for (int i = 0; i < Sample.TOTALS; i++) {
+            aSample.counts[i] = totals[i] - this.lastTotals[i];
+        }
+        this.lastTotals = totals;
+        for (Core core : aComputer.getCores()) {
+            aSample.runQueue += core.getScheduler().getReadyCount();
+        }
+        int processes = aComputer.getCurrentProcesses().size();
+        aSample.pids = new int[processes];
+        aSample.frames = new int[processes];
+        int i = 0;
+        for (Process aProcess : aComputer.getCurrentProcesses()) {
+            aSample.pids[i] = aProcess.getPid();
+            aSample.frames[i] = aProcess.getResidentFrames();
+            i++;
+        }
+        if (!this.queue.offer(aSample)) {
+            this.samplesDropped++;
+        }
+    }
+
+    /**
+     * Writes the samples still waiting, and stops the writer.
+     */
+    public void close() {
+        if (this.queue == null) {
+            return;
+        }
+        try {
+            while (this.writer.isAlive()
+                    && !this.queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                // Wait for the writer to make room.
+            }
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.queue = null;
+        if (this.samplesDropped > 0) {
+            logger.warning("Metrics samples dropped: " + this.samplesDropped);
+        }
+    }
+
+    /**
+     * @return True if samples are written in the binary format, false for CSV.
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * @return Returns the number of samples dropped, because the writer was
+     *      too far behind.
+     */
+    public int getSamplesDropped() {
+        return samplesDropped;
+    }
+
+    /**
+     * @param aComputer Computer to sample.
+     * @return Counts so far, of processes done and running.
+     */
+    private static long[] _totals(Computer aComputer) {
+        long[] totals = new long[Sample.TOTALS];
+        totals[Sample.INSTRUCTIONS] = aComputer.getTotalInstructions();
+        totals[Sample.PAGE_FAULTS] = aComputer.getPageFaults();
+        totals[Sample.CLEAN_EVICTIONS] = aComputer.getCleanPagesReturned();
+        totals[Sample.DIRTY_EVICTIONS] = aComputer.getDirtyPagesReturned();
+        totals[Sample.TLB_LOOKUPS] = aComputer.getTlbLookups();
+        totals[Sample.TLB_MISSES] = aComputer.getTlbMisses();
+        for (Process aProcess : aComputer.getCurrentProcesses()) {
+            totals[Sample.INSTRUCTIONS] += aProcess.getTotalInstructions();
+            totals[Sample.PAGE_FAULTS] += aProcess.getPageFaults();
+            totals[Sample.CLEAN_EVICTIONS] += aProcess.getCleanPagesReturned();
+            totals[Sample.DIRTY_EVICTIONS] += aProcess.getDirtyPagesReturned();
+            totals[Sample.TLB_LOOKUPS] += aProcess.getTlbLookups();
+            totals[Sample.TLB_MISSES] += aProcess.getTlbMisses();
+        }
+        return totals;
+    }
+
+    /**
+     * Writes samples as they come, until told to end. Runs on the writer
+     * thread.
+     *
+     * @param out Stream to the file.
+     */
+    private void _writeAll(OutputStream out) {
+        DataOutputStream data = new DataOutputStream(out);
+        try {
+            try {
+                while (true) {
+                    Sample aSample = this.queue.poll();
+                    if (aSample == null) {
+                        // Keep the file current while waiting.
+                        data.flush();
+                        aSample = this.queue.take();
+                    }
+                    if (aSample == END) {
+                        break;
+                    }
+                    if (this.binary) {
+                        _writeRecord(aSample, data);
+                    } else {
+                        data.write(_formatLine(aSample).getBytes("US-ASCII"));
+                    }
+                }
+            } finally {
+                data.close();
+            }
+        } catch (IOException e) {
+            logger.severe("Could not write metrics: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param aSample Sample.
+     * @return Line of the CSV file.
+     */
+    private static String _formatLine(Sample aSample) {
+        long[] counts = aSample.counts;
+        StringBuilder line = new StringBuilder();
+        line.append(aSample.cycle).append(',');
+        line.append(counts[Sample.INSTRUCTIONS]).append(',');
+        line.append(counts[Sample.PAGE_FAULTS]).append(',');
+        line.append(String.format(Locale.ROOT, "%.4f", 1000.0 * counts[Sample.PAGE_FAULTS]
+                                  / Math.max(1, counts[Sample.INSTRUCTIONS]))).append(',');
+        line.append(counts[Sample.CLEAN_EVICTIONS]).append(',');
+        line.append(counts[Sample.DIRTY_EVICTIONS]).append(',');
+        line.append(counts[Sample.TLB_LOOKUPS]).append(',');
+        line.append(String.format(Locale.ROOT, "%.4f", (double)counts[Sample.TLB_MISSES]
+                                  / Math.max(1, counts[Sample.TLB_LOOKUPS]))).append(',');
+        line.append(aSample.runQueue).append(',');
+        for (int i = 0; i < aSample.pids.length; i++) {
+            if (i > 0) {
+                line.append(' ');
+            }
+            line.append(aSample.pids[i]).append(':').append(aSample.frames[i]);
+        }
+        return line.append('\n').toString();
+    }
+
+    /**
+     * @param aSample Sample.
+     * @param data Stream to write the record to.
+     * @throws IOException If the record can't be written.
+     */
+    private static void _writeRecord(Sample aSample, DataOutputStream data) throws IOException {
+        data.writeLong(aSample.cycle);
+        for (long count : aSample.counts) {
+            data.writeLong(count);
+        }
+        data.writeInt(aSample.runQueue);
+        data.writeInt(aSample.pids.length);
+        for (int i = 0; i < aSample.pids.length; i++) {
+            data.writeInt(aSample.pids[i]);
+            data.writeInt(aSample.frames[i]);
+        }
+    }
+
+    /**
+     * Cuts a file back to the samples taken up to a cycle, and drops what
+     * is left of a sample that was being written when the run was killed.
+     *
+     * @param file Metrics file.
+     * @param cycle Last cycle to keep samples of.
+     * @return True if the file is to be appended to, false if it's no good
+     *      and is to be written from scratch.
+     * @throws IOException If the file can't be read or cut.
+     */
+    private boolean _truncateAfter(File file, long cycle) throws IOException {
+        long keep = 0;
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            if (this.binary) {
+                keep = _binaryKeep(in, cycle);
+            } else {
+                keep = _csvKeep(in, cycle);
+            }
+        } finally {
+            in.close();
+        }
+        if (keep == 0) {
+            return false;
+        }
+        RandomAccessFile cut = new RandomAccessFile(file, "rw");
+        try {
+            cut.setLength(keep);
+        } finally {
+            cut.close();
+        }
+        return true;
+    }
+
+    /**
+     * @param in CSV file.
+     * @param cycle Last cycle to keep samples of.
+     * @return Length of the file to keep (0 if there is no header).
+     * @throws IOException If the file can't be read.
+     */
+    private static long _csvKeep(InputStream in, long cycle) throws IOException {
+        long position = 0;
+        long keep = 0;
+        StringBuilder line = new StringBuilder();
+        int b = in.read();
+        while (b >= 0) {
+            position++;
+            if (b != '\n') {
+                line.append((char)b);
+            } else {
+                if (keep == 0) {
+                    if (!line.toString().equals(HEADER)) {
+                        return 0;
+                    }
+                } else {
+                    int comma = line.indexOf(",");
+                    if ((comma < 0) || (Long.parseLong(line.substring(0, comma)) > cycle)) {
+                        break;
+                    }
+                }
+                keep = position;
+                line.setLength(0);
+            }
+            b = in.read();
+        }
+        return keep;
+    }
+
+    /**
+     * @param in Binary file.
+     * @param cycle Last cycle to keep samples of.
+     * @return Length of the file to keep (0 if there is no header).
+     * @throws IOException If the file can't be read.
+     */
+    private static long _binaryKeep(InputStream in, long cycle) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        try {
+            if ((data.readInt() != MAGIC) || (data.readInt() != VERSION)) {
+                return 0;
+            }
+        } catch (EOFException e) {
+            return 0;
+        }
+        long keep = 8;
+        try {
+            while (data.readLong() <= cycle) {
+                for (int i = 0; i < Sample.TOTALS; i++) {
+                    data.readLong();
+                }
+                data.readInt();
+                int processes = data.readInt();
+                for (int i = 0; i < 2 * processes; i++) {
+                    data.readInt();
+                }
+                keep += 8 + 8 * Sample.TOTALS + 8 + 8L * processes;
+            }
+        } catch (EOFException e) {
+            // Cut off in the middle of a record.
+        }
+        return keep;
+    }
+
+    /**
+     * A sample on its way to the writer.
+     */
+    private static class Sample {
+        static final int INSTRUCTIONS = 0;
+        static final int PAGE_FAULTS = 1;
+        static final int CLEAN_EVICTIONS = 2;
+        static final int DIRTY_EVICTIONS = 3;
+        static final int TLB_LOOKUPS = 4;
+        static final int TLB_MISSES = 5;
+        static final int TOTALS = 6;
+
+        long cycle;
+        long[] counts = new long[TOTALS];
+        int runQueue;
+        int[] pids;
+        int[] frames;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * MixtureWorkload.java
+ *
+ * References drawn from several patterns at random.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.Random;
+
+/**
+ * References drawn from several patterns at random, each with a weight, e. g.
+ * mostly a hot set with a scan every now and then. All patterns keep their
+ * own state, so a loop carries on where it was when it is picked next.
+ */
+public class MixtureWorkload extends WorkloadGenerator {
+    private static final long serialVersionUID = 1L;
+
+    private WorkloadGenerator[] components;
+    private double[] cumulativeWeights;
+
+    /**
+     * Constructor.
+     *
+     * @param components Patterns to mix.
+     * @param weights Weight of every pattern.
+     */
+    public MixtureWorkload(WorkloadGenerator[] components, double[] weights) {
+        if ((components.length == 0) || (components.length != weights.length)) {
+            throw new IllegalArgumentException("A mixture needs a weight per component.");
+        }
+        this.components = components;
+        this.cumulativeWeights = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            this.cumulativeWeights[i] = total;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            this.cumulativeWeights[i] /= total;
+        }
+    }
+
+    public int nextPage(Random randomiser, int pages) {
+        // Mixtures are small, so a linear search is as quick as any.
+        double choice = randomiser.nextDouble();
+        int i = 0;
+        while ((i < this.components.length - 1) && (choice >= this.cumulativeWeights[i])) {
+            i++;
+        }
+        return this.components[i].nextPage(randomiser, pages);
+    }
+}
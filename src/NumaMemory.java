@@ -0,0 +1,242 @@
+/*
+ * NumaMemory.java
+ *
+ * Physical memory split into nodes, each local to some of the cores.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+
+/**
+ * Physical memory split into nodes, each local to an equal share of the
+ * cores (NUMA). Every page in memory is placed on a node, by one of the
+ * allocation policies: on the node of the core faulting it in (local), on the
+ * home node of the process (preferred), or on the nodes in turn
+ * (interleave). A node that is full falls back to the node with the most
+ * frames free. If all are full the page still goes on the least full node,
+ * as the frames are held by the processes anyway: the nodes only tell where
+ * they are.
+ *
+ * The frames in use per node are shared by all cores, so when the cores are
+ * simulated in parallel windows every core notes down its own changes during
+ * the window, seeing them on top of the counts, and the notes are added to
+ * the counts between windows (as the {@link FramePool} does). The same goes
+ * for the placements and fallbacks counted.
+ */
+public class NumaMemory implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Place pages on the node of the core faulting them in. */
+    public static final int LOCAL = 0;
+    /** Place pages on the nodes in turn. */
+    public static final int INTERLEAVE = 1;
+    /** Place pages on the home node of the process. */
+    public static final int PREFERRED = 2;
+
+    private int nodes;
+    private int cores;
+    private long nodeFrames;
+    private long[] used;
+    private int[][] deferred = null;
+    private int[][] deferredPlacements = null;
+    private int[] deferredFallbacks = null;
+    private long[] peakUsed;
+    private long[] placements;
+    private long fallbacks = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param nodes Number of nodes.
+     * @param cores Number of CPU cores.
+     * @param nodeFrames Number of frames per node, 0 for no limit.
+     */
+    public NumaMemory(int nodes, int cores, int nodeFrames) {
+        this.nodes = nodes;
+        this.cores = cores;
+        this.nodeFrames = (nodeFrames > 0) ? nodeFrames : Long.MAX_VALUE;
+        this.used = new long[nodes];
+        this.peakUsed = new long[nodes];
+        this.placements = new long[nodes];
+    }
+
+    /**
+     * Resolves the name of an allocation policy.
+     *
+     * @param name One of "local", "interleave" or "preferred".
+     * @return Policy constant.
+     */
+    public static int parsePolicy(String name) {
+        if (name.equals("local")) {
+            return LOCAL;
+        } else if (name.equals("interleave")) {
+            return INTERLEAVE;
+        } else if (name.equals("preferred")) {
+            return PREFERRED;
+        }
+        throw new IllegalArgumentException("Unknown NUMA allocation policy '" + name + "'.");
+    }
+
+    /**
+     * @param core Core number.
+     * @return Node the core is on.
+     */
+    public int getNode(int core) {
+        return (int)((long)core * this.nodes / this.cores);
+    }
+
+    /**
+     * Switches to noting down changes per core, to be added by
+     * {@link #resolveDeferred()}.
+     */
+    public void deferChanges() {
+        this.deferred = new int[this.cores][this.nodes];
+        this.deferredPlacements = new int[this.cores][this.nodes];
+        this.deferredFallbacks = new int[this.cores];
+    }
+
+    /**
+     * Places a page on a node, taking a frame there.
+     *
+     * @param core Core asking, or -1 if not asked from within a window.
+     * @param node Node asked for.
+     * @return Node the page is placed on: the one asked for, unless that is
+     *      full.
+     */
+    public int place(int core, int node) {
+        if (this._used(core, node) >= this.nodeFrames) {
+            int emptiest = node;
+            for (int i = 0; i < this.nodes; i++) {
+                if (this._used(core, i) < this._used(core, emptiest)) {
+                    emptiest = i;
+                }
+            }
+            if (emptiest != node) {
+                node = emptiest;
+                if ((this.deferred == null) || (core < 0)) {
+                    this.fallbacks++;
+                } else {
+                    this.deferredFallbacks[core]++;
+                }
+            }
+        }
+        this._change(core, node, 1);
+        if ((this.deferred == null) || (core < 0)) {
+            this.placements[node]++;
+        } else {
+            this.deferredPlacements[core][node]++;
+        }
+        return node;
+    }
+
+    /**
+     * Hands back a frame of a node.
+     *
+     * @param core Core the page was on, or -1 if not within a window.
+     * @param node Node of the frame.
+     */
+    public void free(int core, int node) {
+        this._change(core, node, -1);
+    }
+
+    /**
+     * @param core Core asking, or -1 if not asked from within a window.
+     * @param node Node.
+     * @return True if the node has a frame free.
+     */
+    public boolean hasRoom(int core, int node) {
+        return this._used(core, node) < this.nodeFrames;
+    }
+
+    /**
+     * Adds the changes noted down since the last call to the counts.
+     */
+    public void resolveDeferred() {
+        for (int core = 0; core < this.cores; core++) {
+            for (int node = 0; node < this.nodes; node++) {
+                this.used[node] += this.deferred[core][node];
+                this.deferred[core][node] = 0;
+                this.placements[node] += this.deferredPlacements[core][node];
+                this.deferredPlacements[core][node] = 0;
+            }
+            this.fallbacks += this.deferredFallbacks[core];
+            this.deferredFallbacks[core] = 0;
+        }
+        this._notePeaks();
+    }
+
+    /**
+     * @return Returns the number of nodes.
+     */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @param node Node.
+     * @return Most frames in use on the node at a time.
+     */
+    public long getPeakUsed(int node) {
+        return this.peakUsed[node];
+    }
+
+    /**
+     * @param node Node.
+     * @return Number of pages placed on the node.
+     */
+    public long getPlacements(int node) {
+        return this.placements[node];
+    }
+
+    /**
+     * @return Returns the number of pages placed off the node asked for, as
+     *      that was full.
+     */
+    public long getFallbacks() {
+        return fallbacks;
+    }
+
+    /**
+     * @param core Core, or -1.
+     * @param node Node.
+     * @return Frames in use on the node, as the core sees it.
+     */
+    private long _used(int core, int node) {
+        long count = this.used[node];
+        if ((this.deferred != null) && (core >= 0)) {
+            count += this.deferred[core][node];
+        }
+        return count;
+    }
+
+    /**
+     * @param core Core, or -1.
+     * @param node Node.
+     * @param delta Change of the frames in use.
+     */
+    private void _change(int core, int node, int delta) {
+        if ((this.deferred == null) || (core < 0)) {
+            this.used[node] += delta;
+            this._notePeaks();
+        } else {
+            this.deferred[core][node] += delta;
+        }
+    }
+
+    /**
+     * Keeps track of the most frames in use per node.
+     */
+    private void _notePeaks() {
+        for (int node = 0; node < this.nodes; node++) {
+            this.peakUsed[node] = Math.max(this.peakUsed[node], this.used[node]);
+        }
+    }
+}
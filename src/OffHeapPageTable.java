@@ -0,0 +1,382 @@
+/*
+ * OffHeapPageTable.java
+ *
+ * Page table kept outside the Java heap.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.RandomAccess;
+
+/**
+ * Page table kept outside the Java heap, so address spaces are not limited
+ * by the heap, and the garbage collector has no page table entries to scan.
+ * Every entry takes 8 bytes: the frame number and the status bits. They're
+ * held in chunks of direct buffers, or of a memory mapped file (for page
+ * tables larger than memory, paged by the host OS).
+ *
+ * It's a list of page table entries like any other, to the address
+ * translator and the page replacement algorithms alike. Entries got from it
+ * are views: reading and changing them reads and changes the table. Entries
+ * added to it are copied in.
+ *
+ * Direct buffers count against the JVM's limit of direct memory
+ * (-XX:MaxDirectMemorySize, by default as large as the heap), memory mapped
+ * files don't. Either is let go of by {@link #release()} when the process is
+ * done, else only once the garbage collector gets to the buffers (and the
+ * file only at the end of the JVM).
+ */
+public class OffHeapPageTable extends AbstractList<PageTableEntry>
+        implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_ENTRIES = 1 << CHUNK_BITS;
+    private static final int ENTRY_BYTES = 8;
+    private static final long FRAME_MASK = 0xffffffffL;
+    private static final long VALID = 1L << 32;
+    private static final long REFERENCED = 1L << 33;
+    private static final long MODIFIED = 1L << 34;
+    private static final long PREFETCHED = 1L << 35;
+
+    private File directory;
+    private int size = 0;
+    private transient File file = null;
+    private transient ByteBuffer[] chunks = new ByteBuffer[0];
+
+    private static Object unsafe = null;
+    private static Method invokeCleaner = null;
+
+    static {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (Exception e) {
+            // Before Java 9, buffers have cleaners of their own.
+            invokeCleaner = null;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory Directory to put the memory mapped file in, or null
+     *      for direct buffers.
+     */
+    public OffHeapPageTable(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param index Virtual page number.
+     * @return View of the entry of the page.
+     */
+    public PageTableEntry get(int index) {
+        if ((index < 0) || (index >= this.size)) {
+            throw new IndexOutOfBoundsException("Page " + index + " of " + this.size + ".");
+        }
+        return new Entry(index);
+    }
+
+    /**
+     * @return Number of pages in the table.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return Returns the directory of the memory mapped file, or null for
+     *      direct buffers.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Copies an entry into the table.
+     *
+     * @param index Virtual page number.
+     * @param entry Entry.
+     * @return View of the entry replaced, as it is now.
+     */
+    public PageTableEntry set(int index, PageTableEntry entry) {
+        PageTableEntry old = this.get(index);
+        this._write(index, _pack(entry));
+        return old;
+    }
+
+    /**
+     * Copies an entry onto the end of the table (entries can't be put in
+     * between).
+     *
+     * @param index Virtual page number, the size of the table.
+     * @param entry Entry.
+     */
+    public void add(int index, PageTableEntry entry) {
+        if (index != this.size) {
+            throw new UnsupportedOperationException("Pages can only be added at the end.");
+        }
+        this.extend(this.size + 1);
+        this._write(index, _pack(entry));
+        this.modCount++;
+    }
+
+    /**
+     * Extends the table with entries of pages not touched yet (frame 0, no
+     * bits set), without going through them one by one.
+     *
+     * @param newSize Number of pages in the table.
+     */
+    public void extend(int newSize) {
+        int chunksNeeded = (int)(((long)newSize + CHUNK_ENTRIES - 1) >>> CHUNK_BITS);
+        if (chunksNeeded > this.chunks.length) {
+            int oldLength = this.chunks.length;
+            this.chunks = Arrays.copyOf(this.chunks, chunksNeeded);
+            for (int i = oldLength; i < chunksNeeded; i++) {
+                this.chunks[i] = this._allocate(i);
+            }
+        }
+        this.size = Math.max(this.size, newSize);
+    }
+
+    /**
+     * Lets go of the table when the process is done: frees the buffers (or
+     * unmaps them), and deletes the file. The table is empty afterwards.
+     */
+    public void release() {
+        for (ByteBuffer chunk : this.chunks) {
+            _free(chunk);
+        }
+        this.chunks = new ByteBuffer[0];
+        this.size = 0;
+        this.modCount++;
+        if (this.file != null) {
+            // If it can't be deleted yet, it still is on exit.
+            this.file.delete();
+            this.file = null;
+        }
+    }
+
+    /**
+     * @param index Virtual page number.
+     * @return Entry of the page, packed.
+     */
+    private long _read(int index) {
+        return this.chunks[index >>> CHUNK_BITS].getLong((index & (CHUNK_ENTRIES - 1)) * ENTRY_BYTES);
+    }
+
+    /**
+     * @param index Virtual page number.
+     * @param word Entry of the page, packed.
+     */
+    private void _write(int index, long word) {
+        this.chunks[index >>> CHUNK_BITS].putLong((index & (CHUNK_ENTRIES - 1)) * ENTRY_BYTES, word);
+    }
+
+    /**
+     * @param index Virtual page number.
+     * @param bit Status bit.
+     * @param set True to set it, false to clear it.
+     */
+    private void _setBit(int index, long bit, boolean set) {
+        long word = this._read(index);
+        this._write(index, set ? (word | bit) : (word & ~bit));
+    }
+
+    /**
+     * @param entry Entry.
+     * @return Entry packed into 8 bytes.
+     */
+    private static long _pack(PageTableEntry entry) {
+        long word = entry.getPageFrameNumber() & FRAME_MASK;
+        if (entry.isValid()) {
+            word |= VALID;
+        }
+        if (entry.isReferenced()) {
+            word |= REFERENCED;
+        }
+        if (entry.isModified()) {
+            word |= MODIFIED;
+        }
+        if (entry.isPrefetched()) {
+            word |= PREFETCHED;
+        }
+        return word;
+    }
+
+    /**
+     * Allocates a chunk, zeroed: in the memory mapped file, or directly.
+     *
+     * @param chunk Chunk number.
+     * @return Buffer of the chunk.
+     */
+    private ByteBuffer _allocate(int chunk) {
+        int bytes = CHUNK_ENTRIES * ENTRY_BYTES;
+        if (this.directory == null) {
+            return ByteBuffer.allocateDirect(bytes);
+        }
+        try {
+            if (this.file == null) {
+                this.file = File.createTempFile("pagetable", ".bin", this.directory);
+                this.file.deleteOnExit();
+            }
+            RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+            try {
+                // The mapping stays valid with the file closed.
+                return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, (long)chunk * bytes, bytes);
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map page table file in " + this.directory, e);
+        }
+    }
+
+    /**
+     * Frees a direct or memory mapped buffer right away, if the JVM lets us.
+     * Otherwise it's left to the garbage collector.
+     *
+     * @param buffer Buffer, not to be used any more.
+     */
+    private static void _free(ByteBuffer buffer) {
+        try {
+            if (invokeCleaner != null) {
+                invokeCleaner.invoke(unsafe, buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            // Left to the garbage collector.
+        }
+    }
+
+    /**
+     * Writes the entries out (a copy of the table goes with a snapshot or
+     * checkpoint).
+     *
+     * @param out Stream to write to.
+     * @throws IOException If it can't be written.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < this.size; i++) {
+            out.writeLong(this._read(i));
+        }
+    }
+
+    /**
+     * Reads the entries back into buffers (or a file) of its own.
+     *
+     * @param in Stream to read from.
+     * @throws IOException If it can't be read.
+     * @throws ClassNotFoundException Never.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int entries = this.size;
+        this.size = 0;
+        this.chunks = new ByteBuffer[0];
+        this.extend(entries);
+        for (int i = 0; i < entries; i++) {
+            this._write(i, in.readLong());
+        }
+    }
+
+    /**
+     * View of an entry in the table.
+     */
+    private class Entry extends PageTableEntry {
+        private static final long serialVersionUID = 1L;
+
+        private int index;
+
+        /**
+         * Constructor.
+         *
+         * @param index Virtual page number.
+         */
+        public Entry(int index) {
+            super(0);
+            this.index = index;
+        }
+
+        public boolean isValid() {
+            return (_read(this.index) & VALID) != 0;
+        }
+
+        public void setValid(boolean valid) {
+            _setBit(this.index, VALID, valid);
+        }
+
+        public boolean isReferenced() {
+            return (_read(this.index) & REFERENCED) != 0;
+        }
+
+        public void setReferenced(boolean referenced) {
+            _setBit(this.index, REFERENCED, referenced);
+        }
+
+        public boolean isModified() {
+            return (_read(this.index) & MODIFIED) != 0;
+        }
+
+        public void setModified(boolean modified) {
+            _setBit(this.index, MODIFIED, modified);
+        }
+
+        public boolean isPrefetched() {
+            return (_read(this.index) & PREFETCHED) != 0;
+        }
+
+        public void setPrefetched(boolean prefetched) {
+            _setBit(this.index, PREFETCHED, prefetched);
+        }
+
+        public int getPageFrameNumber() {
+            return (int)(_read(this.index) & FRAME_MASK);
+        }
+
+        public void setPageFrameNumber(int pageFrameNumber) {
+            _write(this.index, (_read(this.index) & ~FRAME_MASK) | (pageFrameNumber & FRAME_MASK));
+        }
+
+        public boolean access(Random randomiser) {
+            long word = _read(this.index) | REFERENCED;
+            boolean written = randomiser.nextFloat() < 0.2;
+            if (written) {
+                // 20/80 chance of modifying it, as for entries on the heap.
+                word |= MODIFIED;
+            }
+            _write(this.index, word);
+            return written;
+        }
+    }
+}
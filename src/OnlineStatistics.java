@@ -0,0 +1,138 @@
+/*
+ * OnlineStatistics.java
+ *
+ * Mean and variance of a stream of values, with confidence intervals.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+/**
+ * Mean and variance of a stream of values, updated one value at a time by
+ * Welford's method (numerically stable, nothing kept but three numbers), and
+ * the confidence interval of the mean by Student's t-distribution.
+ */
+public class OnlineStatistics {
+    private long count = 0;
+    private double mean = 0;
+    private double squares = 0;
+
+    /**
+     * Adds a value.
+     *
+     * @param value Value.
+     */
+    public void add(double value) {
+        this.count++;
+        double delta = value - this.mean;
+        this.mean += delta / this.count;
+        this.squares += delta * (value - this.mean);
+    }
+
+    /**
+     * @return Returns the number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Returns the mean of the values.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return Sample variance of the values, 0 for less than two.
+     */
+    public double getVariance() {
+        return (this.count < 2) ? 0 : this.squares / (this.count - 1);
+    }
+
+    /**
+     * @param confidence Confidence level, such as 0.95.
+     * @return Half the width of the confidence interval of the mean, or
+     *      infinity for less than two values.
+     */
+    public double getHalfWidth(double confidence) {
+        if (this.count < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return tQuantile((1 + confidence) / 2, this.count - 1)
+                * Math.sqrt(this.getVariance() / this.count);
+    }
+
+    /**
+     * @param confidence Confidence level, such as 0.95.
+     * @return Half the width of the confidence interval relative to the
+     *      mean: 0 if there is no spread, infinity if there is around a mean
+     *      of 0.
+     */
+    public double getRelativeHalfWidth(double confidence) {
+        double halfWidth = this.getHalfWidth(confidence);
+        if (halfWidth == 0) {
+            return 0;
+        }
+        return (this.mean == 0) ? Double.POSITIVE_INFINITY : halfWidth / Math.abs(this.mean);
+    }
+
+    /**
+     * Quantile of Student's t-distribution: exact for 1 and 2 degrees of
+     * freedom, by the Cornish-Fisher expansion around the normal quantile
+     * for more (within 0.1% from 3 on).
+     *
+     * @param p Probability.
+     * @param degrees Degrees of freedom.
+     * @return Quantile.
+     */
+    public static double tQuantile(double p, long degrees) {
+        if (degrees == 1) {
+            return Math.tan(Math.PI * (p - 0.5));
+        } else if (degrees == 2) {
+            return (2 * p - 1) / Math.sqrt(2 * p * (1 - p));
+        }
+        double z = normalQuantile(p);
+        double v = degrees;
+        double z2 = z * z;
+        return z + z * (z2 + 1) / (4 * v)
+                + z * ((5 * z2 + 16) * z2 + 3) / (96 * v * v)
+                + z * (((3 * z2 + 19) * z2 + 17) * z2 - 15) / (384 * v * v * v)
+                + z * ((((79 * z2 + 776) * z2 + 1482) * z2 - 1920) * z2 - 945) / (92160 * v * v * v * v);
+    }
+
+    /**
+     * Quantile of the standard normal distribution, by P. J. Acklam's
+     * rational approximation (relative error below 1.2e-9).
+     *
+     * @param p Probability, between 0 and 1.
+     * @return Quantile.
+     */
+    public static double normalQuantile(double p) {
+        double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                      1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                      6.680131188771972e+01, -1.328068155288572e+01};
+        double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                      -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                      3.754408661907416e+00};
+        if (p < 0.02425) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        } else if (p > 1 - 0.02425) {
+            return -normalQuantile(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * PageHeatMap.java
+ *
+ * Accesses, faults and write-backs over the address space of a process.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+
+/**
+ * Accesses, faults and write-backs over the address space of a process, in
+ * a fixed number of buckets of pages. The buckets start a page wide; when the
+ * address space grows beyond them, neighbouring buckets are merged, doubling
+ * their width.
+ */
+public class PageHeatMap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int buckets;
+    private int bucketPages = 1;
+    private long[][] counts = new long[HeatProfiler.EVENTS][];
+
+    /**
+     * Constructor.
+     *
+     * @param buckets Number of buckets.
+     */
+    public PageHeatMap(int buckets) {
+        this.buckets = buckets;
+        for (int event = 0; event < HeatProfiler.EVENTS; event++) {
+            this.counts[event] = new long[buckets];
+        }
+    }
+
+    /**
+     * Counts an event on a page.
+     *
+     * @param pageNumber Virtual page number.
+     * @param event Kind of event (see {@link HeatProfiler}).
+     */
+    public void record(int pageNumber, int event) {
+        while (pageNumber / this.bucketPages >= this.buckets) {
+            this._coarsen();
+        }
+        this.counts[event][pageNumber / this.bucketPages]++;
+    }
+
+    /**
+     * @return Returns the number of pages per bucket.
+     */
+    public int getBucketPages() {
+        return bucketPages;
+    }
+
+    /**
+     * @return Returns the number of buckets.
+     */
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * @param event Kind of event (see {@link HeatProfiler}).
+     * @param bucket Bucket.
+     * @return Number of events on the pages of the bucket.
+     */
+    public long getCount(int event, int bucket) {
+        return this.counts[event][bucket];
+    }
+
+    /**
+     * Merges neighbouring buckets.
+     */
+    private void _coarsen() {
+        for (long[] eventCounts : this.counts) {
+            for (int i = 0; i < this.buckets / 2; i++) {
+                eventCounts[i] = eventCounts[2 * i] + eventCounts[2 * i + 1];
+            }
+            if (this.buckets % 2 == 1) {
+                eventCounts[this.buckets / 2] = eventCounts[this.buckets - 1];
+            }
+            for (int i = (this.buckets + 1) / 2; i < this.buckets; i++) {
+                eventCounts[i] = 0;
+            }
+        }
+        this.bucketPages *= 2;
+    }
+}
@@ -13,6 +13,8 @@
  * http://www.aut.ac.nz/
  */
 
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -20,12 +22,21 @@ import java.util.List;
  *
  * @author Guy K. Kloss
  */
-public abstract class PageReplacement {
+public abstract class PageReplacement implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     protected List<PageTableEntry> pageTable;;
     protected boolean[] memoryFrames;
+    /**
+     * Unused: the address translator counts the pages returned as it swaps
+     * them out. Kept so algorithms still counting in them compile.
+     */
     protected int freePagesReturned = 0;
     protected int cleanPagesReturned = 0;
     protected int dirtyPagesReturned = 0;
+    protected VictimIndex victims = null;
+    private int[] freedPages = new int[16];
+    private int freedCount = 0;
     
     /**
      * Constructor.
@@ -50,23 +61,139 @@ public abstract class PageReplacement {
     public abstract int getTargetPage();
 
     /**
-     * @return Returns the number of free pages returned.
+     * @return True if the algorithm picks its victims from a
+     *      {@link VictimIndex}, to be kept by the address translator. False
+     *      by default.
      */
-    public int getFreePagesReturned() {
-        return freePagesReturned;
+    public boolean usesVictimIndex() {
+        return false;
     }
-    
+
     /**
-     * @return Returns the number of clean pages returned.
+     * @param victims Index of the frames by what's in them, kept up to date
+     *      by the address translator.
      */
-    public int getCleanPagesReturned() {
-        return cleanPagesReturned;
+    public void setVictimIndex(VictimIndex victims) {
+        this.victims = victims;
     }
-    
+
+    /**
+     * @return True if the algorithm is to be told about every access (see
+     *      {@link #pageAccessed(int, boolean)}). False by default, so the
+     *      address translator doesn't call for every access in vain.
+     */
+    public boolean tracksAccesses() {
+        return false;
+    }
+
+    /**
+     * Tells the algorithm a page has been accessed, after faulting it in if
+     * need be. Only called if {@link #tracksAccesses()}. Does nothing by
+     * default.
+     *
+     * @param pageNumber Virtual page number.
+     * @param written True if the page was written to.
+     */
+    public void pageAccessed(int pageNumber, boolean written) {
+    }
+
+    /**
+     * Tells the algorithm a page has come into memory (faulted in, made or
+     * read ahead). Does nothing by default.
+     *
+     * @param pageNumber Virtual page number, valid by now.
+     */
+    public void pageMapped(int pageNumber) {
+    }
+
+    /**
+     * Tells the algorithm a page is about to be faulted in, before it is
+     * asked for a page to replace (if need be). Does nothing by default.
+     *
+     * @param pageNumber Virtual page number faulting.
+     */
+    public void pageFaulted(int pageNumber) {
+    }
+
+    /**
+     * Tells the algorithm a page has left memory. Pages freed are kept for
+     * {@link #takeFreedPage()}, so algorithms overriding this call it too.
+     *
+     * @param pageNumber Virtual page number, invalid by now.
+     * @param freed True if the process freed the page, so its frame is
+     *      there to be returned, false if it was evicted.
+     */
+    public void pageUnmapped(int pageNumber, boolean freed) {
+        if (!freed) {
+            return;
+        }
+        if (this.freedCount == this.freedPages.length) {
+            this._compactFreedPages();
+            if (this.freedCount == this.freedPages.length) {
+                this.freedPages = Arrays.copyOf(this.freedPages, 2 * this.freedPages.length);
+            }
+        }
+        this.freedPages[this.freedCount++] = pageNumber;
+    }
+
+    /**
+     * Tells the algorithm a page evicted earlier has been faulted back in
+     * (only when refaults are tracked). A short distance means the page was
+     * evicted too early, so it may be worth keeping it longer this time,
+     * e.g. by putting it straight with the pages in active use. Does nothing
+     * by default.
+     *
+     * @param pageNumber Virtual page number, valid again by now.
+     * @param distance Number of evictions in the address space since the
+     *      page was evicted.
+     */
+    public void pageRefaulted(int pageNumber, int distance) {
+    }
+
+    /**
+     * Takes a page freed by the process whose frame is still unused, the
+     * first choice of a page to return.
+     *
+     * @return Page number, or -1 if there is none.
+     */
+    protected int takeFreedPage() {
+        if (this.victims != null) {
+            return this.victims.getFreePage();
+        }
+        while (this.freedCount > 0) {
+            int page = this.freedPages[--this.freedCount];
+            if (this._isFree(page)) {
+                return page;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param pageNumber Virtual page number freed earlier.
+     * @return True if the page is still out of memory, and its frame unused.
+     */
+    private boolean _isFree(int pageNumber) {
+        PageTableEntry entry = this.pageTable.get(pageNumber);
+        return !entry.isValid() && !this.memoryFrames[entry.getPageFrameNumber()];
+    }
+
     /**
-     * @return Returns the number of dirty pages returned.
+     * Drops the freed pages that have come back into memory, or whose frame
+     * is used again, and all but one page per frame. So at most a page per
+     * frame is kept, even by algorithms never taking any.
      */
-    public int getDirtyPagesReturned() {
-        return dirtyPagesReturned;
+    private void _compactFreedPages() {
+        boolean[] frameTaken = new boolean[this.memoryFrames.length];
+        int kept = 0;
+        for (int i = 0; i < this.freedCount; i++) {
+            int page = this.freedPages[i];
+            int frameNumber = this.pageTable.get(page).getPageFrameNumber();
+            if (this._isFree(page) && !frameTaken[frameNumber]) {
+                frameTaken[frameNumber] = true;
+                this.freedPages[kept++] = page;
+            }
+        }
+        this.freedCount = kept;
     }
 }
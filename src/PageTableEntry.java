@@ -1,3 +1,4 @@
+import java.io.Serializable;
 import java.util.Random;
 
 /*
@@ -20,12 +21,14 @@ import java.util.Random;
  *
  * @author Guy K. Kloss
  */
-public class PageTableEntry {
+public class PageTableEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private boolean valid = false;
     private boolean referenced = false;
     private boolean modified = false;
+    private boolean prefetched = false;
     private int pageFrameNumber = 0;
-    private Random randomiser = new Random();
         
     /**
      * Constructor.
@@ -90,6 +93,24 @@ public class PageTableEntry {
     }
 
     
+    /**
+     * Page was read ahead and has not been accessed since.
+     * @return Returns the prefetched flag.
+     */
+    public boolean isPrefetched() {
+        return prefetched;
+    }
+
+    
+    /**
+     * Page was read ahead and has not been accessed since.
+     * @param prefetched The prefetched flag to set.
+     */
+    public void setPrefetched(boolean prefetched) {
+        this.prefetched = prefetched;
+    }
+
+    
     /**
      * Page frame number in physical memory.
      * @return Returns the pageFrame.
@@ -110,12 +131,17 @@ public class PageTableEntry {
     
     /**
      * "Access" the page table element. This may also flip the modified bit.
+     * 
+     * @param randomiser Random number generator of the process.
+     * @return True if the page was written to.
      */
-    public void access() {
+    public boolean access(Random randomiser) {
         this.referenced = true;
-        if (this.randomiser.nextFloat() < 0.2) {
+        if (randomiser.nextFloat() < 0.2) {
             // 20/80 chance of modifying it.
             this.modified = true;
+            return true;
         }
+        return false;
     }
 }
@@ -0,0 +1,60 @@
+/*
+ * PhasedWorkload.java
+ *
+ * References following one pattern after another.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.Random;
+
+/**
+ * References following one pattern after another, each for a number of
+ * references, then starting over with the first. This is how programs change
+ * phases (and working sets), which adaptive policies have to keep up with.
+ */
+public class PhasedWorkload extends WorkloadGenerator {
+    private static final long serialVersionUID = 1L;
+
+    private WorkloadGenerator[] phases;
+    private int[] lengths;
+    private int phase = 0;
+    private int referencesLeft;
+
+    /**
+     * Constructor.
+     *
+     * @param phases Patterns to follow in turn.
+     * @param lengths Number of references of every phase (at least one).
+     */
+    public PhasedWorkload(WorkloadGenerator[] phases, int[] lengths) {
+        if ((phases.length == 0) || (phases.length != lengths.length)) {
+            throw new IllegalArgumentException("Phases need a length each.");
+        }
+        for (int length : lengths) {
+            if (length <= 0) {
+                throw new IllegalArgumentException("Phase length " + length
+                                                   + " is not positive.");
+            }
+        }
+        this.phases = phases;
+        this.lengths = lengths;
+        this.referencesLeft = lengths[0];
+    }
+
+    public int nextPage(Random randomiser, int pages) {
+        if (this.referencesLeft == 0) {
+            this.phase = (this.phase + 1) % this.phases.length;
+            this.referencesLeft = this.lengths[this.phase];
+        }
+        this.referencesLeft--;
+        return this.phases[this.phase].nextPage(randomiser, pages);
+    }
+}
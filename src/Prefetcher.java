@@ -0,0 +1,248 @@
+/*
+ * Prefetcher.java
+ *
+ * Detects sequential and strided page fault streams and proposes pages to
+ * read ahead.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+
+/**
+ * Detects sequential and strided page fault streams of one process and
+ * proposes pages to read ahead.
+ *
+ * A small table of streams is kept, so the interleaved fault streams of the
+ * process counter and the memory pointer can be told apart. A stream with a
+ * stride of one (sequential) starts reading ahead on its second fault, other
+ * strides need to be confirmed once before prefetching. The readahead window
+ * doubles on every confirmation up to a maximum, and is halved whenever a
+ * prefetched page gets evicted without having been used.
+ *
+ * The prefetcher only proposes page numbers; the address translator does the
+ * actual loading and reports back hits and wasted prefetches.
+ */
+public class Prefetcher implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int STREAMS = 4;
+
+    private int minWindow;
+    private int maxWindow;
+    private int[] lastPage = new int[STREAMS];
+    private int[] stride = new int[STREAMS];
+    private int[] nextPage = new int[STREAMS];
+    private int[] window = new int[STREAMS];
+    private boolean[] confirmed = new boolean[STREAMS];
+    private long[] lastUse = new long[STREAMS];
+    private long useCounter = 0;
+    private int prefetchesIssued = 0;
+    private int prefetchHits = 0;
+    private int prefetchesWasted = 0;
+    private int prefetchEvictions = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param minWindow Initial readahead window in pages.
+     * @param maxWindow Maximum readahead window in pages.
+     */
+    public Prefetcher(int minWindow, int maxWindow) {
+        this.minWindow = Math.max(1, minWindow);
+        this.maxWindow = Math.max(this.minWindow, maxWindow);
+        for (int i = 0; i < STREAMS; i++) {
+            this.lastPage[i] = -1;
+        }
+    }
+
+    /**
+     * @return Maximum number of pages proposed by a single call.
+     */
+    public int getMaxWindow() {
+        return this.maxWindow;
+    }
+
+    /**
+     * Notifies the prefetcher of a demand page fault.
+     *
+     * @param pageNumber Virtual page number that faulted.
+     * @param pages Buffer receiving the proposed pages (at least
+     *      {@link #getMaxWindow()} long).
+     * @return Number of pages proposed.
+     */
+    public int pageFaulted(int pageNumber, int[] pages) {
+        this.useCounter++;
+
+        // Continuation of a known stream?
+        for (int i = 0; i < STREAMS; i++) {
+            if ((this.stride[i] != 0)
+                    && (pageNumber == this.lastPage[i] + this.stride[i])) {
+                if (this.confirmed[i]) {
+                    // We've missed despite reading ahead, so read further.
+                    this.window[i] = Math.min(2 * this.window[i], this.maxWindow);
+                }
+                this.confirmed[i] = true;
+                return this._advanceStream(i, pageNumber, pages);
+            }
+        }
+
+        // Close to the last fault of a stream: (re-)train its stride.
+        for (int i = 0; i < STREAMS; i++) {
+            int delta = pageNumber - this.lastPage[i];
+            if ((this.lastPage[i] >= 0) && (delta != 0)
+                    && (Math.abs(delta) <= this.maxWindow)) {
+                this.stride[i] = delta;
+                this.window[i] = this.minWindow;
+                // Sequential access is common enough to act right away.
+                this.confirmed[i] = (delta == 1);
+                this.nextPage[i] = pageNumber + delta;
+                if (this.confirmed[i]) {
+                    return this._advanceStream(i, pageNumber, pages);
+                }
+                this.lastPage[i] = pageNumber;
+                this.lastUse[i] = this.useCounter;
+                return 0;
+            }
+        }
+
+        // Unrelated fault, start a new stream in the least recently used slot.
+        int victim = 0;
+        for (int i = 1; i < STREAMS; i++) {
+            if (this.lastUse[i] < this.lastUse[victim]) {
+                victim = i;
+            }
+        }
+        this.lastPage[victim] = pageNumber;
+        this.stride[victim] = 0;
+        this.confirmed[victim] = false;
+        this.lastUse[victim] = this.useCounter;
+        return 0;
+    }
+
+    /**
+     * Notifies the prefetcher of the first access to a prefetched page, so
+     * the stream can be kept ahead of the accesses.
+     *
+     * @param pageNumber Virtual page number accessed.
+     * @param pages Buffer receiving the proposed pages.
+     * @return Number of pages proposed.
+     */
+    public int prefetchHit(int pageNumber, int[] pages) {
+        this.prefetchHits++;
+        this.useCounter++;
+        for (int i = 0; i < STREAMS; i++) {
+            if (this.confirmed[i] && this._isAhead(i, pageNumber)) {
+                return this._advanceStream(i, pageNumber, pages);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Notifies the prefetcher that a prefetched page was actually loaded.
+     */
+    public void prefetchIssued() {
+        this.prefetchesIssued++;
+    }
+
+    /**
+     * Notifies the prefetcher that loading a prefetched page evicted
+     * another page.
+     */
+    public void prefetchEvicted() {
+        this.prefetchEvictions++;
+    }
+
+    /**
+     * Notifies the prefetcher that a prefetched page was evicted before it
+     * was ever used. All readahead windows are shrunk.
+     */
+    public void prefetchWasted() {
+        this.prefetchesWasted++;
+        for (int i = 0; i < STREAMS; i++) {
+            this.window[i] = Math.max(this.minWindow, this.window[i] / 2);
+        }
+    }
+
+    /**
+     * @return Returns the number of pages read ahead.
+     */
+    public int getPrefetchesIssued() {
+        return prefetchesIssued;
+    }
+
+    /**
+     * @return Returns the number of prefetched pages used before eviction.
+     */
+    public int getPrefetchHits() {
+        return prefetchHits;
+    }
+
+    /**
+     * @return Returns the number of prefetched pages evicted unused.
+     */
+    public int getPrefetchesWasted() {
+        return prefetchesWasted;
+    }
+
+    /**
+     * @return Returns the number of evictions caused by reading ahead.
+     */
+    public int getPrefetchEvictions() {
+        return prefetchEvictions;
+    }
+
+    /**
+     * Is the page between the last seen page and the readahead front of a
+     * stream?
+     *
+     * @param stream Stream index.
+     * @param pageNumber Virtual page number.
+     * @return True if the page lies within the stream's readahead.
+     */
+    private boolean _isAhead(int stream, int pageNumber) {
+        if (this.stride[stream] > 0) {
+            return (pageNumber > this.lastPage[stream])
+                    && (pageNumber < this.nextPage[stream]);
+        }
+        return (pageNumber < this.lastPage[stream])
+                && (pageNumber > this.nextPage[stream]);
+    }
+
+    /**
+     * Moves a stream to a page and proposes pages up to one window ahead,
+     * skipping those already proposed earlier.
+     *
+     * @param stream Stream index.
+     * @param pageNumber Current virtual page number of the stream.
+     * @param pages Buffer receiving the proposed pages.
+     * @return Number of pages proposed.
+     */
+    private int _advanceStream(int stream, int pageNumber, int[] pages) {
+        int step = this.stride[stream];
+        int front = pageNumber + step * this.window[stream];
+        int next = pageNumber + step;
+        if ((this.nextPage[stream] - next) * step > 0) {
+            // Don't propose pages again that were read ahead before.
+            next = this.nextPage[stream];
+        }
+        int count = 0;
+        while ((count < pages.length) && (next >= 0)
+                && ((front - next) * step >= 0)) {
+            pages[count++] = next;
+            next += step;
+        }
+        this.lastPage[stream] = pageNumber;
+        this.nextPage[stream] = next;
+        this.lastUse[stream] = this.useCounter;
+        return count;
+    }
+}
@@ -13,6 +13,8 @@
  * http://www.aut.ac.nz/
  */
 
+import java.io.Serializable;
+import java.util.Random;
 import java.util.logging.Logger;
 
 /**
@@ -20,13 +22,15 @@ import java.util.logging.Logger;
  *
  * @author Guy K. Kloss
  */
-public class Process {
-    private Logger logger = Logger.getLogger("simulation");
+public class Process implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static Logger logger = Logger.getLogger("simulation");
     private int waitCyclesToGo = 0;
     private int processCyclesToGo;
     private int totalWaits = 0;
     private int totalInstructions = 0;
-    private int lastCycleCount = 0;
+    private long lastCycleCount = 0;
     private AddressTranslator virtualMemory;
     private int pagesMemoryToStart;
     private int loadCount = 0;
@@ -34,9 +38,24 @@ public class Process {
     private int quantum;
     private boolean loaded;
     private Simulation mySimulation;
-    private double currentPC;
-    private double currentMP;
+    private Random randomiser;
+    private String processClass;
+    private WorkloadGenerator pcGenerator;
+    private WorkloadGenerator mpGenerator;
+    private LocalityProfile pcLocality = null;
+    private LocalityProfile mpLocality = null;
+    private int currentPC;
+    private int currentMP;
     private boolean stoppedWaiting = false;
+    private boolean suspended = false;
+    private int suspendedLimit = 0;
+    private int sampledFaults = 0;
+    private int sampledInstructions = 0;
+    private int workingSetFaults = 0;
+    private int schedulingLevel = 0;
+    private int blockedPosition = -1;
+    private int core = 0;
+    private long lastRunEndCycle = 0;
     
     /**
      * Constructor.
@@ -57,8 +76,22 @@ public class Process {
         this.processCyclesToGo = processCyclesToGo;
         this.pagesMemoryToStart = pagesMemoryToStart;
         this.quantum = quantum;
+        this.randomiser = simulation.newRandomiser();
+        this.processClass = simulation.nextProcessClass();
+        this.pcGenerator = simulation.getWorkloadImpl(this.processClass, "pc");
+        this.mpGenerator = simulation.getWorkloadImpl(this.processClass, "mp");
         this.virtualMemory = new AddressTranslator(this.mySimulation,
-                                                   this.pagesMemoryToStart);
+                                                   this.pid,
+                                                   this.pagesMemoryToStart,
+                                                   this.randomiser);
+        if (simulation.getSharedCodePages() > 0) {
+            this.virtualMemory.shareCode(simulation.getProcessClassNumber(this.processClass),
+                                         simulation.getSharedCodePages());
+        }
+        if (simulation.isLocalityProfile()) {
+            this.pcLocality = new LocalityProfile(simulation.getLocalitySampling());
+            this.mpLocality = new LocalityProfile(simulation.getLocalitySampling());
+        }
     }
     
     /**
@@ -86,34 +119,219 @@ public class Process {
      * @param currentCycle Current global cycle count.
      * @return Cycles spent in task.
      */
-    public int step(int currentCycle) {
-        this.logger.fine("PID " + this.pid + ": Cycle " + currentCycle + " of " + this.processCyclesToGo);
-        int cyclesElapsed = currentCycle - this.lastCycleCount;
+    public int step(long currentCycle) {
+        logger.fine("PID " + this.pid + ": Cycle " + currentCycle + " of " + this.processCyclesToGo);
+        long waitElapsed = currentCycle - this.lastCycleCount;
         this.lastCycleCount = currentCycle;
         
         // If we're waiting, do our wait, and return.
-        if (this.waitCyclesToGo > cyclesElapsed) {
-            this.waitCyclesToGo -= cyclesElapsed;
+        if (this.waitCyclesToGo > waitElapsed) {
+            this.waitCyclesToGo -= waitElapsed;
             return 1;
         } else {
             this.waitCyclesToGo = 0;
             this.stoppedWaiting = true;
         }
         
-        cyclesElapsed = 0;
-        // Do some work.
-        while ((cyclesElapsed < this.quantum)
-                && (this.waitCyclesToGo < 500)) {
+        int cyclesElapsed = this.runSlice(currentCycle);
+        this.totalInstructions += cyclesElapsed;
+        this.lastRunEndCycle = currentCycle + cyclesElapsed;
+        return cyclesElapsed;
+    }
+
+    /**
+     * Does some work, until the quantum is used up or we have to wait.
+     * 
+     * @param currentCycle Global cycle count the work starts at.
+     * @return Cycles spent in task.
+     */
+    protected int runSlice(long currentCycle) {
+        int cyclesElapsed = 0;
+        while ((cyclesElapsed < this.quantum) && !this.isBlocked()) {
+            this.virtualMemory.setClock(this.core, currentCycle + cyclesElapsed);
             if (!this.loaded) {
-                cyclesElapsed = this._loadProcess();
+                cyclesElapsed += this._loadProcess();
             } else {
-                cyclesElapsed = this._advanceProcess();
+                cyclesElapsed += this._advanceProcess();
             }
         }
-        this.totalInstructions += cyclesElapsed;
         return cyclesElapsed;
     }
 
+    /**
+     * Makes the process wait for memory or I/O.
+     * 
+     * @param cycles Number of cycles to wait.
+     */
+    protected void addWait(int cycles) {
+        this.waitCyclesToGo += cycles;
+        this.totalWaits += cycles;
+    }
+
+    /**
+     * Makes the process wait for loading the pages it starts with. Not
+     * counted in its total waits.
+     * 
+     * @param cycles Number of cycles to wait.
+     */
+    protected void addLoadWait(int cycles) {
+        this.waitCyclesToGo += cycles;
+    }
+
+    /**
+     * @return True if the process has to wait long enough to give up the
+     *      CPU (for the disk, not just a TLB miss).
+     */
+    protected boolean isBlocked() {
+        return this.waitCyclesToGo >= 500;
+    }
+
+    /**
+     * Counts the next references of the process counter and the memory
+     * pointer in the locality histograms, if profiling.
+     * 
+     * @param pc Page of the process counter.
+     * @param mp Page of the memory pointer.
+     */
+    protected void recordReferences(int pc, int mp) {
+        if (this.pcLocality != null) {
+            this.pcLocality.reference(pc);
+            this.mpLocality.reference(mp);
+        }
+    }
+
+    /**
+     * @return Returns the address translator of the process.
+     */
+    protected AddressTranslator getVirtualMemory() {
+        return virtualMemory;
+    }
+
+    /**
+     * @return Returns the simulation.
+     */
+    protected Simulation getSimulation() {
+        return mySimulation;
+    }
+
+    /**
+     * @return Returns the random number generator of the process.
+     */
+    protected Random getRandomiser() {
+        return randomiser;
+    }
+
+    /**
+     * @return Returns the memory reference pattern of the process counter.
+     */
+    protected WorkloadGenerator getPcGenerator() {
+        return pcGenerator;
+    }
+
+    /**
+     * @return Returns the memory reference pattern of the memory pointer.
+     */
+    protected WorkloadGenerator getMpGenerator() {
+        return mpGenerator;
+    }
+
+    /**
+     * @return Returns the name of the process class, or null.
+     */
+    public String getProcessClass() {
+        return processClass;
+    }
+
+    /**
+     * @return Returns how many pages are needed to start this process.
+     */
+    public int getPagesMemoryToStart() {
+        return pagesMemoryToStart;
+    }
+
+    /**
+     * @return Global cycle count at which the current wait is over.
+     */
+    public long getWakeCycle() {
+        return this.lastCycleCount + this.waitCyclesToGo;
+    }
+
+    /**
+     * @return Global cycle count from which on the process can run again
+     *      (its last run is over and so is its wait).
+     */
+    public long getReadyCycle() {
+        return Math.max(this.getWakeCycle(), this.lastRunEndCycle);
+    }
+
+    /**
+     * Lets the process arrive at a given cycle, so it can't run before.
+     *
+     * @param cycle Global cycle count of arrival.
+     */
+    public void setStartCycle(long cycle) {
+        this.lastCycleCount = cycle;
+        this.lastRunEndCycle = cycle;
+    }
+
+    /**
+     * @return Returns the number of the core the process runs on.
+     */
+    public int getCore() {
+        return core;
+    }
+
+    /**
+     * @param core The number of the core the process runs on to set.
+     */
+    public void setCore(int core) {
+        this.core = core;
+    }
+
+    /**
+     * @return Returns the process execution quantum.
+     */
+    public int getQuantum() {
+        return quantum;
+    }
+
+    /**
+     * @param quantum The process execution quantum to set.
+     */
+    public void setQuantum(int quantum) {
+        this.quantum = quantum;
+    }
+
+    /**
+     * @return Returns the scheduler's priority level (0 is highest).
+     */
+    public int getSchedulingLevel() {
+        return schedulingLevel;
+    }
+
+    /**
+     * @param schedulingLevel The scheduler's priority level to set.
+     */
+    public void setSchedulingLevel(int schedulingLevel) {
+        this.schedulingLevel = schedulingLevel;
+    }
+
+    /**
+     * @return Returns the position in the scheduler's heap of blocked
+     *      processes, or -1 if not blocked.
+     */
+    public int getBlockedPosition() {
+        return blockedPosition;
+    }
+
+    /**
+     * @param blockedPosition The position in the heap of blocked processes
+     *      to set (-1 if not blocked).
+     */
+    public void setBlockedPosition(int blockedPosition) {
+        this.blockedPosition = blockedPosition;
+    }
+
     /**
      * @return True if process is done.
      */
@@ -145,6 +363,266 @@ public class Process {
         return pid;
     }
 
+    /**
+     * @return True if the process is swapped out by the memory manager.
+     */
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Swaps the whole process out, handing back all its frames.
+     */
+    public void suspend() {
+        this.suspendedLimit = this.virtualMemory.getResidentLimit();
+        this.waitCyclesToGo += this.virtualMemory.setResidentLimit(0);
+        this.suspended = true;
+        logger.info("Process with PID " + this.pid + " suspended.");
+    }
+
+    /**
+     * Lets a suspended process run again.
+     *
+     * @param limit Number of frames the process may hold.
+     */
+    public void resume(int limit) {
+        this.virtualMemory.setResidentLimit(limit);
+        this.suspended = false;
+        logger.info("Process with PID " + this.pid + " resumed.");
+    }
+
+    /**
+     * @return Number of frames the process held when it was suspended.
+     */
+    public int getSuspendedLimit() {
+        return suspendedLimit;
+    }
+
+    /**
+     * @return Returns the maximum number of frames to be resident.
+     */
+    public int getResidentLimit() {
+        return this.virtualMemory.getResidentLimit();
+    }
+
+    /**
+     * @return Returns the number of frames currently held.
+     */
+    public int getResidentFrames() {
+        return this.virtualMemory.getResidentFrames();
+    }
+
+    /**
+     * Changes the number of frames this process may hold. Writing back pages
+     * evicted for it is added to the process' wait.
+     *
+     * @param limit New maximum number of resident frames.
+     */
+    public void setResidentLimit(int limit) {
+        this.waitCyclesToGo += this.virtualMemory.setResidentLimit(limit);
+    }
+
+    /**
+     * @return Number of pages used since the last sample: those referenced
+     *      in memory, plus those faulted in (which may have been evicted
+     *      again since).
+     */
+    public int sampleWorkingSet() {
+        int faults = this.getPageFaults() - this.workingSetFaults;
+        this.workingSetFaults = this.getPageFaults();
+        return this.virtualMemory.sampleWorkingSet() + faults;
+    }
+
+    /**
+     * @return Page faults per 1000 instructions since the last sample.
+     */
+    public double sampleFaultRate() {
+        int faults = this.getPageFaults() - this.sampledFaults;
+        int instructions = this.totalInstructions - this.sampledInstructions;
+        this.sampledFaults = this.getPageFaults();
+        this.sampledInstructions = this.totalInstructions;
+        if (instructions <= 0) {
+            return 0.0;
+        }
+        return 1000.0 * faults / instructions;
+    }
+
+    /**
+     * Switches to a fresh instance of the page replacement algorithm
+     * configured.
+     */
+    public void resetPageReplacement() {
+        this.virtualMemory.resetPageReplacement();
+    }
+
+    /**
+     * @return Returns the number of page faults.
+     */
+    public int getPageFaults() {
+        return this.virtualMemory.getPageFaults();
+    }
+
+    /**
+     * @return Returns the locality histograms of the process counter, or null
+     *      if not profiling.
+     */
+    public LocalityProfile getPcLocality() {
+        return pcLocality;
+    }
+
+    /**
+     * @return Returns the locality histograms of the memory pointer, or null
+     *      if not profiling.
+     */
+    public LocalityProfile getMpLocality() {
+        return mpLocality;
+    }
+
+    /**
+     * Starts off as a fork of another process, sharing its resident pages
+     * copy-on-write.
+     * 
+     * @param parent Process forked.
+     */
+    public void forkFrom(Process parent) {
+        this.virtualMemory.forkFrom(parent.getVirtualMemory());
+    }
+
+    /**
+     * Lets go of the shared pages still resident, and of the frames on the
+     * NUMA nodes, when done.
+     */
+    public void releaseMemory() {
+        this.virtualMemory.releaseMemory();
+    }
+
+    /**
+     * Lets go of the page table, if kept outside the heap, when done.
+     */
+    public void releasePageTable() {
+        this.virtualMemory.releasePageTable();
+    }
+
+    /**
+     * @return Returns the number of faults on shared pages resident
+     *      elsewhere.
+     */
+    public int getMinorFaults() {
+        return this.virtualMemory.getMinorFaults();
+    }
+
+    /**
+     * @return Returns the number of writes to shared pages.
+     */
+    public int getCowFaults() {
+        return this.virtualMemory.getCowFaults();
+    }
+
+    /**
+     * @return Returns the number of writes to shared pages that copied them.
+     */
+    public int getCowCopies() {
+        return this.virtualMemory.getCowCopies();
+    }
+
+    /**
+     * @return Returns the number of accesses to pages on the local node.
+     */
+    public int getLocalAccesses() {
+        return this.virtualMemory.getLocalAccesses();
+    }
+
+    /**
+     * @return Returns the number of accesses to pages on other nodes.
+     */
+    public int getRemoteAccesses() {
+        return this.virtualMemory.getRemoteAccesses();
+    }
+
+    /**
+     * @return Returns the number of pages migrated between nodes.
+     */
+    public int getMigrations() {
+        return this.virtualMemory.getMigrations();
+    }
+
+    /**
+     * @return Returns the compressed pool, or null if there is none.
+     */
+    public CompressedPool getCompressedPool() {
+        return this.virtualMemory.getCompressedPool();
+    }
+
+    /**
+     * @return Returns the page replacement algorithm in use.
+     */
+    public PageReplacement getPageReplacement() {
+        return this.virtualMemory.getPageReplacement();
+    }
+
+    /**
+     * @return Returns the heat map of the pages, or null if not profiling.
+     */
+    public PageHeatMap getHeatMap() {
+        return this.virtualMemory.getHeatMap();
+    }
+
+    /**
+     * @return Returns the number of TLB lookups.
+     */
+    public int getTlbLookups() {
+        return this.virtualMemory.getTlbLookups();
+    }
+
+    /**
+     * @return Returns the number of TLB lookups that missed.
+     */
+    public int getTlbMisses() {
+        return this.virtualMemory.getTlbMisses();
+    }
+
+    /**
+     * @return Returns the number of faults on pages remembered as evicted.
+     */
+    public int getRefaults() {
+        return this.virtualMemory.getRefaults();
+    }
+
+    /**
+     * @return Returns the histogram of the refault distances.
+     */
+    public long[] getRefaultDistances() {
+        return this.virtualMemory.getRefaultDistances();
+    }
+
+    /**
+     * @return Returns the number of pages read ahead.
+     */
+    public int getPrefetchesIssued() {
+        return this.virtualMemory.getPrefetchesIssued();
+    }
+
+    /**
+     * @return Returns the number of pages read ahead and used.
+     */
+    public int getPrefetchHits() {
+        return this.virtualMemory.getPrefetchHits();
+    }
+
+    /**
+     * @return Returns the number of pages read ahead and evicted unused.
+     */
+    public int getPrefetchesWasted() {
+        return this.virtualMemory.getPrefetchesWasted();
+    }
+
+    /**
+     * @return Returns the number of evictions caused by reading ahead.
+     */
+    public int getPrefetchEvictions() {
+        return this.virtualMemory.getPrefetchEvictions();
+    }
+
     /**
      * @return Returns the number of free pages returned.
      */
@@ -177,32 +655,33 @@ public class Process {
         if (!this.stoppedWaiting) {
             // Get next mem references of process counter (PC)
             // and memory pointer (MP).
-            double oldMP = this.currentMP;
-            this.currentPC = this.mySimulation.newPClocation(this.currentPC);
-            this.currentMP = this.mySimulation.newMPlocation(this.currentMP);
+            int oldMP = this.currentMP;
+            int pages = this.virtualMemory.getPageCount();
+            this.currentPC = this.pcGenerator.nextPage(this.randomiser, pages);
+            this.currentMP = this.mpGenerator.nextPage(this.randomiser, pages);
+            this.recordReferences(this.currentPC, this.currentMP);
         
             // Free the old page after move of more than 10%?
-            if ((Math.abs(oldMP) - this.currentMP > 0.1)
-                    && (this.mySimulation.askFreePage())) {
-                this.virtualMemory.freePage(this._relativeToPage(oldMP));
+            if ((10 * (oldMP - this.currentMP) > pages)
+                    && (this.mySimulation.askFreePage(this.randomiser))) {
+                this.virtualMemory.freePage(oldMP);
                 freePageCycles = 5;
             }
             
             // Load memory addresses.
-            loadCycles = this.virtualMemory.accessPage(this._relativeToPage(this.currentPC));
-            loadCycles += this.virtualMemory.accessPage(this._relativeToPage(this.currentMP));
+            loadCycles = this.virtualMemory.accessPage(this.currentPC);
+            loadCycles += this.virtualMemory.accessPage(this.currentMP);
             
             if (loadCycles >= 500) {
                 // Too bad, need to wait now. Yield to other processes.
-                this.waitCyclesToGo += loadCycles;
-                this.totalWaits += loadCycles;
+                this.addWait(loadCycles);
                 return this.mySimulation.getCpuCyclesPerDiskRequest();
             }
         }
         
         this.stoppedWaiting = false;
         return loadCycles + freePageCycles
-                + this.mySimulation.getCpuCyclesProcessing();
+                + this.mySimulation.getCpuCyclesProcessing(this.randomiser);
     }
 
     /**
@@ -212,14 +691,12 @@ public class Process {
      */
     private int _loadProcess() {
         if (this.loadCount < this.pagesMemoryToStart) {
-            this.logger.fine("PID " + this.pid + ": Loaded page " + this.loadCount);
-            this.waitCyclesToGo += this.virtualMemory.accessPage(this.loadCount);
+            logger.fine("PID " + this.pid + ": Loaded page " + this.loadCount);
+            this.addLoadWait(this.virtualMemory.accessPage(this.loadCount));
             this.loadCount++;
         } else {
-            this.currentPC = this.mySimulation.newPClocation(0);
-            this.currentMP = this.mySimulation.newMPlocation(0);
             this.loaded = true;
-            this.logger.fine("PID " + this.pid + ": Finished loading");
+            logger.fine("PID " + this.pid + ": Finished loading");
         }
         return this.mySimulation.getCpuCyclesPerDiskRequest();
     }
@@ -231,7 +708,7 @@ public class Process {
      * @param relativeReference Relative address within VM.
      * @return Page number.
      */
-    private int _relativeToPage(double relativeReference) {
+    protected int relativeToPage(double relativeReference) {
         if (relativeReference < 1.0) {
             return (int)(this.virtualMemory.getVirtualSize() * relativeReference
                     / this.virtualMemory.getPageSize());
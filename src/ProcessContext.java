@@ -0,0 +1,97 @@
+/*
+ * ProcessContext.java
+ *
+ * What a process written as straight-line code can do.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.Random;
+
+/**
+ * What a process written as straight-line code (see {@link ThreadedProcess})
+ * can do. Accessing and freeing pages happen at the current cycle and use up
+ * no CPU cycles themselves; the code decides how to spend the cycles waited
+ * (see {@link Process#runSlice(long)}). Loading, computing and waiting use
+ * up CPU cycles, and may block until the process is scheduled again: when
+ * its quantum is used up, or when it has to wait for the disk.
+ */
+public interface ProcessContext {
+    /**
+     * Loads one of the pages the process starts with: the process waits for
+     * it (not counted in its total waits), and one disk request is spent on
+     * the CPU.
+     *
+     * @param pageNumber Virtual page number.
+     */
+    void load(int pageNumber);
+
+    /**
+     * Accesses a page.
+     *
+     * @param pageNumber Virtual page number.
+     * @return Number of cycles to wait for the page.
+     */
+    int access(int pageNumber);
+
+    /**
+     * Frees a page.
+     *
+     * @param pageNumber Virtual page number.
+     */
+    void free(int pageNumber);
+
+    /**
+     * Processes for a number of CPU cycles.
+     *
+     * @param cycles Number of cycles.
+     */
+    void compute(int cycles);
+
+    /**
+     * Blocks the process on the disk (if 500 cycles or more, shorter waits
+     * only hold it up when it is scheduled next), and spends one disk request
+     * on the CPU.
+     *
+     * @param cycles Number of cycles to wait.
+     */
+    void waitFor(int cycles);
+
+    /**
+     * @return True the first time asked after the process has been
+     *      scheduled again, for the code to finish the processing it was
+     *      interrupted in.
+     */
+    boolean hasResumed();
+
+    /**
+     * @return Current size of the virtual address space in pages.
+     */
+    int getPageCount();
+
+    /**
+     * Converts a relative address within the virtual address space to the
+     * page number.
+     *
+     * @param relativeReference Relative address within VM.
+     * @return Page number.
+     */
+    int relativeToPage(double relativeReference);
+
+    /**
+     * @return Returns the simulation.
+     */
+    Simulation getSimulation();
+
+    /**
+     * @return Returns the random number generator of the process.
+     */
+    Random getRandomiser();
+}
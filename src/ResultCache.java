@@ -0,0 +1,345 @@
+/*
+ * ResultCache.java
+ *
+ * Results of simulations run before, by what they were run with.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Logger;
+
+/**
+ * Results of simulations run before, in a directory, one file each. A file is
+ * named by a SHA-256 hash of everything the results depend on: the
+ * configuration (with the seed), the page replacement algorithm and the
+ * simulator itself, by a digest of its compiled classes (see
+ * {@link #codeVersion()}), so any change to the code makes new keys. A
+ * seeded simulation with the same configuration comes to the same results,
+ * so there is no need to run it again.
+ *
+ * Once the files take up more than the space given, the ones used least
+ * recently (by their modification time, which is updated on use) are
+ * removed.
+ */
+public class ResultCache {
+    private static Logger logger = Logger.getLogger("simulation");
+    private static String codeVersion = null;
+    private static boolean codeVersionKnown = false;
+
+    private File directory;
+    private long maxBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param directory Name of the directory of the cache.
+     * @param maxBytes Space the cache may take up in bytes.
+     */
+    public ResultCache(String directory, long maxBytes) {
+        this.directory = new File(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Makes the key of a result. Settings that don't change the results
+     * (checkpoints and the cache itself) aren't part of it.
+     *
+     * @param configuration Configuration of the simulation.
+     * @param parts Anything else the result depends on.
+     * @return Key (hex encoded SHA-256 hash).
+     */
+    public static String key(Properties configuration, String... parts) {
+        Map<String, String> sorted = new TreeMap<String, String>();
+        for (String name : configuration.stringPropertyNames()) {
+            if (!name.startsWith("checkpoint") && !name.startsWith("resultCache")) {
+                sorted.put(name, configuration.getProperty(name).trim());
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            text.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        for (String part : parts) {
+            text.append('\0').append(part);
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.toString().getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder();
+            for (byte b : hash) {
+                key.append(String.format("%02x", b & 0xff));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No SHA-256.", e);
+        } catch (IOException e) {
+            throw new IllegalStateException("No UTF-8.", e);
+        }
+    }
+
+    /**
+     * Version of the simulator as built: a hash of all its compiled classes
+     * (the class files under the directory, or in the jar, the simulator is
+     * loaded from, by name), worked out once.
+     *
+     * @return Version (hex encoded SHA-256 hash), or null if the classes
+     *      can't be found or read.
+     */
+    public static synchronized String codeVersion() {
+        if (!codeVersionKnown) {
+            codeVersionKnown = true;
+            try {
+                codeVersion = _hashClasses();
+            } catch (IOException e) {
+                logger.warning("Could not hash the classes of the simulator: " + e.getMessage());
+            }
+        }
+        return codeVersion;
+    }
+
+    /**
+     * Looks up a result, and marks it as used.
+     *
+     * @param key Key of the result.
+     * @return Result, or null if it isn't in the cache.
+     */
+    public String get(String key) {
+        File file = new File(this.directory, key + ".txt");
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                ByteArrayOutputStream text = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int length = in.read(buffer);
+                while (length >= 0) {
+                    text.write(buffer, 0, length);
+                    length = in.read(buffer);
+                }
+                file.setLastModified(System.currentTimeMillis());
+                return text.toString("UTF-8");
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.warning("Could not read cached result " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Adds a result, and makes room for it if need be.
+     *
+     * @param key Key of the result.
+     * @param result Result.
+     */
+    public void put(String key, String result) {
+        File file = new File(this.directory, key + ".txt");
+        try {
+            if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+                throw new IOException("Could not make directory " + this.directory);
+            }
+            // Written aside first, so nobody reads half a result.
+            File temporary = File.createTempFile(key, ".tmp", this.directory);
+            OutputStream out = new FileOutputStream(temporary);
+            try {
+                out.write(result.getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+            if (!temporary.renameTo(file)) {
+                file.delete();
+                if (!temporary.renameTo(file)) {
+                    temporary.delete();
+                    throw new IOException("Could not rename " + temporary);
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Could not cache result " + file + ": " + e.getMessage());
+            return;
+        }
+        this._evict();
+    }
+
+    /**
+     * @return Hex encoded SHA-256 hash of the names and contents of the
+     *      class files of the simulator.
+     * @throws IOException If they can't be found or read.
+     */
+    private static String _hashClasses() throws IOException {
+        CodeSource source = ResultCache.class.getProtectionDomain().getCodeSource();
+        URL location = (source == null) ? null : source.getLocation();
+        if (location == null) {
+            throw new IOException("Unknown location.");
+        }
+        File file;
+        try {
+            file = new File(location.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Bad location " + location);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Not a file: " + location);
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No SHA-256.", e);
+        }
+        // By name, so the order the files are listed in doesn't matter.
+        int classes = 0;
+        if (file.isDirectory()) {
+            Map<String, File> classFiles = new TreeMap<String, File>();
+            _findClasses(file, "", classFiles);
+            for (Map.Entry<String, File> entry : classFiles.entrySet()) {
+                InputStream in = new FileInputStream(entry.getValue());
+                try {
+                    _hashClass(digest, entry.getKey(), in);
+                } finally {
+                    in.close();
+                }
+            }
+            classes = classFiles.size();
+        } else {
+            JarFile jar = new JarFile(file);
+            try {
+                Map<String, JarEntry> entries = new TreeMap<String, JarEntry>();
+                Enumeration<JarEntry> all = jar.entries();
+                while (all.hasMoreElements()) {
+                    JarEntry entry = all.nextElement();
+                    if (entry.getName().endsWith(".class")) {
+                        entries.put(entry.getName(), entry);
+                    }
+                }
+                for (Map.Entry<String, JarEntry> entry : entries.entrySet()) {
+                    InputStream in = jar.getInputStream(entry.getValue());
+                    try {
+                        _hashClass(digest, entry.getKey(), in);
+                    } finally {
+                        in.close();
+                    }
+                }
+                classes = entries.size();
+            } finally {
+                jar.close();
+            }
+        }
+        if (classes == 0) {
+            throw new IOException("No classes in " + file);
+        }
+        StringBuilder version = new StringBuilder();
+        for (byte b : digest.digest()) {
+            version.append(String.format("%02x", b & 0xff));
+        }
+        return version.toString();
+    }
+
+    /**
+     * Collects the class files under a directory.
+     *
+     * @param directory Directory to look in.
+     * @param prefix Path of the directory, relative to the top one.
+     * @param classFiles Class files found, by relative path.
+     */
+    private static void _findClasses(File directory, String prefix, Map<String, File> classFiles) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = prefix + file.getName();
+            if (file.isDirectory()) {
+                _findClasses(file, name + "/", classFiles);
+            } else if (name.endsWith(".class")) {
+                classFiles.put(name, file);
+            }
+        }
+    }
+
+    /**
+     * Adds a class file to a hash.
+     *
+     * @param digest Hash to add to.
+     * @param name Name of the class file.
+     * @param in Contents of the class file.
+     * @throws IOException If the contents can't be read.
+     */
+    private static void _hashClass(MessageDigest digest, String name, InputStream in) throws IOException {
+        digest.update(name.getBytes("UTF-8"));
+        digest.update((byte)0);
+        byte[] buffer = new byte[8192];
+        int length = in.read(buffer);
+        while (length >= 0) {
+            digest.update(buffer, 0, length);
+            length = in.read(buffer);
+        }
+        digest.update((byte)0);
+    }
+
+    /**
+     * Removes the results used least recently, until the cache fits into
+     * its space.
+     */
+    private void _evict() {
+        File[] files = this.directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= this.maxBytes) {
+            return;
+        }
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            // Read once, so the order doesn't change while sorting.
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.valueOf(lastModified[a]).compareTo(lastModified[b]);
+            }
+        });
+        for (int i = 0; (i < order.length) && (total > this.maxBytes); i++) {
+            File file = files[order[i]];
+            if (file.getName().endsWith(".txt")) {
+                long length = file.length();
+                if (file.delete()) {
+                    total -= length;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * RoundRobinScheduler.java
+ *
+ * Round robin CPU scheduler.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.ArrayDeque;
+
+/**
+ * Round robin CPU scheduler: one FIFO ready queue, every process runs for
+ * the configured quantum (or until it has to wait).
+ */
+public class RoundRobinScheduler extends Scheduler {
+    private static final long serialVersionUID = 1L;
+
+    private ArrayDeque<Process> readyProcesses = new ArrayDeque<Process>();
+
+    /**
+     * Constructor.
+     *
+     * @param aSimulation A simulation object containing the parameters.
+     */
+    public RoundRobinScheduler(Simulation aSimulation) {
+        super(aSimulation);
+    }
+
+    public void addReady(Process aProcess) {
+        this.readyProcesses.addLast(aProcess);
+    }
+
+    public Process nextReady() {
+        return this.readyProcesses.pollFirst();
+    }
+
+    public Process stealReady() {
+        return this.readyProcesses.pollLast();
+    }
+
+    public int getReadyCount() {
+        return this.readyProcesses.size();
+    }
+
+    protected boolean removeReady(Process aProcess) {
+        return this.readyProcesses.remove(aProcess);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Scheduler.java
+ *
+ * Abstract class as a base to implement CPU schedulers.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Abstract class as a base to implement CPU schedulers.
+ *
+ * Implementations keep the queue(s) of processes ready to run. Processes
+ * waiting for memory or I/O are kept here, ordered by the cycle their wait is
+ * over (then by PID), and are handed to the ready queue(s) once it is.
+ *
+ * The blocked processes are in a binary heap, every process knowing its
+ * position in it. So the next one to wake up is found in constant time, and
+ * blocking, waking, removing and moving a process whose wait has changed
+ * take O(log n), not a scan. (A timing wheel would be O(1), but can neither
+ * tell the next wake-up cycle when the clock skips ahead, nor keep the exact
+ * wake-up order the results depend on.)
+ */
+public abstract class Scheduler implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    protected Simulation mySimulation;
+    private Process[] blockedProcesses = new Process[16];
+    private int blockedCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param aSimulation A simulation object containing the parameters.
+     */
+    public Scheduler(Simulation aSimulation) {
+        this.mySimulation = aSimulation;
+    }
+
+    /**
+     * Adds a process to the ready queue(s).
+     *
+     * @param aProcess Process ready to run.
+     */
+    public abstract void addReady(Process aProcess);
+
+    /**
+     * Takes the next process to run off the ready queue(s).
+     *
+     * @return Process to run, or null if none is ready.
+     */
+    public abstract Process nextReady();
+
+    /**
+     * Takes a process off the ready queue(s) for another core to run, the
+     * one that would run last here.
+     *
+     * @return Process to run elsewhere, or null if none is ready.
+     */
+    public abstract Process stealReady();
+
+    /**
+     * @return Number of processes ready to run.
+     */
+    public abstract int getReadyCount();
+
+    /**
+     * Removes a process from the ready queue(s).
+     *
+     * @param aProcess Process to remove.
+     * @return True if the process was queued.
+     */
+    protected abstract boolean removeReady(Process aProcess);
+
+    /**
+     * @param aProcess Process about to run.
+     * @return Execution quantum to give the process.
+     */
+    public int getQuantum(Process aProcess) {
+        return this.mySimulation.getQuantum();
+    }
+
+    /**
+     * Notifies the scheduler that a process has run, before it is either
+     * queued again or blocked.
+     *
+     * @param aProcess Process that has run.
+     * @param cyclesUsed Cycles the process has used.
+     * @param currentCycle Current global cycle count.
+     */
+    public void processRan(Process aProcess, int cyclesUsed, long currentCycle) {
+    }
+
+    /**
+     * Puts a waiting process aside until its wait is over.
+     *
+     * @param aProcess Process waiting for memory or I/O.
+     */
+    public void block(Process aProcess) {
+        if (this.blockedCount == this.blockedProcesses.length) {
+            this.blockedProcesses = Arrays.copyOf(this.blockedProcesses, 2 * this.blockedCount);
+        }
+        this.blockedProcesses[this.blockedCount] = aProcess;
+        aProcess.setBlockedPosition(this.blockedCount);
+        this.blockedCount++;
+        this._siftUp(this.blockedCount - 1);
+    }
+
+    /**
+     * Moves a blocked process to its place again after its wait has changed
+     * (e. g. by writing back pages as its resident set shrinks). Does
+     * nothing if it isn't blocked.
+     *
+     * @param aProcess Process whose wake-up cycle has changed.
+     */
+    public void wakeCycleChanged(Process aProcess) {
+        int position = aProcess.getBlockedPosition();
+        if (position >= 0) {
+            this._siftDown(this._siftUp(position));
+        }
+    }
+
+    /**
+     * Moves all processes whose wait is over to the ready queue(s).
+     *
+     * @param currentCycle Current global cycle count.
+     */
+    public void wakeUp(long currentCycle) {
+        while ((this.blockedCount > 0)
+                && (this.blockedProcesses[0].getWakeCycle() <= currentCycle)) {
+            Process aProcess = this.blockedProcesses[0];
+            this._removeBlocked(0);
+            this.addReady(aProcess);
+        }
+    }
+
+    /**
+     * Takes the blocked process waking up first off the queue for another
+     * core to run, if its wait is over by that core's clock.
+     *
+     * @param currentCycle Clock of the other core.
+     * @return Process to run elsewhere, or null if none is done waiting.
+     */
+    public Process stealWoken(long currentCycle) {
+        if ((this.blockedCount == 0)
+                || (this.blockedProcesses[0].getWakeCycle() > currentCycle)) {
+            return null;
+        }
+        Process aProcess = this.blockedProcesses[0];
+        this._removeBlocked(0);
+        return aProcess;
+    }
+
+    /**
+     * @return Cycle the next blocked process wakes up, or Long.MAX_VALUE if
+     *      none is blocked.
+     */
+    public long getNextWakeCycle() {
+        if (this.blockedCount == 0) {
+            return Long.MAX_VALUE;
+        }
+        return this.blockedProcesses[0].getWakeCycle();
+    }
+
+    /**
+     * @return Number of processes blocked.
+     */
+    public int getBlockedCount() {
+        return this.blockedCount;
+    }
+
+    /**
+     * Removes a process from the scheduler altogether (e. g. when it is
+     * swapped out). Taking a blocked process out is O(log n), taking a ready
+     * one out may be linear in the number of ready processes, so only for
+     * rare events.
+     *
+     * @param aProcess Process to remove.
+     */
+    public void remove(Process aProcess) {
+        if (aProcess.getBlockedPosition() >= 0) {
+            this._removeBlocked(aProcess.getBlockedPosition());
+        } else {
+            this.removeReady(aProcess);
+        }
+    }
+
+    /**
+     * @return All blocked processes, in no particular order.
+     */
+    protected Iterable<Process> getBlockedProcesses() {
+        List<Process> blocked = Arrays.asList(this.blockedProcesses);
+        return blocked.subList(0, this.blockedCount);
+    }
+
+    /**
+     * @param position Position in the heap of the process to take out.
+     */
+    private void _removeBlocked(int position) {
+        this.blockedProcesses[position].setBlockedPosition(-1);
+        this.blockedCount--;
+        if (position < this.blockedCount) {
+            this._place(this.blockedProcesses[this.blockedCount], position);
+            this._siftDown(this._siftUp(position));
+        }
+        this.blockedProcesses[this.blockedCount] = null;
+    }
+
+    /**
+     * @param position Position of a process in the heap.
+     * @return Position it has moved up to.
+     */
+    private int _siftUp(int position) {
+        Process aProcess = this.blockedProcesses[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!_wakesEarlier(aProcess, this.blockedProcesses[parent])) {
+                break;
+            }
+            this._place(this.blockedProcesses[parent], position);
+            position = parent;
+        }
+        this._place(aProcess, position);
+        return position;
+    }
+
+    /**
+     * @param position Position of a process in the heap.
+     */
+    private void _siftDown(int position) {
+        Process aProcess = this.blockedProcesses[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= this.blockedCount) {
+                break;
+            }
+            if ((child + 1 < this.blockedCount)
+                    && _wakesEarlier(this.blockedProcesses[child + 1], this.blockedProcesses[child])) {
+                child++;
+            }
+            if (!_wakesEarlier(this.blockedProcesses[child], aProcess)) {
+                break;
+            }
+            this._place(this.blockedProcesses[child], position);
+            position = child;
+        }
+        this._place(aProcess, position);
+    }
+
+    /**
+     * @param aProcess Process to put into the heap.
+     * @param position Position to put it at.
+     */
+    private void _place(Process aProcess, int position) {
+        this.blockedProcesses[position] = aProcess;
+        aProcess.setBlockedPosition(position);
+    }
+
+    /**
+     * @param one A process.
+     * @param other Another process.
+     * @return True if the one wakes up before the other (by cycle, then by
+     *      PID).
+     */
+    private static boolean _wakesEarlier(Process one, Process other) {
+        long oneCycle = one.getWakeCycle();
+        long otherCycle = other.getWakeCycle();
+        if (oneCycle != otherCycle) {
+            return oneCycle < otherCycle;
+        }
+        return one.getPid() < other.getPid();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * SequentialWorkload.java
+ *
+ * References running through pages in order: loops and scans.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.Random;
+
+/**
+ * References running through pages in order, with a given stride. A loop
+ * goes round the same pages over and over (LRU's worst case, if there are
+ * more of them than frames). A scan never comes back, touching every page
+ * just once.
+ */
+public class SequentialWorkload extends WorkloadGenerator {
+    private static final long serialVersionUID = 1L;
+
+    private int firstPage;
+    private int numberPages;
+    private int stride;
+    private int position = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param firstPage Page number to start at.
+     * @param numberPages Number of pages to go round for a loop, or 0 for a
+     *      scan.
+     * @param stride Pages to move on per reference.
+     */
+    public SequentialWorkload(int firstPage, int numberPages, int stride) {
+        if ((numberPages < 0) || (stride < 1)) {
+            throw new IllegalArgumentException("A loop needs a positive stride"
+                                               + " and number of pages.");
+        }
+        this.firstPage = firstPage;
+        this.numberPages = numberPages;
+        this.stride = stride;
+    }
+
+    public int nextPage(Random randomiser, int pages) {
+        int page = this.firstPage + this.position;
+        this.position += this.stride;
+        if ((this.numberPages > 0) && (this.position >= this.numberPages)) {
+            this.position -= this.numberPages;
+        }
+        return page;
+    }
+}
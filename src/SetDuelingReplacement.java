@@ -0,0 +1,240 @@
+/*
+ * SetDuelingReplacement.java
+ *
+ * Picks the best of several page replacement algorithms as it goes.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks the best of several page replacement algorithms as it goes, after
+ * the dynamic insertion policy of M. Qureshi et al. ("Adaptive insertion
+ * policies for high performance caching", 2007). Every candidate algorithm
+ * also runs on a sample of the pages, on the side (see
+ * {@link DuelingShadow}), and its faults there are counted against it in a
+ * saturating counter (all counters are halved when one saturates, so old
+ * faults fade). All real faults are served by the candidate with the fewest
+ * faults counted.
+ *
+ * Leader sets, as in set dueling for caches, don't work for pages: a set of
+ * a cache is replaced within itself, but the page a leader picks may belong
+ * to any set, so its faults would tell more about the others than about
+ * itself. The shadows are self-contained.
+ *
+ * All candidates see every page come and go, so each one is up to date
+ * whenever it takes over. Every PHASE_FAULTS faults start a new phase, and
+ * the faults served by every candidate, and the faults of every shadow, are
+ * counted per phase.
+ */
+public class SetDuelingReplacement extends PageReplacement {
+    private static final long serialVersionUID = 1L;
+    private static final int COUNTER_MAX = 1023;
+
+    /** Number of faults per phase. */
+    public static final int PHASE_FAULTS = 4096;
+
+    private PageReplacement[] candidates;
+    private DuelingShadow[] shadows;
+    private int[] faultCounters;
+    private int winner = 0;
+    private int faults = 0;
+    private int residentFrames = 0;
+    private List<long[]> phases = new ArrayList<long[]>();
+
+    /**
+     * Constructor.
+     *
+     * @param pageTable Page table used for address translation.
+     * @param memoryFrames Usage status of "physical" memory frames
+     *      (true = used, false = free).
+     * @param candidates Page replacement algorithms to pick from, on the same
+     *      page table.
+     * @param shadows The same algorithms on a sample of the pages, in the
+     *      same order.
+     */
+    public SetDuelingReplacement(List<PageTableEntry> pageTable,
+                                 boolean[] memoryFrames,
+                                 PageReplacement[] candidates,
+                                 DuelingShadow[] shadows) {
+        super(pageTable, memoryFrames);
+        if ((candidates.length < 2) || (candidates.length != shadows.length)) {
+            throw new IllegalArgumentException("Set dueling takes 2 or more page"
+                                               + " replacement algorithms, with a shadow each.");
+        }
+        this.candidates = candidates;
+        this.shadows = shadows;
+        this.faultCounters = new int[candidates.length];
+        for (int page = 0; page < pageTable.size(); page++) {
+            if (pageTable.get(page).isValid()) {
+                this.residentFrames++;
+            }
+        }
+    }
+
+    /**
+     * @return True if any candidate picks from a victim index.
+     */
+    public boolean usesVictimIndex() {
+        for (PageReplacement candidate : this.candidates) {
+            if (candidate.usesVictimIndex()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param victims Index of the frames, handed on to the candidates.
+     */
+    public void setVictimIndex(VictimIndex victims) {
+        super.setVictimIndex(victims);
+        for (PageReplacement candidate : this.candidates) {
+            candidate.setVictimIndex(victims);
+        }
+    }
+
+    /**
+     * @return True, the shadows are fed every access to the pages sampled.
+     */
+    public boolean tracksAccesses() {
+        return true;
+    }
+
+    /**
+     * Asks the winner for the page to return.
+     *
+     * @return Page number.
+     */
+    public int getTargetPage() {
+        return this.candidates[this.winner].getTargetPage();
+    }
+
+    /**
+     * Counts a fault as served by the winner.
+     *
+     * @param pageNumber Virtual page number faulting.
+     */
+    public void pageFaulted(int pageNumber) {
+        this.faults++;
+        this._phase()[this.winner]++;
+        for (PageReplacement candidate : this.candidates) {
+            candidate.pageFaulted(pageNumber);
+        }
+    }
+
+    /**
+     * Feeds an access to a page sampled to the shadows, counting their
+     * faults against their candidates.
+     *
+     * @param pageNumber Virtual page number.
+     * @param written True if the page was written to.
+     */
+    public void pageAccessed(int pageNumber, boolean written) {
+        if (!DuelingShadow.isSampled(pageNumber)) {
+            return;
+        }
+        long[] phase = this._phase();
+        for (int i = 0; i < this.shadows.length; i++) {
+            if (this.shadows[i].reference(pageNumber, written, this.residentFrames)) {
+                phase[this.candidates.length + i]++;
+                this._countFault(i);
+            }
+        }
+    }
+
+    /**
+     * @param pageNumber Virtual page number.
+     */
+    public void pageMapped(int pageNumber) {
+        this.residentFrames++;
+        for (PageReplacement candidate : this.candidates) {
+            candidate.pageMapped(pageNumber);
+        }
+    }
+
+    /**
+     * Freed pages are kept by the candidates, so not here. The shadows drop
+     * them.
+     *
+     * @param pageNumber Virtual page number.
+     * @param freed True if freed, false if evicted.
+     */
+    public void pageUnmapped(int pageNumber, boolean freed) {
+        this.residentFrames--;
+        for (PageReplacement candidate : this.candidates) {
+            candidate.pageUnmapped(pageNumber, freed);
+        }
+        if (freed && DuelingShadow.isSampled(pageNumber)) {
+            for (DuelingShadow shadow : this.shadows) {
+                shadow.free(pageNumber);
+            }
+        }
+    }
+
+    /**
+     * @param pageNumber Virtual page number.
+     * @param distance Number of evictions since the page was evicted.
+     */
+    public void pageRefaulted(int pageNumber, int distance) {
+        for (PageReplacement candidate : this.candidates) {
+            candidate.pageRefaulted(pageNumber, distance);
+        }
+    }
+
+    /**
+     * @return Returns the names of the candidates.
+     */
+    public String[] getCandidateNames() {
+        String[] names = new String[this.candidates.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = this.candidates[i].getClass().getName();
+        }
+        return names;
+    }
+
+    /**
+     * @return Returns the faults per phase: faults served by every
+     *      candidate, then the faults of the shadow of every candidate.
+     */
+    public List<long[]> getPhases() {
+        return this.phases;
+    }
+
+    /**
+     * @return Counts of the current phase, of a new one every PHASE_FAULTS
+     *      faults.
+     */
+    private long[] _phase() {
+        if (this.phases.isEmpty() || (this.faults > PHASE_FAULTS * this.phases.size())) {
+            this.phases.add(new long[2 * this.candidates.length]);
+        }
+        return this.phases.get(this.phases.size() - 1);
+    }
+
+    /**
+     * @param candidate Candidate whose shadow has faulted.
+     */
+    private void _countFault(int candidate) {
+        this.faultCounters[candidate]++;
+        if (this.faultCounters[candidate] > COUNTER_MAX) {
+            for (int i = 0; i < this.faultCounters.length; i++) {
+                this.faultCounters[i] >>= 1;
+            }
+        }
+        for (int i = 0; i < this.faultCounters.length; i++) {
+            if (this.faultCounters[i] < this.faultCounters[this.winner]) {
+                this.winner = i;
+            }
+        }
+    }
+}
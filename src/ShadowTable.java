@@ -0,0 +1,103 @@
+/*
+ * ShadowTable.java
+ *
+ * Remembers when pages were evicted, in a bounded amount of memory.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Remembers when pages were evicted ("shadow entries", as the working set
+ * detection of Linux keeps them in place of evicted pages), in a bounded
+ * amount of memory. A page's entry is the eviction count at the time.
+ *
+ * The table is set associative: a page hashes to a set of 8 entries, and a
+ * new entry in a full set takes the place of the oldest one. So every
+ * operation looks at 8 entries at most, and no memory is taken beyond the
+ * two arrays.
+ */
+public class ShadowTable implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int WAYS = 8;
+
+    private int[] pages;
+    private int[] stamps;
+    private int setMask;
+
+    /**
+     * Constructor.
+     *
+     * @param entries Number of entries (rounded up to a power of 2, at
+     *      least 8).
+     */
+    public ShadowTable(int entries) {
+        int sets = 1;
+        while (sets * WAYS < entries) {
+            sets <<= 1;
+        }
+        this.setMask = sets - 1;
+        this.pages = new int[sets * WAYS];
+        this.stamps = new int[sets * WAYS];
+        Arrays.fill(this.pages, -1);
+    }
+
+    /**
+     * Remembers the eviction of a page.
+     *
+     * @param pageNumber Virtual page number.
+     * @param stamp Eviction count.
+     */
+    public void put(int pageNumber, int stamp) {
+        int start = this._set(pageNumber);
+        int oldest = start;
+        for (int i = start; i < start + WAYS; i++) {
+            if ((this.pages[i] == pageNumber) || (this.pages[i] < 0)) {
+                oldest = i;
+                break;
+            }
+            if (this.stamps[i] < this.stamps[oldest]) {
+                oldest = i;
+            }
+        }
+        this.pages[oldest] = pageNumber;
+        this.stamps[oldest] = stamp;
+    }
+
+    /**
+     * Forgets the eviction of a page.
+     *
+     * @param pageNumber Virtual page number.
+     * @return Eviction count when the page was evicted, or -1 if it isn't
+     *      remembered.
+     */
+    public int remove(int pageNumber) {
+        int start = this._set(pageNumber);
+        for (int i = start; i < start + WAYS; i++) {
+            if (this.pages[i] == pageNumber) {
+                this.pages[i] = -1;
+                return this.stamps[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param pageNumber Virtual page number.
+     * @return Index of the first entry of the set of the page.
+     */
+    private int _set(int pageNumber) {
+        // Multiplicative hashing, so neighbouring pages spread over the sets.
+        int hash = pageNumber * 0x9e3779b9;
+        return ((hash ^ (hash >>> 16)) & this.setMask) * WAYS;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * SharedMemory.java
+ *
+ * Reference counts of the pages mapped into several address spaces.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference counts of the pages mapped into several address spaces: code
+ * pages shared by all processes of a class, and pages shared copy-on-write
+ * between a forked process and its parent. A shared page is known by a key
+ * (see {@link #codeKey(int, int)} and {@link #anonymousKey(int, int)}), and
+ * counted once for every address space it's resident in. So a page resident
+ * anywhere faults into another address space without going to disk, and the
+ * frames saved by sharing are the mappings less the pages mapped.
+ *
+ * When the cores are simulated in parallel windows, the counts must not
+ * change under them. Instead, every core notes down its own changes during
+ * the window, seeing them on top of the counts, and the notes are added to
+ * the counts between windows.
+ */
+public class SharedMemory implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Map<Long, int[]> counts = new HashMap<Long, int[]>();
+    private List<Map<Long, int[]>> deferred = null;
+    private long mappings = 0;
+
+    /**
+     * @param image Code image (process class) number.
+     * @param pageNumber Virtual page number.
+     * @return Key of a code page shared by all processes of the image.
+     */
+    public static long codeKey(int image, int pageNumber) {
+        return ((long)-(image + 1) << 32) | (pageNumber & 0xffffffffL);
+    }
+
+    /**
+     * @param pid Process ID of the process the page was made by.
+     * @param pageNumber Virtual page number.
+     * @return Key of a page shared copy-on-write with processes forked.
+     */
+    public static long anonymousKey(int pid, int pageNumber) {
+        return ((long)pid << 32) | (pageNumber & 0xffffffffL);
+    }
+
+    /**
+     * Switches to noting down changes per core, to be added by
+     * {@link #resolveDeferred()}.
+     *
+     * @param cores Number of cores.
+     */
+    public void deferChanges(int cores) {
+        this.deferred = new ArrayList<Map<Long, int[]>>();
+        for (int i = 0; i < cores; i++) {
+            this.deferred.add(new HashMap<Long, int[]>());
+        }
+    }
+
+    /**
+     * @param core Core asking, or -1 if not asked from within a window.
+     * @param key Key of a shared page.
+     * @return Number of address spaces the page is resident in.
+     */
+    public int getCount(int core, long key) {
+        int count = _get(this.counts, key);
+        if ((this.deferred != null) && (core >= 0)) {
+            count += _get(this.deferred.get(core), key);
+        }
+        return count;
+    }
+
+    /**
+     * Counts a shared page coming into an address space.
+     *
+     * @param core Core the address space is run on, or -1 if not within a
+     *      window.
+     * @param key Key of the shared page.
+     */
+    public void map(int core, long key) {
+        this._change(core, key, 1);
+    }
+
+    /**
+     * Counts a shared page leaving an address space.
+     *
+     * @param core Core the address space is run on, or -1 if not within a
+     *      window.
+     * @param key Key of the shared page.
+     */
+    public void unmap(int core, long key) {
+        this._change(core, key, -1);
+    }
+
+    /**
+     * Adds the changes noted down since the last call to the counts.
+     */
+    public void resolveDeferred() {
+        for (Map<Long, int[]> changes : this.deferred) {
+            for (Map.Entry<Long, int[]> change : changes.entrySet()) {
+                this._apply(change.getKey(), change.getValue()[0]);
+            }
+            changes.clear();
+        }
+    }
+
+    /**
+     * @return Returns the number of mappings of shared pages.
+     */
+    public long getMappings() {
+        return mappings;
+    }
+
+    /**
+     * @return Returns the number of shared pages resident anywhere.
+     */
+    public int getPages() {
+        return this.counts.size();
+    }
+
+    /**
+     * @return Returns the number of frames saved by sharing.
+     */
+    public long getFramesSaved() {
+        return this.mappings - this.counts.size();
+    }
+
+    /**
+     * @param core Core, or -1.
+     * @param key Key of a shared page.
+     * @param delta Change of the count.
+     */
+    private void _change(int core, long key, int delta) {
+        if ((this.deferred == null) || (core < 0)) {
+            this._apply(key, delta);
+            return;
+        }
+        Map<Long, int[]> changes = this.deferred.get(core);
+        int[] change = changes.get(key);
+        if (change == null) {
+            changes.put(key, new int[] {delta});
+        } else {
+            change[0] += delta;
+        }
+    }
+
+    /**
+     * @param key Key of a shared page.
+     * @param delta Change of the count.
+     */
+    private void _apply(long key, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        this.mappings += delta;
+        int[] count = this.counts.get(key);
+        if (count == null) {
+            this.counts.put(key, new int[] {delta});
+        } else if (count[0] + delta == 0) {
+            this.counts.remove(key);
+        } else {
+            count[0] += delta;
+        }
+    }
+
+    /**
+     * @param map Counts.
+     * @param key Key.
+     * @return Count of the key, 0 if none.
+     */
+    private static int _get(Map<Long, int[]> map, long key) {
+        int[] count = map.get(key);
+        return (count == null) ? 0 : count[0];
+    }
+}
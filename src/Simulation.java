@@ -15,14 +15,26 @@
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -30,7 +42,9 @@ import java.util.logging.Logger;
  *
  * @author Guy K. Kloss
  */
-public class Simulation {
+public class Simulation implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private int numberPages;
     private int pageSize;
     private int processesToDo;
@@ -52,12 +66,104 @@ public class Simulation {
     private double tlbHitRate;
     private double waitCyclesPerPageTableLookup;
     private double waitCyclesPerPageTableSpread;
+    private boolean prefetchEnabled;
+    private int prefetchMinWindow;
+    private int prefetchMaxWindow;
+    private int memoryManagement;
+    private int memoryManagementInterval;
+    private double pffUpperFaultRate;
+    private double pffLowerFaultRate;
+    private int pffFrameStep;
+    private long maxSuspendCycles;
+    private String scheduler;
+    private int mlfqLevels;
+    private int mlfqBoostInterval;
+    private int cpuCores;
+    private int framePoolLockCycles;
+    private int engineThreads;
+    private int engineLookahead;
+    private String engine;
+    private String processExecution;
+    private Properties configuration;
+    private String[] processClasses;
+    private double[] processClassWeights;
+    private String pageReplacement;
+    private String pageTableStorage;
+    private String pageTableDirectory;
+    private long forkCycle;
+    private String[] forkPolicies;
+    private String[] duelingPolicies;
+    private long forkedAtCycle = -1;
+    private long checkpointInterval;
+    private String checkpointFile;
+    private long nextCheckpointCycle;
+    private long checkpointSequence = 0;
+    private transient Checkpointer checkpointer;
+    private String resultCache;
+    private long resultCacheSize;
+    private MetricsSampler metricsSampler = null;
+    private String metricsFile;
+    private TraceWriter traceWriter = null;
+    private String traceFile;
+    private boolean heatProfile;
+    private int heatTopK;
+    private int heatSketchWidth;
+    private int heatSketchDepth;
+    private int heatMapBuckets;
+    private boolean localityProfile;
+    private double localitySampling;
+    private boolean refaultTracking;
+    private int shadowEntries;
+    private boolean compressedPool;
+    private double compressedPoolPercent;
+    private double compressionRatio;
+    private double compressionRatioSpread;
+    private int compressCycles;
+    private int decompressCycles;
+    private int sharedCodePages;
+    private double forkProbability;
+    private int cowCopyCycles;
+    private int numaNodes;
+    private int numaNodeFrames;
+    private int numaPolicy;
+    private int numaRemoteCycles;
+    private int numaMigrationThreshold;
+    private int numaMigrationCycles;
+    private int replicationThreads;
+    private int replicationMinRuns;
+    private int replicationMaxRuns;
+    private double replicationConfidence;
+    private double replicationPrecision;
+    private String[] replicationMetrics;
+    private String[] sizingPolicies;
+    private double sizingTarget;
+    private String sizingParameter;
+    private int sizingMinFrames;
+    private int sizingMaxFrames;
+    private int sizingResolution;
+    private int sizingThreads;
+    private double sizingMissMargin;
+    private long sizingCheckCycles;
+    private int sizingCheckProcesses;
+    private long sizingWarmCycles;
+    private transient volatile boolean stopped = false;
     
     /**
      * Constructor.
      */
     public Simulation() {
+        this(null);
+    }
+    
+    /**
+     * Constructor.
+     * 
+     * @param overrides Settings to use instead of those in the configuration
+     *      file, or null.
+     */
+    public Simulation(Properties overrides) {
         Properties configuration = new Properties();
+        this.configuration = configuration;
         try {
             configuration.load(new FileInputStream("computer.properties"));
         } catch (FileNotFoundException e) {
@@ -67,7 +173,15 @@ public class Simulation {
             logger.severe("Could not read configuration file 'computer.properties'.");
             System.exit(1);
         }
-        this.randomiser = new Random();
+        if (overrides != null) {
+            configuration.putAll(overrides);
+        }
+        if (configuration.getProperty("seed") != null) {
+            // Reproducible runs.
+            this.randomiser = new Random(Long.parseLong(configuration.getProperty("seed")));
+        } else {
+            this.randomiser = new Random();
+        }
         this.numberPages = Integer.parseInt(configuration.getProperty("numberPages"));
         this.pageSize = Integer.parseInt(configuration.getProperty("pageSize"));
         this.processesToDo = Integer.parseInt(configuration.getProperty("processesToDo"));
@@ -86,36 +200,905 @@ public class Simulation {
         this.tlbHitRate = Double.parseDouble(configuration.getProperty("tlbHitRate"));
         this.waitCyclesPerPageTableLookup = Double.parseDouble(configuration.getProperty("waitCyclesPerPageTableLookup"));
         this.waitCyclesPerPageTableSpread = Double.parseDouble(configuration.getProperty("waitCyclesPerPageTableSpread"));
+        this.prefetchEnabled = Boolean.parseBoolean(configuration.getProperty("prefetchEnabled", "false"));
+        this.prefetchMinWindow = Integer.parseInt(configuration.getProperty("prefetchMinWindow", "2"));
+        this.prefetchMaxWindow = Integer.parseInt(configuration.getProperty("prefetchMaxWindow", "32"));
+        this.memoryManagement = MemoryManager.parseMode(configuration.getProperty("memoryManagement", "fixed"));
+        this.memoryManagementInterval = Integer.parseInt(configuration.getProperty("memoryManagementInterval", "100000"));
+        this.pffUpperFaultRate = Double.parseDouble(configuration.getProperty("pffUpperFaultRate", "20"));
+        this.pffLowerFaultRate = Double.parseDouble(configuration.getProperty("pffLowerFaultRate", "2"));
+        this.pffFrameStep = Integer.parseInt(configuration.getProperty("pffFrameStep", "4"));
+        this.maxSuspendCycles = Long.parseLong(configuration.getProperty(
+                "maxSuspendCycles", Long.toString(10L * this.memoryManagementInterval)));
+        this.scheduler = configuration.getProperty("scheduler", "roundrobin");
+        this.mlfqLevels = Integer.parseInt(configuration.getProperty("mlfqLevels", "3"));
+        this.mlfqBoostInterval = Integer.parseInt(configuration.getProperty("mlfqBoostInterval", "1000000"));
+        this.cpuCores = Integer.parseInt(configuration.getProperty("cpuCores", "1"));
+        this.framePoolLockCycles = Integer.parseInt(configuration.getProperty("framePoolLockCycles", "0"));
+        this.engineThreads = Integer.parseInt(configuration.getProperty("engineThreads", "1"));
+        this.engineLookahead = Integer.parseInt(configuration.getProperty("engineLookahead", "0"));
+        this.engine = configuration.getProperty("engine", (this.engineLookahead > 0) ? "windowed" : "stepped");
+        if (!this.engine.equals("stepped") && !this.engine.equals("windowed")) {
+            throw new IllegalArgumentException("Unknown engine '" + this.engine + "'.");
+        }
+        if (this.engine.equals("windowed") && (this.engineLookahead <= 0)) {
+            throw new IllegalArgumentException("The windowed engine needs an engineLookahead.");
+        }
+        this.processExecution = configuration.getProperty("processExecution", "stepped");
+        this.pageReplacement = configuration.getProperty("pageReplacement", "WarbiasReplacement");
+        this.pageTableStorage = configuration.getProperty("pageTableStorage", "heap");
+        this.pageTableDirectory = configuration.getProperty("pageTableDirectory",
+                                                            System.getProperty("java.io.tmpdir"));
+        if (!Arrays.asList("heap", "direct", "mapped").contains(this.pageTableStorage)) {
+            throw new IllegalArgumentException("Unknown page table storage '"
+                                               + this.pageTableStorage + "'.");
+        }
+        this.forkCycle = Long.parseLong(configuration.getProperty("forkCycle", "0"));
+        this.forkPolicies = this._getList("forkPolicies");
+        this.duelingPolicies = this._getList("duelingPolicies");
+        if (this.duelingPolicies.length == 0) {
+            this.duelingPolicies = new String[] {"TwoListReplacement", "ClockReplacement"};
+        }
+        this.checkpointInterval = Long.parseLong(configuration.getProperty("checkpointInterval", "0"));
+        this.checkpointFile = configuration.getProperty("checkpointFile", "simulation.checkpoint");
+        this.nextCheckpointCycle = this.checkpointInterval;
+        this.resultCache = configuration.getProperty("resultCache");
+        this.resultCacheSize = Long.parseLong(configuration.getProperty("resultCacheSize", "64")) << 20;
+        long metricsInterval = Long.parseLong(configuration.getProperty("metricsInterval", "0"));
+        if (metricsInterval > 0) {
+            String metricsFormat = configuration.getProperty("metricsFormat", "csv");
+            if (!metricsFormat.equals("csv") && !metricsFormat.equals("binary")) {
+                throw new IllegalArgumentException("Unknown metrics format '" + metricsFormat + "'.");
+            }
+            this.metricsSampler = new MetricsSampler(metricsInterval, metricsFormat.equals("binary"),
+                    Integer.parseInt(configuration.getProperty("metricsQueueSize", "1024")));
+        }
+        this.metricsFile = configuration.getProperty("metricsFile", "metrics");
+        if (Boolean.parseBoolean(configuration.getProperty("trace", "false"))) {
+            this.traceWriter = new TraceWriter(this.cpuCores);
+        }
+        this.traceFile = configuration.getProperty("traceFile", "trace");
+        this.heatProfile = Boolean.parseBoolean(configuration.getProperty("heatProfile", "false"));
+        this.heatTopK = Integer.parseInt(configuration.getProperty("heatTopK", "20"));
+        this.heatSketchWidth = Integer.parseInt(configuration.getProperty("heatSketchWidth", "16384"));
+        this.heatSketchDepth = Integer.parseInt(configuration.getProperty("heatSketchDepth", "4"));
+        this.heatMapBuckets = Integer.parseInt(configuration.getProperty("heatMapBuckets", "64"));
+        this.localityProfile = Boolean.parseBoolean(configuration.getProperty("localityProfile", "false"));
+        this.localitySampling = Double.parseDouble(configuration.getProperty("localitySampling", "1"));
+        this.refaultTracking = Boolean.parseBoolean(configuration.getProperty("refaultTracking", "false"));
+        this.shadowEntries = Integer.parseInt(configuration.getProperty("shadowEntries", "1024"));
+        this.compressedPool = Boolean.parseBoolean(configuration.getProperty("compressedPool", "false"));
+        this.compressedPoolPercent = Double.parseDouble(configuration.getProperty("compressedPoolPercent", "20"));
+        this.compressionRatio = Double.parseDouble(configuration.getProperty("compressionRatio", "3"));
+        this.compressionRatioSpread = Double.parseDouble(configuration.getProperty("compressionRatioSpread", "0.5"));
+        this.compressCycles = Integer.parseInt(configuration.getProperty("compressCycles", "100"));
+        this.decompressCycles = Integer.parseInt(configuration.getProperty("decompressCycles", "50"));
+        this.sharedCodePages = Integer.parseInt(configuration.getProperty("sharedCodePages", "0"));
+        this.forkProbability = Double.parseDouble(configuration.getProperty("forkProbability", "0"));
+        this.cowCopyCycles = Integer.parseInt(configuration.getProperty("cowCopyCycles", "200"));
+        this.numaNodes = Integer.parseInt(configuration.getProperty("numaNodes", "1"));
+        this.numaNodeFrames = Integer.parseInt(configuration.getProperty("numaNodeFrames", "0"));
+        this.numaPolicy = NumaMemory.parsePolicy(configuration.getProperty("numaPolicy", "local"));
+        this.numaRemoteCycles = Integer.parseInt(configuration.getProperty("numaRemoteCycles", "100"));
+        this.numaMigrationThreshold = Integer.parseInt(configuration.getProperty("numaMigrationThreshold", "0"));
+        this.numaMigrationCycles = Integer.parseInt(configuration.getProperty("numaMigrationCycles", "2000"));
+        this.replicationThreads = Integer.parseInt(configuration.getProperty(
+                "replicationThreads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        this.replicationMinRuns = Math.max(2, Integer.parseInt(configuration.getProperty("replicationMinRuns", "5")));
+        this.replicationMaxRuns = Integer.parseInt(configuration.getProperty("replicationMaxRuns", "100"));
+        this.replicationConfidence = Double.parseDouble(configuration.getProperty("replicationConfidence", "0.95"));
+        this.replicationPrecision = Double.parseDouble(configuration.getProperty("replicationPrecision", "0.05"));
+        this.replicationMetrics = this._getList("replicationMetrics");
+        this.sizingPolicies = this._getList("sizingPolicies");
+        if (this.sizingPolicies.length == 0) {
+            this.sizingPolicies = new String[] {this.pageReplacement};
+        }
+        this.sizingTarget = Double.parseDouble(configuration.getProperty("sizingTarget", "0"));
+        this.sizingParameter = configuration.getProperty("sizingParameter", "pagesMemoryToStart");
+        this.sizingMinFrames = Integer.parseInt(configuration.getProperty("sizingMinFrames", "1"));
+        this.sizingMaxFrames = Integer.parseInt(configuration.getProperty(
+                "sizingMaxFrames", Integer.toString(this.numberPages)));
+        this.sizingResolution = Integer.parseInt(configuration.getProperty("sizingResolution", "1"));
+        this.sizingThreads = Integer.parseInt(configuration.getProperty(
+                "sizingThreads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        this.sizingMissMargin = Double.parseDouble(configuration.getProperty("sizingMissMargin", "0.5"));
+        this.sizingCheckCycles = Long.parseLong(configuration.getProperty("sizingCheckCycles", "10000000"));
+        this.sizingCheckProcesses = Integer.parseInt(configuration.getProperty(
+                "sizingCheckProcesses", Integer.toString(Math.max(1, this.processesToDo / 10))));
+        this.sizingWarmCycles = Long.parseLong(configuration.getProperty("sizingWarmCycles", "0"));
+        this.processClasses = this._getList("processClasses");
+        this.processClassWeights = new double[this.processClasses.length];
+        for (int i = 0; i < this.processClasses.length; i++) {
+            this.processClassWeights[i] = Double.parseDouble(configuration.getProperty(
+                    "processClass." + this.processClasses[i] + ".weight", "1"));
+        }
     }
 
     /**
      * Create our Simulation.
      * 
+     * Without arguments, the simulation runs from the start to the end.
+     * "--snapshot FILE CYCLE" runs it up to a cycle, and writes a snapshot of
+     * it to a file. "--fork FILE POLICY[,POLICY...]" carries on from a
+     * snapshot file, in parallel once for every page replacement algorithm
+     * given. With "forkCycle" and "forkPolicies" configured, the same happens
+     * in memory. "--resume [FILE]" carries on from the latest checkpoint
+     * (see "checkpointInterval"), in "checkpointFile" if no file is given.
+     * "--sweep" runs the grid of simulations configured on worker JVMs (see
+     * {@link SweepCoordinator}). "--replicate" runs the simulation with
+     * different seeds until the means of the results are known precisely
+     * enough (see {@link #_replicate()}). "--size" searches for the fewest
+     * frames keeping the fault rate of every page replacement algorithm in
+     * "sizingPolicies" at or below "sizingTarget" (see
+     * {@link #_searchSizing()}). "--check-engine" runs the simulation both
+     * stepped and windowed, and checks the results are the same (see
+     * {@link #_checkEngine()}).
+     * 
      * @param args Command line arguments.
      */
     public static void main(String[] args) {
-        // Make a simulation.
-        Simulation mySimulation = new Simulation();
-        
-        // With that, make our computer.
-        mySimulation.myComputer = new Computer(mySimulation);
-        
-        // Run simulation.
-        mySimulation.run();
+        try {
+            if ((args.length == 1) && args[0].equals("--sweep")) {
+                if (!new SweepCoordinator().run()) {
+                    System.exit(1);
+                }
+                return;
+            }
+            if ((args.length == 1) && args[0].equals("--replicate")) {
+                _replicate();
+                return;
+            }
+            if ((args.length == 1) && args[0].equals("--size")) {
+                if (!_searchSizing()) {
+                    System.exit(1);
+                }
+                return;
+            }
+            if ((args.length == 1) && args[0].equals("--check-engine")) {
+                if (!_checkEngine()) {
+                    System.exit(1);
+                }
+                return;
+            }
+            if ((args.length == 3) && args[0].equals("--fork")) {
+                Simulation warmSimulation = Snapshot.load(args[1]);
+                _fork(Snapshot.capture(warmSimulation), args[2].split(","));
+                return;
+            }
+            if (((args.length == 1) || (args.length == 2)) && args[0].equals("--resume")) {
+                String fileName = (args.length == 2) ? args[1] : new Simulation().checkpointFile;
+                byte[] image = Checkpointer.latest(fileName);
+                if (image == null) {
+                    logger.severe("No complete checkpoint in " + fileName + ".0 or .1");
+                    System.exit(1);
+                }
+                Simulation resumedSimulation = Snapshot.restore(image);
+                logger.info("Resuming at cycle " + resumedSimulation.myComputer.getCurrentCycle());
+                resumedSimulation.run();
+                return;
+            }
+            
+            // Make a simulation.
+            Simulation mySimulation = new Simulation();
+            
+            // With that, make our computer.
+            mySimulation.myComputer = new Computer(mySimulation);
+            
+            if ((args.length == 3) && args[0].equals("--snapshot")) {
+                mySimulation._runUntil(Long.parseLong(args[2]));
+                mySimulation.myComputer.shutdown();
+                Snapshot.save(mySimulation, args[1]);
+            } else if (args.length > 0) {
+                logger.severe("Usage: Simulation [--snapshot FILE CYCLE | --fork FILE POLICIES"
+                              + " | --resume [FILE] | --sweep | --replicate | --size"
+                              + " | --check-engine]");
+                System.exit(1);
+            } else if ((mySimulation.forkCycle > 0) && (mySimulation.forkPolicies.length > 0)) {
+                mySimulation._runUntil(mySimulation.forkCycle);
+                mySimulation.myComputer.shutdown();
+                _fork(Snapshot.capture(mySimulation), mySimulation.forkPolicies);
+            } else {
+                // Run simulation.
+                mySimulation.run();
+            }
+        } catch (IOException e) {
+            logger.severe("Could not take or restore snapshot: " + e.getMessage());
+            System.exit(1);
+        }
     }
 
     /**
      * Run the simulation.
      */
     private void run() {
+        String cacheKey = this._resultCacheKey();
+        ResultCache cache = null;
+        if (cacheKey != null) {
+            cache = new ResultCache(this.resultCache, this.resultCacheSize);
+            String results = cache.get(cacheKey);
+            if (results != null) {
+                logger.info("Results for " + this.pageReplacement + " found in the result cache.");
+                this.myComputer.shutdown();
+                this._writeResults(results);
+                return;
+            }
+        }
+        if (this.checkpointInterval > 0) {
+            this.checkpointer = new Checkpointer(this.checkpointFile);
+        }
+        if (this.metricsSampler != null) {
+            String fileName = this.metricsFile + "_" + this.pageReplacement
+                    + (this.metricsSampler.isBinary() ? ".bin" : ".csv");
+            // Resumed from a checkpoint, rather than from the start or forked.
+            boolean resume = (this.myComputer.getCurrentCycle() > 0) && (this.forkedAtCycle < 0);
+            try {
+                this.metricsSampler.open(fileName, this.myComputer, resume);
+            } catch (IOException e) {
+                logger.severe("Could not open metrics file " + fileName + ": " + e.getMessage());
+            }
+        }
+        if (this.traceWriter != null) {
+            String fileName = this.traceFile + "_" + this.pageReplacement + ".trace";
+            try {
+                this.traceWriter.open(fileName);
+            } catch (IOException e) {
+                logger.severe("Could not open trace file " + fileName + ": " + e.getMessage());
+            }
+        }
+        
         // Simulation loop.
-        while (this.myComputer.getProcessesDone() != this.processesToDo) {
+        this._runUntil(Long.MAX_VALUE);
+        this.myComputer.shutdown();
+        if (this.metricsSampler != null) {
+            this.metricsSampler.close();
+        }
+        if (this.traceWriter != null) {
+            this.traceWriter.close();
+        }
+        if (this.checkpointer != null) {
+            this.checkpointer.close();
+            logger.info("Checkpoints written: " + this.checkpointer.getCheckpointsWritten()
+                        + ", skipped: " + this.checkpointer.getCheckpointsSkipped()
+                        + ", bytes written: " + this.checkpointer.getBytesWritten());
+            this.checkpointer = null;
+        }
+        
+        if (this.heatProfile) {
+            String fileName = "heatmap_" + this.pageReplacement + ".csv";
+            try {
+                this.myComputer.getHeatProfiler().writeHeatMaps(fileName);
+            } catch (IOException e) {
+                logger.severe("Could not write to file " + fileName);
+            }
+        }
+        if (this.localityProfile) {
+            String fileName = "locality_" + this.pageReplacement + ".csv";
+            try {
+                this.myComputer.getLocalityReport().writeProcesses(fileName);
+            } catch (IOException e) {
+                logger.severe("Could not write to file " + fileName);
+            }
+        }
+        
+        String results = this._formatResults();
+        if (cache != null) {
+            cache.put(cacheKey, results);
+        }
+        this._writeResults(results);
+    }
+    
+    /**
+     * Runs the simulation until all processes are done, or up to a cycle.
+     * 
+     * @param cycle Global cycle count to stop at.
+     */
+    private void _runUntil(long cycle) {
+        while ((this.myComputer.getProcessesDone() != this.processesToDo)
+                && (this.myComputer.getCurrentCycle() < cycle) && !this.stopped) {
             this.myComputer.step();
+            // Sampled first, so a checkpoint has the sample of its cycle.
+            if ((this.metricsSampler != null)
+                    && this.metricsSampler.isDue(this.myComputer.getCurrentCycle())) {
+                this.metricsSampler.sample(this.myComputer);
+            }
+            if ((this.checkpointer != null)
+                    && (this.myComputer.getCurrentCycle() >= this.nextCheckpointCycle)) {
+                this._checkpoint();
+            }
+        }
+    }
+    
+    /**
+     * Takes a checkpoint between two steps, and hands it to the writer. The
+     * schedule of checkpoints is part of the state captured, so a resumed
+     * simulation takes the same ones as the original.
+     */
+    private void _checkpoint() {
+        while (this.nextCheckpointCycle <= this.myComputer.getCurrentCycle()) {
+            this.nextCheckpointCycle += this.checkpointInterval;
+        }
+        this.checkpointSequence++;
+        try {
+            this.checkpointer.offer(Snapshot.capture(this, this.checkpointer.getLayout()),
+                                   this.checkpointSequence);
+        } catch (IOException e) {
+            logger.severe("Could not take checkpoint, no more are taken: " + e.getMessage());
+            this.checkpointer.close();
+            this.checkpointer = null;
+        }
+    }
+
+    /**
+     * Runs copies of a simulation to the end in parallel, one per page
+     * replacement algorithm, all from the same state.
+     * 
+     * @param image Snapshot of the simulation.
+     * @param policies Class names of the page replacement algorithms.
+     */
+    private static void _fork(final byte[] image, String[] policies) {
+        ExecutorService forks = Executors.newFixedThreadPool(
+                Math.min(policies.length, Runtime.getRuntime().availableProcessors()));
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (final String policy : policies) {
+            results.add(forks.submit(new Callable<Object>() {
+                public Object call() throws IOException {
+                    Simulation fork = Snapshot.restore(image);
+                    fork.forkedAtCycle = fork.myComputer.getCurrentCycle();
+                    // All forks would write to the same checkpoint files.
+                    fork.checkpointInterval = 0;
+                    fork.setPageReplacement(policy);
+                    fork.run();
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < policies.length; i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    logger.severe("Fork with " + policies[i] + " failed: " + e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            forks.shutdownNow();
+        } finally {
+            forks.shutdown();
+        }
+    }
+
+    /**
+     * Runs the simulation again and again with independent seeds, on
+     * "replicationThreads" threads, until the mean of every result is known
+     * to within "replicationPrecision" of itself (half the width of its
+     * "replicationConfidence" interval, by Student's t), or
+     * "replicationMaxRuns" runs are done. Only results of a single number
+     * count, all of them unless "replicationMetrics" names some. The seeds
+     * come from the configured seed, if any, and the runs are taken in
+     * order whichever finishes first, so the outcome doesn't depend on the
+     * number of threads. Runs still going when the means are precise enough
+     * are stopped. Writes the means with their intervals to the results
+     * file.
+     */
+    private static void _replicate() {
+        Simulation template = new Simulation();
+        String baseSeed = template.configuration.getProperty("seed");
+        Random seeds = new Random((baseSeed != null) ? Long.parseLong(baseSeed) : new Random().nextLong());
+        ExecutorService runners = Executors.newFixedThreadPool(Math.max(1, template.replicationThreads));
+        List<Simulation> replicas = new ArrayList<Simulation>();
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        Map<String, OnlineStatistics> statistics = new LinkedHashMap<String, OnlineStatistics>();
+        int done = 0;
+        boolean precise = false;
+        try {
+            while ((done < template.replicationMaxRuns) && !precise) {
+                while ((replicas.size() < template.replicationMaxRuns)
+                        && (replicas.size() - done < Math.max(1, template.replicationThreads))) {
+                    Properties overrides = new Properties();
+                    overrides.setProperty("seed", Long.toString(seeds.nextLong()));
+                    // Runs side by side would write to the same files.
+                    overrides.setProperty("metricsInterval", "0");
+                    overrides.setProperty("trace", "false");
+                    overrides.setProperty("checkpointInterval", "0");
+                    final Simulation replica = new Simulation(overrides);
+                    replicas.add(replica);
+                    results.add(runners.submit(new Callable<String>() {
+                        public String call() {
+                            return replica._runReplica(0);
+                        }
+                    }));
+                }
+                String replicaResults = results.get(done).get();
+                done++;
+                for (Map.Entry<String, Double> metric : _parseResults(replicaResults).entrySet()) {
+                    if ((template.replicationMetrics.length > 0)
+                            && !Arrays.asList(template.replicationMetrics).contains(metric.getKey())) {
+                        continue;
+                    }
+                    if (!statistics.containsKey(metric.getKey())) {
+                        statistics.put(metric.getKey(), new OnlineStatistics());
+                    }
+                    statistics.get(metric.getKey()).add(metric.getValue());
+                }
+                String widest = template._widestMetric(statistics);
+                logger.info("Replication " + done + " done"
+                            + ((widest != null) ? ", widest interval " + widest : ""));
+                precise = (done >= template.replicationMinRuns) && (widest != null)
+                        && (statistics.get(widest).getRelativeHalfWidth(template.replicationConfidence)
+                            <= template.replicationPrecision);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.severe("Replication " + (done + 1) + " failed: " + e.getCause());
+        } finally {
+            for (Simulation replica : replicas) {
+                replica.stopped = true;
+            }
+            runners.shutdown();
         }
         
-        this._collectResults();
+        StringBuilder out = new StringBuilder();
+        out.append("[Results]\n");
+        out.append("Replications: " + done + "\n");
+        out.append(String.format("Precise to %.2f%% at %.0f%% confidence: %s%n",
+                                 100 * template.replicationPrecision,
+                                 100 * template.replicationConfidence, precise ? "yes" : "no"));
+        for (Map.Entry<String, OnlineStatistics> metric : statistics.entrySet()) {
+            OnlineStatistics values = metric.getValue();
+            out.append(String.format("%s: %.6g +/- %.3g (%.2f%%)%n", metric.getKey(), values.getMean(),
+                                     values.getHalfWidth(template.replicationConfidence),
+                                     100 * values.getRelativeHalfWidth(template.replicationConfidence)));
+        }
+        template._writeResults(out.toString());
     }
     
+    /**
+     * Runs a replication (one of many runs with different settings) to the
+     * end, or until stopped, with the result cache but without writing any
+     * files. Starts from the beginning, or carries on from a snapshot
+     * restored. With a fault rate to give up at, checks every
+     * "sizingCheckCycles" cycles whether the fault rate since the start
+     * (see {@link #_workSoFar()}) is above it, once "sizingCheckProcesses"
+     * processes are done since.
+     * 
+     * @param missFaultRate Page faults per 1000 instructions to give up
+     *      at, or 0 not to.
+     * @return Results section, or null if stopped or given up.
+     */
+    private String _runReplica(double missFaultRate) {
+        if (this.myComputer == null) {
+            this.myComputer = new Computer(this);
+        }
+        int startDone = this.myComputer.getProcessesDone();
+        double[] start = this._workSoFar();
+        String cacheKey = this._resultCacheKey();
+        ResultCache cache = null;
+        if (cacheKey != null) {
+            cache = new ResultCache(this.resultCache, this.resultCacheSize);
+            String results = cache.get(cacheKey);
+            if (results != null) {
+                this.myComputer.shutdown();
+                return results;
+            }
+        }
+        if (missFaultRate > 0) {
+            long cycle = this.myComputer.getCurrentCycle();
+            while ((this.myComputer.getProcessesDone() != this.processesToDo) && !this.stopped) {
+                cycle += this.sizingCheckCycles;
+                this._runUntil(cycle);
+                double[] work = this._workSoFar();
+                if ((this.myComputer.getProcessesDone() - startDone >= this.sizingCheckProcesses)
+                        && (this.myComputer.getProcessesDone() != this.processesToDo)
+                        && (_faultRate(work[0] - start[0], work[1] - start[1]) > missFaultRate)) {
+                    this.stopped = true;
+                }
+            }
+        } else {
+            this._runUntil(Long.MAX_VALUE);
+        }
+        this.myComputer.shutdown();
+        if (this.stopped) {
+            return null;
+        }
+        String results = this._formatResults();
+        if (cache != null) {
+            cache.put(cacheKey, results);
+        }
+        return results;
+    }
+    
+    /**
+     * Searches for the fewest frames ("sizingParameter", pagesMemoryToStart
+     * by default, or numberPages when resident sets are managed) keeping the
+     * page faults per 1000 instructions at or below "sizingTarget", for
+     * every page replacement algorithm in "sizingPolicies" (the one
+     * configured by default), between "sizingMinFrames" and
+     * "sizingMaxFrames" to within "sizingResolution" (see
+     * {@link SizingSearch}). Every round probes about "sizingThreads" sizes
+     * over all algorithms in parallel. Runs clearly missing the target (by
+     * "sizingMissMargin" of it, see {@link #_runReplica(double)}) are given
+     * up early. All probes run with the same seed, so they differ by the
+     * size alone, and with the result cache, so sizes probed before (in an
+     * earlier search, or for a run done by hand) aren't run again. Writes
+     * the sizes found, and all probes, to "results_sizing.txt".
+     * 
+     * With "sizingWarmCycles", every algorithm is run that many cycles with
+     * the upper end of its bracket (see {@link SizingSearch#getUpperFrames()})
+     * once, and again only when that moves. The probes are forked off a
+     * snapshot of it, cut down to their sizes (see
+     * {@link #_resizeFrames(int)}), and their fault rates count from the
+     * fork on. That saves the warm-up of every probe, and leaves the faults
+     * of starting up out of the fault rates. The probes start out from the
+     * state reached with more frames, though, so what they come to is close
+     * to, not the same as, what a warmed up run of their size would.
+     * 
+     * @return True if the search could be made.
+     */
+    private static boolean _searchSizing() {
+        Simulation template = new Simulation();
+        if (template.sizingTarget <= 0) {
+            logger.severe("No sizingTarget (page faults per 1000 instructions) configured.");
+            return false;
+        }
+        String seed = template.configuration.getProperty("seed");
+        if (seed == null) {
+            seed = Long.toString(new Random().nextLong());
+        }
+        final double missFaultRate = template.sizingTarget * (1 + template.sizingMissMargin);
+        boolean warm = template.sizingWarmCycles > 0;
+        if (warm && !template.sizingParameter.equals("pagesMemoryToStart")
+                && !template.sizingParameter.equals("numberPages")) {
+            logger.warning("Only pagesMemoryToStart and numberPages can be changed under way,"
+                           + " sizing probes run from the start.");
+            warm = false;
+        }
+        Map<SizingSearch, byte[]> warmImages = new HashMap<SizingSearch, byte[]>();
+        Map<SizingSearch, Integer> warmFrames = new HashMap<SizingSearch, Integer>();
+        List<SizingSearch> searches = new ArrayList<SizingSearch>();
+        for (String policy : template.sizingPolicies) {
+            searches.add(new SizingSearch(policy, template.sizingMinFrames, template.sizingMaxFrames,
+                                          template.sizingResolution));
+        }
+        int threads = Math.max(1, template.sizingThreads);
+        ExecutorService runners = Executors.newFixedThreadPool(threads);
+        try {
+            while (true) {
+                int active = 0;
+                for (SizingSearch search : searches) {
+                    if (!search.isDone()) {
+                        active++;
+                    }
+                }
+                if (active == 0) {
+                    break;
+                }
+                if (warm) {
+                    List<SizingSearch> warming = new ArrayList<SizingSearch>();
+                    List<Future<byte[]>> images = new ArrayList<Future<byte[]>>();
+                    for (SizingSearch search : searches) {
+                        Integer upper = search.getUpperFrames();
+                        if (!search.isDone() && !upper.equals(warmFrames.get(search))) {
+                            final Properties overrides = template._probeOverrides(seed, search.getPolicy(),
+                                                                                  upper);
+                            // Goes into the result cache keys of the probes forked off.
+                            overrides.setProperty("sizingWarmFrames", upper.toString());
+                            final long cycles = template.sizingWarmCycles;
+                            warming.add(search);
+                            images.add(runners.submit(new Callable<byte[]>() {
+                                public byte[] call() throws IOException {
+                                    return _warmUp(overrides, cycles);
+                                }
+                            }));
+                        }
+                    }
+                    for (int i = 0; i < warming.size(); i++) {
+                        warmImages.put(warming.get(i), images.get(i).get());
+                        warmFrames.put(warming.get(i), warming.get(i).getUpperFrames());
+                    }
+                }
+                List<SizingSearch> probed = new ArrayList<SizingSearch>();
+                List<Integer> sizes = new ArrayList<Integer>();
+                List<Future<double[]>> results = new ArrayList<Future<double[]>>();
+                for (SizingSearch search : searches) {
+                    final byte[] image = warmImages.get(search);
+                    for (final int frames : search.nextProbes(Math.max(1, threads / active))) {
+                        final Properties overrides = template._probeOverrides(seed, search.getPolicy(), frames);
+                        probed.add(search);
+                        sizes.add(frames);
+                        results.add(runners.submit(new Callable<double[]>() {
+                            public double[] call() throws IOException {
+                                Simulation probe;
+                                if (image == null) {
+                                    probe = new Simulation(overrides);
+                                } else {
+                                    probe = Snapshot.restore(image);
+                                    probe.forkedAtCycle = probe.myComputer.getCurrentCycle();
+                                    probe._resizeFrames(frames);
+                                }
+                                return probe._probe(missFaultRate);
+                            }
+                        }));
+                    }
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    double[] outcome = results.get(i).get();
+                    boolean meets = (outcome[1] > 0) && (outcome[0] <= template.sizingTarget);
+                    probed.get(i).record(sizes.get(i), outcome[0], meets, outcome[1] > 0);
+                    logger.info(String.format("Sizing %s with %d frames: %.3f faults per 1000 instructions%s",
+                                              probed.get(i).getPolicy(), sizes.get(i), outcome[0],
+                                              (outcome[1] > 0) ? (meets ? ", meets" : ", misses")
+                                                               : ", given up"));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.severe("Sizing run failed: " + e.getCause());
+            return false;
+        } finally {
+            runners.shutdown();
+        }
+        
+        StringBuilder out = new StringBuilder();
+        out.append("[Results]\n");
+        out.append("Fault rate target: " + template.sizingTarget + " per 1000 instructions\n");
+        for (SizingSearch search : searches) {
+            out.append(search.getPolicy() + " " + template.sizingParameter + ": "
+                       + ((search.getFrames() >= 0) ? Integer.toString(search.getFrames())
+                                                    : "none up to " + template.sizingMaxFrames)
+                       + "\n");
+        }
+        out.append("\n[Probes]\n");
+        for (SizingSearch search : searches) {
+            for (Map.Entry<Integer, double[]> probe : search.getProbes().entrySet()) {
+                double[] outcome = probe.getValue();
+                out.append(String.format("%s %d: %.3f%s%n", search.getPolicy(), probe.getKey(), outcome[0],
+                                         (outcome[2] == 0) ? " (given up)" : ""));
+            }
+        }
+        StringBuilder policies = new StringBuilder();
+        for (SizingSearch search : searches) {
+            policies.append(search.getPolicy() + "\n");
+        }
+        template._writeResults("results_sizing.txt", policies.toString(), out.toString());
+        return true;
+    }
+    
+    /**
+     * @param seed Seed of all probes.
+     * @param policy Class name of the page replacement algorithm.
+     * @param frames Number of frames ("sizingParameter").
+     * @return Settings of a sizing probe.
+     */
+    private Properties _probeOverrides(String seed, String policy, int frames) {
+        Properties overrides = new Properties();
+        overrides.setProperty("seed", seed);
+        overrides.setProperty("pageReplacement", policy);
+        overrides.setProperty(this.sizingParameter, Integer.toString(frames));
+        // Probes side by side would write to the same files.
+        overrides.setProperty("metricsInterval", "0");
+        overrides.setProperty("trace", "false");
+        overrides.setProperty("checkpointInterval", "0");
+        return overrides;
+    }
+    
+    /**
+     * Runs a simulation for a while, to fork sizing probes off.
+     * 
+     * @param overrides Settings of the simulation.
+     * @param cycles Global cycle count to run to.
+     * @return Snapshot image, or null if all processes were done by then.
+     * @throws IOException If the snapshot can't be taken.
+     */
+    private static byte[] _warmUp(Properties overrides, long cycles) throws IOException {
+        Simulation warmSimulation = new Simulation(overrides);
+        warmSimulation.myComputer = new Computer(warmSimulation);
+        warmSimulation._runUntil(cycles);
+        warmSimulation.myComputer.shutdown();
+        if (warmSimulation.myComputer.getProcessesDone() == warmSimulation.processesToDo) {
+            logger.warning("All processes were done within sizingWarmCycles,"
+                           + " sizing probes run from the start.");
+            return null;
+        }
+        return Snapshot.capture(warmSimulation);
+    }
+    
+    /**
+     * Changes the number of frames searched for ("sizingParameter") of a
+     * simulation under way. With numberPages, the memory manager fits the
+     * resident sets into the new number at its next rebalance. With
+     * pagesMemoryToStart, processes started from now on draw their frames
+     * from the new number, and, unless resident sets are managed, the ones
+     * running holding more frames are cut down to it (evicting pages).
+     * 
+     * @param frames New number of frames.
+     */
+    private void _resizeFrames(int frames) {
+        this.configuration.setProperty(this.sizingParameter, Integer.toString(frames));
+        if (this.sizingParameter.equals("numberPages")) {
+            this.numberPages = frames;
+            this.myComputer.setTotalFrames(frames);
+        } else {
+            this.pagesMemoryToStart = frames;
+            if (this.memoryManagement == MemoryManager.FIXED) {
+                for (Process aProcess : this.myComputer.getCurrentProcesses()) {
+                    if (aProcess.getResidentLimit() > frames) {
+                        aProcess.setResidentLimit(frames);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Runs a sizing probe (see {@link #_runReplica(double)}).
+     * 
+     * @param missFaultRate Page faults per 1000 instructions to give up at.
+     * @return Page faults per 1000 instructions since the probe started
+     *      (from the beginning, or from the snapshot it was forked off), and
+     *      1 if it ran to the end or 0 if it was given up.
+     */
+    private double[] _probe(double missFaultRate) {
+        if (this.myComputer == null) {
+            this.myComputer = new Computer(this);
+        }
+        double[] start = this._workSoFar();
+        String results = this._runReplica(missFaultRate);
+        if (results == null) {
+            double[] work = this._workSoFar();
+            return new double[] {_faultRate(work[0] - start[0], work[1] - start[1]), 0};
+        }
+        // All done, nothing is left running.
+        Map<String, Double> values = _parseResults(results);
+        return new double[] {_faultRate(values.get("Total page faults") - start[0],
+                                        values.get("Total instructions") - start[1]), 1};
+    }
+    
+    /**
+     * @return Page faults and instructions so far, of the processes done and
+     *      of those still running.
+     */
+    private double[] _workSoFar() {
+        double faults = this.myComputer.getPageFaults();
+        double instructions = this.myComputer.getTotalInstructions();
+        for (Process aProcess : this.myComputer.getCurrentProcesses()) {
+            faults += aProcess.getPageFaults();
+            instructions += aProcess.getTotalInstructions();
+        }
+        return new double[] {faults, instructions};
+    }
+    
+    /**
+     * Runs the simulation configured once stepped and once windowed, with
+     * the same seed and without the result cache, and checks that both come
+     * to the same results, line by line. The windowed run uses the
+     * "engineThreads" configured, so this also checks that the cores touch
+     * nothing shared within a window. Writes the results to the results
+     * file if they are the same.
+     * 
+     * @return True if the results are the same.
+     */
+    private static boolean _checkEngine() {
+        Simulation template = new Simulation();
+        if (template.engineLookahead <= 0) {
+            logger.severe("No engineLookahead configured, there is nothing to check.");
+            return false;
+        }
+        String seed = template.configuration.getProperty("seed");
+        if (seed == null) {
+            seed = Long.toString(new Random().nextLong());
+        }
+        String[] engines = {"stepped", "windowed"};
+        String[] results = new String[engines.length];
+        for (int i = 0; i < engines.length; i++) {
+            Properties overrides = new Properties();
+            overrides.setProperty("seed", seed);
+            overrides.setProperty("engine", engines[i]);
+            if (engines[i].equals("stepped")) {
+                overrides.setProperty("engineThreads", "1");
+            }
+            // Neither run is to write any files.
+            overrides.setProperty("metricsInterval", "0");
+            overrides.setProperty("trace", "false");
+            overrides.setProperty("checkpointInterval", "0");
+            Simulation run = new Simulation(overrides);
+            run.resultCache = null;
+            results[i] = run._runReplica(0);
+        }
+        String[] stepped = results[0].split("\n");
+        String[] windowed = results[1].split("\n");
+        boolean same = true;
+        for (int i = 0; i < Math.max(stepped.length, windowed.length); i++) {
+            String steppedLine = (i < stepped.length) ? stepped[i] : "";
+            String windowedLine = (i < windowed.length) ? windowed[i] : "";
+            if (!steppedLine.equals(windowedLine)) {
+                logger.severe("Stepped: " + steppedLine + ", windowed: " + windowedLine);
+                same = false;
+            }
+        }
+        if (!same) {
+            logger.severe("Stepped and windowed results differ (seed " + seed + ").");
+            return false;
+        }
+        logger.info("Stepped and windowed results are the same (seed " + seed + ").");
+        template._writeResults(results[1]);
+        return true;
+    }
+    
+    /**
+     * @param pageFaults Number of page faults.
+     * @param instructions Number of instructions.
+     * @return Page faults per 1000 instructions.
+     */
+    private static double _faultRate(double pageFaults, double instructions) {
+        return (instructions > 0) ? 1000 * pageFaults / instructions : 0;
+    }
+    
+    /**
+     * @param statistics Statistics of the results so far.
+     * @return Name of the result with the widest interval relative to its
+     *      mean, or null if none.
+     */
+    private String _widestMetric(Map<String, OnlineStatistics> statistics) {
+        String widest = null;
+        double widestWidth = -1;
+        for (Map.Entry<String, OnlineStatistics> metric : statistics.entrySet()) {
+            double width = metric.getValue().getRelativeHalfWidth(this.replicationConfidence);
+            if (width > widestWidth) {
+                widest = metric.getKey();
+                widestWidth = width;
+            }
+        }
+        return widest;
+    }
+    
+    /**
+     * @param results Results section, as made by {@link #_formatResults()}.
+     * @return Results that are a single number (percentages without the
+     *      sign), by name.
+     */
+    private static Map<String, Double> _parseResults(String results) {
+        Map<String, Double> values = new LinkedHashMap<String, Double>();
+        for (String line : results.split("\n")) {
+            int colon = line.indexOf(": ");
+            if (colon < 0) {
+                continue;
+            }
+            String value = line.substring(colon + 2).trim();
+            if (value.endsWith("%")) {
+                value = value.substring(0, value.length() - 1);
+            }
+            try {
+                double number = Double.parseDouble(value);
+                if (!Double.isNaN(number) && !Double.isInfinite(number)) {
+                    values.put(line.substring(0, colon), number);
+                }
+            } catch (NumberFormatException e) {
+                // Not a single number.
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * Returns a new, empty page table, stored as configured: on the heap, in
+     * direct buffers, or in a memory mapped file. Direct buffers ("direct")
+     * count against -XX:MaxDirectMemorySize, which defaults to the maximum
+     * heap size, so big address spaces may need it raised.
+     * 
+     * @return Page table.
+     */
+    public List<PageTableEntry> getPageTableImpl() {
+        if (this.pageTableStorage.equals("direct")) {
+            return new OffHeapPageTable(null);
+        } else if (this.pageTableStorage.equals("mapped")) {
+            return new OffHeapPageTable(new File(this.pageTableDirectory));
+        }
+        return new ArrayList<PageTableEntry>();
+    }
 
     /**
      * Utility method to return a new instance of an implementation of
@@ -128,7 +1111,168 @@ public class Simulation {
      */
     public PageReplacement getPageReplacementImpl(List<PageTableEntry> pageTable,
                                                   boolean[] memoryFrames) {
-        return new WarbiasReplacement(pageTable, memoryFrames);
+        if (this.pageReplacement.equals(SetDuelingReplacement.class.getName())) {
+            // Duels the candidates configured, on the same page table, and
+            // on shadow page tables of their own.
+            PageReplacement[] candidates = new PageReplacement[this.duelingPolicies.length];
+            DuelingShadow[] shadows = new DuelingShadow[this.duelingPolicies.length];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = this._makePageReplacement(this.duelingPolicies[i],
+                                                          pageTable, memoryFrames);
+                List<PageTableEntry> shadowTable = new ArrayList<PageTableEntry>();
+                boolean[] shadowFrames = new boolean[DuelingShadow.frames(memoryFrames.length)];
+                shadows[i] = new DuelingShadow(this._makePageReplacement(this.duelingPolicies[i],
+                                                                         shadowTable, shadowFrames),
+                                               shadowTable, shadowFrames);
+            }
+            return new SetDuelingReplacement(pageTable, memoryFrames, candidates, shadows);
+        }
+        return this._makePageReplacement(this.pageReplacement, pageTable, memoryFrames);
+    }
+
+    /**
+     * @param className Class name of the page replacement algorithm.
+     * @param pageTable Page table used for address translation.
+     * @param memoryFrames Usage status of "physical" memory frames.
+     * @return Instance of the page replacement algorithm.
+     */
+    private PageReplacement _makePageReplacement(String className,
+                                                 List<PageTableEntry> pageTable,
+                                                 boolean[] memoryFrames) {
+        try {
+            return (PageReplacement)Class.forName(className)
+                    .getConstructor(List.class, boolean[].class)
+                    .newInstance(pageTable, memoryFrames);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown page replacement '"
+                                               + className + "'.", e);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Could not make page replacement '"
+                                               + className + "'.", e);
+        }
+    }
+    
+    /**
+     * Switches all processes to another page replacement algorithm, starting
+     * from the state their page tables are in. The algorithm in use is kept
+     * as it is.
+     * 
+     * @param pageReplacement Class name of the page replacement algorithm.
+     */
+    public void setPageReplacement(String pageReplacement) {
+        if (pageReplacement.equals(this.pageReplacement)) {
+            // Just carry on.
+            return;
+        }
+        this.pageReplacement = pageReplacement;
+        this.myComputer.resetPageReplacement();
+    }
+    
+    /**
+     * @return Returns the process execution mode ("stepped" or "threaded").
+     */
+    public String getProcessExecution() {
+        return processExecution;
+    }
+    
+    /**
+     * Utility method to return a new instance of an implementation of
+     * our CPU scheduler.
+     * 
+     * @return Instance of a CPU scheduler.
+     */
+    public Scheduler getSchedulerImpl() {
+        if (this.scheduler.equals("mlfq")) {
+            return new FeedbackScheduler(this);
+        } else if (this.scheduler.equals("roundrobin")) {
+            return new RoundRobinScheduler(this);
+        }
+        throw new IllegalArgumentException("Unknown scheduler '" + this.scheduler + "'.");
+    }
+    
+    /**
+     * Utility method to return a new process, either advanced step by step,
+     * or running on a thread of its own.
+     * 
+     * @param pid Process ID.
+     * @param processCyclesToGo Number of process cycles to do before done.
+     * @param pagesMemoryToStart How many pages are needed to start the process.
+     * @return New process.
+     */
+    public Process getProcessImpl(int pid, int processCyclesToGo, int pagesMemoryToStart) {
+        if (this.processExecution.equals("threaded")) {
+            return new ThreadedProcess(this, pid, processCyclesToGo,
+                                       pagesMemoryToStart, this.quantum);
+        } else if (this.processExecution.equals("stepped")) {
+            return new Process(this, pid, processCyclesToGo,
+                               pagesMemoryToStart, this.quantum);
+        }
+        throw new IllegalArgumentException("Unknown process execution '"
+                                           + this.processExecution + "'.");
+    }
+    
+    /**
+     * Picks the class of a new process at random, by the weights of the
+     * classes.
+     * 
+     * @return Name of the process class, or null if none are configured.
+     */
+    public String nextProcessClass() {
+        if (this.processClasses.length == 0) {
+            return null;
+        }
+        double total = 0;
+        for (double weight : this.processClassWeights) {
+            total += weight;
+        }
+        double choice = this.randomiser.nextDouble() * total;
+        int i = 0;
+        while ((i < this.processClasses.length - 1)
+                && (choice >= this.processClassWeights[i])) {
+            choice -= this.processClassWeights[i];
+            i++;
+        }
+        return this.processClasses[i];
+    }
+
+    /**
+     * @param processClass Name of a process class, or null.
+     * @return Number of the class (in the order configured), or -1 for null.
+     */
+    public int getProcessClassNumber(String processClass) {
+        return Arrays.asList(this.processClasses).indexOf(processClass);
+    }
+
+    /**
+     * Decides at random whether a new process is a fork of one running.
+     * 
+     * @return True if it is.
+     */
+    public boolean nextIsFork() {
+        return (this.forkProbability > 0) && (this.randomiser.nextDouble() < this.forkProbability);
+    }
+    
+    /**
+     * Utility method to return a new instance of the memory reference
+     * pattern of a stream of a process class. Unless configured otherwise
+     * ("processClass.NAME.pc" or ".mp" naming a generator), it's the random
+     * walk processes have always followed.
+     * 
+     * @param processClass Name of the process class, or null.
+     * @param stream "pc" for the process counter, "mp" for the memory
+     *      pointer.
+     * @return Instance of a workload generator.
+     */
+    public WorkloadGenerator getWorkloadImpl(String processClass, String stream) {
+        String generatorName = null;
+        if (processClass != null) {
+            generatorName = this.configuration.getProperty("processClass." + processClass
+                                                           + "." + stream);
+        }
+        if (generatorName == null) {
+            return new GaussianWorkload(this, stream.equals("pc"));
+        }
+        return this._newWorkload(generatorName, 0);
     }
     
     /**
@@ -143,11 +1287,22 @@ public class Simulation {
         return processCyclesToGo;
     }
     
+    /**
+     * Every process draws its own random numbers, so its course doesn't
+     * depend on what other processes do in between.
+     * 
+     * @return Random number generator for a new process.
+     */
+    public Random newRandomiser() {
+        return new Random(this.randomiser.nextLong());
+    }
+    
     /**
      * @return Number of pages of memory to start process.
      */
     public int getPagesMemoryToStart() {
-        return this.randomiser.nextInt(this.pagesMemoryToStart);
+        // At least one frame, or the process can never run.
+        return 1 + this.randomiser.nextInt(this.pagesMemoryToStart);
     }
     
     /**
@@ -188,21 +1343,359 @@ public class Simulation {
         return quantum;
     }
 
+    /**
+     * @return True if pages are to be read ahead of fault streams.
+     */
+    public boolean isPrefetchEnabled() {
+        return prefetchEnabled;
+    }
+
+    /**
+     * @return Returns the initial readahead window in pages.
+     */
+    public int getPrefetchMinWindow() {
+        return prefetchMinWindow;
+    }
+
+    /**
+     * @return Returns the maximum readahead window in pages.
+     */
+    public int getPrefetchMaxWindow() {
+        return prefetchMaxWindow;
+    }
+
+    /**
+     * @return Returns the memory management mode (see {@link MemoryManager}).
+     */
+    public int getMemoryManagement() {
+        return memoryManagement;
+    }
+
+    /**
+     * @return Returns the number of cycles between resident set rebalancing
+     *      (the working set window).
+     */
+    public int getMemoryManagementInterval() {
+        return memoryManagementInterval;
+    }
+
+    /**
+     * @return Returns the page faults per 1000 instructions above which a
+     *      process gets more frames.
+     */
+    public double getPffUpperFaultRate() {
+        return pffUpperFaultRate;
+    }
+
+    /**
+     * @return Returns the page faults per 1000 instructions below which a
+     *      process gives frames back.
+     */
+    public double getPffLowerFaultRate() {
+        return pffLowerFaultRate;
+    }
+
+    /**
+     * @return Returns the number of frames given or taken at a time.
+     */
+    public int getPffFrameStep() {
+        return pffFrameStep;
+    }
+
+    /**
+     * @return Returns the number of cycles a process may stay suspended
+     *      before it is swapped in for the youngest active one.
+     */
+    public long getMaxSuspendCycles() {
+        return maxSuspendCycles;
+    }
+
+    /**
+     * @return Returns the number of priority levels of the multi-level
+     *      feedback queue scheduler.
+     */
+    public int getMlfqLevels() {
+        return mlfqLevels;
+    }
+
+    /**
+     * @return Returns the number of cycles between lifting all processes to
+     *      the top priority level.
+     */
+    public int getMlfqBoostInterval() {
+        return mlfqBoostInterval;
+    }
+
+    /**
+     * @return Returns the number of CPU cores.
+     */
+    public int getCpuCores() {
+        return cpuCores;
+    }
+
+    /**
+     * @return Returns the number of cycles the frame allocator is locked
+     *      per page fault.
+     */
+    public int getFramePoolLockCycles() {
+        return framePoolLockCycles;
+    }
+
+    /**
+     * @return Returns the number of host threads simulating the cores.
+     */
+    public int getEngineThreads() {
+        return engineThreads;
+    }
+
+    /**
+     * @return Returns the length in cycles of the windows the cores only see
+     *      each other between (0 for them to see each other at every
+     *      dispatch). Part of the model: results differ by the lookahead, but
+     *      not by the engine (see {@link Computer}).
+     */
+    public int getEngineLookahead() {
+        return engineLookahead;
+    }
+
+    /**
+     * @return True if the cores run through whole windows, in parallel with
+     *      more than one engine thread ("engine" is "windowed", the default
+     *      with an engineLookahead), false if they are stepped one dispatch
+     *      at a time ("stepped").
+     */
+    public boolean isEngineWindowed() {
+        return this.engine.equals("windowed");
+    }
+
+    /**
+     * @return Returns the lock on the frame allocator shared by all cores.
+     */
+    public FramePool getFramePool() {
+        return this.myComputer.getFramePool();
+    }
+
+    /**
+     * @return Returns the reference counts of shared pages, or null if
+     *      nothing is shared.
+     */
+    public SharedMemory getSharedMemory() {
+        return this.myComputer.getSharedMemory();
+    }
+
+    /**
+     * @return Returns the NUMA nodes of physical memory, or null if memory
+     *      is uniform.
+     */
+    public NumaMemory getNumaMemory() {
+        return this.myComputer.getNumaMemory();
+    }
+
+    /**
+     * @return True if accesses, faults and write-backs are counted per page.
+     */
+    public boolean isHeatProfile() {
+        return heatProfile;
+    }
+
+    /**
+     * @return Returns the number of hottest pages reported per kind of event.
+     */
+    public int getHeatTopK() {
+        return heatTopK;
+    }
+
+    /**
+     * @return Returns the number of counters per row of the page heat
+     *      sketches.
+     */
+    public int getHeatSketchWidth() {
+        return heatSketchWidth;
+    }
+
+    /**
+     * @return Returns the number of rows of the page heat sketches.
+     */
+    public int getHeatSketchDepth() {
+        return heatSketchDepth;
+    }
+
+    /**
+     * @return Returns the number of buckets of the heat map of a process.
+     */
+    public int getHeatMapBuckets() {
+        return heatMapBuckets;
+    }
+
+    /**
+     * @return True if reuse distances and inter-reference gaps are counted.
+     */
+    public boolean isLocalityProfile() {
+        return localityProfile;
+    }
+
+    /**
+     * @return Returns the share of the pages reuse distances are taken for.
+     */
+    public double getLocalitySampling() {
+        return localitySampling;
+    }
+
+    /**
+     * @return True if evicted pages are remembered, to count refaults.
+     */
+    public boolean isRefaultTracking() {
+        return refaultTracking;
+    }
+
+    /**
+     * @return Returns the number of evicted pages remembered per process.
+     */
+    public int getShadowEntries() {
+        return shadowEntries;
+    }
+
+    /**
+     * @return True if evicted pages go to a compressed pool before disk.
+     */
+    public boolean isCompressedPool() {
+        return compressedPool;
+    }
+
+    /**
+     * @return Returns the size of the compressed pool, in percent of the
+     *      frames a process starts with.
+     */
+    public double getCompressedPoolPercent() {
+        return compressedPoolPercent;
+    }
+
+    /**
+     * @return Returns the mean compression ratio of the pages.
+     */
+    public double getCompressionRatio() {
+        return compressionRatio;
+    }
+
+    /**
+     * @return Returns the standard deviation of the logarithm of the
+     *      compression ratio.
+     */
+    public double getCompressionRatioSpread() {
+        return compressionRatioSpread;
+    }
+
+    /**
+     * @return Returns the number of cycles to compress a page.
+     */
+    public int getCompressCycles() {
+        return compressCycles;
+    }
+
+    /**
+     * @return Returns the number of cycles to decompress a page.
+     */
+    public int getDecompressCycles() {
+        return decompressCycles;
+    }
+
+    /**
+     * @return Returns the number of pages of code shared by the processes
+     *      of a class.
+     */
+    public int getSharedCodePages() {
+        return sharedCodePages;
+    }
+
+    /**
+     * @return Returns the probability of a new process being a fork.
+     */
+    public double getForkProbability() {
+        return forkProbability;
+    }
+
+    /**
+     * @return Returns the number of cycles to copy a page written to.
+     */
+    public int getCowCopyCycles() {
+        return cowCopyCycles;
+    }
+
+    /**
+     * @return Returns the number of NUMA nodes (1 for uniform memory).
+     */
+    public int getNumaNodes() {
+        return numaNodes;
+    }
+
+    /**
+     * @return Returns the number of frames per NUMA node (0 for no limit).
+     */
+    public int getNumaNodeFrames() {
+        return numaNodeFrames;
+    }
+
+    /**
+     * @return Returns the NUMA allocation policy (see {@link NumaMemory}).
+     */
+    public int getNumaPolicy() {
+        return numaPolicy;
+    }
+
+    /**
+     * @return Returns the number of extra cycles for accessing a page on
+     *      another node.
+     */
+    public int getNumaRemoteCycles() {
+        return numaRemoteCycles;
+    }
+
+    /**
+     * @return Returns the number of remote accesses in a row migrating a
+     *      page (0 for no migration).
+     */
+    public int getNumaMigrationThreshold() {
+        return numaMigrationThreshold;
+    }
+
+    /**
+     * @return Returns the number of cycles to migrate a page.
+     */
+    public int getNumaMigrationCycles() {
+        return numaMigrationCycles;
+    }
+
+    /**
+     * @return Returns the writer of the page reference trace, or null if not
+     *      tracing.
+     */
+    public TraceWriter getTraceWriter() {
+        return traceWriter;
+    }
+
+    /**
+     * @return Returns the page heat profiler, or null if not profiling.
+     */
+    public HeatProfiler getHeatProfiler() {
+        return this.myComputer.getHeatProfiler();
+    }
+
     /**
      * Returns a new relative location for the memory pointer by a certain
      * probability. If not, then the passed location is kept.
      * 
      * @param currentLocation Current relative location.
+     * @param randomiser Random number generator of the process.
      * @return Relative position in virtual address space.
      */
-    public double newMPlocation(double currentLocation) {
-        if ((this.randomiser.nextDouble() < this.probabilityMemoryJump)
+    public double newMPlocation(double currentLocation, Random randomiser) {
+        if ((randomiser.nextDouble() < this.probabilityMemoryJump)
                 || (currentLocation == 0)) {
-            return this._newMPlocation();
+            return this._newMPlocation(randomiser);
         } else {
-            currentLocation += this._newMPrelocation();
+            currentLocation += this._newMPrelocation(randomiser);
             if (currentLocation < 0) {
-                currentLocation = this._newMPlocation();
+                currentLocation = this._newMPlocation(randomiser);
             }
         }
         return currentLocation;
@@ -213,16 +1706,17 @@ public class Simulation {
      * probability. If not, then the passed location is kept.
      * 
      * @param currentLocation Current relative location.
+     * @param randomiser Random number generator of the process.
      * @return Relative position in virtual address space.
      */
-    public double newPClocation(double currentLocation) {
-        if ((this.randomiser.nextDouble() < this.probabilityMemoryJump)
+    public double newPClocation(double currentLocation, Random randomiser) {
+        if ((randomiser.nextDouble() < this.probabilityMemoryJump)
                 || (currentLocation == 0)) {
-            return this._newPClocation();
+            return this._newPClocation(randomiser);
         } else {
-            currentLocation += this._newPCrelocation();
+            currentLocation += this._newPCrelocation(randomiser);
             if (currentLocation < 0) {
-                currentLocation = this._newPClocation();
+                currentLocation = this._newPClocation(randomiser);
             }
         }
         return currentLocation;
@@ -240,39 +1734,43 @@ public class Simulation {
     /**
      * Returns CPU cycles for processing.
      * 
+     * @param randomiser Random number generator of the process.
      * @return Number of cycles.
      */
-    public int getCpuCyclesProcessing() {
-        return 2 + this.randomiser.nextInt(this.cpuCyclesProcessing);
+    public int getCpuCyclesProcessing(Random randomiser) {
+        return 2 + randomiser.nextInt(this.cpuCyclesProcessing);
     }
 
     /**
      * Used after a jump. Determines whether we should free the page that we've
      * jumped away from.
      * 
+     * @param randomiser Random number generator of the process.
      * @return True if the page is to be freed.
      */
-    public boolean askFreePage() {
-        return (this.probabilityFreePage < this.randomiser.nextFloat());
+    public boolean askFreePage(Random randomiser) {
+        return (this.probabilityFreePage < randomiser.nextFloat());
     }
 
     /**
      * Are we successful on the TLB page resolution?
      * 
+     * @param randomiser Random number generator of the process.
      * @return True for a successful TLB lookup.
      */
-    public boolean isTlbHit() {
-        return (this.randomiser.nextFloat() < this.tlbHitRate);
+    public boolean isTlbHit(Random randomiser) {
+        return (randomiser.nextFloat() < this.tlbHitRate);
     }
 
     /**
      * Cycles used for page table lookup.
      * 
+     * @param randomiser Random number generator of the process.
      * @return Number of cycles.
      */
-    public int getPageTableCycles() {
+    public int getPageTableCycles(Random randomiser) {
         int waitCycles = (int)(this.waitCyclesPerPageTableLookup
-                               + this.randomiser.nextGaussian()
+                               + randomiser.nextGaussian()
                                * this.waitCyclesPerPageTableSpread);
         if (waitCycles < 5) {
             waitCycles = 5;
@@ -283,11 +1781,12 @@ public class Simulation {
     /**
      * Cycles used for loading page from disk into page table.
      * 
+     * @param randomiser Random number generator of the process.
      * @return Number of cycles.
      */
-    public int getPageFromDiskCycles() {
+    public int getPageFromDiskCycles(Random randomiser) {
         int waitCycles = (int)(this.waitCyclesPerDiskRequest
-                + this.randomiser.nextGaussian()
+                + randomiser.nextGaussian()
                 * this.waitCyclesPerDiskRequestSpread);
         if (waitCycles < 500) {
             waitCycles = 500;
@@ -298,54 +1797,294 @@ public class Simulation {
     /**
      * Returns a new relative location for the process counter.
      * 
+     * @param randomiser Random number generator of the process.
      * @return Relative position in virtual address space.
      */
-    private double _newPClocation() {
-        return 0.75 * this.randomiser.nextFloat();
+    private double _newPClocation(Random randomiser) {
+        return 0.75 * randomiser.nextFloat();
     }
 
     /**
      * Returns byte relocation for current process counter.
      * 
+     * @param randomiser Random number generator of the process.
      * @return Number of bytes to relocate PC for.
      */
-    private int _newPCrelocation() {
+    private int _newPCrelocation(Random randomiser) {
         return (int)(this.memoryPointerRelocationSpread / this.pageSize
-                     * (1 + this.randomiser.nextGaussian()));
+                     * (1 + randomiser.nextGaussian()));
     }
 
     /**
      * Returns a new relative location for the memory pointer.
      * 
+     * @param randomiser Random number generator of the process.
      * @return Relative position in virtual address space.
      */
-    private double _newMPlocation() {
-        return 0.75 + 0.25 * this.randomiser.nextFloat();
+    private double _newMPlocation(Random randomiser) {
+        return 0.75 + 0.25 * randomiser.nextFloat();
     }
 
     /**
      * Returns byte relocation for memory pointer.
      * 
+     * @param randomiser Random number generator of the process.
      * @return Number of bytes to relocate MP for.
      */
-    private int _newMPrelocation() {
+    private int _newMPrelocation(Random randomiser) {
         return (int)(this.memoryPointerRelocationSpread / this.pageSize
-                     * this.randomiser.nextGaussian());
+                     * randomiser.nextGaussian());
+    }
+
+    /**
+     * Makes a workload generator configured as "generator.NAME.type" and
+     * further "generator.NAME.*" properties. Types are "gaussian" (stream),
+     * "zipf" (start, pages, exponent), "loop" (start, pages, stride), "scan"
+     * (start, stride), "mixture" (components, weights) and "phases"
+     * (components, lengths).
+     * 
+     * @param name Name of the generator.
+     * @param depth How deep in mixtures and phases we are.
+     * @return New instance of the generator.
+     */
+    private WorkloadGenerator _newWorkload(String name, int depth) {
+        String prefix = "generator." + name + ".";
+        String type = this.configuration.getProperty(prefix + "type");
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown workload generator '" + name + "'.");
+        }
+        if (depth > 16) {
+            throw new IllegalArgumentException("Workload generator '" + name
+                                               + "' is nested too deep.");
+        }
+        int start = Integer.parseInt(this.configuration.getProperty(prefix + "start", "0"));
+        int stride = Integer.parseInt(this.configuration.getProperty(prefix + "stride", "1"));
+        if (type.equals("gaussian")) {
+            return new GaussianWorkload(this, this.configuration.getProperty(prefix + "stream", "mp")
+                                                  .equals("pc"));
+        } else if (type.equals("zipf")) {
+            return new ZipfWorkload(start,
+                                    Integer.parseInt(this.configuration.getProperty(prefix + "pages")),
+                                    Double.parseDouble(this.configuration.getProperty(prefix + "exponent", "1")));
+        } else if (type.equals("loop")) {
+            return new SequentialWorkload(start,
+                                          Integer.parseInt(this.configuration.getProperty(prefix + "pages")),
+                                          stride);
+        } else if (type.equals("scan")) {
+            return new SequentialWorkload(start, 0, stride);
+        } else if (type.equals("mixture") || type.equals("phases")) {
+            String[] componentNames = this._getList(prefix + "components");
+            WorkloadGenerator[] components = new WorkloadGenerator[componentNames.length];
+            for (int i = 0; i < componentNames.length; i++) {
+                components[i] = this._newWorkload(componentNames[i], depth + 1);
+            }
+            if (type.equals("mixture")) {
+                String[] weights = this._getList(prefix + "weights");
+                double[] values = new double[weights.length];
+                for (int i = 0; i < weights.length; i++) {
+                    values[i] = Double.parseDouble(weights[i]);
+                }
+                return new MixtureWorkload(components, values);
+            }
+            String[] lengths = this._getList(prefix + "lengths");
+            int[] values = new int[lengths.length];
+            for (int i = 0; i < lengths.length; i++) {
+                values[i] = Integer.parseInt(lengths[i]);
+            }
+            return new PhasedWorkload(components, values);
+        }
+        throw new IllegalArgumentException("Unknown workload generator type '" + type + "'.");
+    }
+
+    /**
+     * @param key Configuration key.
+     * @return Comma separated values of the key (none if it isn't set).
+     */
+    private String[] _getList(String key) {
+        String value = this.configuration.getProperty(key, "").trim();
+        if (value.length() == 0) {
+            return new String[0];
+        }
+        return value.split("\\s*,\\s*");
+    }
+
+    /**
+     * @return Key of the results of this simulation in the result cache, or
+     *      null if they aren't to be cached (no cache configured, no seed to
+     *      make them reproducible, or metrics, heat maps, locality
+     *      histograms or a trace to be written on the way, or the classes of
+     *      the simulator couldn't be hashed).
+     */
+    private String _resultCacheKey() {
+        if ((this.resultCache == null) || (this.configuration.getProperty("seed") == null)
+                || (this.metricsSampler != null) || this.heatProfile || this.localityProfile
+                || (this.traceWriter != null)) {
+            return null;
+        }
+        String version = ResultCache.codeVersion();
+        if (version == null) {
+            return null;
+        }
+        return ResultCache.key(this.configuration, this.pageReplacement,
+                               Long.toString(this.forkedAtCycle), version);
     }
 
     /**
-     * Inventorise, and write results to a file.
+     * Inventorise.
+     * 
+     * @return Results section of the results file.
+     */
+    private String _formatResults() {
+        StringBuilder out = new StringBuilder();
+        out.append("[Results]\n");
+        out.append("Total instructions: " + this.myComputer.getTotalInstructions() + "\n");
+        out.append("Total waits: " + this.myComputer.getTotalWaits() + "\n");
+        out.append("Total cycles: " + this.myComputer.getCurrentCycle() + "\n");
+        out.append("Total free pages returned: " + this.myComputer.getFreePagesReturned() + "\n");
+        out.append("Total clean pages returned: " + this.myComputer.getCleanPagesReturned() + "\n");
+        out.append("Total dirty pages returned: " + this.myComputer.getDirtyPagesReturned() + "\n");
+        out.append("Total page faults: " + this.myComputer.getPageFaults() + "\n");
+        if (this.forkedAtCycle >= 0) {
+            out.append("Forked at cycle: " + this.forkedAtCycle + "\n");
+        }
+        if (this.memoryManagement != MemoryManager.FIXED) {
+            out.append("Memory management: " + MemoryManager.getModeName(this.memoryManagement) + "\n");
+            out.append("Process suspensions: " + this.myComputer.getProcessSuspensions() + "\n");
+        }
+        if (this.prefetchEnabled) {
+            out.append("Prefetches issued: " + this.myComputer.getPrefetchesIssued() + "\n");
+            out.append("Prefetch hits: " + this.myComputer.getPrefetchHits() + "\n");
+            out.append("Prefetches wasted: " + this.myComputer.getPrefetchesWasted() + "\n");
+            out.append("Prefetch evictions: " + this.myComputer.getPrefetchEvictions() + "\n");
+            // Every hit is a disk read the process didn't have to wait for.
+            out.append("Fault cycles hidden by prefetch: "
+                       + (long)this.myComputer.getPrefetchHits() * this.waitCyclesPerDiskRequest + "\n");
+        }
+        if (this.compressedPool) {
+            int stores = this.myComputer.getPoolStores();
+            int rejections = this.myComputer.getPoolRejections();
+            out.append("Evictions to compressed pool: " + stores + "\n");
+            out.append("Evictions to disk (rejected by pool): " + rejections + "\n");
+            out.append("Compressed pool write-backs: " + this.myComputer.getPoolWritebacks() + "\n");
+            out.append("Faults from compressed pool: " + this.myComputer.getPoolLoads() + "\n");
+            out.append("Faults from disk or new: "
+                       + (this.myComputer.getPageFaults() - this.myComputer.getPoolLoads()) + "\n");
+            out.append(String.format("Compression ratio: %.2f\n", (double)this.myComputer.getPoolStoredBytes()
+                                     / Math.max(1, this.myComputer.getPoolCompressedBytes())));
+        }
+        if (this.myComputer.getSharedMemory() != null) {
+            out.append("Forks: " + this.myComputer.getForks() + "\n");
+            out.append("Shared page faults served from memory: " + this.myComputer.getMinorFaults() + "\n");
+            out.append("Copy-on-write faults: " + this.myComputer.getCowFaults() + "\n");
+            out.append("Copy-on-write copies: " + this.myComputer.getCowCopies() + "\n");
+            out.append(String.format("Resident frames without sharing (mean, peak): %.1f %d\n",
+                                     this.myComputer.getMeanResidentFrames(false),
+                                     this.myComputer.getPeakResidentFrames(false)));
+            out.append(String.format("Resident frames with sharing (mean, peak): %.1f %d\n",
+                                     this.myComputer.getMeanResidentFrames(true),
+                                     this.myComputer.getPeakResidentFrames(true)));
+        }
+        NumaMemory numa = this.myComputer.getNumaMemory();
+        if (numa != null) {
+            long local = this.myComputer.getLocalAccesses();
+            long remote = this.myComputer.getRemoteAccesses();
+            out.append("NUMA nodes: " + numa.getNodes() + "\n");
+            out.append("Local accesses: " + local + "\n");
+            out.append("Remote accesses: " + remote + "\n");
+            out.append(String.format("Remote access share: %.2f%%\n",
+                                     100.0 * remote / Math.max(1, local + remote)));
+            out.append("Page migrations: " + this.myComputer.getMigrations() + "\n");
+            out.append("Pages placed off the node asked for: " + numa.getFallbacks() + "\n");
+            out.append("Pages placed per node:");
+            for (int node = 0; node < numa.getNodes(); node++) {
+                out.append(" " + numa.getPlacements(node));
+            }
+            out.append("\nPeak frames in use per node:");
+            for (int node = 0; node < numa.getNodes(); node++) {
+                out.append(" " + numa.getPeakUsed(node));
+            }
+            out.append("\n");
+        }
+        if (this.refaultTracking) {
+            int refaults = this.myComputer.getRefaults();
+            out.append("Refaults: " + refaults + "\n");
+            out.append(String.format("Refault rate: %.2f%%\n", 100.0 * refaults
+                                     / Math.max(1, this.myComputer.getPageFaults())));
+            long[] distances = this.myComputer.getRefaultDistances();
+            int buckets = 1;
+            for (int bucket = 0; bucket < distances.length; bucket++) {
+                if (distances[bucket] > 0) {
+                    buckets = bucket + 1;
+                }
+            }
+            StringBuilder labels = new StringBuilder();
+            StringBuilder counts = new StringBuilder();
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                long low = (bucket == 0) ? 0 : (1L << (bucket - 1));
+                long high = (bucket == 0) ? 0 : ((1L << bucket) - 1);
+                labels.append((low == high) ? (" " + low) : (" " + low + "-" + high));
+                counts.append(" " + distances[bucket]);
+            }
+            out.append("Refault distance buckets:" + labels + "\n");
+            out.append("Refault distances:" + counts + "\n");
+        }
+        if (this.cpuCores > 1) {
+            out.append("CPU cores: " + this.cpuCores + "\n");
+            out.append("Work steals: " + this.myComputer.getWorkSteals() + "\n");
+            StringBuilder utilisation = new StringBuilder();
+            for (Core core : this.myComputer.getCores()) {
+                utilisation.append(String.format(" %.1f%%", 100.0 * core.getBusyCycles()
+                                                 / Math.max(1, this.myComputer.getCurrentCycle())));
+            }
+            out.append("CPU utilisation:" + utilisation + "\n");
+        }
+        if (this.framePoolLockCycles > 0) {
+            FramePool framePool = this.myComputer.getFramePool();
+            out.append("Frame pool allocations: " + framePool.getAcquisitions() + "\n");
+            out.append("Frame pool contentions: " + framePool.getContentions() + "\n");
+            out.append("Frame pool contention cycles: " + framePool.getContentionCycles() + "\n");
+        }
+        out.append("Processes done: " + this.getProcessesToDo() + "\n");
+        if (this.heatProfile) {
+            out.append("\n");
+            out.append(this.myComputer.getHeatProfiler().report());
+        }
+        if (this.localityProfile) {
+            out.append("\n");
+            out.append(this.myComputer.getLocalityReport().report());
+        }
+        if (this.myComputer.getDuelingReport() != null) {
+            out.append("\n");
+            out.append(this.myComputer.getDuelingReport().report());
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write results to a file.
+     * 
+     * @param results Results section, as made by {@link #_formatResults()}.
+     */
+    private void _writeResults(String results) {
+        this._writeResults("results_" + this.pageReplacement + ".txt", this.pageReplacement + "\n", results);
+    }
+
+    /**
+     * Write results to a file.
+     * 
+     * @param retultFileName Name of the file.
+     * @param pageReplacementClassNames Page replacement algorithms, a line
+     *      each.
+     * @param results Results section.
      */
-    private void _collectResults() {
-        String pageReplacementClassName = this.getPageReplacementImpl(null, null).getClass().getName();
-        String retultFileName = "results_" + pageReplacementClassName + ".txt";
+    private void _writeResults(String retultFileName, String pageReplacementClassNames, String results) {
         BufferedWriter out;
         try {
             out = new BufferedWriter(new FileWriter(retultFileName));
             
             // Write the page replacement algorithm implementation to the file.
             out.write("[PageReplacement]\n");
-            out.write(pageReplacementClassName + "\n\n");
+            out.write(pageReplacementClassNames + "\n");
             
             // Write the configuration to the output file as well.
             out.write("[Configuration]\n");
@@ -364,14 +2103,7 @@ public class Simulation {
             }
 
             // Show us how we've done.
-            out.write("[Results]\n");
-            out.write("Total instructions: " + this.myComputer.getTotalInstructions() + "\n");
-            out.write("Total waits: " + this.myComputer.getTotalWaits() + "\n");
-            out.write("Total cycles: " + this.myComputer.getCurrentCycle() + "\n");
-            out.write("Total free pages returned: " + this.myComputer.getFreePagesReturned() + "\n");
-            out.write("Total clean pages returned: " + this.myComputer.getCleanPagesReturned() + "\n");
-            out.write("Total dirty pages returned: " + this.myComputer.getDirtyPagesReturned() + "\n");
-            out.write("Processes done: " + this.getProcessesToDo() + "\n");
+            out.write(results);
             out.close();
         } catch (IOException e) {
             logger.severe("Could not write to file " + retultFileName);
@@ -0,0 +1,163 @@
+/*
+ * SizingSearch.java
+ *
+ * Search for the fewest frames keeping the fault rate of a page replacement
+ * algorithm below a target.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Search for the fewest frames keeping the fault rate of a page replacement
+ * algorithm at or below a target. Sizes are probed a few at a time (so they
+ * can be run in parallel): doubling from the smallest size until one meets
+ * the target, which brackets the answer, then splitting the bracket between
+ * the largest size known to miss and the smallest known to meet into equal
+ * parts until it is no wider than the resolution.
+ *
+ * The fault rate isn't strictly falling with more frames (see Belady's
+ * anomaly), so the bracket is always made from all sizes probed so far: the
+ * smallest meeting the target, and the largest below that missing it.
+ */
+public class SizingSearch {
+    private String policy;
+    private int minFrames;
+    private int maxFrames;
+    private int resolution;
+    private Map<Integer, double[]> probes = new TreeMap<Integer, double[]>();
+    private int missed;
+    private int met = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param policy Class name of the page replacement algorithm.
+     * @param minFrames Smallest number of frames to try.
+     * @param maxFrames Largest number of frames to try.
+     * @param resolution Width of the bracket to stop at.
+     */
+    public SizingSearch(String policy, int minFrames, int maxFrames, int resolution) {
+        this.policy = policy;
+        this.minFrames = Math.max(1, minFrames);
+        this.maxFrames = Math.max(this.minFrames, maxFrames);
+        this.resolution = Math.max(1, resolution);
+        this.missed = this.minFrames - 1;
+    }
+
+    /**
+     * @param count Number of sizes to probe at once.
+     * @return Sizes to probe next, none if done.
+     */
+    public List<Integer> nextProbes(int count) {
+        List<Integer> sizes = new ArrayList<Integer>();
+        if (this.isDone()) {
+            return sizes;
+        }
+        if (this.met < 0) {
+            // Bracketing: double up from what's known to miss.
+            long size = (this.missed < this.minFrames) ? this.minFrames : 2L * this.missed;
+            while ((sizes.size() < count) && (size <= 2L * this.maxFrames)) {
+                int frames = (int)Math.min(size, this.maxFrames);
+                if (!sizes.contains(frames)) {
+                    sizes.add(frames);
+                }
+                if (frames == this.maxFrames) {
+                    break;
+                }
+                size *= 2;
+            }
+        } else {
+            // Bisection, or rather (count + 1)-section.
+            long gap = this.met - this.missed;
+            for (int i = 1; i <= count; i++) {
+                int frames = (int)(this.missed + gap * i / (count + 1));
+                if ((frames > this.missed) && (frames < this.met) && !sizes.contains(frames)) {
+                    sizes.add(frames);
+                }
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Records the outcome of a probe.
+     *
+     * @param frames Number of frames probed.
+     * @param faultRate Page faults per 1000 instructions (so far, if given
+     *      up).
+     * @param meets True if the target is met.
+     * @param completed False if the run was given up as clearly missing.
+     */
+    public void record(int frames, double faultRate, boolean meets, boolean completed) {
+        this.probes.put(frames, new double[] {faultRate, meets ? 1 : 0, completed ? 1 : 0});
+        this.met = -1;
+        for (Map.Entry<Integer, double[]> probe : this.probes.entrySet()) {
+            if (probe.getValue()[1] > 0) {
+                this.met = probe.getKey();
+                break;
+            }
+        }
+        this.missed = this.minFrames - 1;
+        for (Map.Entry<Integer, double[]> probe : this.probes.entrySet()) {
+            if ((this.met >= 0) && (probe.getKey() > this.met)) {
+                break;
+            }
+            if (probe.getValue()[1] == 0) {
+                this.missed = probe.getKey();
+            }
+        }
+    }
+
+    /**
+     * @return True if the bracket is narrow enough, or the largest size
+     *      misses.
+     */
+    public boolean isDone() {
+        if (this.met < 0) {
+            return this.missed >= this.maxFrames;
+        }
+        return this.met - this.missed <= this.resolution;
+    }
+
+    /**
+     * @return Returns the upper end of the bracket: the smallest size known
+     *      to meet the target, or the largest size to try.
+     */
+    public int getUpperFrames() {
+        return (this.met >= 0) ? this.met : this.maxFrames;
+    }
+
+    /**
+     * @return Returns the class name of the page replacement algorithm.
+     */
+    public String getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return Fewest frames found to meet the target, or -1 if none.
+     */
+    public int getFrames() {
+        return this.met;
+    }
+
+    /**
+     * @return Probes so far, by number of frames: fault rate, 1 if met, 1 if
+     *      completed.
+     */
+    public Map<Integer, double[]> getProbes() {
+        return this.probes;
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Snapshot.java
+ *
+ * Captures the full state of a simulation, to be carried on from later.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Captures the full state of a simulation: the clocks, schedulers and
+ * processes of the computer, every page table and frame, and the states of
+ * all random number generators. A simulation restored from a snapshot carries
+ * on exactly as the original would have.
+ *
+ * Snapshots are kept in memory (to clone a simulation) or written to
+ * compressed files. Processes running on threads of their own can't be
+ * captured.
+ *
+ * The large parts of the state (page tables, and arrays of frames and the
+ * like of at least 1 KiB) are not serialised with the rest of the objects,
+ * but raw into an area in front of them, in slots of their own (see
+ * {@link SnapshotLayout}). The rest of the objects shift as soon as anything
+ * changes, but with the same layout for every image, a slot that hasn't
+ * changed is the same bytes in the same place, so the checkpoint writer only
+ * writes the slots that changed (see {@link Checkpointer}). The image starts
+ * with a slot of its own (magic number and size of the area), so the area
+ * is aligned to slots.
+ */
+public class Snapshot {
+    private static final int MAGIC = 0x534e4150;
+    private static final int AREA_START = SnapshotLayout.SLOT;
+
+    /**
+     * Captures a simulation in memory.
+     *
+     * @param aSimulation Simulation to capture.
+     * @return Snapshot image.
+     * @throws IOException If the simulation can't be captured.
+     */
+    public static byte[] capture(Simulation aSimulation) throws IOException {
+        return capture(aSimulation, new SnapshotLayout());
+    }
+
+    /**
+     * Captures a simulation in memory, with its large parts where they were
+     * in the last image captured with the layout.
+     *
+     * @param aSimulation Simulation to capture.
+     * @param layout Layout of the parts, kept from image to image.
+     * @return Snapshot image.
+     * @throws IOException If the simulation can't be captured.
+     */
+    public static byte[] capture(Simulation aSimulation, SnapshotLayout layout) throws IOException {
+        if (aSimulation.getProcessExecution().equals("threaded")) {
+            throw new IOException("Processes running on threads can't be captured.");
+        }
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        PartOutputStream objects = new PartOutputStream(stream, layout);
+        objects.writeObject(aSimulation);
+        objects.flush();
+        layout.finish();
+
+        byte[] area = new byte[layout.getSize()];
+        for (int i = 0; i < objects.parts.size(); i++) {
+            byte[] part = objects.parts.get(i);
+            int[] slots = objects.slots.get(i);
+            for (int j = 0; j < slots.length; j++) {
+                System.arraycopy(part, j * SnapshotLayout.SLOT, area, slots[j] * SnapshotLayout.SLOT,
+                                 Math.min(SnapshotLayout.SLOT, part.length - j * SnapshotLayout.SLOT));
+            }
+        }
+        ByteArrayOutputStream image = new ByteArrayOutputStream(AREA_START + area.length + stream.size());
+        DataOutputStream data = new DataOutputStream(image);
+        data.writeInt(MAGIC);
+        data.writeInt(area.length);
+        data.write(new byte[AREA_START - 8]);
+        data.write(area);
+        stream.writeTo(data);
+        data.flush();
+        return image.toByteArray();
+    }
+
+    /**
+     * Restores a simulation captured in memory. Every call makes a separate
+     * copy.
+     *
+     * @param image Snapshot image.
+     * @return Restored simulation.
+     * @throws IOException If the image can't be read.
+     */
+    public static Simulation restore(byte[] image) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(image);
+        if ((image.length < AREA_START) || (data.getInt(0) != MAGIC)) {
+            throw new IOException("Snapshot of a different version.");
+        }
+        int areaLength = data.getInt(4);
+        ObjectInputStream objects = new PartInputStream(
+                new ByteArrayInputStream(image, AREA_START + areaLength,
+                                         image.length - AREA_START - areaLength), image);
+        try {
+            return (Simulation)objects.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Snapshot of a different version.", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of a simulation to a file.
+     *
+     * @param aSimulation Simulation to capture.
+     * @param fileName Name of the file.
+     * @throws IOException If the file can't be written.
+     */
+    public static void save(Simulation aSimulation, String fileName) throws IOException {
+        byte[] image = capture(aSimulation);
+        GZIPOutputStream out = new GZIPOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileName)));
+        try {
+            out.write(image);
+            out.finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a simulation from a snapshot file.
+     *
+     * @param fileName Name of the file.
+     * @return Restored simulation.
+     * @throws IOException If the file can't be read.
+     */
+    public static Simulation load(String fileName) throws IOException {
+        InputStream in = new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(fileName)));
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int count = in.read(buffer);
+            while (count >= 0) {
+                image.write(buffer, 0, count);
+                count = in.read(buffer);
+            }
+        } finally {
+            in.close();
+        }
+        return restore(image.toByteArray());
+    }
+
+    /**
+     * @param table List of page table entries.
+     * @return True if it's a page table on the heap: an array list of plain
+     *      page table entries.
+     */
+    private static boolean _isPageTable(ArrayList<?> table) {
+        if (table.isEmpty()) {
+            return false;
+        }
+        for (Object entry : table) {
+            if ((entry == null) || (entry.getClass() != PageTableEntry.class)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param table Page table.
+     * @return Frame numbers of the entries, 4 bytes each, then their status
+     *      bits, a byte each. Apart, so the status bits changing all the
+     *      time leave the frame numbers the same bytes.
+     */
+    private static byte[] _packTable(List<PageTableEntry> table) {
+        int entries = table.size();
+        ByteBuffer part = ByteBuffer.allocate(5 * entries);
+        for (int i = 0; i < entries; i++) {
+            PageTableEntry entry = table.get(i);
+            part.putInt(4 * i, entry.getPageFrameNumber());
+            part.put(4 * entries + i, (byte)((entry.isValid() ? 1 : 0) | (entry.isReferenced() ? 2 : 0)
+                                             | (entry.isModified() ? 4 : 0) | (entry.isPrefetched() ? 8 : 0)));
+        }
+        return part.array();
+    }
+
+    /**
+     * @param part Entries packed by {@link #_packTable(List)}.
+     * @param table Page table to add them to.
+     * @return The page table.
+     */
+    private static List<PageTableEntry> _unpackTable(ByteBuffer part, List<PageTableEntry> table) {
+        int entries = part.capacity() / 5;
+        for (int i = 0; i < entries; i++) {
+            PageTableEntry entry = new PageTableEntry(part.getInt(4 * i));
+            int bits = part.get(4 * entries + i);
+            entry.setValid((bits & 1) != 0);
+            entry.setReferenced((bits & 2) != 0);
+            entry.setModified((bits & 4) != 0);
+            entry.setPrefetched((bits & 8) != 0);
+            table.add(entry);
+        }
+        return table;
+    }
+
+    /**
+     * Stands in for a large part of the state in the object stream.
+     */
+    private static class Part implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private static final int BOOLEANS = 0;
+        private static final int BYTES = 1;
+        private static final int INTS = 2;
+        private static final int LONGS = 3;
+        private static final int TABLE = 4;
+        private static final int OFF_HEAP_TABLE = 5;
+
+        private int kind;
+        private int[] slots;
+        private int length;
+        private File directory;
+
+        /**
+         * Constructor.
+         *
+         * @param kind What the part was made from.
+         * @param slots Numbers of the slots of the part in the part area.
+         * @param length Length of the part in bytes.
+         * @param directory Directory of an off heap page table, or null.
+         */
+        public Part(int kind, int[] slots, int length, File directory) {
+            this.kind = kind;
+            this.slots = slots;
+            this.length = length;
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * Object stream putting the large parts of the state into the part area.
+     */
+    private static class PartOutputStream extends ObjectOutputStream {
+        private SnapshotLayout layout;
+        private List<byte[]> parts = new ArrayList<byte[]>();
+        private List<int[]> slots = new ArrayList<int[]>();
+
+        /**
+         * Constructor.
+         *
+         * @param out Stream to write the objects to.
+         * @param layout Layout of the parts.
+         * @throws IOException If the stream can't be written.
+         */
+        public PartOutputStream(OutputStream out, SnapshotLayout layout) throws IOException {
+            super(out);
+            this.layout = layout;
+            this.enableReplaceObject(true);
+        }
+
+        /**
+         * @param object Object to be written.
+         * @return Part standing in for it, if it's a large part, else the
+         *      object.
+         */
+        protected Object replaceObject(Object object) {
+            int kind;
+            byte[] part;
+            File directory = null;
+            if (object instanceof boolean[]) {
+                boolean[] values = (boolean[])object;
+                kind = Part.BOOLEANS;
+                part = new byte[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    part[i] = values[i] ? (byte)1 : (byte)0;
+                }
+            } else if (object instanceof byte[]) {
+                kind = Part.BYTES;
+                part = ((byte[])object).clone();
+            } else if (object instanceof int[]) {
+                int[] values = (int[])object;
+                kind = Part.INTS;
+                ByteBuffer buffer = ByteBuffer.allocate(4 * values.length);
+                buffer.asIntBuffer().put(values);
+                part = buffer.array();
+            } else if (object instanceof long[]) {
+                long[] values = (long[])object;
+                kind = Part.LONGS;
+                ByteBuffer buffer = ByteBuffer.allocate(8 * values.length);
+                buffer.asLongBuffer().put(values);
+                part = buffer.array();
+            } else if ((object.getClass() == ArrayList.class) && _isPageTable((ArrayList<?>)object)) {
+                @SuppressWarnings("unchecked")
+                List<PageTableEntry> table = (List<PageTableEntry>)object;
+                kind = Part.TABLE;
+                part = _packTable(table);
+            } else if (object instanceof OffHeapPageTable) {
+                OffHeapPageTable table = (OffHeapPageTable)object;
+                kind = Part.OFF_HEAP_TABLE;
+                part = _packTable(table);
+                directory = table.getDirectory();
+            } else {
+                return object;
+            }
+            if (part.length < SnapshotLayout.SLOT) {
+                return object;
+            }
+            int[] partSlots = this.layout.place(object, part.length);
+            this.parts.add(part);
+            this.slots.add(partSlots);
+            return new Part(kind, partSlots, part.length, directory);
+        }
+    }
+
+    /**
+     * Object stream taking the large parts of the state from the part area.
+     */
+    private static class PartInputStream extends ObjectInputStream {
+        private byte[] image;
+
+        /**
+         * Constructor.
+         *
+         * @param in Stream to read the objects from.
+         * @param image Snapshot image, with the part area.
+         * @throws IOException If the stream can't be read.
+         */
+        public PartInputStream(InputStream in, byte[] image) throws IOException {
+            super(in);
+            this.image = image;
+            this.enableResolveObject(true);
+        }
+
+        /**
+         * @param object Object read.
+         * @return Large part of the state, if the object stands in for one,
+         *      else the object.
+         */
+        protected Object resolveObject(Object object) {
+            if (!(object instanceof Part)) {
+                return object;
+            }
+            Part stub = (Part)object;
+            byte[] bytes = new byte[stub.length];
+            for (int j = 0; j < stub.slots.length; j++) {
+                System.arraycopy(this.image, AREA_START + stub.slots[j] * SnapshotLayout.SLOT,
+                                 bytes, j * SnapshotLayout.SLOT,
+                                 Math.min(SnapshotLayout.SLOT, bytes.length - j * SnapshotLayout.SLOT));
+            }
+            ByteBuffer part = ByteBuffer.wrap(bytes);
+            switch (stub.kind) {
+                case Part.BOOLEANS:
+                    boolean[] booleans = new boolean[stub.length];
+                    for (int i = 0; i < booleans.length; i++) {
+                        booleans[i] = part.get(i) != 0;
+                    }
+                    return booleans;
+                case Part.BYTES:
+                    return bytes;
+                case Part.INTS:
+                    int[] ints = new int[stub.length / 4];
+                    part.asIntBuffer().get(ints);
+                    return ints;
+                case Part.LONGS:
+                    long[] longs = new long[stub.length / 8];
+                    part.asLongBuffer().get(longs);
+                    return longs;
+                case Part.TABLE:
+                    return _unpackTable(part, new ArrayList<PageTableEntry>(stub.length / 5));
+                default:
+                    return _unpackTable(part, new OffHeapPageTable(stub.directory));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * SnapshotLayout.java
+ *
+ * Where the large parts of snapshot images go, kept from one image to the
+ * next.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Where the large parts (page tables, frames and other big arrays, see
+ * {@link Snapshot}) of the snapshot images of a simulation go in their part
+ * area. The area is cut into slots of 1 KiB, and every part gets as many as
+ * it needs. A part keeps its slots from one image to the next as long as it
+ * is there, and only gets more or gives some back as it grows or shrinks,
+ * so the bytes of a slot that hasn't changed stay where they were, and a
+ * writer comparing the images block by block finds them the same. The slots
+ * of a part that is gone are taken by the next new ones, lowest first.
+ *
+ * Parts are told apart by identity, so the layout holds on to them until the
+ * next image is done without them.
+ */
+public class SnapshotLayout {
+    /** Size of a slot in bytes. */
+    public static final int SLOT = 1024;
+
+    private Map<Object, List<Integer>> places = new IdentityHashMap<Object, List<Integer>>();
+    private Map<Object, Boolean> placed = new IdentityHashMap<Object, Boolean>();
+    private TreeSet<Integer> freeSlots = new TreeSet<Integer>();
+    private int slots = 0;
+
+    /**
+     * Places a part of the image being captured: in the slots it had in the
+     * last image, and more if it has grown.
+     *
+     * @param part Object the part is made from.
+     * @param length Length of the part in bytes.
+     * @return Numbers of the slots of the part, in order.
+     */
+    public int[] place(Object part, int length) {
+        this.placed.put(part, Boolean.TRUE);
+        List<Integer> partSlots = this.places.get(part);
+        if (partSlots == null) {
+            partSlots = new ArrayList<Integer>();
+            this.places.put(part, partSlots);
+        }
+        int needed = (length + SLOT - 1) / SLOT;
+        while (partSlots.size() > needed) {
+            this.freeSlots.add(partSlots.remove(partSlots.size() - 1));
+        }
+        while (partSlots.size() < needed) {
+            partSlots.add(this.freeSlots.isEmpty() ? this.slots++ : this.freeSlots.pollFirst());
+        }
+        int[] numbers = new int[needed];
+        for (int i = 0; i < needed; i++) {
+            numbers[i] = partSlots.get(i);
+        }
+        return numbers;
+    }
+
+    /**
+     * Ends an image: frees the slots of the parts not in it, and cuts free
+     * slots off the end of the area.
+     */
+    public void finish() {
+        Iterator<Map.Entry<Object, List<Integer>>> place = this.places.entrySet().iterator();
+        while (place.hasNext()) {
+            Map.Entry<Object, List<Integer>> entry = place.next();
+            if (!this.placed.containsKey(entry.getKey())) {
+                this.freeSlots.addAll(entry.getValue());
+                place.remove();
+            }
+        }
+        this.placed.clear();
+        while (this.freeSlots.remove(this.slots - 1)) {
+            this.slots--;
+        }
+    }
+
+    /**
+     * @return Size of the part area in bytes.
+     */
+    public int getSize() {
+        return this.slots * SLOT;
+    }
+}
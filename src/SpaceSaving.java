@@ -0,0 +1,308 @@
+/*
+ * SpaceSaving.java
+ *
+ * The most frequent keys of a stream, in a fixed amount of memory.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The most frequent keys of a stream, in a fixed amount of memory (A.
+ * Metwally, D. Agrawal and A. El Abbadi, "Efficient computation of frequent
+ * and top-k elements in data streams", 2005). Up to capacity keys are
+ * counted. A key not counted yet takes the place of the one counted least,
+ * taking over its count as a possible error. So every key counted more often
+ * than total / capacity is there, and its count is at most its error too
+ * high.
+ *
+ * The counters are kept in a min-heap, indexed by an open addressing hash
+ * table from key to heap position, so counting is O(log capacity).
+ */
+public class SpaceSaving implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int capacity;
+    private int size = 0;
+    private long[] keys;
+    private long[] counts;
+    private long[] errors;
+    private long[] tableKeys;
+    private int[] tablePositions;
+    private int tableMask;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Number of keys counted.
+     */
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        // At most half full, for short probe sequences.
+        int tableSize = Integer.highestOneBit(Math.max(1, 2 * capacity - 1)) << 1;
+        this.tableKeys = new long[tableSize];
+        this.tablePositions = new int[tableSize];
+        Arrays.fill(this.tablePositions, -1);
+        this.tableMask = tableSize - 1;
+    }
+
+    /**
+     * Counts a key.
+     *
+     * @param key Key.
+     * @param count Amount to count.
+     */
+    public void add(long key, long count) {
+        int slot = this._slot(key);
+        int position = this.tablePositions[slot];
+        if (position >= 0) {
+            this.counts[position] += count;
+            this._siftDown(position);
+        } else if (this.size < this.capacity) {
+            this._set(this.size, key, count, 0);
+            this.tablePositions[slot] = this.size;
+            this.tableKeys[slot] = key;
+            this.size++;
+            this._siftUp(this.size - 1);
+        } else {
+            // Take the place of the least counted.
+            this._remove(this.keys[0]);
+            this._set(0, key, this.counts[0] + count, this.counts[0]);
+            slot = this._slot(key);
+            this.tablePositions[slot] = 0;
+            this.tableKeys[slot] = key;
+            this._siftDown(0);
+        }
+    }
+
+    /**
+     * Adds the keys counted by another summary (of the same capacity). The
+     * counts of keys missing from a full summary could be up to its smallest
+     * count, so that much is added (as error) for them.
+     *
+     * @param other Other summary.
+     */
+    public void merge(SpaceSaving other) {
+        List<Entry> mine = this.top();
+        List<Entry> theirs = other.top();
+        long myMinimum = (this.size == this.capacity) ? this.counts[0] : 0;
+        long theirMinimum = (other.size == other.capacity) ? other.counts[0] : 0;
+        List<Entry> merged = new ArrayList<Entry>();
+        for (Entry entry : mine) {
+            Entry match = other._entry(entry.key);
+            if (match == null) {
+                merged.add(new Entry(entry.key, entry.count + theirMinimum,
+                                     entry.error + theirMinimum));
+            } else {
+                merged.add(new Entry(entry.key, entry.count + match.count,
+                                     entry.error + match.error));
+            }
+        }
+        for (Entry entry : theirs) {
+            if (this._entry(entry.key) == null) {
+                merged.add(new Entry(entry.key, entry.count + myMinimum,
+                                     entry.error + myMinimum));
+            }
+        }
+        Collections.sort(merged, DESCENDING);
+        this.size = 0;
+        Arrays.fill(this.tablePositions, -1);
+        for (int i = 0; (i < merged.size()) && (i < this.capacity); i++) {
+            Entry entry = merged.get(i);
+            this.add(entry.key, entry.count);
+            this.errors[this.tablePositions[this._slot(entry.key)]] = entry.error;
+        }
+    }
+
+    /**
+     * @return Keys counted, most counted first (ties by key).
+     */
+    public List<Entry> top() {
+        List<Entry> entries = new ArrayList<Entry>();
+        for (int i = 0; i < this.size; i++) {
+            entries.add(new Entry(this.keys[i], this.counts[i], this.errors[i]));
+        }
+        Collections.sort(entries, DESCENDING);
+        return entries;
+    }
+
+    /**
+     * @param key Key.
+     * @return Counter of the key, or null if it isn't counted.
+     */
+    private Entry _entry(long key) {
+        int position = this.tablePositions[this._slot(key)];
+        if (position < 0) {
+            return null;
+        }
+        return new Entry(key, this.counts[position], this.errors[position]);
+    }
+
+    /**
+     * @param key Key.
+     * @return Slot of the key in the table, or the empty slot it goes into.
+     */
+    private int _slot(long key) {
+        int slot = (int)(Hashing.mix(key) & this.tableMask);
+        while ((this.tablePositions[slot] >= 0) && (this.tableKeys[slot] != key)) {
+            slot = (slot + 1) & this.tableMask;
+        }
+        return slot;
+    }
+
+    /**
+     * Removes a key from the table, moving keys after it back into the gap
+     * (so no tombstones are needed).
+     *
+     * @param key Key.
+     */
+    private void _remove(long key) {
+        int gap = this._slot(key);
+        this.tablePositions[gap] = -1;
+        int slot = (gap + 1) & this.tableMask;
+        while (this.tablePositions[slot] >= 0) {
+            int home = (int)(Hashing.mix(this.tableKeys[slot]) & this.tableMask);
+            // Move back unless its home lies (cyclically) after the gap.
+            if (((slot - home) & this.tableMask) >= ((slot - gap) & this.tableMask)) {
+                this.tableKeys[gap] = this.tableKeys[slot];
+                this.tablePositions[gap] = this.tablePositions[slot];
+                this.tablePositions[slot] = -1;
+                gap = slot;
+            }
+            slot = (slot + 1) & this.tableMask;
+        }
+    }
+
+    /**
+     * @param position Heap position.
+     * @param key Key.
+     * @param count Count.
+     * @param error Error of the count.
+     */
+    private void _set(int position, long key, long count, long error) {
+        this.keys[position] = key;
+        this.counts[position] = count;
+        this.errors[position] = error;
+    }
+
+    /**
+     * @param position Heap position of a counter that has grown.
+     */
+    private void _siftDown(int position) {
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= this.size) {
+                return;
+            }
+            if ((child + 1 < this.size) && (this.counts[child + 1] < this.counts[child])) {
+                child++;
+            }
+            if (this.counts[child] >= this.counts[position]) {
+                return;
+            }
+            this._swap(position, child);
+            position = child;
+        }
+    }
+
+    /**
+     * @param position Heap position of a new counter.
+     */
+    private void _siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (this.counts[parent] <= this.counts[position]) {
+                return;
+            }
+            this._swap(position, parent);
+            position = parent;
+        }
+    }
+
+    /**
+     * Swaps two heap positions, keeping the index up to date.
+     *
+     * @param one Heap position.
+     * @param other Heap position.
+     */
+    private void _swap(int one, int other) {
+        long key = this.keys[one];
+        long count = this.counts[one];
+        long error = this.errors[one];
+        this._set(one, this.keys[other], this.counts[other], this.errors[other]);
+        this._set(other, key, count, error);
+        this.tablePositions[this._slot(this.keys[one])] = one;
+        this.tablePositions[this._slot(this.keys[other])] = other;
+    }
+
+    /**
+     * Orders entries by count, most first (ties by key).
+     */
+    public static final Comparator<Entry> DESCENDING = new Comparator<Entry>() {
+        public int compare(Entry one, Entry other) {
+            if (one.count != other.count) {
+                return (one.count > other.count) ? -1 : 1;
+            }
+            return (one.key < other.key) ? -1 : ((one.key == other.key) ? 0 : 1);
+        }
+    };
+
+    /**
+     * A key counted.
+     */
+    public static class Entry {
+        private long key;
+        private long count;
+        private long error;
+
+        /**
+         * Constructor.
+         *
+         * @param key Key.
+         * @param count Count (at most error too high).
+         * @param error Error of the count.
+         */
+        public Entry(long key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        /**
+         * @return Returns the key.
+         */
+        public long getKey() {
+            return key;
+        }
+
+        /**
+         * @return Returns the count (at most the error too high).
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return Returns the error of the count.
+         */
+        public long getError() {
+            return error;
+        }
+    }
+}
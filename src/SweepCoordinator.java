@@ -0,0 +1,410 @@
+/*
+ * SweepCoordinator.java
+ *
+ * Runs a grid of simulations on worker JVMs and merges their results.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Runs a grid of simulations, every one (shard) in a JVM of its own, a
+ * number of them at a time, so large studies aren't held up by one heap and
+ * one garbage collector.
+ *
+ * The grid is configured in computer.properties: every "sweep.NAME" lists
+ * the values of a setting to run with ("sweep.seed=1,2,3" for a seed set),
+ * and the shards are all combinations. "sweepWorkers" is the number of
+ * worker JVMs at a time (the number of host cores by default),
+ * "sweepRetries" how often a crashed shard is tried again (2),
+ * "sweepJvmOptions" the options of the worker JVMs, and "sweepDirectory"
+ * where the shards run ("sweep").
+ *
+ * Every shard gets a directory of its own, with computer.properties as
+ * configured (less the sweep settings) plus its settings from the grid, and
+ * the simulation is run there. The output of the worker comes back over a
+ * pipe into "output.log" in there. A shard has crashed if its worker exits
+ * with an error, or without results. At the end, the results of all shards
+ * (every page replacement algorithm run) are merged into "results.csv": a
+ * row per results file, with the settings of the shard and every line of
+ * the [Results] section. Shards done in an earlier sweep into the same
+ * directory, with the same configuration, aren't run again.
+ */
+public class SweepCoordinator {
+    private static Logger logger = Logger.getLogger("simulation");
+
+    private Properties configuration;
+    private List<String> configurationLines = new ArrayList<String>();
+    private List<String> names = new ArrayList<String>();
+    private List<String[]> values = new ArrayList<String[]>();
+    private int workers;
+    private int retries;
+    private String[] jvmOptions;
+    private File directory;
+
+    /**
+     * Constructor. Reads computer.properties.
+     *
+     * @throws IOException If it can't be read.
+     */
+    public SweepCoordinator() throws IOException {
+        this.configuration = new Properties();
+        InputStream in = new FileInputStream("computer.properties");
+        try {
+            this.configuration.load(in);
+        } finally {
+            in.close();
+        }
+        BufferedReader lines = new BufferedReader(new FileReader("computer.properties"));
+        try {
+            for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                if (!line.trim().startsWith("sweep")) {
+                    this.configurationLines.add(line);
+                }
+            }
+        } finally {
+            lines.close();
+        }
+        for (String name : new TreeSet<String>(this.configuration.stringPropertyNames())) {
+            if (name.startsWith("sweep.")) {
+                this.names.add(name.substring("sweep.".length()));
+                this.values.add(this.configuration.getProperty(name).trim().split("\\s*,\\s*"));
+            }
+        }
+        this.workers = Integer.parseInt(this.configuration.getProperty(
+                "sweepWorkers", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        this.retries = Integer.parseInt(this.configuration.getProperty("sweepRetries", "2"));
+        String options = this.configuration.getProperty("sweepJvmOptions", "").trim();
+        this.jvmOptions = options.isEmpty() ? new String[0] : options.split("\\s+");
+        this.directory = new File(this.configuration.getProperty("sweepDirectory", "sweep"));
+    }
+
+    /**
+     * Runs all shards, and merges their results.
+     *
+     * @return True if all shards came to results.
+     * @throws IOException If the results can't be merged.
+     */
+    public boolean run() throws IOException {
+        List<String[]> shards = this._shards();
+        logger.info("Sweep of " + shards.size() + " shards on " + this.workers + " workers.");
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, this.workers));
+        List<Future<Boolean>> done = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < shards.size(); i++) {
+            final int shard = i;
+            final String[] settings = shards.get(i);
+            done.add(pool.submit(new Callable<Boolean>() {
+                public Boolean call() throws IOException, InterruptedException {
+                    return _runShard(shard, settings);
+                }
+            }));
+        }
+        int failed = 0;
+        try {
+            for (Future<Boolean> shard : done) {
+                if (!shard.get()) {
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while sweeping.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Running a shard failed.", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        this._merge(shards);
+        if (failed > 0) {
+            logger.severe(failed + " of " + shards.size() + " shards failed.");
+        }
+        return failed == 0;
+    }
+
+    /**
+     * @return Settings of every shard: all combinations of the values.
+     */
+    private List<String[]> _shards() {
+        List<String[]> shards = new ArrayList<String[]>();
+        shards.add(new String[this.names.size()]);
+        for (int i = 0; i < this.names.size(); i++) {
+            List<String[]> combined = new ArrayList<String[]>();
+            for (String[] shard : shards) {
+                for (String value : this.values.get(i)) {
+                    String[] settings = shard.clone();
+                    settings[i] = value;
+                    combined.add(settings);
+                }
+            }
+            shards = combined;
+        }
+        return shards;
+    }
+
+    /**
+     * Runs a shard on worker JVMs, until it comes to results or is out of
+     * retries.
+     *
+     * @param shard Shard number.
+     * @param settings Settings of the shard.
+     * @return True if it came to results.
+     * @throws IOException If the shard can't be set up.
+     * @throws InterruptedException If interrupted while waiting for a worker.
+     */
+    private boolean _runShard(int shard, String[] settings) throws IOException, InterruptedException {
+        File shardDirectory = new File(this.directory, "shard-" + shard);
+        File configurationFile = new File(shardDirectory, "computer.properties");
+        String shardConfiguration = this._configuration(settings);
+        if ((_resultFiles(shardDirectory).length > 0) && configurationFile.isFile()
+                && shardConfiguration.equals(_read(configurationFile))) {
+            logger.info("Shard " + shard + " done before.");
+            return true;
+        }
+        for (File old : _resultFiles(shardDirectory)) {
+            old.delete();
+        }
+        if (!shardDirectory.isDirectory() && !shardDirectory.mkdirs()) {
+            throw new IOException("Could not make directory " + shardDirectory);
+        }
+        Writer out = new FileWriter(configurationFile);
+        try {
+            out.write(shardConfiguration);
+        } finally {
+            out.close();
+        }
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(Arrays.asList(this.jvmOptions));
+        command.add("-cp");
+        command.add(_absoluteClassPath());
+        command.add("Simulation");
+        for (int attempt = 0; attempt <= this.retries; attempt++) {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.directory(shardDirectory);
+            builder.redirectErrorStream(true);
+            // Not a simulated process.
+            java.lang.Process worker = builder.start();
+            worker.getOutputStream().close();
+            _pipe(worker.getInputStream(), new File(shardDirectory, "output.log"), attempt > 0);
+            int exitCode = worker.waitFor();
+            if ((exitCode == 0) && (_resultFiles(shardDirectory).length > 0)) {
+                logger.info("Shard " + shard + " done.");
+                return true;
+            }
+            logger.warning("Shard " + shard + " crashed (exit code " + exitCode + "), attempt "
+                           + (attempt + 1) + " of " + (this.retries + 1) + ".");
+        }
+        return false;
+    }
+
+    /**
+     * @param settings Settings of a shard.
+     * @return Configuration of the shard: the lines of computer.properties
+     *      less the sweep settings, then the settings of the shard
+     *      (overriding).
+     */
+    private String _configuration(String[] settings) {
+        StringBuilder out = new StringBuilder();
+        for (String line : this.configurationLines) {
+            out.append(line + "\n");
+        }
+        String resultCache = this.configuration.getProperty("resultCache");
+        if (resultCache != null) {
+            // Shared by all shards, wherever they run.
+            out.append("resultCache=" + new File(resultCache).getAbsolutePath().replace("\\", "/") + "\n");
+        }
+        for (int i = 0; i < settings.length; i++) {
+            out.append(this.names.get(i) + "=" + settings[i] + "\n");
+        }
+        return out.toString();
+    }
+
+    /**
+     * Merges the results files of all shards into results.csv.
+     *
+     * @param shards Settings of every shard.
+     * @throws IOException If it can't be written.
+     */
+    private void _merge(List<String[]> shards) throws IOException {
+        List<String[]> rows = new ArrayList<String[]>();
+        List<Map<String, String>> results = new ArrayList<Map<String, String>>();
+        List<String> columns = new ArrayList<String>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            File[] files = _resultFiles(new File(this.directory, "shard-" + shard));
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                String policy = name.substring("results_".length(), name.length() - ".txt".length());
+                rows.add(new String[] {Integer.toString(shard), policy});
+                Map<String, String> result = _readResults(file);
+                for (String column : result.keySet()) {
+                    if (!columns.contains(column)) {
+                        columns.add(column);
+                    }
+                }
+                results.add(result);
+            }
+        }
+        File merged = new File(this.directory, "results.csv");
+        BufferedWriter out = new BufferedWriter(new FileWriter(merged));
+        try {
+            StringBuilder header = new StringBuilder("shard,policy");
+            for (String name : this.names) {
+                header.append(',').append(_csv(name));
+            }
+            for (String column : columns) {
+                header.append(',').append(_csv(column));
+            }
+            out.write(header + "\n");
+            for (int i = 0; i < rows.size(); i++) {
+                String[] settings = shards.get(Integer.parseInt(rows.get(i)[0]));
+                StringBuilder row = new StringBuilder(rows.get(i)[0] + "," + _csv(rows.get(i)[1]));
+                for (String setting : settings) {
+                    row.append(',').append(_csv(setting));
+                }
+                for (String column : columns) {
+                    String value = results.get(i).get(column);
+                    row.append(',').append((value == null) ? "" : _csv(value));
+                }
+                out.write(row + "\n");
+            }
+        } finally {
+            out.close();
+        }
+        logger.info("Results of " + rows.size() + " runs merged into " + merged);
+    }
+
+    /**
+     * @param file Results file.
+     * @return "Name: value" lines of its [Results] section, in order.
+     * @throws IOException If it can't be read.
+     */
+    private static Map<String, String> _readResults(File file) throws IOException {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            boolean inResults = false;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.startsWith("[")) {
+                    inResults = line.equals("[Results]");
+                } else if (inResults && (line.indexOf(": ") > 0)) {
+                    int colon = line.indexOf(": ");
+                    result.put(line.substring(0, colon), line.substring(colon + 2).trim());
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return result;
+    }
+
+    /**
+     * @param file Text file.
+     * @return Text in it.
+     * @throws IOException If it can't be read.
+     */
+    private static String _read(File file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        Reader in = new FileReader(file);
+        try {
+            char[] buffer = new char[8192];
+            for (int length = in.read(buffer); length >= 0; length = in.read(buffer)) {
+                text.append(buffer, 0, length);
+            }
+        } finally {
+            in.close();
+        }
+        return text.toString();
+    }
+
+    /**
+     * @param directory Directory of a shard.
+     * @return Results files in it.
+     */
+    private static File[] _resultFiles(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith("results_") && name.endsWith(".txt");
+            }
+        });
+        return (files == null) ? new File[0] : files;
+    }
+
+    /**
+     * Copies the output of a worker to a file, till it ends.
+     *
+     * @param in Output of the worker.
+     * @param file File to copy to.
+     * @param append True to append, false to start the file.
+     * @throws IOException If it can't be copied.
+     */
+    private static void _pipe(InputStream in, File file, boolean append) throws IOException {
+        OutputStream out = new FileOutputStream(file, append);
+        try {
+            byte[] buffer = new byte[8192];
+            for (int length = in.read(buffer); length >= 0; length = in.read(buffer)) {
+                out.write(buffer, 0, length);
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+    }
+
+    /**
+     * @return Class path of this JVM, absolute, as the workers run elsewhere.
+     */
+    private static String _absoluteClassPath() {
+        StringBuilder path = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (path.length() > 0) {
+                path.append(File.pathSeparator);
+            }
+            path.append(new File(entry.isEmpty() ? "." : entry).getAbsolutePath());
+        }
+        return path.toString();
+    }
+
+    /**
+     * @param value Value.
+     * @return Value as a CSV field, quoted if need be.
+     */
+    private static String _csv(String value) {
+        if ((value.indexOf(',') < 0) && (value.indexOf('"') < 0)) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * ThreadedProcess.java
+ *
+ * Process running as straight-line code on a thread of its own.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Process running as straight-line code on a thread of its own, rather than
+ * as a state machine advanced step by step. The code blocks on simulated page
+ * faults and disk waits through its {@link ProcessContext}, and carries on
+ * where it left off when the process is scheduled again. So phases, I/O and
+ * the like are just code; override {@link #run(ProcessContext)} for them.
+ *
+ * Only one of the process thread and the thread simulating its core runs at
+ * a time, handing over to each other, so the simulation stays deterministic.
+ * Where the JVM has virtual threads (Java 21 on), they are used, so there can
+ * be lots of processes; otherwise it's daemon threads with small stacks.
+ */
+public class ThreadedProcess extends Process {
+    private static final long serialVersionUID = 1L;
+    private static final long STACK_SIZE = 128 * 1024;
+    private static Method ofVirtual = null;
+    private static Method name;
+    private static Method unstarted;
+
+    static {
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (Exception e) {
+            // No virtual threads on this JVM.
+            ofVirtual = null;
+        }
+    }
+
+    private Thread thread;
+    private boolean started = false;
+    private boolean ended = false;
+    private boolean exiting = false;
+    private Throwable failure = null;
+    private Semaphore running = new Semaphore(0);
+    private Semaphore yielded = new Semaphore(0);
+    private long sliceStart;
+    private int sliceCycles;
+    private boolean resumed;
+    private ProcessContext context = new Context();
+
+    /**
+     * Constructor.
+     *
+     * @param simulation Reference to simulation.
+     * @param pid Process ID.
+     * @param processCyclesToGo Number of process cycles to do before done.
+     * @param pagesMemoryToStart How many pages are needed to start this process.
+     * @param quantum Process execution quantum.
+     */
+    public ThreadedProcess(Simulation simulation,
+                           int pid,
+                           int processCyclesToGo,
+                           int pagesMemoryToStart,
+                           int quantum) {
+        super(simulation, pid, processCyclesToGo, pagesMemoryToStart, quantum);
+        this.thread = _newThread(new Runnable() {
+            public void run() {
+                _runThread();
+            }
+        }, "PID " + pid);
+    }
+
+    /**
+     * The code of the process: loads its initial pages, then keeps moving its
+     * process counter and memory pointer around by their workload generators,
+     * making the same references at the same cycles as {@link Process} does,
+     * so a process gives the same results either way.
+     * Runs until the process has used up its cycles.
+     *
+     * @param context What the process can do.
+     */
+    protected void run(ProcessContext context) {
+        Simulation simulation = context.getSimulation();
+        Random randomiser = context.getRandomiser();
+        for (int page = 0; page < this.getPagesMemoryToStart(); page++) {
+            context.load(page);
+        }
+        // Done loading.
+        context.compute(simulation.getCpuCyclesPerDiskRequest());
+        int mp = 0;
+        while (true) {
+            if (context.hasResumed()) {
+                // Process what was interrupted.
+                context.compute(simulation.getCpuCyclesProcessing(randomiser));
+                continue;
+            }
+            int oldMP = mp;
+            int pages = context.getPageCount();
+            int pc = this.getPcGenerator().nextPage(randomiser, pages);
+            mp = this.getMpGenerator().nextPage(randomiser, pages);
+            this.recordReferences(pc, mp);
+            // Free the old page after move of more than 10%?
+            int freePageCycles = 0;
+            if ((10 * (oldMP - mp) > pages) && simulation.askFreePage(randomiser)) {
+                context.free(oldMP);
+                freePageCycles = 5;
+            }
+            int loadCycles = context.access(pc);
+            loadCycles += context.access(mp);
+            if (loadCycles >= 500) {
+                // Too bad, need to wait now. Yield to other processes.
+                context.waitFor(loadCycles);
+            } else {
+                context.compute(loadCycles + freePageCycles
+                                + simulation.getCpuCyclesProcessing(randomiser));
+            }
+        }
+    }
+
+    public int step(long currentCycle) {
+        int cyclesElapsed = super.step(currentCycle);
+        if (this.isDone() && this.started && !this.ended) {
+            // Unwind the code of the process, and let its thread end.
+            this.exiting = true;
+            this.running.release();
+            this.yielded.acquireUninterruptibly();
+        }
+        return cyclesElapsed;
+    }
+
+    public boolean isDone() {
+        return this.ended || super.isDone();
+    }
+
+    protected int runSlice(long currentCycle) {
+        if (this.ended) {
+            return 0;
+        }
+        this.sliceStart = currentCycle;
+        this.sliceCycles = 0;
+        this.resumed = true;
+        if (!this.started) {
+            this.started = true;
+            this.thread.start();
+        }
+        this.running.release();
+        this.yielded.acquireUninterruptibly();
+        if (this.failure != null) {
+            throw new IllegalStateException("Process with PID " + this.getPid()
+                                            + " failed.", this.failure);
+        }
+        return this.sliceCycles;
+    }
+
+    /**
+     * Body of the process thread.
+     */
+    private void _runThread() {
+        this.running.acquireUninterruptibly();
+        try {
+            this.run(this.context);
+        } catch (ProcessExit e) {
+            // Done.
+        } catch (Throwable e) {
+            this.failure = e;
+        }
+        this.ended = true;
+        this.yielded.release();
+    }
+
+    /**
+     * Accounts CPU cycles spent by the process, and hands back to the core
+     * if its quantum is used up or it has to wait for the disk (the same as
+     * {@link Process#runSlice(long)} does).
+     *
+     * @param cycles Number of cycles.
+     */
+    private void _spend(int cycles) {
+        this.sliceCycles += cycles;
+        if ((this.sliceCycles >= this.getQuantum()) || this.isBlocked()) {
+            this.yielded.release();
+            this.running.acquireUninterruptibly();
+            if (this.exiting) {
+                throw new ProcessExit();
+            }
+        }
+    }
+
+    /**
+     * @param body Code to run.
+     * @param threadName Name of the thread.
+     * @return New thread, virtual if possible.
+     */
+    private static Thread _newThread(Runnable body, String threadName) {
+        if (ofVirtual != null) {
+            try {
+                Object builder = name.invoke(ofVirtual.invoke(null), threadName);
+                return (Thread)unstarted.invoke(builder, body);
+            } catch (Exception e) {
+                // Fall back to a platform thread.
+            }
+        }
+        Thread thread = new Thread(null, body, threadName, STACK_SIZE);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Unwinds the code of a process that is done. Not to be caught.
+     */
+    private static class ProcessExit extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * What the code of this process can do.
+     */
+    private class Context implements ProcessContext {
+        public void load(int pageNumber) {
+            addLoadWait(this._memory().accessPage(pageNumber));
+            _spend(getSimulation().getCpuCyclesPerDiskRequest());
+        }
+
+        public int access(int pageNumber) {
+            return this._memory().accessPage(pageNumber);
+        }
+
+        public void free(int pageNumber) {
+            this._memory().freePage(pageNumber);
+        }
+
+        public void compute(int cycles) {
+            _spend(cycles);
+        }
+
+        public void waitFor(int cycles) {
+            addWait(cycles);
+            _spend(getSimulation().getCpuCyclesPerDiskRequest());
+        }
+
+        public boolean hasResumed() {
+            boolean wasResumed = resumed;
+            resumed = false;
+            return wasResumed;
+        }
+
+        public int getPageCount() {
+            return getVirtualMemory().getPageCount();
+        }
+
+        public int relativeToPage(double relativeReference) {
+            return ThreadedProcess.this.relativeToPage(relativeReference);
+        }
+
+        public Simulation getSimulation() {
+            return ThreadedProcess.this.getSimulation();
+        }
+
+        public Random getRandomiser() {
+            return ThreadedProcess.this.getRandomiser();
+        }
+
+        /**
+         * @return Address translator, its clock set to the current cycle.
+         */
+        private AddressTranslator _memory() {
+            AddressTranslator virtualMemory = getVirtualMemory();
+            virtualMemory.setClock(getCore(), sliceStart + sliceCycles);
+            return virtualMemory;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+/*
+ * TraceReader.java
+ *
+ * Reads trace files written by the TraceWriter.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads trace files written by the {@link TraceWriter}. The index at the end
+ * of the file tells where the blocks are, of which core, and which cycles
+ * they cover, so reading can start at any cycle, and blocks can be decoded
+ * on several threads at once.
+ *
+ * Run on its own, it tells what's in a trace file:
+ * "java TraceReader FILE [THREADS [CYCLE]]" decodes the blocks from a cycle
+ * on (all by default) on a number of threads (1 by default).
+ */
+public class TraceReader {
+    private static Logger logger = Logger.getLogger("simulation");
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private List<Block> blocks = new ArrayList<Block>();
+
+    /**
+     * Constructor. Reads the index.
+     *
+     * @param fileName Name of the trace file.
+     * @throws IOException If the file can't be read, or is no trace file.
+     */
+    public TraceReader(String fileName) throws IOException {
+        this.file = new RandomAccessFile(fileName, "r");
+        this.channel = this.file.getChannel();
+        if ((this.file.length() < 24) || (this.file.readInt() != TraceWriter.MAGIC)) {
+            throw new IOException(fileName + " is no trace file.");
+        }
+        if (this.file.readInt() != TraceWriter.VERSION) {
+            throw new IOException(fileName + " is of another version.");
+        }
+        this.file.seek(this.file.length() - 16);
+        int count = this.file.readInt();
+        long indexOffset = this.file.readLong();
+        if (this.file.readInt() != TraceWriter.MAGIC) {
+            throw new IOException(fileName + " has no index (not closed?).");
+        }
+        ByteBuffer index = this._read(indexOffset, count * TraceWriter.INDEX_ENTRY_BYTES);
+        for (int i = 0; i < count; i++) {
+            this.blocks.add(new Block(index.getLong(), index.getInt(), index.getInt(), index.getInt(),
+                                      index.getInt(), index.getLong(), index.getLong()));
+        }
+        Collections.sort(this.blocks, new Comparator<Block>() {
+            public int compare(Block a, Block b) {
+                if (a.firstCycle != b.firstCycle) {
+                    return (a.firstCycle < b.firstCycle) ? -1 : 1;
+                }
+                return a.core - b.core;
+            }
+        });
+    }
+
+    /**
+     * @return Returns the blocks, by first cycle.
+     */
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @param cycle Cycle to start reading at.
+     * @return Blocks with references at or after the cycle, by first cycle.
+     */
+    public List<Block> getBlocksFrom(long cycle) {
+        List<Block> from = new ArrayList<Block>();
+        for (Block block : this.blocks) {
+            if (block.lastCycle >= cycle) {
+                from.add(block);
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Decodes a block. May be called from several threads at once.
+     *
+     * @param block Block of the index.
+     * @return References in the block.
+     * @throws IOException If the block can't be read.
+     */
+    public References decode(Block block) throws IOException {
+        ByteBuffer bytes = this._inflate(this._read(block.offset, block.length), block.inflatedLength);
+        References references = new References(block);
+        long cycle = block.firstCycle;
+        int pid = 0;
+        int[] pids = new int[16];
+        int[] lastPages = new int[16];
+        int pidCount = 0;
+        int slot = -1;
+        for (int i = 0; i < block.references; i++) {
+            long head = _getVarint(bytes);
+            cycle += _unZigZag(head >>> 1);
+            if ((head & 1) != 0) {
+                pid += (int)_unZigZag(_getVarint(bytes));
+                slot = -1;
+                for (int j = 0; j < pidCount; j++) {
+                    if (pids[j] == pid) {
+                        slot = j;
+                        break;
+                    }
+                }
+                if (slot < 0) {
+                    if (pidCount == pids.length) {
+                        pids = Arrays.copyOf(pids, 2 * pidCount);
+                        lastPages = Arrays.copyOf(lastPages, 2 * pidCount);
+                    }
+                    pids[pidCount] = pid;
+                    lastPages[pidCount] = 0;
+                    slot = pidCount++;
+                }
+            }
+            lastPages[slot] += (int)_unZigZag(_getVarint(bytes));
+            references.cycles[i] = cycle;
+            references.pids[i] = pid;
+            references.pages[i] = lastPages[slot];
+        }
+        return references;
+    }
+
+    /**
+     * Decodes blocks on a number of threads.
+     *
+     * @param blocks Blocks of the index.
+     * @param threads Number of threads.
+     * @return References in the blocks, in the order of the blocks.
+     * @throws IOException If a block can't be read.
+     */
+    public List<References> decodeAll(List<Block> blocks, int threads) throws IOException {
+        ExecutorService decoders = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<References>> decoded = new ArrayList<Future<References>>();
+            for (final Block block : blocks) {
+                decoded.add(decoders.submit(new Callable<References>() {
+                    public References call() throws IOException {
+                        return decode(block);
+                    }
+                }));
+            }
+            List<References> all = new ArrayList<References>();
+            for (Future<References> references : decoded) {
+                all.add(references.get());
+            }
+            return all;
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while decoding.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Decoding failed.", e.getCause());
+        } finally {
+            decoders.shutdown();
+        }
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException If it can't be closed.
+     */
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    /**
+     * @param offset Offset in the file.
+     * @param length Number of bytes.
+     * @return The bytes read.
+     * @throws IOException If they can't be read.
+     */
+    private ByteBuffer _read(long offset, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (this.channel.read(bytes, offset + bytes.position()) < 0) {
+                throw new IOException("Trace file cut short.");
+            }
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    /**
+     * @param deflated Block as in the file.
+     * @param length Number of bytes inflated.
+     * @return Block inflated.
+     * @throws IOException If the block is broken.
+     */
+    private ByteBuffer _inflate(ByteBuffer deflated, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(deflated.array(), 0, deflated.limit());
+        byte[] bytes = new byte[length];
+        try {
+            int inflated = 0;
+            while (inflated < length) {
+                int count = inflater.inflate(bytes, inflated, length - inflated);
+                if ((count == 0) && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Trace block cut short.");
+                }
+                inflated += count;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Trace block broken.", e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * @param bytes Buffer to read from.
+     * @return Unsigned value, 7 bits a byte, low bits first.
+     */
+    private static long _getVarint(ByteBuffer bytes) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes.get();
+            value |= (long)(b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * @param value Zig-zag encoded value.
+     * @return Signed value.
+     */
+    private static long _unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Entry of the index: where a block is and what it covers.
+     */
+    public static class Block {
+        private long offset;
+        private int length;
+        private int inflatedLength;
+        private int core;
+        private int references;
+        private long firstCycle;
+        private long lastCycle;
+
+        /**
+         * Constructor.
+         *
+         * @param offset Offset in the file.
+         * @param length Number of bytes (deflated).
+         * @param inflatedLength Number of bytes inflated.
+         * @param core Core of the references.
+         * @param references Number of references.
+         * @param firstCycle Cycle of the first reference.
+         * @param lastCycle Latest cycle of a reference.
+         */
+        public Block(long offset, int length, int inflatedLength, int core, int references,
+                     long firstCycle, long lastCycle) {
+            this.offset = offset;
+            this.length = length;
+            this.inflatedLength = inflatedLength;
+            this.core = core;
+            this.references = references;
+            this.firstCycle = firstCycle;
+            this.lastCycle = lastCycle;
+        }
+
+        /**
+         * @return Returns the number of bytes (deflated).
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return Returns the core of the references.
+         */
+        public int getCore() {
+            return core;
+        }
+
+        /**
+         * @return Returns the number of references.
+         */
+        public int getReferences() {
+            return references;
+        }
+
+        /**
+         * @return Returns the cycle of the first reference.
+         */
+        public long getFirstCycle() {
+            return firstCycle;
+        }
+
+        /**
+         * @return Returns the latest cycle of a reference.
+         */
+        public long getLastCycle() {
+            return lastCycle;
+        }
+    }
+
+    /**
+     * References of a block, decoded.
+     */
+    public static class References {
+        private Block block;
+        private long[] cycles;
+        private int[] pids;
+        private int[] pages;
+
+        /**
+         * Constructor.
+         *
+         * @param block Block decoded.
+         */
+        public References(Block block) {
+            this.block = block;
+            this.cycles = new long[block.references];
+            this.pids = new int[block.references];
+            this.pages = new int[block.references];
+        }
+
+        /**
+         * @return Returns the block decoded.
+         */
+        public Block getBlock() {
+            return block;
+        }
+
+        /**
+         * @return Returns the cycle of every reference.
+         */
+        public long[] getCycles() {
+            return cycles;
+        }
+
+        /**
+         * @return Returns the process ID of every reference.
+         */
+        public int[] getPids() {
+            return pids;
+        }
+
+        /**
+         * @return Returns the virtual page number of every reference.
+         */
+        public int[] getPages() {
+            return pages;
+        }
+    }
+
+    /**
+     * Tells what's in a trace file.
+     *
+     * @param args File name, optionally number of threads and cycle to start
+     *      at.
+     * @throws IOException If the file can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            logger.severe("Usage: TraceReader FILE [THREADS [CYCLE]]");
+            System.exit(1);
+        }
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+        long fromCycle = (args.length > 2) ? Long.parseLong(args[2]) : 0;
+        TraceReader reader = new TraceReader(args[0]);
+        long start = System.nanoTime();
+        List<References> decoded = reader.decodeAll(reader.getBlocksFrom(fromCycle), threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long references = 0;
+        long bytes = 0;
+        long firstCycle = Long.MAX_VALUE;
+        long lastCycle = Long.MIN_VALUE;
+        for (References block : decoded) {
+            long[] cycles = block.getCycles();
+            for (int i = 0; i < cycles.length; i++) {
+                if (cycles[i] >= fromCycle) {
+                    references++;
+                    firstCycle = Math.min(firstCycle, cycles[i]);
+                    lastCycle = Math.max(lastCycle, cycles[i]);
+                }
+            }
+            bytes += block.getBlock().getLength();
+        }
+        long fileBytes = new File(args[0]).length();
+        logger.info("Blocks: " + reader.getBlocks().size() + " (" + decoded.size()
+                    + " from cycle " + fromCycle + ")");
+        logger.info("References: " + references + ", cycles " + firstCycle + " to " + lastCycle);
+        logger.info(String.format("Bytes per reference: %.2f (%.1f times smaller than 16 byte records)",
+                                  (double)bytes / Math.max(1, references),
+                                  16.0 * references / Math.max(1, bytes)));
+        logger.info("File size: " + fileBytes + " bytes");
+        logger.info(String.format("Decoded on %d threads in %.3f s", threads, seconds));
+        reader.close();
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * TraceWriter.java
+ *
+ * Writes the page reference stream to a compact trace file.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the page reference stream (cycle, PID and page of every access) to
+ * a compact trace file, read by {@link TraceReader}.
+ *
+ * The references are cut into blocks, each of one core and decodable on its
+ * own, so blocks can be decoded in parallel, and reading can start at any
+ * cycle. Within a block, every reference is a varint of the cycle delta
+ * (zig-zag, shifted left by one, the low bit set if the PID changes), then
+ * the zig-zag varint of the PID delta if it does, then the zig-zag varint of
+ * the delta to the last page of the same PID in the block (0 for the first).
+ * The block is then deflated (zlib, fastest), which takes about as much off
+ * again, mostly from processes going back and forth between pages.
+ *
+ * The file starts with the int 0x4f535054 and a format version (1), followed
+ * by the blocks. After them comes the index, an entry per block: the long
+ * offset, the ints length (deflated), length inflated, core and number of
+ * references, and the longs cycle of the first reference and latest cycle.
+ * It ends with the int number of blocks, the long offset of the index and
+ * the int 0x4f535054 again. All big endian (as by {@link DataOutputStream}).
+ *
+ * Every core fills blocks of its own, so cores simulated in parallel windows
+ * don't share anything but the file. Which core gets to write a full block
+ * first may differ from run to run, so blocks are in the file in no
+ * particular order; the reader orders them by cycle.
+ */
+public class TraceWriter implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static Logger logger = Logger.getLogger("simulation");
+
+    /** First and last int of a trace file. */
+    public static final int MAGIC = 0x4f535054;
+    /** Version of the format. */
+    public static final int VERSION = 1;
+    /** Number of bytes of an entry of the index. */
+    public static final int INDEX_ENTRY_BYTES = 40;
+    /** Number of references per block. */
+    public static final int BLOCK_REFERENCES = 65536;
+
+    private int cores;
+    private transient Encoder[] encoders = null;
+    private transient DataOutputStream out;
+    private transient long offset;
+    private transient List<long[]> index;
+    private transient long references;
+
+    /**
+     * Constructor.
+     *
+     * @param cores Number of CPU cores.
+     */
+    public TraceWriter(int cores) {
+        this.cores = cores;
+    }
+
+    /**
+     * Starts writing references to a file. A run resumed from a checkpoint
+     * starts a new file, covering the references from there on.
+     *
+     * @param fileName Name of the file.
+     * @throws IOException If the file can't be opened.
+     */
+    public void open(String fileName) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.offset = 8;
+        this.index = new ArrayList<long[]>();
+        this.references = 0;
+        this.encoders = new Encoder[this.cores];
+        for (int i = 0; i < this.cores; i++) {
+            this.encoders[i] = new Encoder(i);
+        }
+    }
+
+    /**
+     * Records a page reference. Does nothing unless open.
+     *
+     * @param core Core the reference is made on.
+     * @param cycle Clock of that core.
+     * @param pid Process ID.
+     * @param pageNumber Virtual page number.
+     */
+    public void record(int core, long cycle, int pid, int pageNumber) {
+        if (this.encoders == null) {
+            return;
+        }
+        Encoder encoder = this.encoders[core];
+        encoder.add(cycle, pid, pageNumber);
+        if (encoder.count == BLOCK_REFERENCES) {
+            encoder.deflate();
+            this._writeBlock(encoder);
+        }
+    }
+
+    /**
+     * Writes the blocks not full yet and the index, and closes the file.
+     */
+    public void close() {
+        if (this.encoders == null) {
+            return;
+        }
+        for (Encoder encoder : this.encoders) {
+            if (encoder.count > 0) {
+                encoder.deflate();
+                this._writeBlock(encoder);
+            }
+        }
+        this.encoders = null;
+        try {
+            for (long[] entry : this.index) {
+                this.out.writeLong(entry[0]);
+                this.out.writeInt((int)entry[1]);
+                this.out.writeInt((int)entry[2]);
+                this.out.writeInt((int)entry[3]);
+                this.out.writeInt((int)entry[4]);
+                this.out.writeLong(entry[5]);
+                this.out.writeLong(entry[6]);
+            }
+            this.out.writeInt(this.index.size());
+            this.out.writeLong(this.offset);
+            this.out.writeInt(MAGIC);
+            this.out.close();
+        } catch (IOException e) {
+            logger.severe("Could not write trace index: " + e.getMessage());
+        }
+        long bytes = this.offset + (long)INDEX_ENTRY_BYTES * this.index.size() + 16;
+        logger.info("Trace: " + this.references + " references in " + this.index.size()
+                    + " blocks, " + bytes + " bytes.");
+    }
+
+    /**
+     * Appends a deflated block to the file, and starts the next one of its
+     * core.
+     *
+     * @param encoder Block of a core.
+     */
+    private synchronized void _writeBlock(Encoder encoder) {
+        try {
+            this.out.write(encoder.deflated, 0, encoder.deflatedLength);
+        } catch (IOException e) {
+            logger.severe("Could not write trace block: " + e.getMessage());
+        }
+        this.index.add(new long[] {this.offset, encoder.deflatedLength, encoder.length, encoder.core,
+                                   encoder.count, encoder.firstCycle, encoder.latestCycle});
+        this.offset += encoder.deflatedLength;
+        this.references += encoder.count;
+        encoder.reset();
+    }
+
+    /**
+     * @param value Signed value.
+     * @return Value zig-zag encoded: small magnitudes to small numbers.
+     */
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Block of references of a core being filled.
+     */
+    private static class Encoder {
+        private int core;
+        private byte[] bytes = new byte[4 * BLOCK_REFERENCES];
+        private int length;
+        private int count;
+        private long firstCycle;
+        private long lastCycle;
+        private long latestCycle;
+        private int lastPid;
+        private int[] pids = new int[16];
+        private int[] lastPages = new int[16];
+        private int pidCount;
+        private int pidSlot;
+        private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] deflated = new byte[4 * BLOCK_REFERENCES];
+        private int deflatedLength;
+
+        /**
+         * Constructor.
+         *
+         * @param core Core of the blocks.
+         */
+        public Encoder(int core) {
+            this.core = core;
+            this.reset();
+        }
+
+        /**
+         * Starts a new block.
+         */
+        public void reset() {
+            this.length = 0;
+            this.count = 0;
+            this.lastPid = 0;
+            this.pidCount = 0;
+            this.pidSlot = -1;
+        }
+
+        /**
+         * @param cycle Clock of the core.
+         * @param pid Process ID.
+         * @param pageNumber Virtual page number.
+         */
+        public void add(long cycle, int pid, int pageNumber) {
+            if (this.count == 0) {
+                this.firstCycle = cycle;
+                this.lastCycle = cycle;
+                this.latestCycle = cycle;
+            }
+            boolean pidChanged = (this.pidSlot < 0) || (pid != this.lastPid);
+            this._putVarint((zigZag(cycle - this.lastCycle) << 1) | (pidChanged ? 1 : 0));
+            if (pidChanged) {
+                this._putVarint(zigZag(pid - this.lastPid));
+                this.lastPid = pid;
+                this.pidSlot = this._slot(pid);
+            }
+            this._putVarint(zigZag(pageNumber - this.lastPages[this.pidSlot]));
+            this.lastPages[this.pidSlot] = pageNumber;
+            this.lastCycle = cycle;
+            this.latestCycle = Math.max(this.latestCycle, cycle);
+            this.count++;
+        }
+
+        /**
+         * Deflates the block, when full or at the end.
+         */
+        public void deflate() {
+            this.deflater.reset();
+            this.deflater.setInput(this.bytes, 0, this.length);
+            this.deflater.finish();
+            this.deflatedLength = 0;
+            while (!this.deflater.finished()) {
+                if (this.deflatedLength == this.deflated.length) {
+                    this.deflated = Arrays.copyOf(this.deflated, 2 * this.deflated.length);
+                }
+                this.deflatedLength += this.deflater.deflate(this.deflated, this.deflatedLength,
+                                                             this.deflated.length - this.deflatedLength);
+            }
+        }
+
+        /**
+         * @param pid Process ID.
+         * @return Slot of the last page of the process in the block.
+         */
+        private int _slot(int pid) {
+            for (int i = 0; i < this.pidCount; i++) {
+                if (this.pids[i] == pid) {
+                    return i;
+                }
+            }
+            if (this.pidCount == this.pids.length) {
+                this.pids = Arrays.copyOf(this.pids, 2 * this.pidCount);
+                this.lastPages = Arrays.copyOf(this.lastPages, 2 * this.pidCount);
+            }
+            this.pids[this.pidCount] = pid;
+            this.lastPages[this.pidCount] = 0;
+            return this.pidCount++;
+        }
+
+        /**
+         * @param value Unsigned value, 7 bits a byte, low bits first.
+         */
+        private void _putVarint(long value) {
+            if (this.length + 10 > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, 2 * this.bytes.length);
+            }
+            while ((value & ~0x7fL) != 0) {
+                this.bytes[this.length++] = (byte)((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            this.bytes[this.length++] = (byte)value;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * TwoListReplacement.java
+ *
+ * Active and inactive lists, after the page cache of Linux.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Active and inactive lists, after the page cache of Linux. Pages come into
+ * memory at the head of the inactive list. Found referenced at the tail of
+ * the inactive list, a page gets another round; found referenced again, it's
+ * promoted to the active list. The active list is kept to at most
+ * ACTIVE_RATIO times the inactive list, by moving pages not referenced from
+ * its tail to the inactive list (referenced ones go round again).
+ *
+ * Pages are evicted from the tail of the inactive list, clean ones first: a
+ * dirty page is only taken if there is no clean one among the next
+ * SCAN_WINDOW pages not referenced. Pages faulting back in soon after their
+ * eviction (see {@link PageReplacement#pageRefaulted(int, int)}) go straight
+ * to the active list.
+ *
+ * The lists are linked through arrays indexed by page number, so no objects
+ * are made per page.
+ */
+public class TwoListReplacement extends PageReplacement {
+    private static final long serialVersionUID = 1L;
+    private static final int ACTIVE_RATIO = 1;
+    private static final int SCAN_WINDOW = 32;
+    private static final byte NONE = -1;
+    private static final byte INACTIVE = 0;
+    private static final byte ACTIVE = 1;
+
+    private int[] next = new int[64];
+    private int[] previous = new int[64];
+    private byte[] list = new byte[64];
+    private boolean[] referencedOnce = new boolean[64];
+    private int[] heads = {-1, -1};
+    private int[] tails = {-1, -1};
+    private int[] sizes = {0, 0};
+
+    /**
+     * Constructor. Pages in memory already go on the inactive list.
+     *
+     * @param pageTable Page table used for address translation.
+     * @param memoryFrames Usage status of "physical" memory frames
+     *      (true = used, false = free).
+     */
+    public TwoListReplacement(List<PageTableEntry> pageTable,
+                              boolean[] memoryFrames) {
+        super(pageTable, memoryFrames);
+        Arrays.fill(this.list, NONE);
+        for (int page = 0; page < this.pageTable.size(); page++) {
+            if (this.pageTable.get(page).isValid()) {
+                this.pageMapped(page);
+            }
+        }
+    }
+
+    /**
+     * Returns a page freed with its frame unused, or else the page to evict.
+     *
+     * @return Page number.
+     */
+    public int getTargetPage() {
+        int freedPage = this.takeFreedPage();
+        if (freedPage >= 0) {
+            return freedPage;
+        }
+
+        this._balance();
+        int victim = this._scanInactive();
+        if (victim < 0) {
+            // Everything went active, so the lists need balancing again.
+            this._balance();
+            victim = this._scanInactive();
+        }
+        if (victim < 0) {
+            // Referenced all over, take the oldest page there is.
+            victim = (this.tails[INACTIVE] >= 0) ? this.tails[INACTIVE] : this.tails[ACTIVE];
+        }
+        if (victim < 0) {
+            // Nothing in memory at all.
+            return -1;
+        }
+        return victim;
+    }
+
+    /**
+     * Puts a page coming into memory at the head of the inactive list.
+     *
+     * @param pageNumber Virtual page number.
+     */
+    public void pageMapped(int pageNumber) {
+        if (pageNumber >= this.list.length) {
+            int length = Math.max(pageNumber + 1, 2 * this.list.length);
+            int oldLength = this.list.length;
+            this.next = Arrays.copyOf(this.next, length);
+            this.previous = Arrays.copyOf(this.previous, length);
+            this.list = Arrays.copyOf(this.list, length);
+            this.referencedOnce = Arrays.copyOf(this.referencedOnce, length);
+            Arrays.fill(this.list, oldLength, length, NONE);
+        }
+        if (this.list[pageNumber] != NONE) {
+            this._unlink(pageNumber);
+        }
+        this._pushHead(INACTIVE, pageNumber);
+    }
+
+    /**
+     * Takes a page leaving memory off its list.
+     *
+     * @param pageNumber Virtual page number.
+     * @param freed True if freed, false if evicted.
+     */
+    public void pageUnmapped(int pageNumber, boolean freed) {
+        super.pageUnmapped(pageNumber, freed);
+        if ((pageNumber < this.list.length) && (this.list[pageNumber] != NONE)) {
+            this._unlink(pageNumber);
+        }
+    }
+
+    /**
+     * Promotes a page faulting back in to the active list, if it was evicted
+     * no longer ago than the active list would have held it.
+     *
+     * @param pageNumber Virtual page number.
+     * @param distance Number of evictions since the page was evicted.
+     */
+    public void pageRefaulted(int pageNumber, int distance) {
+        if ((this.list[pageNumber] == INACTIVE) && (distance <= this.sizes[ACTIVE])) {
+            this._unlink(pageNumber);
+            this._pushHead(ACTIVE, pageNumber);
+        }
+    }
+
+    /**
+     * Moves pages from the tail of the active list to the inactive list until
+     * the active list is small enough. Referenced pages go round the active
+     * list again instead (once each at most).
+     */
+    private void _balance() {
+        int steps = this.sizes[ACTIVE];
+        while ((steps-- > 0) && (this.sizes[ACTIVE] > ACTIVE_RATIO * this.sizes[INACTIVE])) {
+            int page = this.tails[ACTIVE];
+            PageTableEntry entry = this.pageTable.get(page);
+            this._unlink(page);
+            if (entry.isReferenced()) {
+                entry.setReferenced(false);
+                this._pushHead(ACTIVE, page);
+            } else {
+                this._pushHead(INACTIVE, page);
+            }
+        }
+    }
+
+    /**
+     * Scans the inactive list from the tail, giving referenced pages another
+     * round (or promoting them, on their second reference).
+     *
+     * @return First clean page not referenced within the window, or else the
+     *      first dirty one, or -1 if all were referenced.
+     */
+    private int _scanInactive() {
+        int dirty = -1;
+        int candidates = 0;
+        int steps = this.sizes[INACTIVE];
+        int page = this.tails[INACTIVE];
+        while ((steps-- > 0) && (page >= 0) && (candidates < SCAN_WINDOW)) {
+            int before = this.previous[page];
+            PageTableEntry entry = this.pageTable.get(page);
+            if (entry.isReferenced()) {
+                entry.setReferenced(false);
+                boolean promote = this.referencedOnce[page];
+                this._unlink(page);
+                this._pushHead(promote ? ACTIVE : INACTIVE, page);
+                this.referencedOnce[page] = !promote;
+            } else {
+                candidates++;
+                if (!entry.isModified()) {
+                    return page;
+                }
+                if (dirty < 0) {
+                    dirty = page;
+                }
+            }
+            page = before;
+        }
+        return dirty;
+    }
+
+    /**
+     * @param which List.
+     * @param page Page not on any list.
+     */
+    private void _pushHead(byte which, int page) {
+        this.list[page] = which;
+        this.referencedOnce[page] = false;
+        this.previous[page] = -1;
+        this.next[page] = this.heads[which];
+        if (this.heads[which] >= 0) {
+            this.previous[this.heads[which]] = page;
+        } else {
+            this.tails[which] = page;
+        }
+        this.heads[which] = page;
+        this.sizes[which]++;
+    }
+
+    /**
+     * @param page Page on a list.
+     */
+    private void _unlink(int page) {
+        byte which = this.list[page];
+        if (this.previous[page] >= 0) {
+            this.next[this.previous[page]] = this.next[page];
+        } else {
+            this.heads[which] = this.next[page];
+        }
+        if (this.next[page] >= 0) {
+            this.previous[this.next[page]] = this.previous[page];
+        } else {
+            this.tails[which] = this.previous[page];
+        }
+        this.list[page] = NONE;
+        this.sizes[which]--;
+    }
+}
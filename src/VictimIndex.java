@@ -0,0 +1,178 @@
+/*
+ * VictimIndex.java
+ *
+ * Frames of an address space by what's in them: free, clean or dirty.
+ *
+ * Created: 19/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Frames of an address space by what's in them: free (the page in it freed by
+ * the process, the frame not used since), clean (a resident page not written
+ * to since it was loaded) or dirty (a resident page to be written back). The
+ * cheapest victim is a free frame, then a clean page, then a dirty one, and
+ * this finds either without scanning the page table: every frame is on a
+ * doubly linked list of its kind, so adding, removing and picking are all
+ * constant time.
+ *
+ * The address translator keeps it up to date as pages come and go and are
+ * written to, for page replacement algorithms asking for it (see
+ * {@link PageReplacement#usesVictimIndex()}). Picking a page doesn't take it
+ * off its list; evicting or reusing it does.
+ */
+public class VictimIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Frame of a page freed, not used since. */
+    public static final int FREE = 0;
+    /** Frame of a resident page not written to. */
+    public static final int CLEAN = 1;
+    /** Frame of a resident page written to. */
+    public static final int DIRTY = 2;
+    private static final int NONE = -1;
+
+    private byte[] kinds;
+    private int[] pages;
+    private int[] previous;
+    private int[] next;
+    private int[] heads = {NONE, NONE, NONE};
+    private int[] tails = {NONE, NONE, NONE};
+    private int[] counts = new int[3];
+
+    /**
+     * Constructor.
+     *
+     * @param frames Number of frames of the address space.
+     */
+    public VictimIndex(int frames) {
+        this.kinds = new byte[frames];
+        Arrays.fill(this.kinds, (byte)NONE);
+        this.pages = new int[frames];
+        this.previous = new int[frames];
+        this.next = new int[frames];
+    }
+
+    /**
+     * A page has come into a frame.
+     *
+     * @param frameNumber Frame number.
+     * @param pageNumber Virtual page number.
+     * @param dirty True if the page is modified already.
+     */
+    public void pageMapped(int frameNumber, int pageNumber, boolean dirty) {
+        this._remove(frameNumber);
+        this.pages[frameNumber] = pageNumber;
+        this._append(frameNumber, dirty ? DIRTY : CLEAN);
+    }
+
+    /**
+     * A resident page has been written to.
+     *
+     * @param frameNumber Frame number of the page.
+     */
+    public void pageWritten(int frameNumber) {
+        if (this.kinds[frameNumber] == CLEAN) {
+            this._remove(frameNumber);
+            this._append(frameNumber, DIRTY);
+        }
+    }
+
+    /**
+     * A page has left its frame.
+     *
+     * @param frameNumber Frame number of the page.
+     * @param pageNumber Virtual page number.
+     * @param freed True if the process freed the page, so its frame is
+     *      there to be returned, false if it was evicted.
+     */
+    public void pageUnmapped(int frameNumber, int pageNumber, boolean freed) {
+        this._remove(frameNumber);
+        if (freed) {
+            this.pages[frameNumber] = pageNumber;
+            this._append(frameNumber, FREE);
+        }
+    }
+
+    /**
+     * @return Page freed last whose frame is still unused, or -1 if none.
+     */
+    public int getFreePage() {
+        int frameNumber = this.tails[FREE];
+        return (frameNumber == NONE) ? -1 : this.pages[frameNumber];
+    }
+
+    /**
+     * @return Clean page resident the longest, or -1 if none.
+     */
+    public int getCleanPage() {
+        int frameNumber = this.heads[CLEAN];
+        return (frameNumber == NONE) ? -1 : this.pages[frameNumber];
+    }
+
+    /**
+     * @return Dirty page dirty the longest, or -1 if none.
+     */
+    public int getDirtyPage() {
+        int frameNumber = this.heads[DIRTY];
+        return (frameNumber == NONE) ? -1 : this.pages[frameNumber];
+    }
+
+    /**
+     * @param kind FREE, CLEAN or DIRTY.
+     * @return Number of frames of the kind.
+     */
+    public int getCount(int kind) {
+        return this.counts[kind];
+    }
+
+    /**
+     * @param frameNumber Frame number.
+     * @param kind List to append the frame to.
+     */
+    private void _append(int frameNumber, int kind) {
+        this.kinds[frameNumber] = (byte)kind;
+        this.previous[frameNumber] = this.tails[kind];
+        this.next[frameNumber] = NONE;
+        if (this.tails[kind] == NONE) {
+            this.heads[kind] = frameNumber;
+        } else {
+            this.next[this.tails[kind]] = frameNumber;
+        }
+        this.tails[kind] = frameNumber;
+        this.counts[kind]++;
+    }
+
+    /**
+     * @param frameNumber Frame number to take off its list, if on one.
+     */
+    private void _remove(int frameNumber) {
+        int kind = this.kinds[frameNumber];
+        if (kind == NONE) {
+            return;
+        }
+        int before = this.previous[frameNumber];
+        int after = this.next[frameNumber];
+        if (before == NONE) {
+            this.heads[kind] = after;
+        } else {
+            this.next[before] = after;
+        }
+        if (after == NONE) {
+            this.tails[kind] = before;
+        } else {
+            this.previous[after] = before;
+        }
+        this.kinds[frameNumber] = (byte)NONE;
+        this.counts[kind]--;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * WorkloadGenerator.java
+ *
+ * Abstract class as a base to implement memory reference patterns.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Abstract class as a base to implement memory reference patterns.
+ *
+ * A generator produces the pages one reference stream of a process (its
+ * process counter or its memory pointer) touches, one per step. Generators
+ * keep state (where a loop is at, which phase is on), so every stream of every
+ * process gets its own instance. They are asked on every reference, so
+ * {@link #nextPage(Random, int)} needs to be cheap.
+ */
+public abstract class WorkloadGenerator implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Returns the next page referenced. Pages beyond the current address
+     * space make it grow.
+     *
+     * @param randomiser Random number generator of the process.
+     * @param pages Current size of the address space in pages.
+     * @return Virtual page number.
+     */
+    public abstract int nextPage(Random randomiser, int pages);
+}
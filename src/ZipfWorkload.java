@@ -0,0 +1,128 @@
+/*
+ * ZipfWorkload.java
+ *
+ * References to a set of pages following a Zipf distribution.
+ *
+ * Created: 18/10/2026
+ * Changed:
+ *
+ * Copyright (C) 2011 Auckland University of Technology, New Zealand
+ *
+ * Some rights reserved
+ *
+ * http://www.aut.ac.nz/
+ */
+
+import java.util.Random;
+
+/**
+ * References to a set of pages following a Zipf distribution: the page of
+ * rank k (the first page being rank 1) is referenced with a probability
+ * proportional to 1 / k^exponent. So there is a small hot set and a long
+ * tail.
+ *
+ * Sampling uses rejection-inversion (W. Hormann and G. Derflinger, "Rejection-
+ * inversion to generate variates from monotone discrete distributions", 1996),
+ * as Apache Commons Math does. It takes constant expected time with no tables,
+ * whatever the number of pages.
+ */
+public class ZipfWorkload extends WorkloadGenerator {
+    private static final long serialVersionUID = 1L;
+
+    private int firstPage;
+    private int numberPages;
+    private double exponent;
+    private double hIntegralX1;
+    private double hIntegralNumberPages;
+    private double s;
+
+    /**
+     * Constructor.
+     *
+     * @param firstPage Page number of the hottest page.
+     * @param numberPages Number of pages referenced.
+     * @param exponent Exponent of the distribution (greater than 0; the
+     *      larger, the hotter the hot set).
+     */
+    public ZipfWorkload(int firstPage, int numberPages, double exponent) {
+        if ((numberPages < 1) || (exponent <= 0)) {
+            throw new IllegalArgumentException("A Zipf distribution needs pages"
+                                               + " and a positive exponent.");
+        }
+        this.firstPage = firstPage;
+        this.numberPages = numberPages;
+        this.exponent = exponent;
+        this.hIntegralX1 = this._hIntegral(1.5) - 1.0;
+        this.hIntegralNumberPages = this._hIntegral(numberPages + 0.5);
+        this.s = 2.0 - this._hIntegralInverse(this._hIntegral(2.5) - this._h(2));
+    }
+
+    public int nextPage(Random randomiser, int pages) {
+        while (true) {
+            double u = this.hIntegralNumberPages
+                    + randomiser.nextDouble() * (this.hIntegralX1 - this.hIntegralNumberPages);
+            double x = this._hIntegralInverse(u);
+            int k = (int)(x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > this.numberPages) {
+                k = this.numberPages;
+            }
+            if ((k - x <= this.s) || (u >= this._hIntegral(k + 0.5) - this._h(k))) {
+                return this.firstPage + k - 1;
+            }
+        }
+    }
+
+    /**
+     * @param x Argument.
+     * @return Integral of the hat function, (x^(1 - exponent) - 1) / (1 - exponent).
+     */
+    private double _hIntegral(double x) {
+        double logX = Math.log(x);
+        return _helper2((1.0 - this.exponent) * logX) * logX;
+    }
+
+    /**
+     * @param x Argument.
+     * @return Hat function, x^-exponent.
+     */
+    private double _h(double x) {
+        return Math.exp(-this.exponent * Math.log(x));
+    }
+
+    /**
+     * @param x Argument.
+     * @return Inverse of {@link #_hIntegral(double)}.
+     */
+    private double _hIntegralInverse(double x) {
+        double t = x * (1.0 - this.exponent);
+        if (t < -1.0) {
+            // Limit to the domain, rounding errors may take it below.
+            t = -1.0;
+        }
+        return Math.exp(_helper1(t) * x);
+    }
+
+    /**
+     * @param x Argument.
+     * @return log(1 + x) / x, also for x close to 0.
+     */
+    private static double _helper1(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1.0 - x * (0.5 - x * (1.0 / 3.0 - x * 0.25));
+    }
+
+    /**
+     * @param x Argument.
+     * @return (exp(x) - 1) / x, also for x close to 0.
+     */
+    private static double _helper2(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1.0 + x * 0.5 * (1.0 + x * (1.0 / 3.0) * (1.0 + x * 0.25));
+    }
+}